@@ -0,0 +1,22 @@
+package com.personal.easy.rabbit.connection;
+
+/**
+ * <p>The mode a pooled channel was put into by the client leasing it.
+ * A channel keeps its mode for its lifetime, so a {@link ChannelPool}
+ * only hands out a channel for the mode it was first leased for.</p>
+ *
+ */
+public enum ChannelMode {
+    /**
+     * Channel neither in confirm nor in transaction mode
+     */
+    PLAIN,
+    /**
+     * Channel in publisher confirm mode
+     */
+    CONFIRM,
+    /**
+     * Channel in transaction mode
+     */
+    TRANSACTIONAL
+}
@@ -0,0 +1,366 @@
+package com.personal.easy.rabbit.connection;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.BlockingDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Connection;
+import com.rabbitmq.client.ConnectionFactory;
+
+/**
+ * <p>
+ * A channel pool hands out channels of the connections provided by a
+ * connection factory to client threads.
+ * </p>
+ *
+ * <p>
+ * A channel is leased by exactly one thread at a time and has to be released
+ * to the pool afterwards. Channels that turned out to be broken are
+ * invalidated instead and are replaced by new channels on demand. The amount
+ * of channels is bounded: if all channels are leased, further lease requests
+ * wait until a channel is released or the lease timeout expires.
+ * </p>
+ *
+ * <p>
+ * Channels are leased for a {@link ChannelMode}. A channel keeps the mode of
+ * its first lease, as confirm and transaction mode cannot be left again, and
+ * is only handed out for that mode afterwards. Clients put new channels into
+ * the mode they leased them for. If all channels are idle in another mode, one
+ * of them is closed to make room for a new channel, so publishers of different
+ * reliability types can share a pool.
+ * </p>
+ *
+ */
+public class ChannelPool {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ChannelPool.class);
+
+    public static final int DEFAULT_MAX_CHANNELS = 1;
+
+    public static final long DEFAULT_LEASE_TIMEOUT_IN_MS = 5000;
+
+    private final ConnectionFactory connectionFactory;
+
+    private final int maxChannels;
+
+    private final Semaphore permits;
+
+    private final BlockingDeque<Channel> idleChannels = new LinkedBlockingDeque<Channel>();
+
+    private final Set<Channel> leasedChannels = Collections.newSetFromMap(new ConcurrentHashMap<Channel, Boolean>());
+
+    private final ConcurrentMap<Channel, ChannelMode> channelModes = new ConcurrentHashMap<Channel, ChannelMode>();
+
+    private final AtomicLong leaseCount = new AtomicLong();
+
+    private final AtomicLong totalWaitTimeNanos = new AtomicLong();
+
+    private final AtomicLong maxWaitTimeNanos = new AtomicLong();
+
+    private final AtomicLong createdChannels = new AtomicLong();
+
+    private final AtomicLong invalidatedChannels = new AtomicLong();
+
+    private volatile long leaseTimeoutInMs = DEFAULT_LEASE_TIMEOUT_IN_MS;
+
+    private volatile boolean closed = false;
+
+    public ChannelPool(final ConnectionFactory connectionFactory) {
+        this(connectionFactory, DEFAULT_MAX_CHANNELS);
+    }
+
+    public ChannelPool(final ConnectionFactory connectionFactory, final int maxChannels) {
+        if (maxChannels < 1) {
+            throw new IllegalArgumentException("Max channels must be positive: " + maxChannels);
+        }
+        this.connectionFactory = connectionFactory;
+        this.maxChannels = maxChannels;
+        this.permits = new Semaphore(maxChannels, true);
+    }
+
+    public int getMaxChannels() {
+        return this.maxChannels;
+    }
+
+    public long getLeaseTimeoutInMs() {
+        return this.leaseTimeoutInMs;
+    }
+
+    /**
+     * Sets how long a lease request waits for a channel to be released
+     * if all channels are leased.
+     *
+     * @param leaseTimeoutInMs
+     *            The lease timeout in milliseconds
+     */
+    public void setLeaseTimeoutInMs(final long leaseTimeoutInMs) {
+        this.leaseTimeoutInMs = leaseTimeoutInMs;
+    }
+
+    /**
+     * Leases a plain channel waiting at most the configured lease timeout.
+     *
+     * @return The leased channel
+     * @throws IOException
+     *             if no channel can be opened or the pool is closed
+     * @throws TimeoutException
+     *             if no channel became available in time
+     */
+    public Channel lease() throws IOException, TimeoutException {
+        return lease(ChannelMode.PLAIN, this.leaseTimeoutInMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Leases a channel for the given mode waiting at most the configured lease
+     * timeout.
+     *
+     * @param mode
+     *            The mode the channel is used in
+     * @return The leased channel, a new channel has to be put into the mode
+     * @throws IOException
+     *             if no channel can be opened or the pool is closed
+     * @throws TimeoutException
+     *             if no channel became available in time
+     */
+    public Channel lease(final ChannelMode mode) throws IOException, TimeoutException {
+        return lease(mode, this.leaseTimeoutInMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Leases a plain channel.
+     *
+     * @param timeout
+     *            The maximum time to wait for a channel
+     * @param unit
+     *            The unit of the timeout
+     * @return The leased channel
+     * @throws IOException
+     *             if no channel can be opened or the pool is closed
+     * @throws TimeoutException
+     *             if no channel became available in time
+     */
+    public Channel lease(final long timeout, final TimeUnit unit) throws IOException, TimeoutException {
+        return lease(ChannelMode.PLAIN, timeout, unit);
+    }
+
+    /**
+     * <p>
+     * Leases a channel for the given mode. An idle open channel of that mode is
+     * reused if available, otherwise a new channel is opened as long as the
+     * maximum amount of channels is not exceeded.
+     * </p>
+     *
+     * @param mode
+     *            The mode the channel is used in
+     * @param timeout
+     *            The maximum time to wait for a channel
+     * @param unit
+     *            The unit of the timeout
+     * @return The leased channel
+     * @throws IOException
+     *             if no channel can be opened or the pool is closed
+     * @throws TimeoutException
+     *             if no channel became available in time
+     */
+    public Channel lease(final ChannelMode mode, final long timeout, final TimeUnit unit)
+            throws IOException, TimeoutException {
+        checkNotClosed();
+        long waitStart = System.nanoTime();
+        try {
+            if (!this.permits.tryAcquire(timeout, unit)) {
+                throw new TimeoutException("No channel available within " + unit.toMillis(timeout) + " ms");
+            }
+        }
+        catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for a channel", e);
+        }
+        recordWaitTime(System.nanoTime() - waitStart);
+
+        try {
+            Channel channel = pollOpenIdleChannel(mode);
+            if (channel == null) {
+                retireIdleChannel();
+                channel = createChannel();
+                this.channelModes.put(channel, mode);
+            }
+            this.leasedChannels.add(channel);
+            this.leaseCount.incrementAndGet();
+            return channel;
+        }
+        catch (IOException e) {
+            this.permits.release();
+            throw e;
+        }
+        catch (TimeoutException e) {
+            this.permits.release();
+            throw e;
+        }
+        catch (RuntimeException e) {
+            this.permits.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Returns a leased channel to the pool. Closed channels are dropped.
+     * Releasing a channel that is not leased from this pool has no effect.
+     *
+     * @param channel
+     *            The leased channel
+     */
+    public void release(final Channel channel) {
+        if (channel == null || !this.leasedChannels.remove(channel)) {
+            return;
+        }
+        if (!this.closed && channel.isOpen()) {
+            this.idleChannels.offerFirst(channel);
+        }
+        else {
+            this.channelModes.remove(channel);
+            if (this.closed) {
+                closeQuietly(channel);
+            }
+        }
+        this.permits.release();
+    }
+
+    /**
+     * Removes a broken leased channel from the pool and closes it. Invalidating
+     * a channel that is not leased from this pool has no effect.
+     *
+     * @param channel
+     *            The leased channel
+     */
+    public void invalidate(final Channel channel) {
+        if (channel == null || !this.leasedChannels.remove(channel)) {
+            return;
+        }
+        LOGGER.debug("Invalidating pooled channel");
+        this.invalidatedChannels.incrementAndGet();
+        this.channelModes.remove(channel);
+        closeQuietly(channel);
+        this.permits.release();
+    }
+
+    /**
+     * Closes all idle channels. Leased channels are closed as soon as they are
+     * released. No channel can be leased from a closed pool.
+     */
+    public void close() {
+        this.closed = true;
+        for (Channel channel = this.idleChannels.pollFirst(); channel != null; channel = this.idleChannels.pollFirst()) {
+            this.channelModes.remove(channel);
+            closeQuietly(channel);
+        }
+    }
+
+    public boolean isClosed() {
+        return this.closed;
+    }
+
+    /**
+     * Gets a snapshot of the pool metrics.
+     *
+     * @return The pool metrics
+     */
+    public ChannelPoolMetrics getMetrics() {
+        return new ChannelPoolMetrics(this.maxChannels, this.leasedChannels.size(), this.idleChannels.size(),
+                this.leaseCount.get(), this.totalWaitTimeNanos.get(), this.maxWaitTimeNanos.get(),
+                this.createdChannels.get(), this.invalidatedChannels.get());
+    }
+
+    /**
+     * Gets the mode a channel of this pool was first leased for.
+     *
+     * @param channel
+     *            The channel
+     * @return The mode of the channel, null if the channel is not pooled
+     */
+    public ChannelMode getChannelMode(final Channel channel) {
+        return this.channelModes.get(channel);
+    }
+
+    Channel pollOpenIdleChannel(final ChannelMode mode) {
+        Iterator<Channel> channels = this.idleChannels.iterator();
+        while (channels.hasNext()) {
+            Channel channel = channels.next();
+            if (!channel.isOpen()) {
+                if (this.idleChannels.remove(channel)) {
+                    this.channelModes.remove(channel);
+                }
+            }
+            else if (this.channelModes.get(channel) == mode && this.idleChannels.remove(channel)) {
+                return channel;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Closes the least recently used idle channel if a new channel would
+     * exceed the maximum amount of channels. Idle channels are of another
+     * mode when this is called.
+     */
+    void retireIdleChannel() {
+        if (this.leasedChannels.size() + this.idleChannels.size() < this.maxChannels) {
+            return;
+        }
+        Channel channel = this.idleChannels.pollLast();
+        if (channel != null) {
+            LOGGER.debug("Closing idle pooled channel in {} mode", this.channelModes.get(channel));
+            this.channelModes.remove(channel);
+            closeQuietly(channel);
+        }
+    }
+
+    Channel createChannel() throws IOException, TimeoutException {
+        LOGGER.debug("Creating pooled channel");
+        Connection connection = this.connectionFactory.newConnection();
+        Channel channel = connection.createChannel();
+        if (channel == null) {
+            throw new IOException("No channel available on connection");
+        }
+        this.createdChannels.incrementAndGet();
+        return channel;
+    }
+
+    void recordWaitTime(final long waitTimeNanos) {
+        this.totalWaitTimeNanos.addAndGet(waitTimeNanos);
+        long currentMax = this.maxWaitTimeNanos.get();
+        while (waitTimeNanos > currentMax && !this.maxWaitTimeNanos.compareAndSet(currentMax, waitTimeNanos)) {
+            currentMax = this.maxWaitTimeNanos.get();
+        }
+    }
+
+    void checkNotClosed() throws IOException {
+        if (this.closed) {
+            throw new IOException("Attempt to lease a channel from a closed channel pool");
+        }
+    }
+
+    static void closeQuietly(final Channel channel) {
+        if (!channel.isOpen()) {
+            return;
+        }
+        try {
+            channel.close();
+        }
+        catch (Exception e) {
+            LOGGER.warn("Failed to close pooled channel", e);
+        }
+    }
+}
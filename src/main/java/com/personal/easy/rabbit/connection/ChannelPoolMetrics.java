@@ -0,0 +1,110 @@
+package com.personal.easy.rabbit.connection;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A snapshot of the metrics of a {@link ChannelPool}.
+ *
+ */
+public class ChannelPoolMetrics {
+
+    private final int maxChannels;
+
+    private final int leasedChannels;
+
+    private final int idleChannels;
+
+    private final long leaseCount;
+
+    private final long totalWaitTimeNanos;
+
+    private final long maxWaitTimeNanos;
+
+    private final long createdChannels;
+
+    private final long invalidatedChannels;
+
+    public ChannelPoolMetrics(final int maxChannels, final int leasedChannels, final int idleChannels,
+            final long leaseCount, final long totalWaitTimeNanos, final long maxWaitTimeNanos,
+            final long createdChannels, final long invalidatedChannels) {
+        this.maxChannels = maxChannels;
+        this.leasedChannels = leasedChannels;
+        this.idleChannels = idleChannels;
+        this.leaseCount = leaseCount;
+        this.totalWaitTimeNanos = totalWaitTimeNanos;
+        this.maxWaitTimeNanos = maxWaitTimeNanos;
+        this.createdChannels = createdChannels;
+        this.invalidatedChannels = invalidatedChannels;
+    }
+
+    public int getMaxChannels() {
+        return this.maxChannels;
+    }
+
+    /**
+     * @return the amount of channels currently leased by client threads
+     */
+    public int getLeasedChannels() {
+        return this.leasedChannels;
+    }
+
+    /**
+     * @return the amount of open channels waiting in the pool to be leased
+     */
+    public int getIdleChannels() {
+        return this.idleChannels;
+    }
+
+    /**
+     * @return the amount of successful leases since the pool was created
+     */
+    public long getLeaseCount() {
+        return this.leaseCount;
+    }
+
+    /**
+     * @return the accumulated time lease requests waited for a free channel
+     */
+    public long getTotalWaitTime(final TimeUnit unit) {
+        return unit.convert(this.totalWaitTimeNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @return the longest time a lease request waited for a free channel
+     */
+    public long getMaxWaitTime(final TimeUnit unit) {
+        return unit.convert(this.maxWaitTimeNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @return the average time a lease request waited for a free channel
+     */
+    public long getAverageWaitTime(final TimeUnit unit) {
+        if (this.leaseCount == 0) {
+            return 0;
+        }
+        return unit.convert(this.totalWaitTimeNanos / this.leaseCount, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * @return the amount of channels opened by the pool
+     */
+    public long getCreatedChannels() {
+        return this.createdChannels;
+    }
+
+    /**
+     * @return the amount of broken channels removed from the pool
+     */
+    public long getInvalidatedChannels() {
+        return this.invalidatedChannels;
+    }
+
+    @Override
+    public String toString() {
+        return "ChannelPoolMetrics [maxChannels=" + this.maxChannels + ", leasedChannels=" + this.leasedChannels
+                + ", idleChannels=" + this.idleChannels + ", leaseCount=" + this.leaseCount + ", averageWaitTimeMs="
+                + getAverageWaitTime(TimeUnit.MILLISECONDS) + ", maxWaitTimeMs=" + getMaxWaitTime(TimeUnit.MILLISECONDS)
+                + ", createdChannels=" + this.createdChannels + ", invalidatedChannels=" + this.invalidatedChannels + "]";
+    }
+}
@@ -0,0 +1,27 @@
+package com.personal.easy.rabbit.connection;
+
+/**
+ * A connection blocked listener is used by a connection factory to notify
+ * clients that the broker blocked or unblocked publishing on the connection,
+ * e.g. due to a memory or disk alarm.
+ *
+ */
+public interface ConnectionBlockedListener {
+
+    /**
+     * Called when the broker blocked the connection. Messages published
+     * while blocked are not read by the broker until it unblocks the
+     * connection.
+     *
+     * @param reason
+     *            The reason given by the broker
+     */
+    void onConnectionBlocked(String reason);
+
+    /**
+     * Called when the broker unblocked the connection, or when a new
+     * connection replaced a blocked one.
+     */
+    void onConnectionUnblocked();
+
+}
@@ -12,6 +12,7 @@ import javax.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.rabbitmq.client.BlockedListener;
 import com.rabbitmq.client.Connection;
 import com.rabbitmq.client.ConnectionFactory;
 import com.rabbitmq.client.ShutdownListener;
@@ -68,6 +69,12 @@ public class SingleConnectionFactory extends ConnectionFactory {
 
     List<ConnectionListener> connectionListeners;
 
+    BlockedListener connectionBlockedListener;
+
+    List<ConnectionBlockedListener> connectionBlockedListeners;
+
+    volatile String blockedReason;
+
     volatile Connection connection;
 
     volatile State state = State.NEVER_CONNECTED;
@@ -83,6 +90,8 @@ public class SingleConnectionFactory extends ConnectionFactory {
         setConnectionTimeout(CONNECTION_TIMEOUT_IN_MS);
         this.connectionListeners = Collections.synchronizedList(new LinkedList<ConnectionListener>());
         this.connectionShutdownListener = new ConnectionShutDownListener();
+        this.connectionBlockedListeners = Collections.synchronizedList(new LinkedList<ConnectionBlockedListener>());
+        this.connectionBlockedListener = new ConnectionBlockedHandler();
     }
 
     /**
@@ -183,6 +192,54 @@ public class SingleConnectionFactory extends ConnectionFactory {
         this.connectionListeners.remove(connectionListener);
     }
 
+    /**
+     * Registers a listener at the factory which is notified when the broker
+     * blocks or unblocks the connection.
+     *
+     * @param connectionBlockedListener
+     *            The connection blocked listener
+     */
+    public void registerBlockedListener(final ConnectionBlockedListener connectionBlockedListener) {
+        this.connectionBlockedListeners.add(connectionBlockedListener);
+    }
+
+    /**
+     * Removes a connection blocked listener from the factory.
+     *
+     * @param connectionBlockedListener
+     *            The connection blocked listener
+     */
+    public void removeBlockedListener(final ConnectionBlockedListener connectionBlockedListener) {
+        this.connectionBlockedListeners.remove(connectionBlockedListener);
+    }
+
+    /**
+     * Tells whether the broker currently blocks publishing on the connection.
+     *
+     * @return true if the connection is blocked
+     */
+    public boolean isBlocked() {
+        return this.blockedReason != null;
+    }
+
+    /**
+     * @return the reason the broker gave for blocking the connection, or null
+     *         if the connection is not blocked
+     */
+    public String getBlockedReason() {
+        return this.blockedReason;
+    }
+
+    /**
+     * Tells whether the factory lost its connection and is currently trying to
+     * reestablish it. Connections cannot be retrieved during that time.
+     *
+     * @return true if the factory is reconnecting
+     */
+    public boolean isConnecting() {
+        return this.state == State.CONNECTING;
+    }
+
     /**
      * Sets an {@code ExecutorService} to be used for this connection. If none
      * is set a default one will be used (currently 5 threads). Consuming of
@@ -268,11 +325,43 @@ public class SingleConnectionFactory extends ConnectionFactory {
             LOGGER.info("Trying to establish connection to {}:{}", getHost(), getPort());
             this.connection = super.newConnection(this.executorService);
             this.connection.addShutdownListener(this.connectionShutdownListener);
+            this.connection.addBlockedListener(this.connectionBlockedListener);
+            if (this.blockedReason != null) {
+                // The new connection is not blocked until the broker tells so
+                this.connectionBlockedListener.handleUnblocked();
+            }
             LOGGER.info("Established connection to {}:{}", getHost(), getPort());
             changeState(State.CONNECTED);
         }
     }
 
+    /**
+     * A listener to register on the connection to be notified about the broker
+     * blocking and unblocking the connection.
+     */
+    private class ConnectionBlockedHandler implements BlockedListener {
+
+        @Override
+        public void handleBlocked(final String reason) {
+            LOGGER.warn("Connection to {}:{} blocked by broker: {}", new Object[] {
+                    getHost(), getPort(), reason
+            });
+            SingleConnectionFactory.this.blockedReason = reason == null ? "" : reason;
+            for (ConnectionBlockedListener listener : SingleConnectionFactory.this.connectionBlockedListeners) {
+                listener.onConnectionBlocked(reason);
+            }
+        }
+
+        @Override
+        public void handleUnblocked() {
+            LOGGER.info("Connection to {}:{} unblocked by broker", getHost(), getPort());
+            SingleConnectionFactory.this.blockedReason = null;
+            for (ConnectionBlockedListener listener : SingleConnectionFactory.this.connectionBlockedListeners) {
+                listener.onConnectionUnblocked();
+            }
+        }
+    }
+
     /**
      * A listener to register on the parent factory to be notified about
      * connection shutdowns.
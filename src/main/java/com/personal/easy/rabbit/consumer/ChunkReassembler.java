@@ -0,0 +1,376 @@
+package com.personal.easy.rabbit.consumer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.personal.easy.rabbit.message.Message;
+import com.personal.easy.rabbit.message.MessageChunks;
+
+/**
+ * <p>A chunk reassembler is a message callback collecting the chunks published
+ * by a {@link com.personal.easy.rabbit.publisher.ChunkingPublisher} and handing
+ * every complete payload to a {@link ChunkedTransferCallback}.</p>
+ *
+ * <p>Chunks are placed by their offset, so they may arrive in any order and
+ * from several consumer instances. A payload is collected in memory until it
+ * exceeds the spill threshold. From then on it is written to a temporary file
+ * in the spill directory, which the transfer callback reads as a stream or
+ * as a memory-mapped buffer. The file is deleted once the callback returned.</p>
+ *
+ * <p>Chunks are acknowledged as soon as they are stored, so a transfer whose
+ * remaining chunks do not arrive within the transfer timeout is discarded.
+ * Messages which are no chunks are passed to an optional message callback.</p>
+ *
+ */
+public class ChunkReassembler implements MessageCallback {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ChunkReassembler.class);
+
+    public static final int DEFAULT_SPILL_THRESHOLD = 8 * 1024 * 1024;
+
+    public static final long DEFAULT_TRANSFER_TIMEOUT_IN_MS = 5 * 60 * 1000;
+
+    private final ChunkedTransferCallback transferCallback;
+
+    private final MessageCallback messageCallback;
+
+    private final int spillThreshold;
+
+    private final File spillDirectory;
+
+    private final long transferTimeoutInMs;
+
+    private final ConcurrentMap<String, PendingTransfer> pendingTransfers = new ConcurrentHashMap<String, PendingTransfer>();
+
+    private final ScheduledExecutorService expiryScheduler;
+
+    private final AtomicLong completedCount = new AtomicLong();
+
+    private final AtomicLong expiredCount = new AtomicLong();
+
+    private final AtomicLong spilledCount = new AtomicLong();
+
+    public ChunkReassembler(final ChunkedTransferCallback transferCallback) {
+        this(transferCallback, null, DEFAULT_SPILL_THRESHOLD, new File(System.getProperty("java.io.tmpdir")),
+                DEFAULT_TRANSFER_TIMEOUT_IN_MS);
+    }
+
+    /**
+     * Creates a reassembler.
+     *
+     * @param transferCallback The callback handling complete payloads
+     * @param messageCallback The callback handling messages which are no chunks, may be null
+     * @param spillThreshold The maximum size in bytes of a payload held in memory
+     * @param spillDirectory The directory to create temporary files in
+     * @param transferTimeoutInMs The maximum time between two chunks of a transfer
+     */
+    public ChunkReassembler(final ChunkedTransferCallback transferCallback, final MessageCallback messageCallback,
+            final int spillThreshold, final File spillDirectory, final long transferTimeoutInMs) {
+        if (spillThreshold < 0 || transferTimeoutInMs < 1) {
+            throw new IllegalArgumentException("Invalid spill threshold or transfer timeout");
+        }
+        this.transferCallback = transferCallback;
+        this.messageCallback = messageCallback;
+        this.spillThreshold = spillThreshold;
+        this.spillDirectory = spillDirectory;
+        this.transferTimeoutInMs = transferTimeoutInMs;
+        this.expiryScheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            public Thread newThread(final Runnable runnable) {
+                Thread thread = new Thread(runnable, "easyrabbit-chunk-reassembler");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        long expiryInterval = Math.max(transferTimeoutInMs / 4, 10);
+        this.expiryScheduler.scheduleWithFixedDelay(new Runnable() {
+            public void run() {
+                expireTransfers(System.currentTimeMillis());
+            }
+        }, expiryInterval, expiryInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Stores a chunk and calls the transfer callback if it completed its
+     * transfer.</p>
+     *
+     * @throws IllegalArgumentException if the message is no chunk and there is
+     *         no message callback
+     * @throws IllegalStateException if the chunk cannot be stored
+     */
+    public void handleMessage(final Message message) {
+        if (!MessageChunks.isChunk(message.getBasicProperties())) {
+            if (this.messageCallback == null) {
+                throw new IllegalArgumentException("Message " + message.getId() + " is no chunk");
+            }
+            this.messageCallback.handleMessage(message);
+            return;
+        }
+        String transferId = MessageChunks.getTransferId(message);
+        PendingTransfer transfer = this.pendingTransfers.get(transferId);
+        if (transfer == null) {
+            transfer = new PendingTransfer(transferId, message);
+            PendingTransfer existing = this.pendingTransfers.putIfAbsent(transferId, transfer);
+            if (existing != null) {
+                transfer = existing;
+            }
+        }
+        ChunkedTransfer completed;
+        synchronized (transfer) {
+            if (transfer.discarded) {
+                throw new IllegalStateException("Transfer " + transferId + " was discarded");
+            }
+            try {
+                completed = transfer.add(message);
+            }
+            catch (IOException e) {
+                discard(transfer);
+                throw new IllegalStateException("Failed to store chunk of transfer " + transferId, e);
+            }
+            if (completed != null) {
+                this.pendingTransfers.remove(transferId, transfer);
+            }
+        }
+        if (completed != null) {
+            try {
+                this.transferCallback.handleTransfer(completed);
+                this.completedCount.incrementAndGet();
+            }
+            finally {
+                synchronized (transfer) {
+                    transfer.release();
+                }
+            }
+        }
+    }
+
+    /**
+     * Gets the amount of transfers waiting for further chunks.
+     *
+     * @return The pending count
+     */
+    public int getPendingCount() {
+        return this.pendingTransfers.size();
+    }
+
+    /**
+     * Gets the amount of transfers handed to the transfer callback.
+     *
+     * @return The completed count
+     */
+    public long getCompletedCount() {
+        return this.completedCount.get();
+    }
+
+    /**
+     * Gets the amount of transfers discarded after the transfer timeout.
+     *
+     * @return The expired count
+     */
+    public long getExpiredCount() {
+        return this.expiredCount.get();
+    }
+
+    /**
+     * Gets the amount of transfers spilled to temporary files.
+     *
+     * @return The spilled count
+     */
+    public long getSpilledCount() {
+        return this.spilledCount.get();
+    }
+
+    /**
+     * Stops expiring transfers and discards all pending transfers.
+     */
+    public void close() {
+        this.expiryScheduler.shutdownNow();
+        for (PendingTransfer transfer : this.pendingTransfers.values()) {
+            discard(transfer);
+        }
+    }
+
+    /**
+     * Discards the transfers which did not receive a chunk within the
+     * transfer timeout.
+     *
+     * @param now The current time in milliseconds
+     */
+    void expireTransfers(final long now) {
+        List<PendingTransfer> expired = new ArrayList<PendingTransfer>();
+        for (PendingTransfer transfer : this.pendingTransfers.values()) {
+            if (now - transfer.lastChunkAt >= this.transferTimeoutInMs) {
+                expired.add(transfer);
+            }
+        }
+        for (PendingTransfer transfer : expired) {
+            LOGGER.warn("Discarding transfer {} after receiving {} chunks as it timed out", transfer.transferId,
+                    transfer.receivedCount);
+            this.expiredCount.incrementAndGet();
+            discard(transfer);
+        }
+    }
+
+    private void discard(final PendingTransfer transfer) {
+        synchronized (transfer) {
+            this.pendingTransfers.remove(transfer.transferId, transfer);
+            transfer.discarded = true;
+            transfer.release();
+        }
+    }
+
+    /**
+     * The chunks of a transfer received so far. Guarded by its own monitor.
+     */
+    private class PendingTransfer {
+
+        final String transferId;
+
+        final String exchange;
+
+        final String routingKey;
+
+        final String contentType;
+
+        final String contentEncoding;
+
+        final Map<String, Object> headers;
+
+        final BitSet received = new BitSet();
+
+        int receivedCount;
+
+        int chunkCount = -1;
+
+        long size = -1;
+
+        byte[] content = new byte[0];
+
+        long length;
+
+        File file;
+
+        RandomAccessFile randomAccessFile;
+
+        FileChannel fileChannel;
+
+        volatile long lastChunkAt = System.currentTimeMillis();
+
+        boolean discarded;
+
+        PendingTransfer(final String transferId, final Message first) {
+            this.transferId = transferId;
+            this.exchange = first.getExchange();
+            this.routingKey = first.getRoutingKey();
+            this.contentType = MessageChunks.getContentType(first);
+            this.contentEncoding = MessageChunks.getContentEncoding(first);
+            this.headers = first.getBasicProperties().getHeaders();
+        }
+
+        /**
+         * Stores a chunk.
+         *
+         * @return The complete transfer or null if chunks are missing
+         */
+        ChunkedTransfer add(final Message chunk) throws IOException {
+            this.lastChunkAt = System.currentTimeMillis();
+            int index = MessageChunks.getChunkIndex(chunk);
+            if (index < 0 || this.received.get(index)) {
+                LOGGER.debug("Ignoring duplicate chunk {} of transfer {}", index, this.transferId);
+                return null;
+            }
+            if (MessageChunks.getChunkCount(chunk) >= 0) {
+                this.chunkCount = MessageChunks.getChunkCount(chunk);
+                this.size = MessageChunks.getTransferSize(chunk);
+            }
+            write(MessageChunks.getChunkOffset(chunk), chunk.getBodyContent());
+            this.received.set(index);
+            this.receivedCount++;
+            if (this.receivedCount != this.chunkCount) {
+                return null;
+            }
+            if (this.length != this.size) {
+                throw new IOException("Expected " + this.size + " bytes but received " + this.length);
+            }
+            return new ChunkedTransfer(this.transferId, this.exchange, this.routingKey, this.contentType,
+                    this.contentEncoding, this.headers, this.size, this.chunkCount, this.content, this.file,
+                    this.fileChannel);
+        }
+
+        private void write(final long offset, final byte[] body) throws IOException {
+            long end = offset + body.length;
+            if (offset < 0) {
+                throw new IOException("Invalid chunk offset " + offset);
+            }
+            if (this.fileChannel == null && end > ChunkReassembler.this.spillThreshold) {
+                spill();
+            }
+            if (this.fileChannel != null) {
+                ByteBuffer source = ByteBuffer.wrap(body);
+                long position = offset;
+                while (source.hasRemaining()) {
+                    position += this.fileChannel.write(source, position);
+                }
+            }
+            else {
+                if (end > this.content.length) {
+                    this.content = Arrays.copyOf(this.content,
+                            (int) Math.min(Math.max(end, this.content.length * 2L), ChunkReassembler.this.spillThreshold));
+                }
+                System.arraycopy(body, 0, this.content, (int) offset, body.length);
+            }
+            this.length = Math.max(this.length, end);
+        }
+
+        private void spill() throws IOException {
+            this.file = File.createTempFile("easyrabbit-transfer-", ".tmp", ChunkReassembler.this.spillDirectory);
+            this.randomAccessFile = new RandomAccessFile(this.file, "rw");
+            this.fileChannel = this.randomAccessFile.getChannel();
+            ByteBuffer source = ByteBuffer.wrap(this.content, 0, (int) this.length);
+            while (source.hasRemaining()) {
+                this.fileChannel.write(source, source.position());
+            }
+            this.content = null;
+            ChunkReassembler.this.spilledCount.incrementAndGet();
+            LOGGER.debug("Spilled transfer {} to {}", this.transferId, this.file);
+        }
+
+        void release() {
+            this.content = null;
+            if (this.randomAccessFile != null) {
+                try {
+                    this.randomAccessFile.close();
+                }
+                catch (IOException e) {
+                    LOGGER.warn("Failed to close temporary file {} of transfer {}", this.file, this.transferId, e);
+                }
+                this.randomAccessFile = null;
+                this.fileChannel = null;
+            }
+            if (this.file != null && !this.file.delete()) {
+                // Files still mapped cannot be deleted on some platforms
+                this.file.deleteOnExit();
+            }
+            this.file = null;
+        }
+    }
+}
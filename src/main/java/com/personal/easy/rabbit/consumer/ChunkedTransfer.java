@@ -0,0 +1,157 @@
+package com.personal.easy.rabbit.consumer;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Map;
+
+/**
+ * <p>A payload reassembled from chunks by a {@link ChunkReassembler}.</p>
+ *
+ * <p>Small payloads are held in memory. Payloads exceeding the spill threshold
+ * of the reassembler are held in a temporary file, which is memory-mapped
+ * when {@link #getBuffer()} is called. The content is only valid during
+ * {@link ChunkedTransferCallback#handleTransfer(ChunkedTransfer)}.</p>
+ *
+ */
+public class ChunkedTransfer {
+
+    private final String transferId;
+
+    private final String exchange;
+
+    private final String routingKey;
+
+    private final String contentType;
+
+    private final String contentEncoding;
+
+    private final Map<String, Object> headers;
+
+    private final long size;
+
+    private final int chunkCount;
+
+    private final byte[] content;
+
+    private final File file;
+
+    private final FileChannel fileChannel;
+
+    private ByteBuffer buffer;
+
+    ChunkedTransfer(final String transferId, final String exchange, final String routingKey,
+            final String contentType, final String contentEncoding, final Map<String, Object> headers, final long size, final int chunkCount,
+            final byte[] content, final File file, final FileChannel fileChannel) {
+        this.transferId = transferId;
+        this.exchange = exchange;
+        this.routingKey = routingKey;
+        this.contentType = contentType;
+        this.contentEncoding = contentEncoding;
+        this.headers = headers;
+        this.size = size;
+        this.chunkCount = chunkCount;
+        this.content = content;
+        this.file = file;
+        this.fileChannel = fileChannel;
+    }
+
+    public String getTransferId() {
+        return this.transferId;
+    }
+
+    public String getExchange() {
+        return this.exchange;
+    }
+
+    public String getRoutingKey() {
+        return this.routingKey;
+    }
+
+    /**
+     * Gets the content type of the payload as set by the publisher.
+     *
+     * @return The content type or null if the payload has none
+     */
+    public String getContentType() {
+        return this.contentType;
+    }
+
+    /**
+     * Gets the content encoding of the payload as set by the publisher, i.e.
+     * its charset or the name of the compression codec it was compressed with.
+     *
+     * @return The content encoding or null if the payload has none
+     */
+    public String getContentEncoding() {
+        return this.contentEncoding;
+    }
+
+    /**
+     * Gets the headers of the first received chunk, including the chunk
+     * headers.
+     *
+     * @return The headers
+     */
+    public Map<String, Object> getHeaders() {
+        return this.headers;
+    }
+
+    public long getSize() {
+        return this.size;
+    }
+
+    public int getChunkCount() {
+        return this.chunkCount;
+    }
+
+    /**
+     * Checks whether the payload was spilled to a temporary file.
+     *
+     * @return true if the payload is held in a file
+     */
+    public boolean isSpilled() {
+        return this.file != null;
+    }
+
+    /**
+     * Opens a stream reading the payload from its start.
+     *
+     * @return The stream, to be closed by the caller
+     * @throws IOException if the temporary file cannot be opened
+     */
+    public InputStream openStream() throws IOException {
+        if (this.file == null) {
+            return new ByteArrayInputStream(this.content, 0, (int) this.size);
+        }
+        return new FileInputStream(this.file);
+    }
+
+    /**
+     * Gets a read-only buffer of the payload, memory-mapped for spilled
+     * payloads.
+     *
+     * @return The buffer positioned at the start of the payload
+     * @throws IOException if the temporary file cannot be mapped or the payload
+     *         exceeds the maximum buffer size
+     */
+    public synchronized ByteBuffer getBuffer() throws IOException {
+        if (this.buffer == null) {
+            if (this.file == null) {
+                this.buffer = ByteBuffer.wrap(this.content, 0, (int) this.size).slice().asReadOnlyBuffer();
+            }
+            else if (this.size > Integer.MAX_VALUE) {
+                throw new IOException("Transfer " + this.transferId + " of " + this.size
+                        + " bytes is too large to be mapped, use openStream() instead");
+            }
+            else {
+                this.buffer = this.fileChannel.map(FileChannel.MapMode.READ_ONLY, 0, this.size);
+            }
+        }
+        return this.buffer.duplicate();
+    }
+}
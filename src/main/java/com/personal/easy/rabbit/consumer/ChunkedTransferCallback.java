@@ -0,0 +1,18 @@
+package com.personal.easy.rabbit.consumer;
+
+/**
+ * <p>Called by a {@link ChunkReassembler} for every completely received
+ * chunked transfer. Implementations need to be thread-safe.</p>
+ *
+ */
+public interface ChunkedTransferCallback {
+
+    /**
+     * Called once all chunks of a transfer were received. The content of the
+     * transfer is released as soon as the method returns, so it must not be
+     * accessed afterwards.
+     *
+     * @param transfer The received transfer
+     */
+    void handleTransfer(ChunkedTransfer transfer);
+}
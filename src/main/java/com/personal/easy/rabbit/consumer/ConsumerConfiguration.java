@@ -1,5 +1,9 @@
 package com.personal.easy.rabbit.consumer;
 
+import java.util.concurrent.Executor;
+
+import com.personal.easy.rabbit.message.Message;
+
 /**
  * A consumer configuration holds parameters to be set before enabling a consumer to
  * consume messages from the message broker.
@@ -12,6 +16,8 @@ public class ConsumerConfiguration {
 	private String queueName;
 	private boolean autoAck = false;
     private int prefetchMessageCount = UNLIMITED_PREFETCH_MESSAGE_COUNT;
+    private Class<?> eagerDecodingType;
+    private Executor eagerDecodingExecutor;
 
 	public ConsumerConfiguration(String queueName) {
 		this.queueName = queueName;
@@ -44,4 +50,29 @@ public class ConsumerConfiguration {
     public int getPrefetchMessageCount() {
         return prefetchMessageCount;
     }
+
+    /**
+     * Lets delivered messages be decoded to the given type by the given executor
+     * before the callback is called, see {@link Message#decodeBodyAsync(Class, Executor)}.
+     * The inner messages of a batch are submitted at once, so decoding later
+     * messages overlaps with handling earlier ones.
+     *
+     * @param type The type to decode message bodies to, null to decode on demand only
+     * @param executor The executor to decode with
+     */
+    public void setEagerDecoding(Class<?> type, Executor executor) {
+        if (type != null && executor == null) {
+            throw new IllegalArgumentException("Eager decoding requires an executor");
+        }
+        this.eagerDecodingType = type;
+        this.eagerDecodingExecutor = executor;
+    }
+
+    public Class<?> getEagerDecodingType() {
+        return eagerDecodingType;
+    }
+
+    public Executor getEagerDecodingExecutor() {
+        return eagerDecodingExecutor;
+    }
 }
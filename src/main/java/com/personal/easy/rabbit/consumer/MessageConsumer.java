@@ -1,12 +1,16 @@
 package com.personal.easy.rabbit.consumer;
 
 import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import com.rabbitmq.client.AMQP.BasicProperties;
 import com.personal.easy.rabbit.message.Message;
+import com.personal.easy.rabbit.message.MessageBatch;
+import com.personal.easy.rabbit.message.MessageTracer;
 import com.rabbitmq.client.Envelope;
 import com.rabbitmq.client.ShutdownSignalException;
 
@@ -87,20 +91,40 @@ public class MessageConsumer extends ConsumerContainer.ManagedConsumer {
      * rabbitmq.Message)} method.
      * </p>
      *
+     * <p>
+     * A delivered {@link MessageBatch} envelope is unwrapped and its inner
+     * messages are handed over one by one in publish order. The envelope is
+     * acknowledged once all inner messages were handled and rejected as a
+     * whole as soon as one of them could not be handled.
+     * </p>
+     *
      */
     @Override
     public void handleDelivery(final String consumerTag, final Envelope envelope, final BasicProperties properties,
             final byte[] body) throws IOException {
-        LOGGER.debug("Consumer {}: Received handle delivery", consumerTag);
         Message message = new Message(properties).exchange(envelope.getExchange()).routingKey(envelope.getRoutingKey())
                 .deliveryTag(envelope.getDeliveryTag()).body(body).id(properties.getMessageId());
-        Object messageLogIdentifier = message.getId() == null ? message.getDeliveryTag() : message.getId();
+        boolean sampled = MessageTracer.CONSUME.sample();
         try {
-            LOGGER.info("Consumer {}: Received message {}", consumerTag, messageLogIdentifier);
-            this.callback.handleMessage(message);
+            List<Message> messages = MessageBatch.isBatch(properties) ? MessageBatch.unwrap(message)
+                    : Collections.singletonList(message);
+            if (sampled) {
+                LOGGER.info("Consumer {}: Received message {}", consumerTag, logIdentifier(message));
+            }
+            Class<?> eagerDecodingType = getConfiguration().getEagerDecodingType();
+            if (eagerDecodingType != null) {
+                for (Message each : messages) {
+                    each.decodeBodyAsync(eagerDecodingType, getConfiguration().getEagerDecodingExecutor());
+                }
+            }
+            for (Message each : messages) {
+                this.callback.handleMessage(each);
+            }
         }
         catch (Throwable t) {
+            MessageTracer.CONSUME.recordError();
             if (!getConfiguration().isAutoAck()) {
+                Object messageLogIdentifier = logIdentifier(message);
                 LOGGER.error("Consumer {}: Message {} could not be handled due to an exception during message processing",
                         new Object[] {
                                 consumerTag, messageLogIdentifier, t
@@ -115,17 +139,25 @@ public class MessageConsumer extends ConsumerContainer.ManagedConsumer {
         if (!getConfiguration().isAutoAck()) {
             try {
                 getChannel().basicAck(envelope.getDeliveryTag(), false);
-                LOGGER.debug("Consumer {}: Acked message {}", consumerTag, messageLogIdentifier);
+                if (sampled) {
+                    LOGGER.info("Consumer {}: Acked message {}", consumerTag, logIdentifier(message));
+                }
             }
             catch (IOException e) {
+                MessageTracer.CONSUME.recordError();
                 LOGGER.error(
                         "Consumer {}: Message {} was processed but could not be acknowledged due to an exception when sending the acknowledgement",
                         new Object[] {
-                                consumerTag, messageLogIdentifier, e
+                                consumerTag, logIdentifier(message), e
                         });
                 throw e;
             }
         }
+        MessageTracer.CONSUME.recordSuccess();
+    }
+
+    private static Object logIdentifier(final Message message) {
+        return message.getId() == null ? message.getDeliveryTag() : message.getId();
     }
 
 }
@@ -0,0 +1,352 @@
+package com.personal.easy.rabbit.consumer;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.personal.easy.rabbit.message.Message;
+import com.personal.easy.rabbit.message.MessageBatch;
+import com.personal.easy.rabbit.message.MessageTracer;
+import com.rabbitmq.client.AMQP.BasicProperties;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.ConnectionFactory;
+import com.rabbitmq.client.DefaultConsumer;
+import com.rabbitmq.client.Envelope;
+import com.rabbitmq.client.ShutdownSignalException;
+
+/**
+ * <p>A message stream is a demand-driven view of a queue. Every subscriber
+ * consumes the queue on a channel of its own, and receives only as many
+ * messages as it requested.</p>
+ *
+ * <p>The demand of a subscriber is translated into broker credit: the prefetch
+ * count of the channel grows with the outstanding demand up to the maximum
+ * prefetch, and every message is acknowledged as soon as the subscriber
+ * returns from {@link MessageSubscriber#onNext(Message)}. As the demand is
+ * served, the prefetch count is lowered again once the outstanding demand
+ * dropped to half of it, which saves a round trip per message. The broker thus
+ * never sends more than about twice the outstanding demand, at least one and
+ * at most the maximum prefetch, so a slow subscriber slows down the delivery
+ * instead of letting messages pile up in memory.</p>
+ *
+ * <p>Consumption starts with the first request. Batch envelopes are passed on
+ * message by message and acknowledged once after their last message.</p>
+ *
+ * <p>The stream follows the Reactive Streams contract with its own interfaces,
+ * {@link MessageSubscriber} and {@link MessageSubscription}, so it can be
+ * adapted to a {@code org.reactivestreams.Publisher} without any dependency.</p>
+ *
+ */
+public class MessageStream {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MessageStream.class);
+
+    public static final int DEFAULT_MAX_PREFETCH = 256;
+
+    private final ConnectionFactory connectionFactory;
+
+    private final String queue;
+
+    private final int maxPrefetch;
+
+    public MessageStream(final ConnectionFactory connectionFactory, final String queue) {
+        this(connectionFactory, queue, DEFAULT_MAX_PREFETCH);
+    }
+
+    /**
+     * Creates a stream of the given queue.
+     *
+     * @param connectionFactory The connection factory providing the connection to consume on
+     * @param queue The queue name
+     * @param maxPrefetch The maximum amount of unacknowledged messages per subscriber
+     */
+    public MessageStream(final ConnectionFactory connectionFactory, final String queue, final int maxPrefetch) {
+        if (maxPrefetch < 1 || maxPrefetch > 65535) {
+            throw new IllegalArgumentException("Max prefetch must be between 1 and 65535: " + maxPrefetch);
+        }
+        this.connectionFactory = connectionFactory;
+        this.queue = queue;
+        this.maxPrefetch = maxPrefetch;
+    }
+
+    public String getQueue() {
+        return this.queue;
+    }
+
+    /**
+     * Subscribes to the queue. The subscriber is called with its subscription
+     * right away, or with a failure if no channel could be created.
+     *
+     * @param subscriber The subscriber
+     */
+    public void subscribe(final MessageSubscriber subscriber) {
+        Channel channel;
+        try {
+            channel = this.connectionFactory.newConnection().createChannel();
+        }
+        catch (Exception e) {
+            LOGGER.error("Failed to create channel for stream of queue {}", this.queue, e);
+            subscriber.onSubscribe(new MessageSubscription() {
+                public void request(final long count) {
+                }
+
+                public void cancel() {
+                }
+            });
+            subscriber.onError(e);
+            return;
+        }
+        subscriber.onSubscribe(new StreamSubscription(channel, subscriber));
+    }
+
+    /**
+     * A message waiting for demand, with the delivery tag to acknowledge once it
+     * was passed on, or 0 if it is not the last message of a batch envelope.
+     */
+    private static class Delivery {
+
+        final Message message;
+
+        final long deliveryTagToAck;
+
+        Delivery(final Message message, final long deliveryTagToAck) {
+            this.message = message;
+            this.deliveryTagToAck = deliveryTagToAck;
+        }
+    }
+
+    /**
+     * Consumes the queue for one subscriber. Messages are passed on by the
+     * thread which first finds pending messages and demand, either the
+     * consumer thread of the channel or a thread requesting messages.
+     */
+    private class StreamSubscription extends DefaultConsumer implements MessageSubscription {
+
+        private final MessageSubscriber subscriber;
+
+        // Bounded by the prefetch count as no message is acked before it is passed on
+        private final Queue<Delivery> pending = new ConcurrentLinkedQueue<Delivery>();
+
+        private final AtomicLong demand = new AtomicLong();
+
+        private final AtomicInteger drainers = new AtomicInteger();
+
+        private volatile int prefetch;
+
+        private boolean consuming;
+
+        private volatile boolean cancelled;
+
+        private volatile boolean completed;
+
+        private volatile Throwable error;
+
+        StreamSubscription(final Channel channel, final MessageSubscriber subscriber) {
+            super(channel);
+            this.subscriber = subscriber;
+        }
+
+        public void request(final long count) {
+            if (count <= 0) {
+                fail(new IllegalArgumentException("Requested amount must be positive: " + count));
+                return;
+            }
+            long current;
+            long next;
+            do {
+                current = this.demand.get();
+                next = current + count < 0 ? Long.MAX_VALUE : current + count;
+            }
+            while (!this.demand.compareAndSet(current, next));
+            try {
+                adjustCredit();
+            }
+            catch (IOException e) {
+                fail(e);
+                return;
+            }
+            drain();
+        }
+
+        public void cancel() {
+            if (!this.cancelled) {
+                this.cancelled = true;
+                close();
+                drain();
+            }
+        }
+
+        @Override
+        public void handleDelivery(final String consumerTag, final Envelope envelope,
+                final BasicProperties properties, final byte[] body) throws IOException {
+            if (this.cancelled) {
+                return;
+            }
+            Message message = new Message(properties).exchange(envelope.getExchange())
+                    .routingKey(envelope.getRoutingKey()).deliveryTag(envelope.getDeliveryTag()).body(body)
+                    .id(properties.getMessageId());
+            if (MessageBatch.isBatch(properties)) {
+                List<Message> messages;
+                try {
+                    messages = MessageBatch.unwrap(message);
+                }
+                catch (IOException e) {
+                    LOGGER.error("Rejecting malformed batch envelope from queue {}", queue, e);
+                    MessageTracer.CONSUME.recordError();
+                    getChannel().basicNack(envelope.getDeliveryTag(), false, false);
+                    return;
+                }
+                for (int i = 0; i < messages.size(); i++) {
+                    this.pending.add(new Delivery(messages.get(i),
+                            i == messages.size() - 1 ? envelope.getDeliveryTag() : 0));
+                }
+            }
+            else {
+                this.pending.add(new Delivery(message, envelope.getDeliveryTag()));
+            }
+            drain();
+        }
+
+        @Override
+        public void handleCancel(final String consumerTag) {
+            LOGGER.info("Stream of queue {} was cancelled by the broker", queue);
+            this.completed = true;
+            drain();
+        }
+
+        @Override
+        public void handleShutdownSignal(final String consumerTag, final ShutdownSignalException signal) {
+            if (!this.cancelled) {
+                fail(signal);
+            }
+        }
+
+        /**
+         * Adapts the prefetch count to the outstanding demand. It is raised
+         * right away but lowered only once the demand dropped to half of it.
+         */
+        private synchronized void adjustCredit() throws IOException {
+            if (this.cancelled) {
+                return;
+            }
+            // A prefetch count of 0 would be unlimited
+            int wanted = (int) Math.max(1, Math.min(this.demand.get(), maxPrefetch));
+            if (wanted > this.prefetch || wanted <= this.prefetch / 2) {
+                // A channel-wide limit applies to the running consumer right away
+                getChannel().basicQos(wanted, true);
+                this.prefetch = wanted;
+            }
+            if (!this.consuming) {
+                this.consuming = true;
+                getChannel().basicConsume(queue, false, this);
+            }
+        }
+
+        private void fail(final Throwable cause) {
+            if (this.error == null) {
+                this.error = cause;
+            }
+            drain();
+        }
+
+        private void drain() {
+            if (this.drainers.getAndIncrement() != 0) {
+                return;
+            }
+            int missed = 1;
+            do {
+                emit();
+                missed = this.drainers.addAndGet(-missed);
+            }
+            while (missed != 0);
+        }
+
+        private void emit() {
+            while (true) {
+                if (this.cancelled) {
+                    this.pending.clear();
+                    return;
+                }
+                Throwable failure = this.error;
+                if (failure != null) {
+                    terminate();
+                    this.subscriber.onError(failure);
+                    return;
+                }
+                if (this.completed && this.pending.isEmpty()) {
+                    terminate();
+                    this.subscriber.onComplete();
+                    return;
+                }
+                if (this.demand.get() == 0) {
+                    return;
+                }
+                Delivery delivery = this.pending.poll();
+                if (delivery == null) {
+                    return;
+                }
+                if (this.demand.get() != Long.MAX_VALUE && this.demand.decrementAndGet() <= this.prefetch / 2) {
+                    try {
+                        adjustCredit();
+                    }
+                    catch (IOException e) {
+                        this.error = e;
+                    }
+                }
+                passOn(delivery);
+            }
+        }
+
+        private void passOn(final Delivery delivery) {
+            try {
+                this.subscriber.onNext(delivery.message);
+            }
+            catch (Throwable t) {
+                MessageTracer.CONSUME.recordError();
+                this.error = t;
+                try {
+                    getChannel().basicNack(delivery.message.getDeliveryTag(), false, false);
+                }
+                catch (IOException e) {
+                    LOGGER.warn("Failed to reject message {}", delivery.message.getId(), e);
+                }
+                return;
+            }
+            if (delivery.deliveryTagToAck != 0) {
+                try {
+                    getChannel().basicAck(delivery.deliveryTagToAck, false);
+                }
+                catch (IOException e) {
+                    MessageTracer.CONSUME.recordError();
+                    this.error = e;
+                    return;
+                }
+            }
+            MessageTracer.CONSUME.recordSuccess();
+        }
+
+        private void terminate() {
+            this.cancelled = true;
+            this.pending.clear();
+            close();
+        }
+
+        private synchronized void close() {
+            try {
+                if (getChannel().isOpen()) {
+                    // Closing the channel lets the broker redeliver unacknowledged messages
+                    getChannel().close();
+                }
+            }
+            catch (Exception e) {
+                LOGGER.debug("Failed to close channel of stream of queue {}", queue, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package com.personal.easy.rabbit.consumer;
+
+import com.personal.easy.rabbit.message.Message;
+
+/**
+ * <p>A message subscriber receives the messages of a {@link MessageStream}
+ * as much as it requested via its {@link MessageSubscription}.</p>
+ *
+ * <p>The methods follow the contract of a Reactive Streams subscriber: they are
+ * called one after another, never concurrently, {@link #onNext(Message)} is only
+ * called for requested messages, and after {@link #onError(Throwable)} or
+ * {@link #onComplete()} no further method is called.</p>
+ *
+ */
+public interface MessageSubscriber {
+
+    /**
+     * Called once before any other method.
+     *
+     * @param subscription The subscription to request messages with
+     */
+    void onSubscribe(MessageSubscription subscription);
+
+    /**
+     * Called for every requested message. The message is acknowledged as
+     * soon as the method returns, and rejected if it throws.
+     *
+     * @param message The next message
+     */
+    void onNext(Message message);
+
+    /**
+     * Called when the stream failed, e.g. because the channel was closed.
+     * Messages which were not acknowledged yet are redelivered by the broker.
+     *
+     * @param cause The reason of the failure
+     */
+    void onError(Throwable cause);
+
+    /**
+     * Called when the broker cancelled the consumer, e.g. because the queue
+     * was deleted, and all messages received before were passed on.
+     */
+    void onComplete();
+}
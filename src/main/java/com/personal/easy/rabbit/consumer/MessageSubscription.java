@@ -0,0 +1,23 @@
+package com.personal.easy.rabbit.consumer;
+
+/**
+ * A message subscription lets a {@link MessageSubscriber} tell
+ * how many messages it is ready to receive.
+ *
+ */
+public interface MessageSubscription {
+
+    /**
+     * Requests further messages. Demand adds up, {@link Long#MAX_VALUE}
+     * requests an unbounded amount of messages.
+     *
+     * @param count The amount of messages, must be positive
+     */
+    void request(long count);
+
+    /**
+     * Stops the delivery of messages and releases the channel. Messages
+     * which were not passed on yet are redelivered by the broker.
+     */
+    void cancel();
+}
@@ -0,0 +1,553 @@
+package com.personal.easy.rabbit.message;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * <p>
+ * A compact binary codec for plain objects, meant for hot message types
+ * where JSON is too costly. The fields of an object are written without names
+ * in a fixed order: fields of super classes first, each class ordered by field
+ * name. Integers and longs are written as variable length integers.
+ * </p>
+ *
+ * <p>
+ * Supported are classes with a no-argument constructor whose non-static and
+ * non-transient fields are primitives, primitive wrappers, strings, byte
+ * arrays, enums, dates, big decimals, big integers or further supported
+ * classes. Collections and maps are not supported. As field names are not
+ * written, writer and reader must use the same version of a class.
+ * </p>
+ *
+ * <p>
+ * Nested objects must be instances of exactly the declared field type, as
+ * the type is not written. Object graphs must not contain cycles.
+ * </p>
+ *
+ */
+public class BinaryCodec implements BufferedBodyCodec {
+
+    public static final String CONTENT_TYPE = "application/x-easyrabbit-binary";
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final int BOOLEAN = 0;
+
+    private static final int BYTE = 1;
+
+    private static final int SHORT = 2;
+
+    private static final int CHAR = 3;
+
+    private static final int INT = 4;
+
+    private static final int LONG = 5;
+
+    private static final int FLOAT = 6;
+
+    private static final int DOUBLE = 7;
+
+    private static final int STRING = 8;
+
+    private static final int BYTES = 9;
+
+    private static final int ENUM = 10;
+
+    private static final int DATE = 11;
+
+    private static final int BIG_DECIMAL = 12;
+
+    private static final int BIG_INTEGER = 13;
+
+    private static final int OBJECT = 14;
+
+    private static final Layout UNSUPPORTED = new Layout(null, new Field[0], new int[0]);
+
+    private final ConcurrentMap<Class<?>, Layout> layouts = new ConcurrentHashMap<Class<?>, Layout>();
+
+    private final BodyBufferPool bufferPool;
+
+    public BinaryCodec() {
+        this(BodyBufferPool.DEFAULT);
+    }
+
+    public BinaryCodec(final BodyBufferPool bufferPool) {
+        this.bufferPool = bufferPool;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String getContentType() {
+        return CONTENT_TYPE;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean isTextual() {
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean canEncode(final Class<?> type) {
+        return layout(type) != UNSUPPORTED;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean canDecode(final Class<?> type) {
+        return layout(type) != UNSUPPORTED;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public byte[] encode(final Object body, final Charset charset) throws IOException {
+        return this.bufferPool.encode(this, body, charset);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void encode(final Object body, final Charset charset, final BodyBuffer buffer) throws IOException {
+        DataOutputStream out = new DataOutputStream(buffer);
+        writeObject(out, body, supportedLayout(body.getClass()),
+                Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>()));
+        out.flush();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public <T> T decode(final byte[] content, final Charset charset, final Class<T> type) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(content));
+        return type.cast(readObject(in, supportedLayout(type)));
+    }
+
+    /**
+     * Writes the fields of an object.
+     *
+     * @param writing
+     *            The objects currently being written, used to detect cycles
+     */
+    private void writeObject(final DataOutputStream out, final Object object, final Layout layout,
+            final Set<Object> writing) throws IOException {
+        if (!writing.add(object)) {
+            throw new IOException("Cannot encode cyclic reference to " + layout.type.getName() + " in binary");
+        }
+        try {
+            for (int i = 0; i < layout.fields.length; i++) {
+                Field field = layout.fields[i];
+                int kind = layout.kinds[i];
+                if (field.getType().isPrimitive()) {
+                    writePrimitive(out, kind, field, object);
+                    continue;
+                }
+                Object value = field.get(object);
+                if (kind == OBJECT && value != null && value.getClass() != field.getType()) {
+                    throw new IOException("Cannot encode instance of " + value.getClass().getName() + " in field "
+                            + field.getName() + " of " + layout.type.getName() + " declared as "
+                            + field.getType().getName() + " in binary");
+                }
+                out.writeBoolean(value != null);
+                if (value != null) {
+                    writeValue(out, kind, field.getType(), value, writing);
+                }
+            }
+        }
+        catch (IllegalAccessException e) {
+            throw new IOException("Failed to read fields of " + layout.type.getName(), e);
+        }
+        finally {
+            writing.remove(object);
+        }
+    }
+
+    private void writePrimitive(final DataOutputStream out, final int kind, final Field field, final Object object)
+            throws IllegalAccessException, IOException {
+        switch (kind) {
+            case BOOLEAN:
+                out.writeBoolean(field.getBoolean(object));
+                break;
+            case BYTE:
+                out.writeByte(field.getByte(object));
+                break;
+            case SHORT:
+                out.writeShort(field.getShort(object));
+                break;
+            case CHAR:
+                out.writeChar(field.getChar(object));
+                break;
+            case INT:
+                writeVarLong(out, field.getInt(object));
+                break;
+            case LONG:
+                writeVarLong(out, field.getLong(object));
+                break;
+            case FLOAT:
+                out.writeFloat(field.getFloat(object));
+                break;
+            default:
+                out.writeDouble(field.getDouble(object));
+                break;
+        }
+    }
+
+    private void writeValue(final DataOutputStream out, final int kind, final Class<?> type, final Object value,
+            final Set<Object> writing) throws IOException {
+        switch (kind) {
+            case BOOLEAN:
+                out.writeBoolean((Boolean) value);
+                break;
+            case BYTE:
+                out.writeByte((Byte) value);
+                break;
+            case SHORT:
+                out.writeShort((Short) value);
+                break;
+            case CHAR:
+                out.writeChar((Character) value);
+                break;
+            case INT:
+                writeVarLong(out, (Integer) value);
+                break;
+            case LONG:
+                writeVarLong(out, (Long) value);
+                break;
+            case FLOAT:
+                out.writeFloat((Float) value);
+                break;
+            case DOUBLE:
+                out.writeDouble((Double) value);
+                break;
+            case STRING:
+                writeBytes(out, ((String) value).getBytes(UTF_8));
+                break;
+            case BYTES:
+                writeBytes(out, (byte[]) value);
+                break;
+            case ENUM:
+                writeBytes(out, ((Enum<?>) value).name().getBytes(UTF_8));
+                break;
+            case DATE:
+                writeVarLong(out, ((Date) value).getTime());
+                break;
+            case BIG_DECIMAL:
+                writeBytes(out, ((BigDecimal) value).toString().getBytes(UTF_8));
+                break;
+            case BIG_INTEGER:
+                writeBytes(out, ((BigInteger) value).toByteArray());
+                break;
+            default:
+                writeObject(out, value, supportedLayout(type), writing);
+                break;
+        }
+    }
+
+    private Object readObject(final DataInputStream in, final Layout layout) throws IOException {
+        try {
+            Object object = layout.constructor.newInstance();
+            for (int i = 0; i < layout.fields.length; i++) {
+                Field field = layout.fields[i];
+                int kind = layout.kinds[i];
+                if (field.getType().isPrimitive()) {
+                    readPrimitive(in, kind, field, object);
+                }
+                else if (in.readBoolean()) {
+                    field.set(object, readValue(in, kind, field.getType()));
+                }
+            }
+            return object;
+        }
+        catch (IOException e) {
+            throw e;
+        }
+        catch (Exception e) {
+            throw new IOException("Failed to create instance of " + layout.type.getName(), e);
+        }
+    }
+
+    private void readPrimitive(final DataInputStream in, final int kind, final Field field, final Object object)
+            throws IllegalAccessException, IOException {
+        switch (kind) {
+            case BOOLEAN:
+                field.setBoolean(object, in.readBoolean());
+                break;
+            case BYTE:
+                field.setByte(object, in.readByte());
+                break;
+            case SHORT:
+                field.setShort(object, in.readShort());
+                break;
+            case CHAR:
+                field.setChar(object, in.readChar());
+                break;
+            case INT:
+                field.setInt(object, (int) readVarLong(in));
+                break;
+            case LONG:
+                field.setLong(object, readVarLong(in));
+                break;
+            case FLOAT:
+                field.setFloat(object, in.readFloat());
+                break;
+            default:
+                field.setDouble(object, in.readDouble());
+                break;
+        }
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private Object readValue(final DataInputStream in, final int kind, final Class<?> type) throws IOException {
+        switch (kind) {
+            case BOOLEAN:
+                return in.readBoolean();
+            case BYTE:
+                return in.readByte();
+            case SHORT:
+                return in.readShort();
+            case CHAR:
+                return in.readChar();
+            case INT:
+                return (int) readVarLong(in);
+            case LONG:
+                return readVarLong(in);
+            case FLOAT:
+                return in.readFloat();
+            case DOUBLE:
+                return in.readDouble();
+            case STRING:
+                return new String(readBytes(in), UTF_8);
+            case BYTES:
+                return readBytes(in);
+            case ENUM:
+                return Enum.valueOf((Class<Enum>) type, new String(readBytes(in), UTF_8));
+            case DATE:
+                return new Date(readVarLong(in));
+            case BIG_DECIMAL:
+                return new BigDecimal(new String(readBytes(in), UTF_8));
+            case BIG_INTEGER:
+                return new BigInteger(readBytes(in));
+            default:
+                return readObject(in, supportedLayout(type));
+        }
+    }
+
+    private static void writeBytes(final DataOutputStream out, final byte[] bytes) throws IOException {
+        writeVarLong(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private static byte[] readBytes(final DataInputStream in) throws IOException {
+        long length = readVarLong(in);
+        if (length < 0 || length > in.available()) {
+            throw new IOException("Malformed binary body: invalid length " + length);
+        }
+        byte[] bytes = new byte[(int) length];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    /**
+     * Writes a zigzag encoded variable length integer, seven bits per byte.
+     */
+    private static void writeVarLong(final DataOutputStream out, final long value) throws IOException {
+        long zigzag = value << 1 ^ value >> 63;
+        while ((zigzag & ~0x7FL) != 0) {
+            out.writeByte((int) (zigzag & 0x7F | 0x80));
+            zigzag >>>= 7;
+        }
+        out.writeByte((int) zigzag);
+    }
+
+    private static long readVarLong(final DataInputStream in) throws IOException {
+        long zigzag = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            zigzag |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return zigzag >>> 1 ^ -(zigzag & 1);
+            }
+        }
+        throw new IOException("Malformed binary body: variable length integer too long");
+    }
+
+    private Layout supportedLayout(final Class<?> type) throws IOException {
+        Layout layout = layout(type);
+        if (layout == UNSUPPORTED) {
+            throw new IOException("Unsupported type for binary codec: " + type.getName());
+        }
+        return layout;
+    }
+
+    private Layout layout(final Class<?> type) {
+        Layout layout = this.layouts.get(type);
+        if (layout == null) {
+            layout = createLayout(type, new HashSet<Class<?>>());
+            Layout existing = this.layouts.putIfAbsent(type, layout);
+            if (existing != null) {
+                layout = existing;
+            }
+        }
+        return layout;
+    }
+
+    /**
+     * Creates the layout of a class, checking the classes of nested objects
+     * as well.
+     *
+     * @param type
+     *            The class
+     * @param checked
+     *            The classes checked or being checked already, so classes may
+     *            refer to themselves
+     * @return The layout or {@link #UNSUPPORTED}
+     */
+    private static Layout createLayout(final Class<?> type, final Set<Class<?>> checked) {
+        if (!isObject(type)) {
+            return UNSUPPORTED;
+        }
+        checked.add(type);
+        Constructor<?> constructor;
+        try {
+            constructor = type.getDeclaredConstructor();
+            constructor.setAccessible(true);
+        }
+        catch (Exception e) {
+            return UNSUPPORTED;
+        }
+        List<Class<?>> hierarchy = new ArrayList<Class<?>>();
+        for (Class<?> current = type; current != Object.class; current = current.getSuperclass()) {
+            hierarchy.add(current);
+        }
+        Collections.reverse(hierarchy);
+        List<Field> fields = new ArrayList<Field>();
+        for (Class<?> current : hierarchy) {
+            Field[] declared = current.getDeclaredFields();
+            Arrays.sort(declared, new Comparator<Field>() {
+                public int compare(final Field first, final Field second) {
+                    return first.getName().compareTo(second.getName());
+                }
+            });
+            for (Field field : declared) {
+                int modifiers = field.getModifiers();
+                if (!Modifier.isStatic(modifiers) && !Modifier.isTransient(modifiers) && !field.isSynthetic()) {
+                    fields.add(field);
+                }
+            }
+        }
+        int[] kinds = new int[fields.size()];
+        for (int i = 0; i < kinds.length; i++) {
+            Field field = fields.get(i);
+            kinds[i] = kindOf(field.getType());
+            if (kinds[i] < 0 || Modifier.isFinal(field.getModifiers())) {
+                return UNSUPPORTED;
+            }
+            if (kinds[i] == OBJECT && !checked.contains(field.getType())
+                    && createLayout(field.getType(), checked) == UNSUPPORTED) {
+                return UNSUPPORTED;
+            }
+            field.setAccessible(true);
+        }
+        return new Layout(constructor, fields.toArray(new Field[fields.size()]), kinds);
+    }
+
+    private static int kindOf(final Class<?> type) {
+        if (type == boolean.class || type == Boolean.class) {
+            return BOOLEAN;
+        }
+        else if (type == byte.class || type == Byte.class) {
+            return BYTE;
+        }
+        else if (type == short.class || type == Short.class) {
+            return SHORT;
+        }
+        else if (type == char.class || type == Character.class) {
+            return CHAR;
+        }
+        else if (type == int.class || type == Integer.class) {
+            return INT;
+        }
+        else if (type == long.class || type == Long.class) {
+            return LONG;
+        }
+        else if (type == float.class || type == Float.class) {
+            return FLOAT;
+        }
+        else if (type == double.class || type == Double.class) {
+            return DOUBLE;
+        }
+        else if (type == String.class) {
+            return STRING;
+        }
+        else if (type == byte[].class) {
+            return BYTES;
+        }
+        else if (type.isEnum()) {
+            return ENUM;
+        }
+        else if (type == Date.class) {
+            return DATE;
+        }
+        else if (type == BigDecimal.class) {
+            return BIG_DECIMAL;
+        }
+        else if (type == BigInteger.class) {
+            return BIG_INTEGER;
+        }
+        else if (isObject(type)) {
+            return OBJECT;
+        }
+        return -1;
+    }
+
+    private static boolean isObject(final Class<?> type) {
+        return !type.isPrimitive() && !type.isArray() && !type.isInterface() && !type.isEnum()
+                && !Modifier.isAbstract(type.getModifiers()) && !type.getName().startsWith("java.")
+                && (type.getEnclosingClass() == null || Modifier.isStatic(type.getModifiers()));
+    }
+
+    /**
+     * The fields of a class in the order they are written.
+     */
+    private static class Layout {
+
+        final Class<?> type;
+
+        final Constructor<?> constructor;
+
+        final Field[] fields;
+
+        final int[] kinds;
+
+        Layout(final Constructor<?> constructor, final Field[] fields, final int[] kinds) {
+            this.type = constructor == null ? null : constructor.getDeclaringClass();
+            this.constructor = constructor;
+            this.fields = fields;
+            this.kinds = kinds;
+        }
+    }
+}
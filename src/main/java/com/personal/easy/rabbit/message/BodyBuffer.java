@@ -0,0 +1,207 @@
+package com.personal.easy.rabbit.message;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.Arrays;
+
+/**
+ * <p>
+ * A growable byte buffer to encode message bodies into. Buffers are meant to
+ * be reused through a {@link BodyBufferPool}, so encoding a body only
+ * allocates the final exact-size copy returned by {@link #toByteArray()}.
+ * </p>
+ *
+ * <p>
+ * A buffer is not thread-safe.
+ * </p>
+ *
+ */
+public class BodyBuffer extends OutputStream {
+
+    private byte[] bytes;
+
+    private int count;
+
+    private CharsetEncoder encoder;
+
+    /**
+     * Chars the encoder did not consume yet, i.e. the high surrogate of a pair
+     * split between two writes, null if there are none
+     */
+    private char[] pendingChars;
+
+    /**
+     * Whether chars were written whose encoding is not finished yet
+     */
+    private boolean encoding;
+
+    private final Writer writer = new Writer() {
+
+        @Override
+        public void write(final char[] chars, final int offset, final int length) throws IOException {
+            writeChars(chars, offset, length);
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() throws IOException {
+            finishChars();
+        }
+    };
+
+    public BodyBuffer(final int initialCapacity) {
+        this.bytes = new byte[initialCapacity];
+    }
+
+    @Override
+    public void write(final int b) {
+        ensureCapacity(this.count + 1);
+        this.bytes[this.count++] = (byte) b;
+    }
+
+    @Override
+    public void write(final byte[] source, final int offset, final int length) {
+        ensureCapacity(this.count + length);
+        System.arraycopy(source, offset, this.bytes, this.count, length);
+        this.count += length;
+    }
+
+    /**
+     * Gets a writer encoding chars in the given charset into this buffer. The
+     * writer is valid until the buffer is reset. Closing the writer finishes
+     * the encoding, which {@link #toByteArray()} does as well.
+     *
+     * @param charset
+     *            The charset to encode chars with
+     * @return The writer
+     * @throws IOException
+     *             if finishing the encoding in another charset fails
+     */
+    public Writer writer(final Charset charset) throws IOException {
+        if (this.encoder == null || !this.encoder.charset().equals(charset)) {
+            finishChars();
+            this.encoder = charset.newEncoder().onMalformedInput(CodingErrorAction.REPLACE)
+                    .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        }
+        return this.writer;
+    }
+
+    /**
+     * Gets the amount of written bytes.
+     *
+     * @return The size
+     */
+    public int size() {
+        return this.count;
+    }
+
+    /**
+     * Gets the length of the underlying array.
+     *
+     * @return The capacity
+     */
+    public int capacity() {
+        return this.bytes.length;
+    }
+
+    /**
+     * Copies the written bytes into an array of exactly their size, finishing
+     * the encoding of written chars first.
+     *
+     * @return The written bytes
+     */
+    public byte[] toByteArray() {
+        try {
+            finishChars();
+        }
+        catch (CharacterCodingException e) {
+            // Cannot happen as malformed and unmappable chars are replaced
+            throw new IllegalStateException("Failed to finish encoding of message body", e);
+        }
+        return Arrays.copyOf(this.bytes, this.count);
+    }
+
+    /**
+     * Discards the written bytes, keeping the capacity.
+     */
+    public void reset() {
+        this.count = 0;
+        this.pendingChars = null;
+        this.encoding = false;
+        if (this.encoder != null) {
+            this.encoder.reset();
+        }
+    }
+
+    void writeChars(final char[] chars, final int offset, final int length) throws CharacterCodingException {
+        CharBuffer input;
+        if (this.pendingChars == null) {
+            input = CharBuffer.wrap(chars, offset, length);
+        }
+        else {
+            char[] joined = Arrays.copyOf(this.pendingChars, this.pendingChars.length + length);
+            System.arraycopy(chars, offset, joined, this.pendingChars.length, length);
+            input = CharBuffer.wrap(joined);
+            this.pendingChars = null;
+        }
+        this.encoding = true;
+        encode(input, false);
+        if (input.hasRemaining()) {
+            this.pendingChars = new char[input.remaining()];
+            input.get(this.pendingChars);
+        }
+    }
+
+    /**
+     * Encodes the pending chars as the end of the input, so a trailing lone
+     * surrogate is replaced, and flushes the encoder, so stateful charsets
+     * write their final shift sequence. The encoder is reset afterwards.
+     */
+    void finishChars() throws CharacterCodingException {
+        if (!this.encoding) {
+            return;
+        }
+        CharBuffer input = this.pendingChars == null ? CharBuffer.allocate(0) : CharBuffer.wrap(this.pendingChars);
+        this.pendingChars = null;
+        encode(input, true);
+        this.encoder.reset();
+        this.encoding = false;
+    }
+
+    private void encode(final CharBuffer input, final boolean endOfInput) throws CharacterCodingException {
+        ensureCapacity(this.count + (int) Math.ceil((input.remaining() + 1) * (double) this.encoder.maxBytesPerChar()));
+        CoderResult result;
+        do {
+            ByteBuffer output = ByteBuffer.wrap(this.bytes, this.count, this.bytes.length - this.count);
+            result = this.encoder.encode(input, output, endOfInput);
+            if (endOfInput && result.isUnderflow()) {
+                result = this.encoder.flush(output);
+            }
+            this.count = output.position();
+            if (result.isError()) {
+                result.throwException();
+            }
+            if (result.isOverflow()) {
+                ensureCapacity(this.bytes.length + 1);
+            }
+        }
+        while (result.isOverflow());
+    }
+
+    private void ensureCapacity(final int capacity) {
+        if (capacity > this.bytes.length) {
+            this.bytes = Arrays.copyOf(this.bytes, Math.max(capacity, this.bytes.length * 2));
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package com.personal.easy.rabbit.message;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>
+ * A bounded pool of {@link BodyBuffer}s shared by the codecs encoding message
+ * bodies. Buffers grown beyond the maximum retained capacity are dropped on
+ * release, so a single large body does not pin its buffer forever.
+ * </p>
+ *
+ * <p>
+ * The pool counts acquired buffers, buffers taken from the pool and the
+ * capacity recycled by reusing them.
+ * </p>
+ *
+ */
+public class BodyBufferPool {
+
+    public static final int DEFAULT_MAX_POOLED_BUFFERS = 64;
+
+    public static final int DEFAULT_INITIAL_CAPACITY = 4 * 1024;
+
+    public static final int DEFAULT_MAX_RETAINED_CAPACITY = 1024 * 1024;
+
+    public static final BodyBufferPool DEFAULT = new BodyBufferPool(DEFAULT_MAX_POOLED_BUFFERS,
+            DEFAULT_INITIAL_CAPACITY, DEFAULT_MAX_RETAINED_CAPACITY);
+
+    private final BlockingQueue<BodyBuffer> buffers;
+
+    private final int initialCapacity;
+
+    private final int maxRetainedCapacity;
+
+    private final AtomicLong acquireCount = new AtomicLong();
+
+    private final AtomicLong hitCount = new AtomicLong();
+
+    private final AtomicLong recycledBytes = new AtomicLong();
+
+    /**
+     * Creates a pool.
+     *
+     * @param maxPooledBuffers
+     *            The maximum amount of idle buffers kept
+     * @param initialCapacity
+     *            The capacity of newly created buffers
+     * @param maxRetainedCapacity
+     *            The maximum capacity of a buffer to be kept on release
+     */
+    public BodyBufferPool(final int maxPooledBuffers, final int initialCapacity, final int maxRetainedCapacity) {
+        if (maxPooledBuffers < 1 || initialCapacity < 1 || maxRetainedCapacity < initialCapacity) {
+            throw new IllegalArgumentException("Invalid buffer pool limits");
+        }
+        this.buffers = new ArrayBlockingQueue<BodyBuffer>(maxPooledBuffers);
+        this.initialCapacity = initialCapacity;
+        this.maxRetainedCapacity = maxRetainedCapacity;
+    }
+
+    /**
+     * Takes an idle buffer from the pool or creates a new one.
+     *
+     * @return An empty buffer
+     */
+    public BodyBuffer acquire() {
+        this.acquireCount.incrementAndGet();
+        BodyBuffer buffer = this.buffers.poll();
+        if (buffer == null) {
+            return new BodyBuffer(this.initialCapacity);
+        }
+        this.hitCount.incrementAndGet();
+        this.recycledBytes.addAndGet(buffer.capacity());
+        return buffer;
+    }
+
+    /**
+     * Returns a buffer to the pool. The buffer must not be used afterwards.
+     *
+     * @param buffer
+     *            The buffer to return
+     */
+    public void release(final BodyBuffer buffer) {
+        if (buffer.capacity() > this.maxRetainedCapacity) {
+            return;
+        }
+        buffer.reset();
+        this.buffers.offer(buffer);
+    }
+
+    /**
+     * Encodes a body with a pooled buffer and returns the encoded bytes as an
+     * exact-size copy.
+     *
+     * @param codec
+     *            The codec to encode with
+     * @param body
+     *            The body to encode
+     * @param charset
+     *            The charset of textual bodies
+     * @return The encoded body
+     * @throws IOException
+     *             if encoding fails
+     */
+    public byte[] encode(final BufferedBodyCodec codec, final Object body, final Charset charset)
+            throws IOException {
+        BodyBuffer buffer = acquire();
+        try {
+            codec.encode(body, charset, buffer);
+            return buffer.toByteArray();
+        }
+        finally {
+            release(buffer);
+        }
+    }
+
+    /**
+     * Gets the amount of acquired buffers.
+     *
+     * @return The acquire count
+     */
+    public long getAcquireCount() {
+        return this.acquireCount.get();
+    }
+
+    /**
+     * Gets the amount of acquired buffers taken from the pool.
+     *
+     * @return The hit count
+     */
+    public long getHitCount() {
+        return this.hitCount.get();
+    }
+
+    /**
+     * Gets the share of acquired buffers taken from the pool.
+     *
+     * @return The hit rate between 0 and 1
+     */
+    public double getHitRate() {
+        long acquired = this.acquireCount.get();
+        return acquired == 0 ? 0 : (double) this.hitCount.get() / acquired;
+    }
+
+    /**
+     * Gets the sum of the capacities of the buffers taken from the pool,
+     * which did not need to be allocated.
+     *
+     * @return The recycled bytes
+     */
+    public long getRecycledBytes() {
+        return this.recycledBytes.get();
+    }
+
+    /**
+     * Gets the amount of idle buffers in the pool.
+     *
+     * @return The pooled count
+     */
+    public int getPooledCount() {
+        return this.buffers.size();
+    }
+}
@@ -0,0 +1,78 @@
+package com.personal.easy.rabbit.message;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+/**
+ * <p>
+ * A body codec encodes objects to message bodies and decodes message bodies
+ * to objects. The content type of the codec is recorded in the message, so
+ * readers can find the matching codec in {@link BodyCodecs} regardless of the
+ * codec the writer chose.
+ * </p>
+ *
+ */
+public interface BodyCodec {
+
+    /**
+     * Gets the content type recorded in messages encoded by this codec.
+     *
+     * @return The content type without parameters
+     */
+    String getContentType();
+
+    /**
+     * Checks whether encoded bodies are text in the charset passed to
+     * {@link #encode(Object, Charset)}, which is then recorded as content
+     * encoding.
+     *
+     * @return true if the encoded bodies are text
+     */
+    boolean isTextual();
+
+    /**
+     * Checks whether objects of the given type can be encoded.
+     *
+     * @param type
+     *            The type of the objects
+     * @return true if objects of the type can be encoded
+     */
+    boolean canEncode(Class<?> type);
+
+    /**
+     * Checks whether bodies can be decoded to objects of the given type.
+     *
+     * @param type
+     *            The requested type
+     * @return true if bodies can be decoded to the type
+     */
+    boolean canDecode(Class<?> type);
+
+    /**
+     * Encodes the given object.
+     *
+     * @param body
+     *            The object to encode
+     * @param charset
+     *            The charset of textual bodies
+     * @return The encoded body
+     * @throws IOException
+     *             if encoding fails
+     */
+    byte[] encode(Object body, Charset charset) throws IOException;
+
+    /**
+     * Decodes the given body.
+     *
+     * @param content
+     *            The encoded body
+     * @param charset
+     *            The charset of textual bodies
+     * @param type
+     *            The requested type
+     * @return The decoded object
+     * @throws IOException
+     *             if the body is malformed
+     */
+    <T> T decode(byte[] content, Charset charset, Class<T> type) throws IOException;
+}
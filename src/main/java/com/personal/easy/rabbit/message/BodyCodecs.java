@@ -0,0 +1,163 @@
+package com.personal.easy.rabbit.message;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * <p>
+ * The registry of body codecs used by {@link MessageWriter} and
+ * {@link MessageReader}. Codecs are registered by content type, the built-in
+ * codecs are registered by default.
+ * </p>
+ *
+ * <p>
+ * The codec writing an object is resolved per class and cached after the first
+ * lookup. A class bound to a codec by {@link #bind(Class, BodyCodec)} is
+ * written by that codec. Otherwise byte arrays are written by {@link #RAW},
+ * strings, numbers, booleans and characters by {@link #TEXT} and everything
+ * else by {@link #JSON}. Readers pick the codec by the content type of a
+ * message, so writers can switch the codec of a class without touching
+ * readers.
+ * </p>
+ *
+ */
+public final class BodyCodecs {
+
+    public static final BodyCodec RAW = new RawCodec();
+
+    public static final BodyCodec TEXT = new TextCodec();
+
+    public static final BodyCodec JSON = new JsonCodec();
+
+    public static final BodyCodec BINARY = new BinaryCodec();
+
+    private static final BodyCodec[] DEFAULT_CODECS = { RAW, TEXT, JSON };
+
+    private static final ConcurrentMap<String, BodyCodec> CODECS = new ConcurrentHashMap<String, BodyCodec>();
+
+    private static final ConcurrentMap<Class<?>, BodyCodec> BOUND_CODECS = new ConcurrentHashMap<Class<?>, BodyCodec>();
+
+    private static final ConcurrentMap<Class<?>, BodyCodec> RESOLVED_CODECS = new ConcurrentHashMap<Class<?>, BodyCodec>();
+
+    private static final Map<Class<?>, Class<?>> WRAPPER_TYPES = new HashMap<Class<?>, Class<?>>();
+
+    static {
+        WRAPPER_TYPES.put(boolean.class, Boolean.class);
+        WRAPPER_TYPES.put(char.class, Character.class);
+        WRAPPER_TYPES.put(byte.class, Byte.class);
+        WRAPPER_TYPES.put(short.class, Short.class);
+        WRAPPER_TYPES.put(int.class, Integer.class);
+        WRAPPER_TYPES.put(long.class, Long.class);
+        WRAPPER_TYPES.put(float.class, Float.class);
+        WRAPPER_TYPES.put(double.class, Double.class);
+        register(RAW);
+        register(TEXT);
+        register(JSON);
+        register(BINARY);
+    }
+
+    private BodyCodecs() {
+    }
+
+    /**
+     * Registers a codec under its content type, replacing a codec with the
+     * same content type.
+     *
+     * @param codec
+     *            The codec to register
+     */
+    public static void register(final BodyCodec codec) {
+        CODECS.put(codec.getContentType().toLowerCase(), codec);
+    }
+
+    /**
+     * Binds a class to the codec writing its objects. The codec is registered
+     * as well.
+     *
+     * @param type
+     *            The class to bind
+     * @param codec
+     *            The codec to write objects of the class with
+     */
+    public static void bind(final Class<?> type, final BodyCodec codec) {
+        if (!codec.canEncode(type)) {
+            throw new IllegalArgumentException("Codec " + codec.getContentType() + " cannot encode " + type.getName());
+        }
+        register(codec);
+        BOUND_CODECS.put(type, codec);
+        RESOLVED_CODECS.remove(type);
+    }
+
+    /**
+     * Removes the binding of a class, so its objects are written by the
+     * default codec again.
+     *
+     * @param type
+     *            The class to unbind
+     */
+    public static void unbind(final Class<?> type) {
+        BOUND_CODECS.remove(type);
+        RESOLVED_CODECS.remove(type);
+    }
+
+    /**
+     * Gets the codec registered for the given content type. Parameters of the
+     * content type such as the charset are ignored.
+     *
+     * @param contentType
+     *            The content type of a message
+     * @return The registered codec or null if there is none
+     */
+    public static BodyCodec forContentType(final String contentType) {
+        if (contentType == null) {
+            return null;
+        }
+        int end = contentType.indexOf(';');
+        String mediaType = end < 0 ? contentType : contentType.substring(0, end);
+        return CODECS.get(mediaType.trim().toLowerCase());
+    }
+
+    /**
+     * Gets the codec writing objects of the given class.
+     *
+     * @param type
+     *            The class of the objects
+     * @return The codec
+     */
+    public static BodyCodec forType(final Class<?> type) {
+        BodyCodec codec = RESOLVED_CODECS.get(type);
+        if (codec == null) {
+            codec = resolve(type);
+            RESOLVED_CODECS.put(type, codec);
+        }
+        return codec;
+    }
+
+    private static BodyCodec resolve(final Class<?> type) {
+        BodyCodec codec = BOUND_CODECS.get(type);
+        if (codec != null) {
+            return codec;
+        }
+        for (BodyCodec defaultCodec : DEFAULT_CODECS) {
+            if (defaultCodec.canEncode(type)) {
+                return defaultCodec;
+            }
+        }
+        return JSON;
+    }
+
+    /**
+     * Gets the wrapper class of a primitive class, so codecs never see
+     * primitive class tokens such as {@code long.class}.
+     *
+     * @param type
+     *            The class
+     * @return The wrapper class of a primitive class, otherwise the class
+     */
+    public static Class<?> wrapperType(final Class<?> type) {
+        Class<?> wrapperType = type.isPrimitive() ? WRAPPER_TYPES.get(type) : null;
+        return wrapperType != null ? wrapperType : type;
+    }
+}
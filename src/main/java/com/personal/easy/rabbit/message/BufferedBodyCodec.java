@@ -0,0 +1,28 @@
+package com.personal.easy.rabbit.message;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+/**
+ * <p>
+ * A body codec able to encode into a {@link BodyBuffer}, so bodies can be
+ * encoded with pooled buffers by {@link BodyBufferPool#encode}.
+ * </p>
+ *
+ */
+public interface BufferedBodyCodec extends BodyCodec {
+
+    /**
+     * Encodes the given object into the buffer.
+     *
+     * @param body
+     *            The object to encode
+     * @param charset
+     *            The charset of textual bodies
+     * @param buffer
+     *            The buffer to write to
+     * @throws IOException
+     *             if encoding fails
+     */
+    void encode(Object body, Charset charset, BodyBuffer buffer) throws IOException;
+}
@@ -0,0 +1,51 @@
+package com.personal.easy.rabbit.message;
+
+import java.io.IOException;
+
+/**
+ * <p>
+ * A compression codec compresses and decompresses message bodies. The name
+ * of the codec used to compress a body is recorded in the content encoding
+ * of the message, so readers can find the matching codec in
+ * {@link CompressionCodecs}.
+ * </p>
+ *
+ */
+public interface CompressionCodec {
+
+    /**
+     * The default maximum size in bytes of decompressed content, protecting
+     * consumers from bodies decompressing to huge sizes.
+     */
+    int DEFAULT_MAX_DECOMPRESSED_SIZE = 64 * 1024 * 1024;
+
+    /**
+     * Gets the name of the codec as recorded in the content encoding.
+     *
+     * @return The codec name
+     */
+    String getName();
+
+    /**
+     * Compresses the given content.
+     *
+     * @param content
+     *            The uncompressed content
+     * @return The compressed content
+     * @throws IOException
+     *             if compressing fails
+     */
+    byte[] compress(byte[] content) throws IOException;
+
+    /**
+     * Decompresses the given content.
+     *
+     * @param content
+     *            The compressed content
+     * @return The uncompressed content
+     * @throws IOException
+     *             if the content is malformed or decompresses to more than
+     *             the maximum size accepted by the codec
+     */
+    byte[] decompress(byte[] content) throws IOException;
+}
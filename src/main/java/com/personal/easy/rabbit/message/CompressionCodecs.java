@@ -0,0 +1,57 @@
+package com.personal.easy.rabbit.message;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * <p>
+ * The registry of compression codecs known to {@link MessageReader}. The
+ * built-in codecs are registered by default, further codecs can be added by
+ * {@link #register(CompressionCodec)}.
+ * </p>
+ *
+ */
+public final class CompressionCodecs {
+
+    public static final CompressionCodec DEFLATE = new DeflateCodec();
+
+    public static final CompressionCodec GZIP = new GzipCodec();
+
+    public static final CompressionCodec LZ4_BLOCK = new Lz4BlockCodec();
+
+    private static final ConcurrentMap<String, CompressionCodec> CODECS = new ConcurrentHashMap<String, CompressionCodec>();
+
+    static {
+        register(DEFLATE);
+        register(GZIP);
+        register(LZ4_BLOCK);
+    }
+
+    private CompressionCodecs() {
+    }
+
+    /**
+     * Registers a codec under its name, replacing a codec with the same name.
+     *
+     * @param codec
+     *            The codec to register
+     */
+    public static void register(final CompressionCodec codec) {
+        CODECS.put(codec.getName().toLowerCase(), codec);
+    }
+
+    /**
+     * Gets the codec registered for the given content encoding.
+     *
+     * @param contentEncoding
+     *            The content encoding of a message
+     * @return The registered codec or null if the content encoding does not
+     *         denote a compression codec
+     */
+    public static CompressionCodec forName(final String contentEncoding) {
+        if (contentEncoding == null) {
+            return null;
+        }
+        return CODECS.get(contentEncoding.toLowerCase());
+    }
+}
@@ -0,0 +1,97 @@
+package com.personal.easy.rabbit.message;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * A codec compressing content to the zlib format using the JDK deflater.
+ *
+ */
+public class DeflateCodec implements CompressionCodec {
+
+    public static final String NAME = "deflate";
+
+    private static final int BUFFER_SIZE = 4096;
+
+    private final int maxDecompressedSize;
+
+    public DeflateCodec() {
+        this(DEFAULT_MAX_DECOMPRESSED_SIZE);
+    }
+
+    /**
+     * Creates the codec.
+     *
+     * @param maxDecompressedSize
+     *            The maximum size in bytes of decompressed content
+     */
+    public DeflateCodec(final int maxDecompressedSize) {
+        if (maxDecompressedSize < 1) {
+            throw new IllegalArgumentException("Invalid maximum decompressed size " + maxDecompressedSize);
+        }
+        this.maxDecompressedSize = maxDecompressedSize;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String getName() {
+        return NAME;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public byte[] compress(final byte[] content) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(content.length / 2 + 16);
+        OutputStream out = createOutputStream(compressed);
+        try {
+            out.write(content);
+        }
+        finally {
+            out.close();
+        }
+        return compressed.toByteArray();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public byte[] decompress(final byte[] content) throws IOException {
+        ByteArrayOutputStream decompressed = new ByteArrayOutputStream(
+                (int) Math.min(content.length * 4L, this.maxDecompressedSize));
+        InputStream in = createInputStream(new ByteArrayInputStream(content));
+        try {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                if (read > this.maxDecompressedSize - decompressed.size()) {
+                    throw new IOException("Decompressed content exceeds maximum size of "
+                            + this.maxDecompressedSize + " bytes");
+                }
+                decompressed.write(buffer, 0, read);
+            }
+        }
+        finally {
+            in.close();
+        }
+        return decompressed.toByteArray();
+    }
+
+    public int getMaxDecompressedSize() {
+        return this.maxDecompressedSize;
+    }
+
+    OutputStream createOutputStream(final OutputStream out) throws IOException {
+        return new DeflaterOutputStream(out);
+    }
+
+    InputStream createInputStream(final InputStream in) throws IOException {
+        return new InflaterInputStream(in);
+    }
+}
@@ -0,0 +1,48 @@
+package com.personal.easy.rabbit.message;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A codec compressing content to the gzip format using the JDK deflater.
+ *
+ */
+public class GzipCodec extends DeflateCodec {
+
+    public static final String NAME = "gzip";
+
+    public GzipCodec() {
+        super();
+    }
+
+    /**
+     * Creates the codec.
+     *
+     * @param maxDecompressedSize
+     *            The maximum size in bytes of decompressed content
+     */
+    public GzipCodec(final int maxDecompressedSize) {
+        super(maxDecompressedSize);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    OutputStream createOutputStream(final OutputStream out) throws IOException {
+        return new GZIPOutputStream(out);
+    }
+
+    @Override
+    InputStream createInputStream(final InputStream in) throws IOException {
+        return new GZIPInputStream(in);
+    }
+}
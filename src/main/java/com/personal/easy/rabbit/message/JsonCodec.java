@@ -0,0 +1,92 @@
+package com.personal.easy.rabbit.message;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.Charset;
+
+import com.alibaba.fastjson.serializer.JSONSerializer;
+import com.alibaba.fastjson.serializer.SerializeWriter;
+
+/**
+ * <p>
+ * A codec writing objects as JSON using fastjson. It encodes objects of any
+ * type, but does not decode to strings, so JSON bodies can still be read as
+ * their raw text.
+ * </p>
+ *
+ * <p>
+ * Objects are serialized into fastjson's char buffer and encoded from there
+ * right into a pooled {@link BodyBuffer}, without an intermediate string.
+ * </p>
+ *
+ */
+public class JsonCodec implements BufferedBodyCodec {
+
+    private final BodyBufferPool bufferPool;
+
+    public JsonCodec() {
+        this(BodyBufferPool.DEFAULT);
+    }
+
+    public JsonCodec(final BodyBufferPool bufferPool) {
+        this.bufferPool = bufferPool;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String getContentType() {
+        return Message.APPLICATION_JSON;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean isTextual() {
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean canEncode(final Class<?> type) {
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean canDecode(final Class<?> type) {
+        return !CharSequence.class.isAssignableFrom(type) && type != byte[].class;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public byte[] encode(final Object body, final Charset charset) throws IOException {
+        return this.bufferPool.encode(this, body, charset);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void encode(final Object body, final Charset charset, final BodyBuffer buffer) throws IOException {
+        SerializeWriter out = new SerializeWriter();
+        try {
+            new JSONSerializer(out).write(body);
+            Writer writer = buffer.writer(charset);
+            out.writeTo(writer);
+            writer.close();
+        }
+        finally {
+            out.close();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public <T> T decode(final byte[] content, final Charset charset, final Class<T> type) throws IOException {
+        return MessageReader.readJson(content, 0, content.length, charset, type);
+    }
+}
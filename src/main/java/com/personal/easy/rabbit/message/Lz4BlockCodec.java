@@ -0,0 +1,238 @@
+package com.personal.easy.rabbit.message;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * <p>
+ * A fast codec compressing content to the LZ4 block format, implemented in
+ * plain Java. It trades compression ratio for speed compared to
+ * {@link DeflateCodec} and {@link GzipCodec}.
+ * </p>
+ *
+ * <p>
+ * The compressed form is the uncompressed length as a four byte big-endian
+ * integer followed by a single LZ4 block. Matches are found greedily using a
+ * hash table of the last position of every four byte sequence.
+ * </p>
+ *
+ * <p>
+ * The uncompressed length is checked before decompressing, it must neither
+ * exceed the maximum ratio of the LZ4 format nor the maximum decompressed size.
+ * </p>
+ *
+ */
+public class Lz4BlockCodec implements CompressionCodec {
+
+    public static final String NAME = "x-lz4-block";
+
+    private static final int MIN_MATCH = 4;
+
+    private static final int LAST_LITERALS = 5;
+
+    private static final int MATCH_FIND_LIMIT = 12;
+
+    private static final int MAX_DISTANCE = 65535;
+
+    private static final int HASH_LOG = 12;
+
+    private static final int RUN_MASK = 15;
+
+    /**
+     * Every length extension byte of a block adds at most 255 bytes.
+     */
+    private static final int MAX_RATIO = 255;
+
+    private final int maxDecompressedSize;
+
+    public Lz4BlockCodec() {
+        this(DEFAULT_MAX_DECOMPRESSED_SIZE);
+    }
+
+    /**
+     * Creates the codec.
+     *
+     * @param maxDecompressedSize
+     *            The maximum size in bytes of decompressed content
+     */
+    public Lz4BlockCodec(final int maxDecompressedSize) {
+        if (maxDecompressedSize < 1) {
+            throw new IllegalArgumentException("Invalid maximum decompressed size " + maxDecompressedSize);
+        }
+        this.maxDecompressedSize = maxDecompressedSize;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public String getName() {
+        return NAME;
+    }
+
+    public int getMaxDecompressedSize() {
+        return this.maxDecompressedSize;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public byte[] compress(final byte[] content) throws IOException {
+        int length = content.length;
+        // Worst case of incompressible content: one extension byte per 255 literals
+        byte[] out = new byte[4 + length + length / 255 + 16];
+        writeInt(out, 0, length);
+        int outPosition = 4;
+        int anchor = 0;
+
+        if (length > MATCH_FIND_LIMIT) {
+            int[] hashTable = new int[1 << HASH_LOG];
+            Arrays.fill(hashTable, -1);
+            int matchStartLimit = length - MATCH_FIND_LIMIT;
+            int matchEndLimit = length - LAST_LITERALS;
+            int position = 0;
+            while (position < matchStartLimit) {
+                int sequence = readInt(content, position);
+                int hash = hash(sequence);
+                int reference = hashTable[hash];
+                hashTable[hash] = position;
+                if (reference < 0 || position - reference > MAX_DISTANCE || readInt(content, reference) != sequence) {
+                    position++;
+                    continue;
+                }
+                int matchLength = MIN_MATCH;
+                while (position + matchLength < matchEndLimit
+                        && content[reference + matchLength] == content[position + matchLength]) {
+                    matchLength++;
+                }
+                outPosition = writeSequence(content, anchor, position - anchor, out, outPosition,
+                        position - reference, matchLength);
+                position += matchLength;
+                anchor = position;
+            }
+        }
+        outPosition = writeLiterals(content, anchor, length - anchor, out, outPosition, 0);
+        return Arrays.copyOf(out, outPosition);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public byte[] decompress(final byte[] content) throws IOException {
+        if (content.length < 5) {
+            throw new IOException("Malformed LZ4 block: too short");
+        }
+        int length = readInt(content, 0);
+        if (length < 0) {
+            throw new IOException("Malformed LZ4 block: negative length");
+        }
+        if (length > (long) (content.length - 4) * MAX_RATIO + 2 * (RUN_MASK + MIN_MATCH)) {
+            throw new IOException("Malformed LZ4 block: length " + length + " exceeds maximum ratio");
+        }
+        if (length > this.maxDecompressedSize) {
+            throw new IOException("Decompressed content exceeds maximum size of " + this.maxDecompressedSize
+                    + " bytes");
+        }
+        byte[] out = new byte[length];
+        int position = 4;
+        int outPosition = 0;
+        try {
+            while (true) {
+                int token = content[position++] & 0xFF;
+                int literalLength = token >>> 4;
+                if (literalLength == RUN_MASK) {
+                    int value;
+                    do {
+                        value = content[position++] & 0xFF;
+                        literalLength += value;
+                    }
+                    while (value == 255);
+                }
+                System.arraycopy(content, position, out, outPosition, literalLength);
+                position += literalLength;
+                outPosition += literalLength;
+                if (position == content.length) {
+                    break;
+                }
+
+                int offset = (content[position] & 0xFF) | (content[position + 1] & 0xFF) << 8;
+                position += 2;
+                int matchLength = token & RUN_MASK;
+                if (matchLength == RUN_MASK) {
+                    int value;
+                    do {
+                        value = content[position++] & 0xFF;
+                        matchLength += value;
+                    }
+                    while (value == 255);
+                }
+                matchLength += MIN_MATCH;
+                int reference = outPosition - offset;
+                if (offset == 0 || reference < 0 || outPosition + matchLength > length) {
+                    throw new IOException("Malformed LZ4 block: invalid match at " + position);
+                }
+                // Copies byte by byte as source and target may overlap
+                for (int i = 0; i < matchLength; i++) {
+                    out[outPosition++] = out[reference++];
+                }
+            }
+        }
+        catch (IndexOutOfBoundsException e) {
+            throw new IOException("Malformed LZ4 block: truncated content", e);
+        }
+        if (outPosition != length) {
+            throw new IOException("Malformed LZ4 block: expected " + length + " bytes but got " + outPosition);
+        }
+        return out;
+    }
+
+    private static int writeSequence(final byte[] source, final int literalStart, final int literalLength,
+            final byte[] out, final int outPosition, final int offset, final int matchLength) {
+        int matchRun = matchLength - MIN_MATCH;
+        int position = writeLiterals(source, literalStart, literalLength, out, outPosition,
+                Math.min(matchRun, RUN_MASK));
+        out[position++] = (byte) offset;
+        out[position++] = (byte) (offset >>> 8);
+        if (matchRun >= RUN_MASK) {
+            position = writeRunLength(out, position, matchRun - RUN_MASK);
+        }
+        return position;
+    }
+
+    private static int writeLiterals(final byte[] source, final int literalStart, final int literalLength,
+            final byte[] out, final int outPosition, final int matchToken) {
+        int position = outPosition;
+        out[position++] = (byte) (Math.min(literalLength, RUN_MASK) << 4 | matchToken);
+        if (literalLength >= RUN_MASK) {
+            position = writeRunLength(out, position, literalLength - RUN_MASK);
+        }
+        System.arraycopy(source, literalStart, out, position, literalLength);
+        return position + literalLength;
+    }
+
+    private static int writeRunLength(final byte[] out, final int outPosition, final int runLength) {
+        int position = outPosition;
+        int remaining = runLength;
+        while (remaining >= 255) {
+            out[position++] = (byte) 255;
+            remaining -= 255;
+        }
+        out[position++] = (byte) remaining;
+        return position;
+    }
+
+    private static int hash(final int sequence) {
+        return (sequence * -1640531535) >>> (32 - HASH_LOG);
+    }
+
+    private static int readInt(final byte[] source, final int position) {
+        return (source[position] & 0xFF) << 24 | (source[position + 1] & 0xFF) << 16
+                | (source[position + 2] & 0xFF) << 8 | source[position + 3] & 0xFF;
+    }
+
+    private static void writeInt(final byte[] target, final int position, final int value) {
+        target[position] = (byte) (value >>> 24);
+        target[position + 1] = (byte) (value >>> 16);
+        target[position + 2] = (byte) (value >>> 8);
+        target[position + 3] = (byte) value;
+    }
+}
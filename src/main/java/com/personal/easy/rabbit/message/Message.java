@@ -3,6 +3,13 @@ package com.personal.easy.rabbit.message;
 import java.io.IOException;
 import java.nio.charset.Charset;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -26,14 +33,31 @@ public class Message {
 
     public static final String APPLICATION_JSON = "application/json";
 
+    public static final String APPLICATION_OCTET_STREAM = "application/octet-stream";
+
     private MessageReader messageReader;
 
     private MessageWriter messageWriter;
 
     private byte[] bodyContent = new byte[0];
 
+    /**
+     * The materialized properties, null while changes of the properties
+     * builder are not materialized yet
+     */
     private BasicProperties basicProperties;
 
+    /**
+     * Accumulates changes of the properties, created on the first change
+     */
+    private MessagePropertiesBuilder propertiesBuilder;
+
+    /**
+     * The decoded bodies per requested type, replaced as a whole on changes;
+     * values may be pending decodings
+     */
+    private volatile Map<Class<?>, Object> decodedBodies;
+
     private String routingKey = "";
 
     private String exchange = "";
@@ -58,21 +82,155 @@ public class Message {
 
     public Message id(final String id) {
         this.id = id;
-        // set messageId as header of the message
-        this.basicProperties = this.basicProperties.builder().messageId(id).build();
+        // set messageId as header of the message, unless it is already
+        String messageId = this.propertiesBuilder != null ? this.propertiesBuilder.getMessageId()
+                : this.basicProperties != null ? this.basicProperties.getMessageId() : null;
+        if (id == null ? messageId != null : !id.equals(messageId)) {
+            properties().messageId(id);
+        }
         return this;
     }
 
+    /**
+     * Gets the properties of the message. Changes made by the fluent methods
+     * are materialized once on the first call after the change, so repeated
+     * calls return the same instance.
+     *
+     * @return The properties
+     */
     public BasicProperties getBasicProperties() {
+        if (this.basicProperties == null && this.propertiesBuilder != null) {
+            this.basicProperties = this.propertiesBuilder.build();
+        }
         return this.basicProperties;
     }
 
+    /**
+     * Gets the builder accumulating the properties for changing them. The
+     * materialized properties are discarded, as they become stale.
+     *
+     * @return The properties builder of this message
+     */
+    MessagePropertiesBuilder properties() {
+        if (this.propertiesBuilder == null) {
+            this.propertiesBuilder = this.basicProperties != null ? new MessagePropertiesBuilder(this.basicProperties)
+                    : new MessagePropertiesBuilder();
+        }
+        // Content type and encoding determine how the body is decoded
+        this.decodedBodies = null;
+        this.basicProperties = null;
+        return this.propertiesBuilder;
+    }
+
     public byte[] getBodyContent() {
         return this.bodyContent;
     }
 
+    /**
+     * Gets the body decoded to the given type. The decoded body is cached per
+     * type until the body or the properties change, so repeated calls return
+     * the same object. Callers must thus not modify mutable decoded bodies.
+     *
+     * @param type
+     *            The requested type
+     * @return The decoded body
+     */
+    @SuppressWarnings("unchecked")
     public <T> T getBodyAs(final Class<T> type) {
-        return this.messageReader.readBodyAs(type);
+        Map<Class<?>, Object> decoded = this.decodedBodies;
+        if (decoded != null && decoded.containsKey(type)) {
+            Object body = decoded.get(type);
+            if (body instanceof PendingDecoding) {
+                return (T) ((PendingDecoding) body).await();
+            }
+            return (T) body;
+        }
+        T body = this.messageReader.readBodyAs(type);
+        cacheDecodedBody(type, body);
+        return body;
+    }
+
+    /**
+     * Starts decoding the body to the given type with the given executor, so
+     * decoding overlaps with the work done before {@link #getBodyAs(Class)} is
+     * called. If the executor has not started decoding by then, the caller of
+     * {@link #getBodyAs(Class)} decodes the body itself. The body must not be
+     * changed while decoding.
+     *
+     * @param type
+     *            The type to decode to
+     * @param executor
+     *            The executor to decode with
+     * @return This message
+     */
+    public Message decodeBodyAsync(final Class<?> type, final Executor executor) {
+        Map<Class<?>, Object> decoded = this.decodedBodies;
+        if (decoded != null && decoded.containsKey(type)) {
+            return this;
+        }
+        PendingDecoding decoding = new PendingDecoding(new Callable<Object>() {
+            public Object call() {
+                return Message.this.messageReader.readBodyAs(type);
+            }
+        });
+        cacheDecodedBody(type, decoding);
+        try {
+            executor.execute(decoding);
+        }
+        catch (RejectedExecutionException e) {
+            LOGGER.debug("Decoding body of message {} on demand as the executor rejected it", this.id);
+        }
+        return this;
+    }
+
+    private void cacheDecodedBody(final Class<?> type, final Object body) {
+        Map<Class<?>, Object> decoded = this.decodedBodies;
+        Map<Class<?>, Object> updated = decoded == null ? new HashMap<Class<?>, Object>(4)
+                : new HashMap<Class<?>, Object>(decoded);
+        updated.put(type, body);
+        this.decodedBodies = updated;
+    }
+
+    /**
+     * Gets the body as long, parsed without boxing or intermediate strings.
+     *
+     * @return The body as long
+     * @throws NumberFormatException
+     *             if the body is not a long
+     */
+    public long getBodyAsLong() {
+        return this.messageReader.readBodyAsLong();
+    }
+
+    /**
+     * Gets the body as int, parsed without boxing or intermediate strings.
+     *
+     * @return The body as int
+     * @throws NumberFormatException
+     *             if the body is not an int
+     */
+    public int getBodyAsInt() {
+        return this.messageReader.readBodyAsInt();
+    }
+
+    /**
+     * Gets the body as double, parsed without boxing or intermediate strings.
+     *
+     * @return The body as double
+     * @throws NumberFormatException
+     *             if the body is not a double
+     */
+    public double getBodyAsDouble() {
+        return this.messageReader.readBodyAsDouble();
+    }
+
+    /**
+     * Gets the body as boolean, true if the body is "true" ignoring case.
+     *
+     * @return The body as boolean
+     */
+    public boolean getBodyAsBoolean() {
+        return this.messageReader.readBodyAsBoolean();
     }
 
     public String getExchange() {
@@ -103,6 +261,7 @@ public class Message {
 
     public Message body(final byte[] bodyContent) {
         this.bodyContent = bodyContent;
+        this.decodedBodies = null;
         return this;
     }
 
@@ -116,8 +275,25 @@ public class Message {
         return this;
     }
 
+    public Message compress(final CompressionCodec codec, final int thresholdInBytes) {
+        this.messageWriter.compress(codec, thresholdInBytes);
+        return this;
+    }
+
+    public Message header(final String name, final Object value) {
+        MessagePropertiesBuilder properties = properties();
+        // Copies the headers as they may be shared with materialized properties
+        Map<String, Object> headers = new HashMap<String, Object>();
+        if (properties.getHeaders() != null) {
+            headers.putAll(properties.getHeaders());
+        }
+        headers.put(name, value);
+        properties.headers(headers);
+        return this;
+    }
+
     public Message persistent() {
-        this.basicProperties = this.basicProperties.builder().deliveryMode(DELIVERY_MODE_PERSISTENT).build();
+        properties().deliveryMode(DELIVERY_MODE_PERSISTENT);
         return this;
     }
 
@@ -127,12 +303,12 @@ public class Message {
     }
 
     public Message contentEncoding(final String charset) {
-        this.basicProperties = this.basicProperties.builder().contentEncoding(charset).build();
+        properties().contentEncoding(charset);
         return this;
     }
 
     public Message contentType(final String contentType) {
-        this.basicProperties = this.basicProperties.builder().contentType(contentType).build();
+        properties().contentType(contentType);
         return this;
     }
 
@@ -141,22 +317,40 @@ public class Message {
     }
 
     public void publish(final Channel channel, final DeliveryOptions deliveryOptions) throws IOException {
-        // Assure to have a timestamp
-        if (this.basicProperties.getTimestamp() == null) {
-            this.basicProperties = this.basicProperties.builder().timestamp(new Date()).build();
+        // Assure to have an id and a timestamp
+        if (this.id == null) {
+            id(MessageIdGenerator.DEFAULT.nextId());
+        }
+        Date timestamp = this.propertiesBuilder != null ? this.propertiesBuilder.getTimestamp()
+                : this.basicProperties != null ? this.basicProperties.getTimestamp() : null;
+        if (timestamp == null) {
+            properties().timestamp(new Date());
         }
+        BasicProperties properties = getBasicProperties();
 
         boolean mandatory = deliveryOptions == DeliveryOptions.MANDATORY;
         boolean immediate = deliveryOptions == DeliveryOptions.IMMEDIATE;
 
-        LOGGER.info("Publishing message {} to exchange '{}' with routing key '{}' (deliveryOptions: {}, persistent: {})",
-                new Object[] {
-                        this.id, this.exchange, this.routingKey, deliveryOptions, this.basicProperties.getDeliveryMode() == 2
-        });
+        boolean sampled = MessageTracer.PUBLISH.sample();
+        if (sampled) {
+            LOGGER.info("Publishing message {} to exchange '{}' with routing key '{}' (deliveryOptions: {}, persistent: {})",
+                    new Object[] {
+                            this.id, this.exchange, this.routingKey, deliveryOptions, properties.getDeliveryMode() == 2
+            });
+        }
 
-        channel.basicPublish(this.exchange, this.routingKey, mandatory, immediate, this.basicProperties, this.bodyContent);
-        LOGGER.info("Successfully published message {} to exchange '{}' with routing key '{}'", this.id, this.exchange,
-                this.routingKey);
+        try {
+            channel.basicPublish(this.exchange, this.routingKey, mandatory, immediate, properties, this.bodyContent);
+        }
+        catch (IOException e) {
+            MessageTracer.PUBLISH.recordError();
+            throw e;
+        }
+        MessageTracer.PUBLISH.recordSuccess();
+        if (sampled) {
+            LOGGER.info("Successfully published message {} to exchange '{}' with routing key '{}'", this.id, this.exchange,
+                    this.routingKey);
+        }
     }
 
     public void publishAndWaitForConfirm(final Channel channel) throws IOException {
@@ -168,7 +362,7 @@ public class Message {
 
         publish(channel, deliveryOptions);
 
-        LOGGER.info("Waiting for publisher ack");
+        LOGGER.debug("Waiting for publisher ack");
 
         try {
             channel.waitForConfirmsOrDie();
@@ -178,8 +372,38 @@ public class Message {
             return;
         }
 
-        LOGGER.info("Received publisher ack");
+        LOGGER.debug("Received publisher ack");
         return;
     }
 
+    /**
+     * A decoding started by {@link Message#decodeBodyAsync(Class, Executor)}.
+     */
+    private static class PendingDecoding extends FutureTask<Object> {
+
+        PendingDecoding(final Callable<Object> decoding) {
+            super(decoding);
+        }
+
+        Object await() {
+            // Decodes in the calling thread unless the executor started already
+            run();
+            try {
+                return get();
+            }
+            catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException("Interrupted while waiting for the decoded message body", e);
+            }
+            catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                if (e.getCause() instanceof Error) {
+                    throw (Error) e.getCause();
+                }
+                throw new RuntimeException("Failed to decode message body", e.getCause());
+            }
+        }
+    }
 }
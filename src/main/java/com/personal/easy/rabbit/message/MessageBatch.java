@@ -0,0 +1,114 @@
+package com.personal.easy.rabbit.message;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.rabbitmq.client.AMQP.BasicProperties;
+
+/**
+ * <p>
+ * A message batch coalesces several small messages sent to the same exchange
+ * with the same routing key into one envelope message, saving the per-message
+ * AMQP frame overhead.
+ * </p>
+ *
+ * <p>
+ * The envelope body holds the number of inner messages followed by the inner
+ * messages in the form written by {@link MessageSerializer}. Envelopes are
+ * recognized by their content type {@link #CONTENT_TYPE}.
+ * </p>
+ *
+ */
+public final class MessageBatch {
+
+    public static final String CONTENT_TYPE = "application/x-easyrabbit-batch";
+
+    private static final int FORMAT_VERSION = 1;
+
+    private MessageBatch() {
+    }
+
+    /**
+     * Checks whether a message with the given properties is a batch envelope.
+     *
+     * @param properties
+     *            The message properties
+     * @return true if the message is a batch envelope
+     */
+    public static boolean isBatch(final BasicProperties properties) {
+        return properties != null && CONTENT_TYPE.equals(properties.getContentType());
+    }
+
+    /**
+     * Creates an envelope message holding the given messages. Exchange and
+     * routing key are taken from the first message. The envelope is persistent
+     * if any of the inner messages is persistent.
+     *
+     * @param messages
+     *            The messages to put into the envelope
+     * @return The envelope message
+     * @throws IOException
+     *             if a message cannot be serialized
+     */
+    public static Message wrap(final List<Message> messages) throws IOException {
+        if (messages.isEmpty()) {
+            throw new IllegalArgumentException("Cannot create an empty message batch");
+        }
+        int estimatedSize = 8;
+        boolean persistent = false;
+        for (Message message : messages) {
+            estimatedSize += message.getBodyContent().length + 32;
+            Integer deliveryMode = message.getBasicProperties().getDeliveryMode();
+            persistent |= deliveryMode != null && deliveryMode == Message.DELIVERY_MODE_PERSISTENT;
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(estimatedSize);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(FORMAT_VERSION);
+        out.writeInt(messages.size());
+        for (Message message : messages) {
+            MessageSerializer.write(out, message);
+        }
+        out.flush();
+
+        Message first = messages.get(0);
+        BasicProperties.Builder properties = new BasicProperties.Builder().contentType(CONTENT_TYPE);
+        if (persistent) {
+            properties.deliveryMode(Message.DELIVERY_MODE_PERSISTENT);
+        }
+        return new Message(properties.build()).exchange(first.getExchange()).routingKey(first.getRoutingKey())
+                .body(bytes.toByteArray());
+    }
+
+    /**
+     * Extracts the inner messages of an envelope. Exchange, routing key and
+     * delivery tag of the inner messages are taken from the envelope.
+     *
+     * @param envelope
+     *            The envelope message
+     * @return The inner messages in publish order
+     * @throws IOException
+     *             if the envelope body is malformed or truncated
+     */
+    public static List<Message> unwrap(final Message envelope) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(envelope.getBodyContent()));
+        int version = in.readUnsignedByte();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unsupported message batch format version " + version);
+        }
+        int count = MessageSerializer.readLength(in, 1);
+        List<Message> messages = new ArrayList<Message>(count);
+        for (int i = 0; i < count; i++) {
+            Message message = MessageSerializer.read(in);
+            message.exchange(envelope.getExchange()).routingKey(envelope.getRoutingKey())
+                    .deliveryTag(envelope.getDeliveryTag());
+            messages.add(message);
+        }
+        return messages;
+    }
+}
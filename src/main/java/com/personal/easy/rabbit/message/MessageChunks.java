@@ -0,0 +1,178 @@
+package com.personal.easy.rabbit.message;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.rabbitmq.client.AMQP.BasicProperties;
+
+/**
+ * <p>
+ * Message chunks carry a large payload split into several messages, so the
+ * payload never needs to be held in a single message body.
+ * </p>
+ *
+ * <p>
+ * All chunks of a payload share a transfer id and record their index and
+ * their byte offset in the payload, so they can be reassembled in any order.
+ * The last chunk additionally records the amount of chunks and the payload
+ * size. The content type and content encoding of the payload are kept in
+ * headers, while the chunks are recognized by their content type
+ * {@link #CONTENT_TYPE}. Header values
+ * are read through their string form, so chunks survive being serialized by
+ * {@link MessageSerializer}.
+ * </p>
+ *
+ */
+public final class MessageChunks {
+
+    public static final String CONTENT_TYPE = "application/x-easyrabbit-chunk";
+
+    public static final String TRANSFER_ID_HEADER = "x-easyrabbit-transfer-id";
+
+    public static final String CHUNK_INDEX_HEADER = "x-easyrabbit-chunk-index";
+
+    public static final String CHUNK_OFFSET_HEADER = "x-easyrabbit-chunk-offset";
+
+    public static final String CHUNK_COUNT_HEADER = "x-easyrabbit-chunk-count";
+
+    public static final String TRANSFER_SIZE_HEADER = "x-easyrabbit-transfer-size";
+
+    public static final String CONTENT_TYPE_HEADER = "x-easyrabbit-content-type";
+
+    public static final String CONTENT_ENCODING_HEADER = "x-easyrabbit-content-encoding";
+
+    private MessageChunks() {
+    }
+
+    /**
+     * Checks whether a message with the given properties is a chunk.
+     *
+     * @param properties
+     *            The message properties
+     * @return true if the message is a chunk
+     */
+    public static boolean isChunk(final BasicProperties properties) {
+        return properties != null && CONTENT_TYPE.equals(properties.getContentType());
+    }
+
+    /**
+     * Creates a chunk message. Exchange, routing key, delivery mode and
+     * headers are taken from the template message.
+     *
+     * @param template
+     *            The message describing the payload
+     * @param transferId
+     *            The id shared by all chunks of the payload
+     * @param index
+     *            The index of the chunk
+     * @param offset
+     *            The offset of the chunk content in the payload
+     * @param content
+     *            The chunk content
+     * @param last
+     *            Whether this is the last chunk
+     * @return The chunk message
+     */
+    public static Message chunk(final Message template, final String transferId, final int index, final long offset,
+            final byte[] content, final boolean last) {
+        BasicProperties properties = template.getBasicProperties();
+        Map<String, Object> headers = new HashMap<String, Object>();
+        if (properties.getHeaders() != null) {
+            headers.putAll(properties.getHeaders());
+        }
+        headers.put(TRANSFER_ID_HEADER, transferId);
+        headers.put(CHUNK_INDEX_HEADER, index);
+        headers.put(CHUNK_OFFSET_HEADER, offset);
+        if (properties.getContentType() != null) {
+            headers.put(CONTENT_TYPE_HEADER, properties.getContentType());
+        }
+        if (properties.getContentEncoding() != null) {
+            headers.put(CONTENT_ENCODING_HEADER, properties.getContentEncoding());
+        }
+        if (last) {
+            headers.put(CHUNK_COUNT_HEADER, index + 1);
+            headers.put(TRANSFER_SIZE_HEADER, offset + content.length);
+        }
+        BasicProperties chunkProperties = new MessagePropertiesBuilder(properties).contentType(CONTENT_TYPE)
+                .contentEncoding(null).headers(headers).messageId(null).timestamp(null).build();
+        return new Message(chunkProperties).exchange(template.getExchange()).routingKey(template.getRoutingKey())
+                .body(content).id(transferId + "-" + index);
+    }
+
+    public static String getTransferId(final Message chunk) {
+        Object transferId = header(chunk, TRANSFER_ID_HEADER);
+        return transferId == null ? null : transferId.toString();
+    }
+
+    public static int getChunkIndex(final Message chunk) {
+        return (int) longHeader(chunk, CHUNK_INDEX_HEADER);
+    }
+
+    public static long getChunkOffset(final Message chunk) {
+        return longHeader(chunk, CHUNK_OFFSET_HEADER);
+    }
+
+    /**
+     * Gets the amount of chunks of the payload.
+     *
+     * @param chunk
+     *            A chunk
+     * @return The amount of chunks or -1 if the chunk is not the last one
+     */
+    public static int getChunkCount(final Message chunk) {
+        return (int) longHeader(chunk, CHUNK_COUNT_HEADER);
+    }
+
+    /**
+     * Gets the size of the payload.
+     *
+     * @param chunk
+     *            A chunk
+     * @return The payload size or -1 if the chunk is not the last one
+     */
+    public static long getTransferSize(final Message chunk) {
+        return longHeader(chunk, TRANSFER_SIZE_HEADER);
+    }
+
+    /**
+     * Gets the content type of the payload.
+     *
+     * @param chunk
+     *            A chunk
+     * @return The content type or null if the payload has none
+     */
+    public static String getContentType(final Message chunk) {
+        Object contentType = header(chunk, CONTENT_TYPE_HEADER);
+        return contentType == null ? null : contentType.toString();
+    }
+
+    /**
+     * Gets the content encoding of the payload, i.e. its charset or the name
+     * of the compression codec it was compressed with.
+     *
+     * @param chunk
+     *            A chunk
+     * @return The content encoding or null if the payload has none
+     */
+    public static String getContentEncoding(final Message chunk) {
+        Object contentEncoding = header(chunk, CONTENT_ENCODING_HEADER);
+        return contentEncoding == null ? null : contentEncoding.toString();
+    }
+
+    private static Object header(final Message chunk, final String name) {
+        Map<String, Object> headers = chunk.getBasicProperties().getHeaders();
+        return headers == null ? null : headers.get(name);
+    }
+
+    private static long longHeader(final Message chunk, final String name) {
+        Object value = header(chunk, name);
+        if (value == null) {
+            return -1;
+        }
+        if (value instanceof Number) {
+            return ((Number) value).longValue();
+        }
+        // Received string headers are LongStrings
+        return Long.parseLong(value.toString());
+    }
+}
@@ -0,0 +1,198 @@
+package com.personal.easy.rabbit.message;
+
+import java.security.SecureRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * <p>
+ * A message id generator creates unique, time-ordered message ids without
+ * locking.
+ * </p>
+ *
+ * <p>
+ * An id consists of 128 bits. The upper 64 bits hold the milliseconds since
+ * {@link #EPOCH} shifted by {@link #SEQUENCE_BITS} bits and a sequence number,
+ * the lower 64 bits hold the node id of the generator and the stripe the id was
+ * taken from. Each thread takes its ids from one of several counter stripes, so
+ * threads rarely contend. A stripe counter is advanced by compare-and-set to
+ * the current time or, if ids are requested faster than the clock ticks, by
+ * one, so ids of a thread are strictly increasing even if the clock goes back.
+ * </p>
+ *
+ * <p>
+ * The binary form is the 16 bytes of the id in big-endian order. The string
+ * form is the base-62 encoding of the id using the digits 0-9, A-Z and a-z,
+ * always {@link #BASE62_LENGTH} characters long, so string ids sort in the
+ * same order as their binary forms.
+ * </p>
+ *
+ */
+public final class MessageIdGenerator {
+
+    /**
+     * The start of the timestamps, 2015-01-01T00:00:00Z.
+     */
+    public static final long EPOCH = 1420070400000L;
+
+    public static final int SEQUENCE_BITS = 20;
+
+    public static final int BASE62_LENGTH = 22;
+
+    public static final MessageIdGenerator DEFAULT = new MessageIdGenerator(new SecureRandom().nextLong());
+
+    private static final char[] BASE62_DIGITS = "0123456789ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz"
+            .toCharArray();
+
+    private static final int STRIPE_BITS = 16;
+
+    // Counters of adjacent stripes are kept one cache line apart
+    private static final int PADDING = 8;
+
+    private final long node;
+
+    private final int stripeMask;
+
+    private final AtomicLongArray counters;
+
+    /**
+     * Creates a generator for the given node. Generators with distinct node
+     * ids never create the same id.
+     *
+     * @param nodeId
+     *            The node id, only the lower 48 bits are used
+     */
+    public MessageIdGenerator(final long nodeId) {
+        this.node = nodeId << STRIPE_BITS;
+        int stripes = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors()) * 2 - 1) << 1;
+        this.stripeMask = stripes - 1;
+        this.counters = new AtomicLongArray(stripes * PADDING);
+    }
+
+    /**
+     * Creates the next id in its string form.
+     *
+     * @return The base-62 encoded id
+     */
+    public String nextId() {
+        int stripe = stripe();
+        return encodeBase62(nextHigh(stripe), this.node | stripe);
+    }
+
+    /**
+     * Creates the next id in its binary form.
+     *
+     * @return The 16 bytes of the id
+     */
+    public byte[] nextBinaryId() {
+        int stripe = stripe();
+        byte[] id = new byte[16];
+        writeLong(id, 0, nextHigh(stripe));
+        writeLong(id, 8, this.node | stripe);
+        return id;
+    }
+
+    /**
+     * Gets the creation time of an id in its string form.
+     *
+     * @param id
+     *            The base-62 encoded id
+     * @return The milliseconds since 1970-01-01T00:00:00Z
+     */
+    public static long getTimestamp(final String id) {
+        byte[] binary = decodeBase62(id);
+        long high = 0;
+        for (int i = 0; i < 8; i++) {
+            high = high << 8 | binary[i] & 0xFF;
+        }
+        return (high >>> SEQUENCE_BITS) + EPOCH;
+    }
+
+    /**
+     * Encodes a 128 bit id given by its upper and lower 64 bits.
+     *
+     * @param high
+     *            The upper 64 bits
+     * @param low
+     *            The lower 64 bits
+     * @return The base-62 encoded id
+     */
+    public static String encodeBase62(final long high, final long low) {
+        // Unsigned 128 bit number as four 32 bit limbs, most significant first
+        long[] limbs = { high >>> 32, high & 0xFFFFFFFFL, low >>> 32, low & 0xFFFFFFFFL };
+        char[] digits = new char[BASE62_LENGTH];
+        for (int position = BASE62_LENGTH - 1; position >= 0; position--) {
+            long remainder = 0;
+            for (int i = 0; i < limbs.length; i++) {
+                long value = remainder << 32 | limbs[i];
+                limbs[i] = value / 62;
+                remainder = value % 62;
+            }
+            digits[position] = BASE62_DIGITS[(int) remainder];
+        }
+        return new String(digits);
+    }
+
+    /**
+     * Decodes the string form of an id into its binary form.
+     *
+     * @param id
+     *            The base-62 encoded id
+     * @return The 16 bytes of the id
+     */
+    public static byte[] decodeBase62(final String id) {
+        if (id.length() != BASE62_LENGTH) {
+            throw new IllegalArgumentException("Not a message id: " + id);
+        }
+        long[] limbs = new long[4];
+        for (int position = 0; position < BASE62_LENGTH; position++) {
+            long carry = digit(id.charAt(position));
+            for (int i = limbs.length - 1; i >= 0; i--) {
+                long value = limbs[i] * 62 + carry;
+                limbs[i] = value & 0xFFFFFFFFL;
+                carry = value >>> 32;
+            }
+            if (carry != 0) {
+                throw new IllegalArgumentException("Not a message id: " + id);
+            }
+        }
+        byte[] binary = new byte[16];
+        writeLong(binary, 0, limbs[0] << 32 | limbs[1]);
+        writeLong(binary, 8, limbs[2] << 32 | limbs[3]);
+        return binary;
+    }
+
+    private int stripe() {
+        return (int) Thread.currentThread().getId() & this.stripeMask;
+    }
+
+    private long nextHigh(final int stripe) {
+        int index = stripe * PADDING;
+        long now = System.currentTimeMillis() - EPOCH << SEQUENCE_BITS;
+        while (true) {
+            long current = this.counters.get(index);
+            long next = current < now ? now : current + 1;
+            if (this.counters.compareAndSet(index, current, next)) {
+                return next;
+            }
+        }
+    }
+
+    private static int digit(final char c) {
+        if (c >= '0' && c <= '9') {
+            return c - '0';
+        }
+        if (c >= 'A' && c <= 'Z') {
+            return c - 'A' + 10;
+        }
+        if (c >= 'a' && c <= 'z') {
+            return c - 'a' + 36;
+        }
+        throw new IllegalArgumentException("Invalid base-62 digit: " + c);
+    }
+
+    private static void writeLong(final byte[] target, final int offset, final long value) {
+        for (int i = 0; i < 8; i++) {
+            target[offset + i] = (byte) (value >>> 56 - 8 * i);
+        }
+    }
+}
@@ -0,0 +1,226 @@
+package com.personal.easy.rabbit.message;
+
+import java.util.Date;
+import java.util.Map;
+
+import com.rabbitmq.client.AMQP.BasicProperties;
+
+/**
+ * <p>
+ * A mutable and reusable builder of {@link BasicProperties}. Unlike
+ * {@link BasicProperties.Builder}, the accumulated values can be read, so a
+ * {@link Message} keeps changing its properties in place and materializes
+ * them only once when they are needed, usually at publish.
+ * </p>
+ *
+ * <p>
+ * A builder is not thread-safe. It can be reused for further messages by
+ * {@link #reset()}.
+ * </p>
+ *
+ */
+public class MessagePropertiesBuilder {
+
+    private String contentType;
+
+    private String contentEncoding;
+
+    private Map<String, Object> headers;
+
+    private Integer deliveryMode;
+
+    private Integer priority;
+
+    private String correlationId;
+
+    private String replyTo;
+
+    private String expiration;
+
+    private String messageId;
+
+    private Date timestamp;
+
+    private String type;
+
+    private String userId;
+
+    private String appId;
+
+    private String clusterId;
+
+    public MessagePropertiesBuilder() {
+    }
+
+    /**
+     * Creates a builder holding the values of the given properties.
+     *
+     * @param properties
+     *            The properties to start with
+     */
+    public MessagePropertiesBuilder(final BasicProperties properties) {
+        from(properties);
+    }
+
+    /**
+     * Replaces all values by the values of the given properties.
+     *
+     * @param properties
+     *            The properties to take the values from
+     * @return This builder
+     */
+    public MessagePropertiesBuilder from(final BasicProperties properties) {
+        this.contentType = properties.getContentType();
+        this.contentEncoding = properties.getContentEncoding();
+        this.headers = properties.getHeaders();
+        this.deliveryMode = properties.getDeliveryMode();
+        this.priority = properties.getPriority();
+        this.correlationId = properties.getCorrelationId();
+        this.replyTo = properties.getReplyTo();
+        this.expiration = properties.getExpiration();
+        this.messageId = properties.getMessageId();
+        this.timestamp = properties.getTimestamp();
+        this.type = properties.getType();
+        this.userId = properties.getUserId();
+        this.appId = properties.getAppId();
+        this.clusterId = properties.getClusterId();
+        return this;
+    }
+
+    /**
+     * Clears all values so the builder can be used for another message.
+     *
+     * @return This builder
+     */
+    public MessagePropertiesBuilder reset() {
+        this.contentType = null;
+        this.contentEncoding = null;
+        this.headers = null;
+        this.deliveryMode = null;
+        this.priority = null;
+        this.correlationId = null;
+        this.replyTo = null;
+        this.expiration = null;
+        this.messageId = null;
+        this.timestamp = null;
+        this.type = null;
+        this.userId = null;
+        this.appId = null;
+        this.clusterId = null;
+        return this;
+    }
+
+    /**
+     * Creates the properties holding the current values. Later changes of the
+     * builder do not affect the created properties.
+     *
+     * @return The properties
+     */
+    public BasicProperties build() {
+        return new BasicProperties(this.contentType, this.contentEncoding, this.headers, this.deliveryMode,
+                this.priority, this.correlationId, this.replyTo, this.expiration, this.messageId, this.timestamp,
+                this.type, this.userId, this.appId, this.clusterId);
+    }
+
+    public MessagePropertiesBuilder contentType(final String contentType) {
+        this.contentType = contentType;
+        return this;
+    }
+
+    public MessagePropertiesBuilder contentEncoding(final String contentEncoding) {
+        this.contentEncoding = contentEncoding;
+        return this;
+    }
+
+    /**
+     * Sets the headers. The map is taken as is and must not be changed
+     * afterwards, as it is shared with the created properties.
+     *
+     * @param headers
+     *            The headers
+     * @return This builder
+     */
+    public MessagePropertiesBuilder headers(final Map<String, Object> headers) {
+        this.headers = headers;
+        return this;
+    }
+
+    public MessagePropertiesBuilder deliveryMode(final Integer deliveryMode) {
+        this.deliveryMode = deliveryMode;
+        return this;
+    }
+
+    public MessagePropertiesBuilder priority(final Integer priority) {
+        this.priority = priority;
+        return this;
+    }
+
+    public MessagePropertiesBuilder correlationId(final String correlationId) {
+        this.correlationId = correlationId;
+        return this;
+    }
+
+    public MessagePropertiesBuilder replyTo(final String replyTo) {
+        this.replyTo = replyTo;
+        return this;
+    }
+
+    public MessagePropertiesBuilder expiration(final String expiration) {
+        this.expiration = expiration;
+        return this;
+    }
+
+    public MessagePropertiesBuilder messageId(final String messageId) {
+        this.messageId = messageId;
+        return this;
+    }
+
+    public MessagePropertiesBuilder timestamp(final Date timestamp) {
+        this.timestamp = timestamp;
+        return this;
+    }
+
+    public MessagePropertiesBuilder type(final String type) {
+        this.type = type;
+        return this;
+    }
+
+    public MessagePropertiesBuilder userId(final String userId) {
+        this.userId = userId;
+        return this;
+    }
+
+    public MessagePropertiesBuilder appId(final String appId) {
+        this.appId = appId;
+        return this;
+    }
+
+    public MessagePropertiesBuilder clusterId(final String clusterId) {
+        this.clusterId = clusterId;
+        return this;
+    }
+
+    public String getContentType() {
+        return this.contentType;
+    }
+
+    public String getContentEncoding() {
+        return this.contentEncoding;
+    }
+
+    public Map<String, Object> getHeaders() {
+        return this.headers;
+    }
+
+    public Integer getDeliveryMode() {
+        return this.deliveryMode;
+    }
+
+    public String getMessageId() {
+        return this.messageId;
+    }
+
+    public Date getTimestamp() {
+        return this.timestamp;
+    }
+}
@@ -1,14 +1,25 @@
 package com.personal.easy.rabbit.message;
 
-import java.math.BigDecimal;
-import java.math.BigInteger;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
 import java.nio.charset.Charset;
+import java.util.Arrays;
 
 import com.alibaba.fastjson.JSON;
 import com.rabbitmq.client.AMQP.BasicProperties;
 
 public class MessageReader {
 
+    /**
+     * The maximum size of JSON decoded into the char buffer cached by fastjson
+     * per thread
+     */
+    public static final int CACHED_DECODING_LIMIT_IN_BYTES = 128 * 1024;
+
+    private static final int STREAM_BUFFER_SIZE = 8 * 1024;
+
     private Message message;
 
     public MessageReader(final Message message) {
@@ -24,35 +35,73 @@ public class MessageReader {
         if (contentCharset == null) {
             return Message.DEFAULT_MESSAGE_CHARSET;
         }
+        if (CompressionCodecs.forName(contentCharset) != null) {
+            return readContentTypeCharset(basicProperties.getContentType());
+        }
         return Charset.forName(contentCharset);
     }
 
+    /**
+     * Reads the body content, decompressing it if the content encoding
+     * denotes a codec registered in {@link CompressionCodecs}.
+     *
+     * @return The uncompressed body content
+     */
+    public byte[] readBodyContent() {
+        byte[] bodyContent = this.message.getBodyContent();
+        BasicProperties basicProperties = this.message.getBasicProperties();
+        CompressionCodec codec = basicProperties == null ? null
+                : CompressionCodecs.forName(basicProperties.getContentEncoding());
+        if (codec == null) {
+            return bodyContent;
+        }
+        try {
+            return codec.decompress(bodyContent);
+        }
+        catch (IOException e) {
+            throw new RuntimeException("Failed to decompress message body with " + codec.getName(), e);
+        }
+    }
+
+    /**
+     * Reads the body with the codec registered for the content type of the
+     * message. If there is none or it cannot decode to the given type, the
+     * codec resolved for the type by {@link BodyCodecs#forType(Class)} is
+     * used. Primitive types are decoded as their wrapper types.
+     *
+     * @param type
+     *            The requested type
+     * @return The decoded body
+     */
     @SuppressWarnings("unchecked")
     public <T> T readBodyAs(final Class<T> type) {
-        if (String.class.isAssignableFrom(type)) {
-            return (T) readBodyAsString();
-        }
-        else if (Number.class.isAssignableFrom(type)) {
-            return (T) readBodyAsNumber((Class<Number>) type);
+        Class<?> decodedType = BodyCodecs.wrapperType(type);
+        BodyCodec codec = readCodec(decodedType);
+        try {
+            return (T) codec.decode(readBodyContent(), readCharset(), decodedType);
         }
-        else if (Boolean.class.isAssignableFrom(type)) {
-            return (T) readBodyAsBoolean();
+        catch (IOException e) {
+            throw new RuntimeException("Failed to decode message body as " + codec.getContentType(), e);
         }
-        else if (Character.class.isAssignableFrom(type)) {
-            return (T) readBodyAsChar();
+    }
+
+    BodyCodec readCodec(final Class<?> type) {
+        BasicProperties basicProperties = this.message.getBasicProperties();
+        BodyCodec codec = basicProperties == null ? null : BodyCodecs.forContentType(basicProperties.getContentType());
+        if (codec != null && codec.canDecode(type)) {
+            return codec;
         }
-        return readBodyAsObject(type);
+        return BodyCodecs.forType(type);
     }
 
     public String readBodyAsString() {
         Charset charset = readCharset();
-        byte[] bodyContent = this.message.getBodyContent();
+        byte[] bodyContent = readBodyContent();
         return new String(bodyContent, charset);
     }
 
     public Boolean readBodyAsBoolean() {
-        String messageContent = readBodyAsString();
-        return Boolean.valueOf(messageContent);
+        return Boolean.valueOf(PrimitiveCodec.parseBoolean(readBodyContent(), readCharset()));
     }
 
     public Character readBodyAsChar() {
@@ -60,51 +109,138 @@ public class MessageReader {
         return messageContent.charAt(0);
     }
 
-    @SuppressWarnings("unchecked")
     public <T extends Number> T readBodyAsNumber(final Class<T> type) {
-        String messageContent = readBodyAndValidateForNumber();
-        if (type.equals(BigDecimal.class)) {
-            return (T) new BigDecimal(messageContent);
-        }
-        else if (type.equals(BigInteger.class)) {
-            return (T) new BigInteger(messageContent);
-        }
-        else if (type.equals(Byte.class)) {
-            return (T) Byte.valueOf(messageContent);
-        }
-        else if (type.equals(Short.class)) {
-            return (T) Short.valueOf(messageContent);
-        }
-        else if (type.equals(Integer.class)) {
-            return (T) Integer.valueOf(messageContent);
-        }
-        else if (type.equals(Long.class)) {
-            return (T) Long.valueOf(messageContent);
-        }
-        else {
-            throw new RuntimeException("Unsupported number format: " + type);
-        }
+        return TextCodec.decodeNumber(readBodyContent(), readCharset(), type);
     }
 
-    public <T> T readBodyAsObject(final Class<T> type) {
+    public long readBodyAsLong() {
+        return PrimitiveCodec.parseLong(readBodyContent(), readCharset());
+    }
 
-        String ret = new String(this.message.getBodyContent());
-        return JSON.parseObject(ret, type);
+    public int readBodyAsInt() {
+        return PrimitiveCodec.parseInt(readBodyContent(), readCharset());
+    }
 
+    public double readBodyAsDouble() {
+        return PrimitiveCodec.parseDouble(readBodyContent(), readCharset());
     }
 
-    String readBodyAndValidateForNumber() {
-        String messageContent = readBodyAsString();
-        if (messageContent == null || messageContent.isEmpty()) {
-            throw new RuntimeException("Message is empty");
+    public <T> T readBodyAsObject(final Class<T> type) {
+        byte[] bodyContent = readBodyContent();
+        return readJson(bodyContent, 0, bodyContent.length, readCharset(), type);
+    }
+
+    /**
+     * <p>
+     * Parses JSON directly from a slice of a byte array in the given charset,
+     * without decoding it into an intermediate string first.
+     * </p>
+     *
+     * <p>
+     * Content up to {@link #CACHED_DECODING_LIMIT_IN_BYTES} is decoded into the
+     * char buffer cached per thread by fastjson. Larger content is decoded
+     * right into the string scanned by fastjson, saving the oversized char
+     * buffer fastjson would allocate for it.
+     * </p>
+     *
+     * @param content
+     *            The content holding the JSON
+     * @param offset
+     *            The offset of the JSON in the content
+     * @param length
+     *            The length of the JSON in bytes
+     * @param charset
+     *            The charset of the JSON
+     * @param type
+     *            The type to parse
+     * @return The parsed object
+     */
+    public static <T> T readJson(final byte[] content, final int offset, final int length, final Charset charset,
+            final Class<T> type) {
+        if (length > CACHED_DECODING_LIMIT_IN_BYTES) {
+            return JSON.parseObject(new String(content, offset, length, charset), type);
         }
-        // Check if content is a number
-        for (int i = 0; i < messageContent.length(); i++) {
-            if (!Character.isDigit(messageContent.charAt(i))) {
-                throw new RuntimeException("Message is not a number");
+        return JSON.parseObject(content, offset, length, charset.newDecoder(), type);
+    }
+
+    /**
+     * Parses JSON from a stream, sizing the char buffer by the bytes available
+     * without blocking. See {@link #readJson(InputStream, int, Charset, Class)}.
+     *
+     * @param input
+     *            The stream holding the JSON
+     * @param charset
+     *            The charset of the JSON
+     * @param type
+     *            The type to parse
+     * @return The parsed object
+     * @throws IOException
+     *             if reading the stream fails
+     */
+    public static <T> T readJson(final InputStream input, final Charset charset, final Class<T> type)
+            throws IOException {
+        return readJson(input, input.available(), charset, type);
+    }
+
+    /**
+     * <p>
+     * Parses JSON from a stream, decoding it while reading so the content is
+     * never held as a byte array. The stream is not closed.
+     * </p>
+     *
+     * <p>
+     * No charset decodes more chars than bytes, so a length hint of at least
+     * the byte length sizes the char buffer once. Without a hint, the buffer
+     * doubles while reading. As fastjson 1.1.41 copies the chars into a string
+     * before parsing, this is not cheaper than
+     * {@link #readJson(byte[], int, int, Charset, Class)} for content already
+     * held in memory. It only avoids buffering the bytes of content which is
+     * available as a stream.
+     * </p>
+     *
+     * @param input
+     *            The stream holding the JSON
+     * @param lengthHint
+     *            The expected length of the JSON in bytes, 0 if unknown
+     * @param charset
+     *            The charset of the JSON
+     * @param type
+     *            The type to parse
+     * @return The parsed object
+     * @throws IOException
+     *             if reading the stream fails
+     */
+    public static <T> T readJson(final InputStream input, final int lengthHint, final Charset charset,
+            final Class<T> type) throws IOException {
+        Reader reader = new InputStreamReader(input, charset);
+        // One more char than hinted, so reading the end needs no growth
+        char[] chars = new char[lengthHint > 0 && lengthHint < Integer.MAX_VALUE - 8 ? lengthHint + 1
+                : STREAM_BUFFER_SIZE];
+        int length = 0;
+        int read;
+        while ((read = reader.read(chars, length, chars.length - length)) >= 0) {
+            length += read;
+            if (length == chars.length) {
+                chars = Arrays.copyOf(chars, chars.length * 2);
             }
         }
-        return messageContent;
+        return JSON.parseObject(chars, length, type);
+    }
+
+    Charset readContentTypeCharset(final String contentType) {
+        if (contentType == null) {
+            return Message.DEFAULT_MESSAGE_CHARSET;
+        }
+        int index = contentType.toLowerCase().indexOf("charset=");
+        if (index < 0) {
+            return Message.DEFAULT_MESSAGE_CHARSET;
+        }
+        String charset = contentType.substring(index + "charset=".length());
+        int end = charset.indexOf(';');
+        if (end >= 0) {
+            charset = charset.substring(0, end);
+        }
+        return Charset.forName(charset.trim());
     }
 
 }
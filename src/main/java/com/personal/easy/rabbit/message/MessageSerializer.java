@@ -0,0 +1,407 @@
+package com.personal.easy.rabbit.message;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.rabbitmq.client.AMQP.BasicProperties;
+import com.rabbitmq.client.LongString;
+import com.rabbitmq.client.impl.LongStringHelper;
+
+/**
+ * <p>
+ * Writes messages to and reads messages from a compact binary form used
+ * wherever messages are stored or transported outside of a single AMQP frame.
+ * </p>
+ *
+ * <p>
+ * The form consists of a bit mask of the present properties followed by the
+ * properties themselves and the length-prefixed body. All properties of
+ * {@link BasicProperties} are written.
+ * </p>
+ *
+ * <p>
+ * Header values are written with a type tag, as in an AMQP field table, so
+ * numbers, booleans, timestamps, byte arrays, lists and nested tables keep
+ * their types. Strings are read back as {@link LongString}, as they are
+ * delivered by the broker. Forms written before header values were tagged
+ * are still read, with their header values as strings.
+ * </p>
+ *
+ */
+public final class MessageSerializer {
+
+    private static final int CONTENT_TYPE = 1;
+
+    private static final int CONTENT_ENCODING = 1 << 1;
+
+    private static final int MESSAGE_ID = 1 << 2;
+
+    private static final int CORRELATION_ID = 1 << 3;
+
+    private static final int TYPE = 1 << 4;
+
+    private static final int TIMESTAMP = 1 << 5;
+
+    private static final int DELIVERY_MODE = 1 << 6;
+
+    private static final int PRIORITY = 1 << 7;
+
+    private static final int HEADERS = 1 << 8;
+
+    private static final int REPLY_TO = 1 << 9;
+
+    private static final int EXPIRATION = 1 << 10;
+
+    private static final int USER_ID = 1 << 11;
+
+    private static final int APP_ID = 1 << 12;
+
+    private static final int CLUSTER_ID = 1 << 13;
+
+    /**
+     * Set if header values are tagged, unset in the older form holding
+     * header values as strings
+     */
+    private static final int TAGGED_HEADERS = 1 << 14;
+
+    private MessageSerializer() {
+    }
+
+    /**
+     * Writes the properties and the body of a message.
+     *
+     * @param out
+     *            The output to write to
+     * @param message
+     *            The message to write
+     * @throws IOException
+     *             if writing to the output fails
+     */
+    public static void write(final DataOutput out, final Message message) throws IOException {
+        writeProperties(out, message.getBasicProperties());
+        byte[] body = message.getBodyContent();
+        out.writeInt(body.length);
+        out.write(body);
+    }
+
+    /**
+     * Reads a message written by {@link #write(DataOutput, Message)}.
+     * Lengths read from an {@link InputStream} are checked against its
+     * available bytes before anything is allocated, so the stream must hold
+     * the whole message, e.g. a {@link java.io.DataInputStream} over a byte array.
+     *
+     * @param in
+     *            The input to read from
+     * @return The read message without exchange and routing key
+     * @throws IOException
+     *             if reading from the input fails or the input is malformed
+     */
+    public static Message read(final DataInput in) throws IOException {
+        BasicProperties properties = readProperties(in);
+        byte[] body = new byte[readLength(in, 1)];
+        in.readFully(body);
+        return new Message(properties).body(body).id(properties.getMessageId());
+    }
+
+    static void writeProperties(final DataOutput out, final BasicProperties properties) throws IOException {
+        int mask = 0;
+        mask |= properties.getContentType() != null ? CONTENT_TYPE : 0;
+        mask |= properties.getContentEncoding() != null ? CONTENT_ENCODING : 0;
+        mask |= properties.getMessageId() != null ? MESSAGE_ID : 0;
+        mask |= properties.getCorrelationId() != null ? CORRELATION_ID : 0;
+        mask |= properties.getType() != null ? TYPE : 0;
+        mask |= properties.getTimestamp() != null ? TIMESTAMP : 0;
+        mask |= properties.getDeliveryMode() != null ? DELIVERY_MODE : 0;
+        mask |= properties.getPriority() != null ? PRIORITY : 0;
+        mask |= properties.getHeaders() != null && !properties.getHeaders().isEmpty() ? HEADERS | TAGGED_HEADERS : 0;
+        mask |= properties.getReplyTo() != null ? REPLY_TO : 0;
+        mask |= properties.getExpiration() != null ? EXPIRATION : 0;
+        mask |= properties.getUserId() != null ? USER_ID : 0;
+        mask |= properties.getAppId() != null ? APP_ID : 0;
+        mask |= properties.getClusterId() != null ? CLUSTER_ID : 0;
+        out.writeShort(mask);
+
+        if ((mask & CONTENT_TYPE) != 0) {
+            out.writeUTF(properties.getContentType());
+        }
+        if ((mask & CONTENT_ENCODING) != 0) {
+            out.writeUTF(properties.getContentEncoding());
+        }
+        if ((mask & MESSAGE_ID) != 0) {
+            out.writeUTF(properties.getMessageId());
+        }
+        if ((mask & CORRELATION_ID) != 0) {
+            out.writeUTF(properties.getCorrelationId());
+        }
+        if ((mask & TYPE) != 0) {
+            out.writeUTF(properties.getType());
+        }
+        if ((mask & TIMESTAMP) != 0) {
+            out.writeLong(properties.getTimestamp().getTime());
+        }
+        if ((mask & DELIVERY_MODE) != 0) {
+            out.writeByte(properties.getDeliveryMode());
+        }
+        if ((mask & PRIORITY) != 0) {
+            out.writeByte(properties.getPriority());
+        }
+        if ((mask & HEADERS) != 0) {
+            writeTable(out, properties.getHeaders());
+        }
+        if ((mask & REPLY_TO) != 0) {
+            out.writeUTF(properties.getReplyTo());
+        }
+        if ((mask & EXPIRATION) != 0) {
+            out.writeUTF(properties.getExpiration());
+        }
+        if ((mask & USER_ID) != 0) {
+            out.writeUTF(properties.getUserId());
+        }
+        if ((mask & APP_ID) != 0) {
+            out.writeUTF(properties.getAppId());
+        }
+        if ((mask & CLUSTER_ID) != 0) {
+            out.writeUTF(properties.getClusterId());
+        }
+    }
+
+    static BasicProperties readProperties(final DataInput in) throws IOException {
+        int mask = in.readUnsignedShort();
+        BasicProperties.Builder builder = new BasicProperties.Builder();
+        if ((mask & CONTENT_TYPE) != 0) {
+            builder.contentType(in.readUTF());
+        }
+        if ((mask & CONTENT_ENCODING) != 0) {
+            builder.contentEncoding(in.readUTF());
+        }
+        if ((mask & MESSAGE_ID) != 0) {
+            builder.messageId(in.readUTF());
+        }
+        if ((mask & CORRELATION_ID) != 0) {
+            builder.correlationId(in.readUTF());
+        }
+        if ((mask & TYPE) != 0) {
+            builder.type(in.readUTF());
+        }
+        if ((mask & TIMESTAMP) != 0) {
+            builder.timestamp(new Date(in.readLong()));
+        }
+        if ((mask & DELIVERY_MODE) != 0) {
+            builder.deliveryMode(Integer.valueOf(in.readUnsignedByte()));
+        }
+        if ((mask & PRIORITY) != 0) {
+            builder.priority(Integer.valueOf(in.readUnsignedByte()));
+        }
+        if ((mask & HEADERS) != 0) {
+            builder.headers((mask & TAGGED_HEADERS) != 0 ? readTable(in) : readStringTable(in));
+        }
+        if ((mask & REPLY_TO) != 0) {
+            builder.replyTo(in.readUTF());
+        }
+        if ((mask & EXPIRATION) != 0) {
+            builder.expiration(in.readUTF());
+        }
+        if ((mask & USER_ID) != 0) {
+            builder.userId(in.readUTF());
+        }
+        if ((mask & APP_ID) != 0) {
+            builder.appId(in.readUTF());
+        }
+        if ((mask & CLUSTER_ID) != 0) {
+            builder.clusterId(in.readUTF());
+        }
+        return builder.build();
+    }
+
+    private static void writeTable(final DataOutput out, final Map<String, Object> table) throws IOException {
+        out.writeInt(table.size());
+        for (Map.Entry<String, Object> entry : table.entrySet()) {
+            out.writeUTF(entry.getKey());
+            writeFieldValue(out, entry.getValue());
+        }
+    }
+
+    private static Map<String, Object> readTable(final DataInput in) throws IOException {
+        // An entry takes at least the length of its key and a type tag
+        int size = readLength(in, 3);
+        Map<String, Object> table = new HashMap<String, Object>(size * 2);
+        for (int i = 0; i < size; i++) {
+            table.put(in.readUTF(), readFieldValue(in));
+        }
+        return table;
+    }
+
+    private static Map<String, Object> readStringTable(final DataInput in) throws IOException {
+        int size = in.readUnsignedShort();
+        Map<String, Object> table = new HashMap<String, Object>(size * 2);
+        for (int i = 0; i < size; i++) {
+            table.put(in.readUTF(), in.readUTF());
+        }
+        return table;
+    }
+
+    /**
+     * Writes a value tagged with its type, using the tags of AMQP field
+     * tables. Timestamps keep their milliseconds.
+     */
+    @SuppressWarnings("unchecked")
+    private static void writeFieldValue(final DataOutput out, final Object value) throws IOException {
+        if (value == null) {
+            out.writeByte('V');
+        }
+        else if (value instanceof String) {
+            out.writeByte('S');
+            writeBytes(out, ((String) value).getBytes(Message.DEFAULT_MESSAGE_CHARSET));
+        }
+        else if (value instanceof LongString) {
+            out.writeByte('S');
+            writeBytes(out, ((LongString) value).getBytes());
+        }
+        else if (value instanceof Integer) {
+            out.writeByte('I');
+            out.writeInt(((Integer) value).intValue());
+        }
+        else if (value instanceof Long) {
+            out.writeByte('l');
+            out.writeLong(((Long) value).longValue());
+        }
+        else if (value instanceof Short) {
+            out.writeByte('s');
+            out.writeShort(((Short) value).shortValue());
+        }
+        else if (value instanceof Byte) {
+            out.writeByte('b');
+            out.writeByte(((Byte) value).byteValue());
+        }
+        else if (value instanceof Double) {
+            out.writeByte('d');
+            out.writeDouble(((Double) value).doubleValue());
+        }
+        else if (value instanceof Float) {
+            out.writeByte('f');
+            out.writeFloat(((Float) value).floatValue());
+        }
+        else if (value instanceof Boolean) {
+            out.writeByte('t');
+            out.writeBoolean(((Boolean) value).booleanValue());
+        }
+        else if (value instanceof BigDecimal) {
+            out.writeByte('D');
+            out.writeInt(((BigDecimal) value).scale());
+            writeBytes(out, ((BigDecimal) value).unscaledValue().toByteArray());
+        }
+        else if (value instanceof Date) {
+            out.writeByte('T');
+            out.writeLong(((Date) value).getTime());
+        }
+        else if (value instanceof Map) {
+            out.writeByte('F');
+            writeTable(out, (Map<String, Object>) value);
+        }
+        else if (value instanceof byte[]) {
+            out.writeByte('x');
+            writeBytes(out, (byte[]) value);
+        }
+        else if (value instanceof List || value instanceof Object[]) {
+            List<?> values = value instanceof List ? (List<?>) value : Arrays.asList((Object[]) value);
+            out.writeByte('A');
+            out.writeInt(values.size());
+            for (Object each : values) {
+                writeFieldValue(out, each);
+            }
+        }
+        else {
+            throw new IOException("Unsupported header value type " + value.getClass().getName());
+        }
+    }
+
+    private static Object readFieldValue(final DataInput in) throws IOException {
+        int tag = in.readUnsignedByte();
+        switch (tag) {
+            case 'V':
+                return null;
+            case 'S':
+                return LongStringHelper.asLongString(readBytes(in));
+            case 'I':
+                return Integer.valueOf(in.readInt());
+            case 'l':
+                return Long.valueOf(in.readLong());
+            case 's':
+                return Short.valueOf(in.readShort());
+            case 'b':
+                return Byte.valueOf(in.readByte());
+            case 'd':
+                return Double.valueOf(in.readDouble());
+            case 'f':
+                return Float.valueOf(in.readFloat());
+            case 't':
+                return Boolean.valueOf(in.readBoolean());
+            case 'D':
+                int scale = in.readInt();
+                byte[] unscaled = readBytes(in);
+                if (unscaled.length == 0) {
+                    throw new IOException("Malformed decimal header value");
+                }
+                return new BigDecimal(new BigInteger(unscaled), scale);
+            case 'T':
+                return new Date(in.readLong());
+            case 'F':
+                return readTable(in);
+            case 'x':
+                return readBytes(in);
+            case 'A':
+                int size = readLength(in, 1);
+                List<Object> values = new ArrayList<Object>(size);
+                for (int i = 0; i < size; i++) {
+                    values.add(readFieldValue(in));
+                }
+                return values;
+            default:
+                throw new IOException("Unknown header value type " + (char) tag);
+        }
+    }
+
+    private static void writeBytes(final DataOutput out, final byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static byte[] readBytes(final DataInput in) throws IOException {
+        byte[] bytes = new byte[readLength(in, 1)];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    /**
+     * Reads the length of an array or a collection, making sure it can be
+     * allocated safely.
+     *
+     * @param in
+     *            The input to read from
+     * @param minElementSize
+     *            The minimum amount of bytes an element takes in the input
+     * @return The length
+     * @throws IOException
+     *             if the length is negative or exceeds the available input
+     */
+    static int readLength(final DataInput in, final int minElementSize) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            throw new IOException("Malformed serialized message: negative length " + length);
+        }
+        if (in instanceof InputStream && (long) length * minElementSize > ((InputStream) in).available()) {
+            throw new IOException("Malformed serialized message: length " + length + " exceeds remaining input");
+        }
+        return length;
+    }
+}
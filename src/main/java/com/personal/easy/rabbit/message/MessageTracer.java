@@ -0,0 +1,176 @@
+package com.personal.easy.rabbit.message;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>
+ * A message tracer decides which messages on a hot path are logged and
+ * aggregates all of them into periodic summaries.
+ * </p>
+ *
+ * <p>
+ * Only one out of every {@code 1 / sampleRate} messages is sampled. Callers
+ * check {@link #sample()} before building any log arguments, so messages
+ * which are not sampled cause neither log output nor allocations. Every
+ * message is counted though, and a summary with the amount of messages, the
+ * rate and the amount of errors is logged at INFO level once per summary
+ * interval by the thread recording the first message after the interval
+ * elapsed.
+ * </p>
+ *
+ * <p>
+ * {@link #PUBLISH} traces messages published by {@link Message#publish}, and
+ * {@link #CONSUME} traces messages delivered to consumers.
+ * </p>
+ *
+ */
+public final class MessageTracer {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MessageTracer.class);
+
+    public static final double DEFAULT_SAMPLE_RATE = 0.001;
+
+    public static final long DEFAULT_SUMMARY_INTERVAL_IN_MS = 60000;
+
+    public static final MessageTracer PUBLISH = new MessageTracer("publish");
+
+    public static final MessageTracer CONSUME = new MessageTracer("consume");
+
+    private final String name;
+
+    private final AtomicLong sampleCounter = new AtomicLong();
+
+    private final AtomicLong count = new AtomicLong();
+
+    private final AtomicLong errorCount = new AtomicLong();
+
+    private final AtomicLong lastSummaryNanos = new AtomicLong(System.nanoTime());
+
+    private final AtomicLong lastSummaryCount = new AtomicLong();
+
+    private final AtomicLong lastSummaryErrorCount = new AtomicLong();
+
+    private volatile long sampleInterval;
+
+    private volatile long summaryIntervalNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_SUMMARY_INTERVAL_IN_MS);
+
+    public MessageTracer(final String name) {
+        this.name = name;
+        setSampleRate(DEFAULT_SAMPLE_RATE);
+    }
+
+    public String getName() {
+        return this.name;
+    }
+
+    /**
+     * Gets the share of messages which are sampled.
+     *
+     * @return The sample rate between 0 and 1
+     */
+    public double getSampleRate() {
+        long interval = this.sampleInterval;
+        return interval == 0 ? 0 : 1.0 / interval;
+    }
+
+    /**
+     * Sets the share of messages which are sampled. A rate of 0 disables
+     * sampling, a rate of 1 samples every message.
+     *
+     * @param sampleRate
+     *            The sample rate between 0 and 1
+     */
+    public void setSampleRate(final double sampleRate) {
+        if (sampleRate < 0 || sampleRate > 1) {
+            throw new IllegalArgumentException("Sample rate must be between 0 and 1: " + sampleRate);
+        }
+        this.sampleInterval = sampleRate == 0 ? 0 : Math.round(1 / sampleRate);
+    }
+
+    /**
+     * Sets the interval in which summaries are logged. An interval of 0
+     * disables summaries.
+     *
+     * @param interval
+     *            The summary interval
+     * @param unit
+     *            The unit of the interval
+     */
+    public void setSummaryInterval(final long interval, final TimeUnit unit) {
+        if (interval < 0) {
+            throw new IllegalArgumentException("Summary interval must not be negative: " + interval);
+        }
+        this.summaryIntervalNanos = unit.toNanos(interval);
+    }
+
+    /**
+     * Decides whether the current message is sampled.
+     *
+     * @return true if the current message should be logged
+     */
+    public boolean sample() {
+        long interval = this.sampleInterval;
+        return interval != 0 && this.sampleCounter.incrementAndGet() % interval == 0;
+    }
+
+    /**
+     * Counts a message which was handled successfully.
+     */
+    public void recordSuccess() {
+        this.count.incrementAndGet();
+        summarizeIfDue();
+    }
+
+    /**
+     * Counts a message which could not be handled.
+     */
+    public void recordError() {
+        this.count.incrementAndGet();
+        this.errorCount.incrementAndGet();
+        summarizeIfDue();
+    }
+
+    /**
+     * Gets the amount of messages recorded since the tracer was created.
+     *
+     * @return The amount of messages
+     */
+    public long getCount() {
+        return this.count.get();
+    }
+
+    /**
+     * Gets the amount of failed messages recorded since the tracer was
+     * created.
+     *
+     * @return The amount of failed messages
+     */
+    public long getErrorCount() {
+        return this.errorCount.get();
+    }
+
+    private void summarizeIfDue() {
+        long interval = this.summaryIntervalNanos;
+        if (interval == 0) {
+            return;
+        }
+        long now = System.nanoTime();
+        long last = this.lastSummaryNanos.get();
+        if (now - last < interval || !this.lastSummaryNanos.compareAndSet(last, now)) {
+            return;
+        }
+        long currentCount = this.count.get();
+        long currentErrors = this.errorCount.get();
+        long messages = currentCount - this.lastSummaryCount.getAndSet(currentCount);
+        long errors = currentErrors - this.lastSummaryErrorCount.getAndSet(currentErrors);
+        if (LOGGER.isInfoEnabled()) {
+            long elapsedMillis = Math.max(1, TimeUnit.NANOSECONDS.toMillis(now - last));
+            LOGGER.info("{}: {} messages in {} ms ({} msg/s), {} errors", new Object[] {
+                    this.name, messages, elapsedMillis, messages * 1000 / elapsedMillis, errors });
+        }
+    }
+}
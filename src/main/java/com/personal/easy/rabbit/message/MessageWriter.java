@@ -1,9 +1,8 @@
 package com.personal.easy.rabbit.message;
 
+import java.io.IOException;
 import java.nio.charset.Charset;
 
-import com.alibaba.fastjson.JSON;
-
 public class MessageWriter {
 
     private Message message;
@@ -16,42 +15,81 @@ public class MessageWriter {
         writeBody(body, Message.DEFAULT_MESSAGE_CHARSET);
     }
 
+    /**
+     * Writes the body with the codec resolved for its class by
+     * {@link BodyCodecs#forType(Class)} and records the content type of the
+     * codec. The charset is recorded as content encoding for textual codecs.
+     *
+     * @param body
+     *            The body to write
+     * @param charset
+     *            The charset of textual bodies
+     */
     public <T> void writeBody(final T body, final Charset charset) {
-        if (isPrimitive(body)) {
-            String bodyAsString = String.valueOf(body);
-            writeBodyFromString(bodyAsString, charset);
-        }
-        else if (isString(body)) {
-            String bodyAsString = (String) body;
-            writeBodyFromString(bodyAsString, charset);
-        }
-        else {
-            writeBodyFromObject(body, charset);
-        }
+        writeBody(body, charset, BodyCodecs.forType(body.getClass()));
     }
 
     public void writeBodyFromString(final String bodyAsString, final Charset charset) {
-        this.message.contentEncoding(charset.name()).contentType(Message.TEXT_PLAIN);
-        byte[] bodyContent = bodyAsString.getBytes(charset);
-        this.message.body(bodyContent);
+        writeBody(bodyAsString, charset, BodyCodecs.TEXT);
     }
 
     public <T> void writeBodyFromObject(final T bodyAsObject, final Charset charset) {
-
-        String result = JSON.toJSONString(bodyAsObject);
-
-        byte[] bodyContent = result.getBytes();
-        this.message.contentType(Message.APPLICATION_JSON).contentEncoding(charset.name());
-        this.message.body(bodyContent);
+        writeBody(bodyAsObject, charset, BodyCodecs.JSON);
     }
 
-    boolean isString(final Object object) {
-        return object instanceof String;
+    void writeBody(final Object body, final Charset charset, final BodyCodec codec) {
+        byte[] bodyContent;
+        try {
+            bodyContent = codec.encode(body, charset);
+        }
+        catch (IOException e) {
+            throw new RuntimeException("Failed to encode message body as " + codec.getContentType(), e);
+        }
+        this.message.contentEncoding(codec.isTextual() ? charset.name() : null).contentType(codec.getContentType());
+        this.message.body(bodyContent);
     }
 
-    boolean isPrimitive(final Object object) {
-        return object.getClass().isPrimitive() || object instanceof Boolean || object instanceof Character
-                || object instanceof Number;
+    /**
+     * <p>
+     * Compresses the current body with the given codec if it has at least the
+     * given size and compression actually reduces its size.
+     * </p>
+     *
+     * <p>
+     * The codec name is recorded as content encoding. A charset previously
+     * recorded as content encoding is moved to the charset parameter of the
+     * content type, so {@link MessageReader} still decodes the body correctly.
+     * </p>
+     *
+     * @param codec
+     *            The codec to compress with, must be registered in
+     *            {@link CompressionCodecs} for readers to decompress
+     * @param thresholdInBytes
+     *            The minimum body size to compress
+     */
+    public void compress(final CompressionCodec codec, final int thresholdInBytes) {
+        MessagePropertiesBuilder properties = this.message.properties();
+        String contentEncoding = properties.getContentEncoding();
+        byte[] bodyContent = this.message.getBodyContent();
+        if (bodyContent.length < thresholdInBytes || CompressionCodecs.forName(contentEncoding) != null) {
+            return;
+        }
+        byte[] compressedContent;
+        try {
+            compressedContent = codec.compress(bodyContent);
+        }
+        catch (IOException e) {
+            throw new RuntimeException("Failed to compress message body with " + codec.getName(), e);
+        }
+        if (compressedContent.length >= bodyContent.length) {
+            return;
+        }
+        String contentType = properties.getContentType();
+        if (contentEncoding != null) {
+            contentType = (contentType == null ? Message.APPLICATION_OCTET_STREAM : contentType) + ";charset="
+                    + contentEncoding;
+        }
+        this.message.contentType(contentType).contentEncoding(codec.getName()).body(compressedContent);
     }
 
     String unCapitalizedClassName(final Class<?> clazz) {
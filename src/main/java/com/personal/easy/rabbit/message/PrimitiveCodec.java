@@ -0,0 +1,304 @@
+package com.personal.easy.rabbit.message;
+
+import java.nio.charset.Charset;
+
+/**
+ * <p>
+ * Parses and writes numbers and booleans in their plain text form directly
+ * from and to byte arrays, without intermediate strings or boxing. It is used
+ * by {@link TextCodec} and the unboxed accessors of {@link Message}.
+ * </p>
+ *
+ * <p>
+ * Bytes are interpreted as ASCII if the charset is ASCII compatible, other
+ * charsets fall back to decoding a string. Doubles are parsed exactly if they
+ * have at most 15 significant digits and a decimal exponent of at most 22,
+ * others fall back to {@link Double#parseDouble(String)}. Doubles are written
+ * in the form of {@link Double#toString(double)}.
+ * </p>
+ *
+ */
+public final class PrimitiveCodec {
+
+    private static final Charset US_ASCII = Charset.forName("US-ASCII");
+
+    private static final byte[] TRUE = { 't', 'r', 'u', 'e' };
+
+    private static final byte[] FALSE = { 'f', 'a', 'l', 's', 'e' };
+
+    private static final int MAX_EXACT_DIGITS = 15;
+
+    private static final double[] POWERS_OF_TEN = { 1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+
+    private PrimitiveCodec() {
+    }
+
+    /**
+     * Parses a decimal long with an optional sign.
+     *
+     * @param content
+     *            The text of the long
+     * @param charset
+     *            The charset of the text
+     * @return The parsed long
+     * @throws NumberFormatException
+     *             if the content is empty or not a long
+     */
+    public static long parseLong(final byte[] content, final Charset charset) {
+        if (!isAsciiCompatible(charset)) {
+            return parseLong(new String(content, charset).getBytes(US_ASCII), US_ASCII);
+        }
+        int length = content.length;
+        if (length == 0) {
+            throw new NumberFormatException("Message is empty");
+        }
+        int position = 0;
+        boolean negative = content[0] == '-';
+        if (negative || content[0] == '+') {
+            position++;
+            if (length == 1) {
+                throw notANumber();
+            }
+        }
+        // Accumulates negatively, as the range of negative longs is larger
+        long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+        long multiplyLimit = limit / 10;
+        long result = 0;
+        for (; position < length; position++) {
+            int digit = content[position] - '0';
+            if (digit < 0 || digit > 9 || result < multiplyLimit) {
+                throw notANumber();
+            }
+            result *= 10;
+            if (result < limit + digit) {
+                throw notANumber();
+            }
+            result -= digit;
+        }
+        return negative ? result : -result;
+    }
+
+    /**
+     * Parses a decimal integer with an optional sign.
+     *
+     * @param content
+     *            The text of the integer
+     * @param charset
+     *            The charset of the text
+     * @return The parsed integer
+     * @throws NumberFormatException
+     *             if the content is empty or not an integer
+     */
+    public static int parseInt(final byte[] content, final Charset charset) {
+        long value = parseLong(content, charset);
+        if (value < Integer.MIN_VALUE || value > Integer.MAX_VALUE) {
+            throw notANumber();
+        }
+        return (int) value;
+    }
+
+    /**
+     * Parses a double in any form accepted by
+     * {@link Double#parseDouble(String)}.
+     *
+     * @param content
+     *            The text of the double
+     * @param charset
+     *            The charset of the text
+     * @return The parsed double
+     * @throws NumberFormatException
+     *             if the content is empty or not a double
+     */
+    public static double parseDouble(final byte[] content, final Charset charset) {
+        if (content.length == 0) {
+            throw new NumberFormatException("Message is empty");
+        }
+        if (isAsciiCompatible(charset)) {
+            double value = parseSimpleDouble(content);
+            if (!Double.isNaN(value)) {
+                return value;
+            }
+        }
+        return Double.parseDouble(new String(content, charset));
+    }
+
+    /**
+     * Parses a boolean like {@link Boolean#parseBoolean(String)}: true if the
+     * content is "true" ignoring case, false otherwise.
+     *
+     * @param content
+     *            The text of the boolean
+     * @param charset
+     *            The charset of the text
+     * @return The parsed boolean
+     */
+    public static boolean parseBoolean(final byte[] content, final Charset charset) {
+        if (!isAsciiCompatible(charset)) {
+            return Boolean.parseBoolean(new String(content, charset));
+        }
+        if (content.length != TRUE.length) {
+            return false;
+        }
+        for (int i = 0; i < TRUE.length; i++) {
+            if ((content[i] | 0x20) != TRUE[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Writes a long as decimal ASCII text.
+     *
+     * @param value
+     *            The long to write
+     * @return The text of the long
+     */
+    public static byte[] toBytes(final long value) {
+        if (value == Long.MIN_VALUE) {
+            return "-9223372036854775808".getBytes(US_ASCII);
+        }
+        long remaining = Math.abs(value);
+        int digits = 1;
+        for (long bound = 10; digits < 19 && remaining >= bound; bound *= 10) {
+            digits++;
+        }
+        int length = value < 0 ? digits + 1 : digits;
+        byte[] content = new byte[length];
+        for (int position = length - 1; position >= 0; position--) {
+            content[position] = (byte) ('0' + remaining % 10);
+            remaining /= 10;
+        }
+        if (value < 0) {
+            content[0] = '-';
+        }
+        return content;
+    }
+
+    /**
+     * Writes a double as ASCII text in the form of
+     * {@link Double#toString(double)}.
+     *
+     * @param value
+     *            The double to write
+     * @return The text of the double
+     */
+    public static byte[] toBytes(final double value) {
+        return Double.toString(value).getBytes(US_ASCII);
+    }
+
+    /**
+     * Writes a boolean as ASCII text.
+     *
+     * @param value
+     *            The boolean to write
+     * @return The text of the boolean
+     */
+    public static byte[] toBytes(final boolean value) {
+        return (value ? TRUE : FALSE).clone();
+    }
+
+    /**
+     * Checks whether digits, signs and letters of the given charset are
+     * encoded as in ASCII.
+     *
+     * @param charset
+     *            The charset to check
+     * @return true if the charset is ASCII compatible
+     */
+    public static boolean isAsciiCompatible(final Charset charset) {
+        String name = charset.name();
+        return "UTF-8".equals(name) || "US-ASCII".equals(name) || "ISO-8859-1".equals(name)
+                || name.startsWith("windows-125");
+    }
+
+    /**
+     * Parses doubles which can be computed exactly from a long mantissa and a
+     * power of ten, see Clinger's fast path.
+     *
+     * @return The parsed double or NaN if the content needs the slow path
+     */
+    private static double parseSimpleDouble(final byte[] content) {
+        int length = content.length;
+        int position = 0;
+        boolean negative = content[0] == '-';
+        if (negative || content[0] == '+') {
+            position++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int exponent = 0;
+        boolean anyDigit = false;
+        boolean fraction = false;
+        for (; position < length; position++) {
+            int c = content[position];
+            if (c == '.' && !fraction) {
+                fraction = true;
+                continue;
+            }
+            int digit = c - '0';
+            if (digit < 0 || digit > 9) {
+                break;
+            }
+            anyDigit = true;
+            if (mantissa == 0 && digit == 0) {
+                // Leading zeros are not significant
+                if (fraction) {
+                    exponent--;
+                }
+                continue;
+            }
+            if (++digits > MAX_EXACT_DIGITS) {
+                return Double.NaN;
+            }
+            mantissa = mantissa * 10 + digit;
+            if (fraction) {
+                exponent--;
+            }
+        }
+        if (!anyDigit) {
+            return Double.NaN;
+        }
+        if (position < length) {
+            int c = content[position++];
+            if ((c != 'e' && c != 'E') || position == length) {
+                return Double.NaN;
+            }
+            boolean negativeExponent = content[position] == '-';
+            if (negativeExponent || content[position] == '+') {
+                position++;
+            }
+            int explicitExponent = 0;
+            if (position == length) {
+                return Double.NaN;
+            }
+            for (; position < length; position++) {
+                int digit = content[position] - '0';
+                if (digit < 0 || digit > 9 || explicitExponent > 1000) {
+                    return Double.NaN;
+                }
+                explicitExponent = explicitExponent * 10 + digit;
+            }
+            exponent += negativeExponent ? -explicitExponent : explicitExponent;
+        }
+        double value;
+        if (mantissa == 0) {
+            value = 0;
+        }
+        else if (exponent >= 0 && exponent < POWERS_OF_TEN.length) {
+            value = mantissa * POWERS_OF_TEN[exponent];
+        }
+        else if (exponent < 0 && -exponent < POWERS_OF_TEN.length) {
+            value = mantissa / POWERS_OF_TEN[-exponent];
+        }
+        else {
+            return Double.NaN;
+        }
+        return negative ? -value : value;
+    }
+
+    private static NumberFormatException notANumber() {
+        return new NumberFormatException("Message is not a number");
+    }
+}
@@ -0,0 +1,56 @@
+package com.personal.easy.rabbit.message;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+/**
+ * <p>
+ * A codec passing byte arrays through unchanged.
+ * </p>
+ *
+ */
+public class RawCodec implements BodyCodec {
+
+    /**
+     * {@inheritDoc}
+     */
+    public String getContentType() {
+        return Message.APPLICATION_OCTET_STREAM;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean isTextual() {
+        return false;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean canEncode(final Class<?> type) {
+        return type == byte[].class;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean canDecode(final Class<?> type) {
+        return type == byte[].class;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public byte[] encode(final Object body, final Charset charset) throws IOException {
+        return (byte[]) body;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T decode(final byte[] content, final Charset charset, final Class<T> type) throws IOException {
+        return (T) content;
+    }
+}
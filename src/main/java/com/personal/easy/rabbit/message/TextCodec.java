@@ -0,0 +1,148 @@
+package com.personal.easy.rabbit.message;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.Charset;
+
+/**
+ * <p>
+ * A codec writing strings, numbers, booleans and characters as plain text.
+ * Any body can be decoded to a string.
+ * </p>
+ *
+ */
+public class TextCodec implements BodyCodec {
+
+    /**
+     * {@inheritDoc}
+     */
+    public String getContentType() {
+        return Message.TEXT_PLAIN;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean isTextual() {
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean canEncode(final Class<?> type) {
+        return type.isPrimitive() || String.class.isAssignableFrom(type) || Boolean.class.isAssignableFrom(type)
+                || Character.class.isAssignableFrom(type) || Number.class.isAssignableFrom(type);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public boolean canDecode(final Class<?> requestedType) {
+        Class<?> type = BodyCodecs.wrapperType(requestedType);
+        return String.class.isAssignableFrom(type) || Boolean.class.isAssignableFrom(type)
+                || Character.class.isAssignableFrom(type) || Number.class.isAssignableFrom(type);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>
+     * Integral numbers and booleans are written by {@link PrimitiveCodec}
+     * without intermediate strings if the charset is ASCII compatible.
+     * </p>
+     */
+    public byte[] encode(final Object body, final Charset charset) throws IOException {
+        if (PrimitiveCodec.isAsciiCompatible(charset)) {
+            if (body instanceof Long || body instanceof Integer || body instanceof Short || body instanceof Byte) {
+                return PrimitiveCodec.toBytes(((Number) body).longValue());
+            }
+            else if (body instanceof Boolean) {
+                return PrimitiveCodec.toBytes(((Boolean) body).booleanValue());
+            }
+        }
+        return String.valueOf(body).getBytes(charset);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>
+     * Primitive types are decoded as their wrapper types.
+     * </p>
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T decode(final byte[] content, final Charset charset, final Class<T> requestedType)
+            throws IOException {
+        Class<?> type = BodyCodecs.wrapperType(requestedType);
+        if (Boolean.class.isAssignableFrom(type)) {
+            return (T) Boolean.valueOf(PrimitiveCodec.parseBoolean(content, charset));
+        }
+        else if (Number.class.isAssignableFrom(type)) {
+            return (T) decodeNumber(content, charset, (Class<Number>) type);
+        }
+        String text = new String(content, charset);
+        if (Character.class.isAssignableFrom(type)) {
+            return (T) Character.valueOf(text.charAt(0));
+        }
+        return (T) text;
+    }
+
+    /**
+     * Decodes a number of the given type. Integral numbers and doubles are
+     * parsed by {@link PrimitiveCodec}.
+     *
+     * @param content
+     *            The text of the number
+     * @param charset
+     *            The charset of the text
+     * @param type
+     *            The type of the number
+     * @return The number
+     * @throws NumberFormatException
+     *             if the content is empty or not a number
+     */
+    @SuppressWarnings("unchecked")
+    static <T extends Number> T decodeNumber(final byte[] content, final Charset charset, final Class<T> type) {
+        if (type.equals(Long.class)) {
+            return (T) Long.valueOf(PrimitiveCodec.parseLong(content, charset));
+        }
+        else if (type.equals(Integer.class)) {
+            return (T) Integer.valueOf(PrimitiveCodec.parseInt(content, charset));
+        }
+        else if (type.equals(Double.class)) {
+            return (T) Double.valueOf(PrimitiveCodec.parseDouble(content, charset));
+        }
+        else if (type.equals(Short.class)) {
+            int value = PrimitiveCodec.parseInt(content, charset);
+            if (value < Short.MIN_VALUE || value > Short.MAX_VALUE) {
+                throw new NumberFormatException("Message is not a short");
+            }
+            return (T) Short.valueOf((short) value);
+        }
+        else if (type.equals(Byte.class)) {
+            int value = PrimitiveCodec.parseInt(content, charset);
+            if (value < Byte.MIN_VALUE || value > Byte.MAX_VALUE) {
+                throw new NumberFormatException("Message is not a byte");
+            }
+            return (T) Byte.valueOf((byte) value);
+        }
+        if (content.length == 0) {
+            throw new NumberFormatException("Message is empty");
+        }
+        String text = new String(content, charset);
+        if (type.equals(Float.class)) {
+            return (T) Float.valueOf(text);
+        }
+        else if (type.equals(BigDecimal.class)) {
+            return (T) new BigDecimal(text);
+        }
+        else if (type.equals(BigInteger.class)) {
+            return (T) new BigInteger(text);
+        }
+        else {
+            throw new RuntimeException("Unsupported number format: " + type);
+        }
+    }
+}
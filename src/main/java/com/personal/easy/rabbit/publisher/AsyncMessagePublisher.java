@@ -0,0 +1,57 @@
+package com.personal.easy.rabbit.publisher;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+
+import com.personal.easy.rabbit.message.Message;
+
+/**
+ * An asynchronous message publisher publishes messages to a broker without
+ * waiting for the outcome. The outcome is reported by a {@link PublishFuture}.
+ *
+ */
+public interface AsyncMessagePublisher {
+
+    /**
+     * Publishes a message to the broker using no delivery options.
+     *
+     * @param message The message to publish
+     * @return The future completed with the result of the publish
+     */
+    PublishFuture<PublishResult> publishAsync(Message message);
+
+    /**
+     * Publishes a message to the broker using the given delivery options.
+     *
+     * @param message The message to publish
+     * @param deliveryOptions The delivery options
+     * @return The future completed with the result of the publish
+     */
+    PublishFuture<PublishResult> publishAsync(Message message, DeliveryOptions deliveryOptions);
+
+    /**
+     * Publishes messages to the broker using no delivery options.
+     *
+     * @param messages The list of messages to publish
+     * @return The future completed with the results in the order of the messages
+     */
+    PublishFuture<List<PublishResult>> publishAsync(List<Message> messages);
+
+    /**
+     * Publishes messages to the broker using the given delivery options.
+     *
+     * @param messages The list of messages to publish
+     * @param deliveryOptions The delivery options
+     * @return The future completed with the results in the order of the messages
+     */
+    PublishFuture<List<PublishResult>> publishAsync(List<Message> messages, DeliveryOptions deliveryOptions);
+
+    /**
+     * Closes the publisher.
+     *
+     * @throws IOException if the publisher cannot be closed correctly
+     * @throws TimeoutException
+     */
+    void close() throws IOException, TimeoutException;
+}
@@ -0,0 +1,572 @@
+package com.personal.easy.rabbit.publisher;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.personal.easy.rabbit.message.Message;
+
+/**
+ * <p>An asynchronous publisher decouples publishing threads from the broker.</p>
+ *
+ * <p>Published messages are put into a bounded ring buffer allocated up front and
+ * are handed to the broker by one or more dedicated I/O threads using a delegate
+ * publisher. Publishing threads therefore never wait for the network, nor for
+ * retries of the delegate during broker hiccups. If the buffer is full, the
+ * {@link OverflowPolicy} decides whether the publishing thread waits, the message
+ * is dropped or publishing fails immediately.</p>
+ *
+ * <p>Idle I/O threads and publishing threads waiting for buffer space block
+ * until they are signalled. Signalling takes a lock only while a thread is
+ * waiting, so {@link #publish(Message, DeliveryOptions)} stays lock-free as long
+ * as the I/O threads keep up.</p>
+ *
+ * <p>{@link #publish(Message, DeliveryOptions)} does not allocate anything on top of
+ * the message itself. The outcome of a publish can be observed by passing a
+ * {@link PublishCallback} or by using {@link #submit(Message, DeliveryOptions)}
+ * which returns a {@link PublishHandle}.</p>
+ *
+ * <p>Messages are handed to the delegate in publish order as long as only one
+ * I/O thread is used. With several I/O threads, the delegate must be thread-safe,
+ * e.g. a {@link DiscretePublisher} sharing a {@link com.personal.easy.rabbit.connection.ChannelPool}
+ * with at least as many channels as I/O threads.</p>
+ *
+ * <p>If a {@link RetryPolicy} is set, failed publishes are not retried by the
+ * I/O threads waiting for the next attempt. Instead the message is put back into
+ * the buffer by a timer once the delay told by the policy passed, so the I/O
+ * threads keep publishing other messages meanwhile. The delegate should not
+ * retry on its own then, e.g. by using {@link FixedIntervalRetryPolicy#NO_RETRY}.
+ * Retried messages may overtake messages published after them.</p>
+ *
+ */
+public class AsyncPublisher implements MessagePublisher {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(AsyncPublisher.class);
+
+    public static final int DEFAULT_CAPACITY = 8192;
+
+    public static final int DEFAULT_IO_THREADS = 1;
+
+    public static final long DEFAULT_CLOSE_TIMEOUT_IN_MS = 10000;
+
+    private static final int IDLE_SPINS = 100;
+
+    private final MessagePublisher delegate;
+
+    private final MessageRingBuffer buffer;
+
+    private final OverflowPolicy overflowPolicy;
+
+    private final List<Thread> ioThreads;
+
+    private final ReentrantLock signalLock = new ReentrantLock();
+
+    private final Condition notEmpty = signalLock.newCondition();
+
+    private final Condition notFull = signalLock.newCondition();
+
+    private final AtomicInteger waitingIoThreads = new AtomicInteger();
+
+    private final AtomicInteger waitingProducers = new AtomicInteger();
+
+    private final Condition producersLeft = signalLock.newCondition();
+
+    private final AtomicInteger activeProducers = new AtomicInteger();
+
+    private final AtomicLong publishedCount = new AtomicLong();
+
+    private final AtomicLong failedCount = new AtomicLong();
+
+    private final AtomicLong droppedCount = new AtomicLong();
+
+    private final RetryMetrics retryMetrics = new RetryMetrics();
+
+    private final Set<ScheduledRetry> pendingRetries = Collections.newSetFromMap(
+            new ConcurrentHashMap<ScheduledRetry, Boolean>());
+
+    private final ScheduledExecutorService retryScheduler;
+
+    private volatile RetryPolicy retryPolicy;
+
+    private volatile boolean running = true;
+
+    public AsyncPublisher(MessagePublisher delegate) {
+        this(delegate, DEFAULT_CAPACITY, DEFAULT_IO_THREADS, OverflowPolicy.BLOCK);
+    }
+
+    /**
+     * Creates the publisher and starts its I/O threads.
+     *
+     * @param delegate The publisher used by the I/O threads to publish to the broker
+     * @param capacity The amount of messages the buffer can hold, rounded up to a power of two of at least two
+     * @param ioThreadCount The amount of I/O threads
+     * @param overflowPolicy The behaviour if the buffer is full
+     */
+    public AsyncPublisher(MessagePublisher delegate, int capacity, int ioThreadCount, OverflowPolicy overflowPolicy) {
+        if (ioThreadCount < 1) {
+            throw new IllegalArgumentException("At least one I/O thread is required: " + ioThreadCount);
+        }
+        this.delegate = delegate;
+        this.buffer = new MessageRingBuffer(capacity);
+        this.overflowPolicy = overflowPolicy;
+        this.ioThreads = new ArrayList<Thread>(ioThreadCount);
+        for (int i = 0; i < ioThreadCount; i++) {
+            Thread ioThread = new Thread(new IoLoop(), "easyrabbit-async-publisher-" + i);
+            ioThread.setDaemon(true);
+            ioThreads.add(ioThread);
+        }
+        // The scheduler thread is not started before the first retry
+        this.retryScheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "easyrabbit-async-publisher-retry");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        for (Thread ioThread : ioThreads) {
+            ioThread.start();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void publish(Message message) throws IOException {
+        publish(message, DeliveryOptions.NONE, null);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Returns as soon as the message is buffered.</p>
+     */
+    public void publish(Message message, DeliveryOptions deliveryOptions) throws IOException {
+        publish(message, deliveryOptions, null);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void publish(List<Message> messages) throws IOException {
+        publish(messages, DeliveryOptions.NONE);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Returns as soon as all messages are buffered.</p>
+     */
+    public void publish(List<Message> messages, DeliveryOptions deliveryOptions) throws IOException {
+        for (Message message : messages) {
+            publish(message, deliveryOptions, null);
+        }
+    }
+
+    /**
+     * Buffers a message for publishing and returns a handle completed
+     * as soon as the message was published.
+     *
+     * @param message The message to publish
+     * @param deliveryOptions The delivery options
+     * @return The completion handle of the publish
+     * @throws IOException if the buffer is full and the overflow policy is to fail fast
+     */
+    public PublishHandle submit(Message message, DeliveryOptions deliveryOptions) throws IOException {
+        PublishHandle handle = new PublishHandle();
+        publish(message, deliveryOptions, handle);
+        return handle;
+    }
+
+    /**
+     * Buffers a message for publishing. The given callback is notified by
+     * the I/O thread publishing the message.
+     *
+     * @param message The message to publish
+     * @param deliveryOptions The delivery options
+     * @param callback The callback to notify about the outcome, may be null
+     * @throws IOException if the publisher is closed, if waiting for buffer space is
+     * interrupted or if the buffer is full and the overflow policy is to fail fast
+     */
+    public void publish(Message message, DeliveryOptions deliveryOptions, PublishCallback callback) throws IOException {
+        // Registers before checking the flag, so closing waits for the message to be buffered
+        activeProducers.incrementAndGet();
+        try {
+            if (!running) {
+                throw new IOException("Attempt to publish with a closed asynchronous publisher");
+            }
+            if (offer(message, deliveryOptions, callback)) {
+                return;
+            }
+            if (overflowPolicy == OverflowPolicy.BLOCK) {
+                while (!offer(message, deliveryOptions, callback)) {
+                    awaitSpace();
+                }
+                return;
+            }
+        } finally {
+            leaveProducer();
+        }
+        if (overflowPolicy == OverflowPolicy.DROP) {
+            droppedCount.incrementAndGet();
+            LOGGER.debug("Dropped message {} as publish buffer is full", message.getId());
+            if (callback != null) {
+                callback.onFailure(message, new IOException("Message dropped as publish buffer is full"));
+            }
+            return;
+        }
+        throw new IOException("Publish buffer is full (capacity " + buffer.capacity() + ")");
+    }
+
+    private void leaveProducer() {
+        if (activeProducers.decrementAndGet() == 0 && !running) {
+            signalLock.lock();
+            try {
+                producersLeft.signalAll();
+            } finally {
+                signalLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Waits for publishing threads which passed the closed check to buffer
+     * their messages, so no message is buffered after the I/O threads stopped.
+     */
+    private void awaitProducers(long deadline) {
+        signalLock.lock();
+        try {
+            long remaining = deadline - System.currentTimeMillis();
+            while (activeProducers.get() > 0 && remaining > 0) {
+                producersLeft.await(remaining, TimeUnit.MILLISECONDS);
+                remaining = deadline - System.currentTimeMillis();
+            }
+        } catch (InterruptedException e) {
+            LOGGER.warn("Closing asynchronous publisher interrupted while waiting for publishing threads", e);
+            Thread.currentThread().interrupt();
+        } finally {
+            signalLock.unlock();
+        }
+    }
+
+    private boolean offer(Message message, DeliveryOptions deliveryOptions, PublishCallback callback) {
+        if (!buffer.offer(message, deliveryOptions, callback)) {
+            return false;
+        }
+        // Pairs with the waiting I/O thread registering before checking the buffer
+        if (waitingIoThreads.get() > 0) {
+            signal(notEmpty);
+        }
+        return true;
+    }
+
+    private boolean poll(MessageRingBuffer.Entry entry) {
+        if (!buffer.poll(entry)) {
+            return false;
+        }
+        if (waitingProducers.get() > 0) {
+            signal(notFull);
+        }
+        return true;
+    }
+
+    private void signal(Condition condition) {
+        signalLock.lock();
+        try {
+            condition.signal();
+        } finally {
+            signalLock.unlock();
+        }
+    }
+
+    private void signalAll() {
+        signalLock.lock();
+        try {
+            notEmpty.signalAll();
+            notFull.signalAll();
+        } finally {
+            signalLock.unlock();
+        }
+    }
+
+    /**
+     * Blocks the publishing thread until the buffer has room or the publisher is closed.
+     */
+    private void awaitSpace() throws IOException {
+        signalLock.lock();
+        try {
+            waitingProducers.incrementAndGet();
+            try {
+                while (running && buffer.isFull()) {
+                    notFull.await();
+                }
+            } finally {
+                waitingProducers.decrementAndGet();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            InterruptedIOException exception = new InterruptedIOException(
+                    "Publishing interrupted while waiting for buffer space");
+            exception.initCause(e);
+            throw exception;
+        } finally {
+            signalLock.unlock();
+        }
+        if (!running) {
+            throw new IOException("Asynchronous publisher closed while waiting for buffer space");
+        }
+    }
+
+    /**
+     * Blocks an idle I/O thread until a message is buffered or the publisher is closed.
+     */
+    private void awaitMessage() {
+        signalLock.lock();
+        try {
+            waitingIoThreads.incrementAndGet();
+            try {
+                while (running && buffer.isEmpty()) {
+                    notEmpty.awaitUninterruptibly();
+                }
+            } finally {
+                waitingIoThreads.decrementAndGet();
+            }
+        } finally {
+            signalLock.unlock();
+        }
+    }
+
+    /**
+     * Gets the amount of messages currently waiting in the buffer.
+     *
+     * @return The amount of buffered messages
+     */
+    public int getBufferedCount() {
+        return buffer.size();
+    }
+
+    public long getPublishedCount() {
+        return publishedCount.get();
+    }
+
+    public long getFailedCount() {
+        return failedCount.get();
+    }
+
+    public long getDroppedCount() {
+        return droppedCount.get();
+    }
+
+    public RetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+
+    /**
+     * Sets the policy deciding whether and when failed publishes are retried.
+     *
+     * @param retryPolicy The retry policy, may be null to never retry which is the default
+     */
+    public void setRetryPolicy(RetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy;
+    }
+
+    /**
+     * Gets the counters about the retries of this publisher.
+     *
+     * @return The retry metrics
+     */
+    public RetryMetrics getRetryMetrics() {
+        return retryMetrics;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Stops accepting messages, waits for publishing threads already passed
+     * the closed check to buffer their messages, waits for the I/O threads to
+     * publish all buffered messages and closes the delegate afterwards.</p>
+     */
+    public void close() throws IOException, TimeoutException {
+        if (!running) {
+            LOGGER.warn("Attempt to close an asynchronous publisher which is already closed");
+            return;
+        }
+        running = false;
+        signalAll();
+        long deadline = System.currentTimeMillis() + DEFAULT_CLOSE_TIMEOUT_IN_MS;
+        retryScheduler.shutdownNow();
+        try {
+            retryScheduler.awaitTermination(Math.max(1, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            LOGGER.warn("Closing asynchronous publisher interrupted while waiting for retry scheduler", e);
+            Thread.currentThread().interrupt();
+        }
+        for (ScheduledRetry retry : pendingRetries) {
+            if (pendingRetries.remove(retry)) {
+                fail(retry.message, retry, new IOException("Asynchronous publisher closed"));
+            }
+        }
+        awaitProducers(deadline);
+        for (Thread ioThread : ioThreads) {
+            try {
+                ioThread.join(Math.max(1, deadline - System.currentTimeMillis()));
+            } catch (InterruptedException e) {
+                LOGGER.warn("Closing asynchronous publisher interrupted while waiting for I/O threads", e);
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        failRemaining();
+        delegate.close();
+    }
+
+    void failRemaining() {
+        MessageRingBuffer.Entry entry = new MessageRingBuffer.Entry();
+        while (buffer.poll(entry)) {
+            fail(entry.message, entry.callback, new IOException("Asynchronous publisher closed"));
+            entry.clear();
+        }
+    }
+
+    void fail(Message message, PublishCallback callback, Throwable cause) {
+        failedCount.incrementAndGet();
+        if (callback != null) {
+            callback.onFailure(message, cause);
+        }
+    }
+
+    void publishEntry(MessageRingBuffer.Entry entry) {
+        try {
+            delegate.publish(entry.message, entry.deliveryOptions);
+            publishedCount.incrementAndGet();
+            if (entry.callback != null) {
+                entry.callback.onPublished(entry.message);
+            }
+        } catch (Exception e) {
+            if (scheduleRetry(entry.message, entry.deliveryOptions, entry.callback, e)) {
+                return;
+            }
+            LOGGER.error("Failed to publish message {} asynchronously", entry.message.getId(), e);
+            fail(entry.message, entry.callback, e);
+        }
+    }
+
+    /**
+     * Schedules putting a failed message back into the buffer if the retry policy
+     * permits another attempt.
+     *
+     * @return true if a retry was scheduled
+     */
+    boolean scheduleRetry(Message message, DeliveryOptions deliveryOptions, PublishCallback callback, Exception e) {
+        RetryPolicy policy = retryPolicy;
+        if (policy == null || !running) {
+            return false;
+        }
+        ScheduledRetry retry = callback instanceof ScheduledRetry ? (ScheduledRetry) callback
+                : new ScheduledRetry(message, deliveryOptions, callback);
+        long delay = policy.getDelayInMs(retry.attempt, System.currentTimeMillis() - retry.startTimeInMs, e);
+        if (delay < 0) {
+            retryMetrics.recordExhausted();
+            return false;
+        }
+        retry.attempt++;
+        pendingRetries.add(retry);
+        try {
+            retryScheduler.schedule(retry, delay, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException rejected) {
+            pendingRetries.remove(retry);
+            return false;
+        }
+        retryMetrics.recordRetry(delay);
+        LOGGER.debug("Retrying message {} in {} ms (attempt {})", new Object[] { message.getId(), delay, retry.attempt });
+        return true;
+    }
+
+    /**
+     * A failed publish waiting to be put back into the buffer. It wraps the
+     * callback of the publish to track attempts and recoveries.
+     */
+    private class ScheduledRetry implements Runnable, PublishCallback {
+
+        final Message message;
+
+        final DeliveryOptions deliveryOptions;
+
+        final PublishCallback callback;
+
+        final long startTimeInMs = System.currentTimeMillis();
+
+        volatile int attempt = 1;
+
+        ScheduledRetry(Message message, DeliveryOptions deliveryOptions, PublishCallback callback) {
+            this.message = message;
+            this.deliveryOptions = deliveryOptions;
+            this.callback = callback;
+        }
+
+        public void run() {
+            if (!pendingRetries.remove(this) || offer(message, deliveryOptions, this)) {
+                return;
+            }
+            IOException full = new IOException("Publish buffer is full (capacity " + buffer.capacity() + ")");
+            if (!scheduleRetry(message, deliveryOptions, this, full)) {
+                fail(message, this, full);
+            }
+        }
+
+        public void onPublished(Message published) {
+            retryMetrics.recordRecovery(attempt, System.currentTimeMillis() - startTimeInMs);
+            if (callback != null) {
+                callback.onPublished(published);
+            }
+        }
+
+        public void onFailure(Message failed, Throwable cause) {
+            if (callback != null) {
+                callback.onFailure(failed, cause);
+            }
+        }
+    }
+
+    /**
+     * The loop of an I/O thread draining the buffer until the publisher
+     * is closed and the buffer is empty.
+     */
+    private class IoLoop implements Runnable {
+
+        public void run() {
+            MessageRingBuffer.Entry entry = new MessageRingBuffer.Entry();
+            int idleRounds = 0;
+            while (true) {
+                if (poll(entry)) {
+                    idleRounds = 0;
+                    publishEntry(entry);
+                    entry.clear();
+                } else if (!running) {
+                    return;
+                } else if (++idleRounds < IDLE_SPINS) {
+                    Thread.yield();
+                } else {
+                    idleRounds = 0;
+                    awaitMessage();
+                }
+            }
+        }
+    }
+}
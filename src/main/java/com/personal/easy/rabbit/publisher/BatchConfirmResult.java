@@ -0,0 +1,69 @@
+package com.personal.easy.rabbit.publisher;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.personal.easy.rabbit.message.Message;
+
+/**
+ * <p>The result of publishing a list of messages in batch-confirm mode.</p>
+ *
+ * <p>Holds the messages which were not confirmed by the broker, either because
+ * the broker nacked them or because their channel was shut down before
+ * a confirm arrived. Only these messages need to be published again.</p>
+ *
+ */
+public class BatchConfirmResult {
+
+    private int ackedCount;
+
+    private final List<Long> nackedSequenceNumbers = new ArrayList<Long>();
+
+    private final List<Message> nackedMessages = new ArrayList<Message>();
+
+    void acked() {
+        ackedCount++;
+    }
+
+    void nacked(long sequenceNumber, Message message) {
+        nackedSequenceNumbers.add(sequenceNumber);
+        nackedMessages.add(message);
+    }
+
+    /**
+     * Whether all messages of the batch were acked by the broker.
+     *
+     * @return true if no message was nacked
+     */
+    public boolean isAllAcked() {
+        return nackedMessages.isEmpty();
+    }
+
+    /**
+     * Gets the amount of messages acked by the broker.
+     *
+     * @return The amount of acked messages
+     */
+    public int getAckedCount() {
+        return ackedCount;
+    }
+
+    /**
+     * Gets the publish sequence numbers of all messages that were not confirmed.
+     *
+     * @return The nacked sequence numbers in publish order
+     */
+    public List<Long> getNackedSequenceNumbers() {
+        return Collections.unmodifiableList(nackedSequenceNumbers);
+    }
+
+    /**
+     * Gets all messages that were not confirmed and need to be retried.
+     *
+     * @return The nacked messages in publish order
+     */
+    public List<Message> getNackedMessages() {
+        return Collections.unmodifiableList(nackedMessages);
+    }
+}
@@ -0,0 +1,303 @@
+package com.personal.easy.rabbit.publisher;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.personal.easy.rabbit.message.Message;
+import com.personal.easy.rabbit.message.MessageBatch;
+
+/**
+ * <p>A batching publisher coalesces small messages sent to the same exchange with
+ * the same routing key and delivery options into one {@link MessageBatch} envelope
+ * which is published by a delegate publisher.</p>
+ *
+ * <p>A batch is flushed as soon as it holds the maximum amount of messages or bytes,
+ * or when the linger time elapsed after its first message was added. Messages larger
+ * than the maximum message size are not batched but published directly after the
+ * pending batch of the same destination was flushed, so the publish order per
+ * destination is kept.</p>
+ *
+ * <p>Consumers using a {@link com.personal.easy.rabbit.consumer.MessageConsumer}
+ * receive the inner messages individually. As the broker only sees the envelope,
+ * reliability guarantees of the delegate apply to a batch as a whole. A failing
+ * flush triggered by a publish is reported to the publishing thread, a failing
+ * flush triggered by the linger time is logged.</p>
+ *
+ */
+public class BatchingPublisher implements MessagePublisher {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BatchingPublisher.class);
+
+    public static final int DEFAULT_MAX_MESSAGE_SIZE = 200;
+
+    public static final int DEFAULT_MAX_BATCH_MESSAGES = 100;
+
+    public static final int DEFAULT_MAX_BATCH_BYTES = 64 * 1024;
+
+    public static final long DEFAULT_LINGER_TIME_IN_MS = 5;
+
+    private final MessagePublisher delegate;
+
+    private final int maxMessageSize;
+
+    private final int maxBatchMessages;
+
+    private final int maxBatchBytes;
+
+    private final long lingerTimeInMs;
+
+    private final Map<BatchKey, PendingBatch> pendingBatches = new LinkedHashMap<BatchKey, PendingBatch>();
+
+    private final ScheduledExecutorService lingerScheduler;
+
+    private boolean closed;
+
+    public BatchingPublisher(MessagePublisher delegate) {
+        this(delegate, DEFAULT_MAX_MESSAGE_SIZE, DEFAULT_MAX_BATCH_MESSAGES, DEFAULT_MAX_BATCH_BYTES,
+                DEFAULT_LINGER_TIME_IN_MS);
+    }
+
+    /**
+     * Creates a batching publisher.
+     *
+     * @param delegate The publisher used to publish envelopes and unbatched messages
+     * @param maxMessageSize The maximum body size in bytes of a message to be batched
+     * @param maxBatchMessages The maximum amount of messages in a batch
+     * @param maxBatchBytes The maximum sum of body sizes in bytes of a batch
+     * @param lingerTimeInMs The maximum time a message waits for further messages
+     */
+    public BatchingPublisher(MessagePublisher delegate, int maxMessageSize, int maxBatchMessages,
+            int maxBatchBytes, long lingerTimeInMs) {
+        if (maxBatchMessages < 1 || maxBatchBytes < 1 || lingerTimeInMs < 0) {
+            throw new IllegalArgumentException("Invalid batch limits");
+        }
+        this.delegate = delegate;
+        this.maxMessageSize = maxMessageSize;
+        this.maxBatchMessages = maxBatchMessages;
+        this.maxBatchBytes = maxBatchBytes;
+        this.lingerTimeInMs = lingerTimeInMs;
+        this.lingerScheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "easyrabbit-batching-publisher");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void publish(Message message) throws IOException, TimeoutException {
+        publish(message, DeliveryOptions.NONE);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Returns as soon as the message was added to a batch, unless the batch
+     * became full and was flushed by the calling thread.</p>
+     */
+    public synchronized void publish(Message message, DeliveryOptions deliveryOptions)
+            throws IOException, TimeoutException {
+        if (closed) {
+            throw new IOException("Attempt to publish with a closed batching publisher");
+        }
+        BatchKey key = new BatchKey(message.getExchange(), message.getRoutingKey(), deliveryOptions);
+        int size = message.getBodyContent().length;
+        if (size > maxMessageSize) {
+            flush(key);
+            delegate.publish(message, deliveryOptions);
+            return;
+        }
+        PendingBatch batch = pendingBatches.get(key);
+        if (batch != null && batch.bytes + size > maxBatchBytes) {
+            flush(key);
+            batch = null;
+        }
+        if (batch == null) {
+            batch = new PendingBatch(key);
+            pendingBatches.put(key, batch);
+            scheduleLingerFlush(batch);
+        }
+        batch.add(message, size);
+        if (batch.messages.size() >= maxBatchMessages || batch.bytes >= maxBatchBytes) {
+            flush(key);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void publish(List<Message> messages) throws IOException, TimeoutException {
+        publish(messages, DeliveryOptions.NONE);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public synchronized void publish(List<Message> messages, DeliveryOptions deliveryOptions)
+            throws IOException, TimeoutException {
+        for (Message message : messages) {
+            publish(message, deliveryOptions);
+        }
+    }
+
+    /**
+     * Publishes all pending batches regardless of their size and age.
+     *
+     * @throws IOException if publishing a batch fails
+     * @throws TimeoutException if publishing a batch times out
+     */
+    public synchronized void flush() throws IOException, TimeoutException {
+        List<BatchKey> keys = new ArrayList<BatchKey>(pendingBatches.keySet());
+        for (BatchKey key : keys) {
+            flush(key);
+        }
+    }
+
+    /**
+     * Gets the amount of messages waiting in pending batches.
+     *
+     * @return The amount of pending messages
+     */
+    public synchronized int getPendingCount() {
+        int count = 0;
+        for (PendingBatch batch : pendingBatches.values()) {
+            count += batch.messages.size();
+        }
+        return count;
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Flushes all pending batches and closes the delegate afterwards.</p>
+     */
+    public void close() throws IOException, TimeoutException {
+        synchronized (this) {
+            if (closed) {
+                LOGGER.warn("Attempt to close a batching publisher which is already closed");
+                return;
+            }
+            closed = true;
+            lingerScheduler.shutdownNow();
+            try {
+                flush();
+            } catch (IOException e) {
+                delegate.close();
+                throw e;
+            }
+        }
+        delegate.close();
+    }
+
+    private void flush(BatchKey key) throws IOException, TimeoutException {
+        PendingBatch batch = pendingBatches.remove(key);
+        if (batch != null) {
+            publishBatch(batch);
+        }
+    }
+
+    private void publishBatch(PendingBatch batch) throws IOException, TimeoutException {
+        if (batch.messages.size() == 1) {
+            delegate.publish(batch.messages.get(0), batch.key.deliveryOptions);
+            return;
+        }
+        LOGGER.debug("Publishing batch of {} messages to exchange {} with routing key {}", new Object[] {
+                batch.messages.size(), batch.key.exchange, batch.key.routingKey });
+        delegate.publish(MessageBatch.wrap(batch.messages), batch.key.deliveryOptions);
+    }
+
+    private void scheduleLingerFlush(final PendingBatch batch) {
+        lingerScheduler.schedule(new Runnable() {
+            public void run() {
+                synchronized (BatchingPublisher.this) {
+                    if (pendingBatches.get(batch.key) != batch) {
+                        return;
+                    }
+                    try {
+                        flush(batch.key);
+                    } catch (Exception e) {
+                        LOGGER.error("Failed to publish batch of {} messages to exchange {} with routing key {}",
+                                new Object[] { batch.messages.size(), batch.key.exchange, batch.key.routingKey, e });
+                    }
+                }
+            }
+        }, lingerTimeInMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * The messages collected for one destination.
+     */
+    private static class PendingBatch {
+
+        final BatchKey key;
+
+        final List<Message> messages = new ArrayList<Message>();
+
+        int bytes;
+
+        PendingBatch(BatchKey key) {
+            this.key = key;
+        }
+
+        void add(Message message, int size) {
+            messages.add(message);
+            bytes += size;
+        }
+    }
+
+    /**
+     * The destination of a batch. Only messages with equal keys are batched.
+     */
+    private static class BatchKey {
+
+        final String exchange;
+
+        final String routingKey;
+
+        final DeliveryOptions deliveryOptions;
+
+        BatchKey(String exchange, String routingKey, DeliveryOptions deliveryOptions) {
+            this.exchange = exchange;
+            this.routingKey = routingKey;
+            this.deliveryOptions = deliveryOptions;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof BatchKey)) {
+                return false;
+            }
+            BatchKey other = (BatchKey) obj;
+            return equal(exchange, other.exchange) && equal(routingKey, other.routingKey)
+                    && deliveryOptions == other.deliveryOptions;
+        }
+
+        @Override
+        public int hashCode() {
+            int hash = exchange == null ? 0 : exchange.hashCode();
+            hash = 31 * hash + (routingKey == null ? 0 : routingKey.hashCode());
+            return 31 * hash + (deliveryOptions == null ? 0 : deliveryOptions.hashCode());
+        }
+
+        private static boolean equal(Object first, Object second) {
+            return first == null ? second == null : first.equals(second);
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package com.personal.easy.rabbit.publisher;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.personal.easy.rabbit.message.Message;
+import com.personal.easy.rabbit.message.MessageChunks;
+import com.personal.easy.rabbit.message.MessageIdGenerator;
+
+/**
+ * <p>A chunking publisher transfers large payloads as a sequence of
+ * {@link MessageChunks chunk messages} published by a delegate publisher, so
+ * neither the publisher nor the broker has to handle the payload as a single
+ * message body.</p>
+ *
+ * <p>Payloads are read from a stream one chunk at a time, so at most two chunks
+ * are held in memory. Messages with bodies larger than the chunk size are
+ * chunked as well, smaller messages are published unchanged. Consumers use a
+ * {@link com.personal.easy.rabbit.consumer.ChunkReassembler} to receive the
+ * payloads.</p>
+ *
+ * <p>Reliability guarantees of the delegate apply per chunk. If publishing a
+ * chunk fails, the transfer is aborted and the chunks published before are
+ * discarded by the reassembler once the transfer timed out.</p>
+ *
+ * <p>When a list is published, consecutive messages which are not chunked are
+ * passed to the delegate as a list, so its guarantees for lists, e.g. a single
+ * transaction or batch confirms, apply to each such run of messages.</p>
+ *
+ */
+public class ChunkingPublisher implements MessagePublisher {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ChunkingPublisher.class);
+
+    public static final int DEFAULT_CHUNK_SIZE = 1024 * 1024;
+
+    private final MessagePublisher delegate;
+
+    private final int chunkSize;
+
+    public ChunkingPublisher(MessagePublisher delegate) {
+        this(delegate, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Creates a chunking publisher.
+     *
+     * @param delegate The publisher used to publish chunks and small messages
+     * @param chunkSize The maximum size in bytes of a chunk
+     */
+    public ChunkingPublisher(MessagePublisher delegate, int chunkSize) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Invalid chunk size " + chunkSize);
+        }
+        this.delegate = delegate;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void publish(Message message) throws IOException, TimeoutException {
+        publish(message, DeliveryOptions.NONE);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Chunks the message if its body is larger than the chunk size.</p>
+     */
+    public void publish(Message message, DeliveryOptions deliveryOptions) throws IOException, TimeoutException {
+        if (message.getBodyContent().length <= chunkSize) {
+            delegate.publish(message, deliveryOptions);
+            return;
+        }
+        publish(new ByteArrayInputStream(message.getBodyContent()), message, deliveryOptions);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void publish(List<Message> messages) throws IOException, TimeoutException {
+        publish(messages, DeliveryOptions.NONE);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Messages larger than the chunk size are chunked, the messages between
+     * them are published by the delegate as lists.</p>
+     */
+    public void publish(List<Message> messages, DeliveryOptions deliveryOptions) throws IOException, TimeoutException {
+        int from = 0;
+        for (int i = 0; i < messages.size(); i++) {
+            Message message = messages.get(i);
+            if (message.getBodyContent().length > chunkSize) {
+                publishUnchunked(messages.subList(from, i), deliveryOptions);
+                publish(new ByteArrayInputStream(message.getBodyContent()), message, deliveryOptions);
+                from = i + 1;
+            }
+        }
+        publishUnchunked(messages.subList(from, messages.size()), deliveryOptions);
+    }
+
+    private void publishUnchunked(List<Message> messages, DeliveryOptions deliveryOptions)
+            throws IOException, TimeoutException {
+        if (!messages.isEmpty()) {
+            delegate.publish(messages, deliveryOptions);
+        }
+    }
+
+    /**
+     * Transfers the content of a stream as chunks. The stream is read to its
+     * end but not closed.
+     *
+     * @param content The stream holding the payload
+     * @param template The message providing exchange, routing key, content type,
+     *        delivery mode and headers of the payload, its body is ignored
+     * @return The transfer id shared by all chunks
+     * @throws IOException if reading the stream or publishing a chunk fails
+     * @throws TimeoutException if publishing a chunk times out
+     */
+    public String publish(InputStream content, Message template) throws IOException, TimeoutException {
+        return publish(content, template, DeliveryOptions.NONE);
+    }
+
+    /**
+     * Transfers the content of a stream as chunks. The stream is read to its
+     * end but not closed.
+     *
+     * @param content The stream holding the payload
+     * @param template The message providing exchange, routing key, content type,
+     *        delivery mode and headers of the payload, its body is ignored
+     * @param deliveryOptions The delivery options of the chunks
+     * @return The transfer id shared by all chunks
+     * @throws IOException if reading the stream or publishing a chunk fails
+     * @throws TimeoutException if publishing a chunk times out
+     */
+    public String publish(InputStream content, Message template, DeliveryOptions deliveryOptions)
+            throws IOException, TimeoutException {
+        String transferId = MessageIdGenerator.DEFAULT.nextId();
+        byte[] chunk = readChunk(content);
+        if (chunk == null) {
+            chunk = new byte[0];
+        }
+        int index = 0;
+        long offset = 0;
+        while (true) {
+            // Reads ahead to know whether the current chunk is the last one
+            byte[] next = chunk.length < chunkSize ? null : readChunk(content);
+            delegate.publish(MessageChunks.chunk(template, transferId, index, offset, chunk, next == null),
+                    deliveryOptions);
+            offset += chunk.length;
+            if (next == null) {
+                break;
+            }
+            index++;
+            chunk = next;
+        }
+        LOGGER.debug("Published transfer {} of {} bytes in {} chunks", new Object[] { transferId, offset, index + 1 });
+        return transferId;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void close() throws IOException, TimeoutException {
+        delegate.close();
+    }
+
+    /**
+     * Reads up to a chunk from the stream.
+     *
+     * @return The read bytes or null if the stream ended
+     */
+    private byte[] readChunk(InputStream content) throws IOException {
+        byte[] chunk = new byte[chunkSize];
+        int length = 0;
+        int read;
+        while (length < chunkSize && (read = content.read(chunk, length, chunkSize - length)) >= 0) {
+            length += read;
+        }
+        if (length == 0) {
+            return null;
+        }
+        return length == chunkSize ? chunk : Arrays.copyOf(chunk, length);
+    }
+}
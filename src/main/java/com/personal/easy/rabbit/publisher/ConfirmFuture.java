@@ -0,0 +1,199 @@
+package com.personal.easy.rabbit.publisher;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * <p>A confirm future represents the broker confirmation of one single
+ * published message.</p>
+ *
+ * <p>The future is completed with {@code true} if the broker acknowledged
+ * the message and with {@code false} if the broker negatively acknowledged it.
+ * If the channel the message was published on is shut down before a
+ * confirmation arrives, the future fails with the shutdown cause.</p>
+ *
+ * <p>A mandatory or immediate message the broker could not route or deliver
+ * is returned before it is acked. The future of such a message is still
+ * completed with {@code true}, but {@link #isReturned()} tells it was
+ * returned.</p>
+ *
+ */
+public class ConfirmFuture implements Future<Boolean> {
+
+    private final long sequenceNumber;
+
+    private final CountDownLatch completion = new CountDownLatch(1);
+
+    private volatile Boolean acked;
+
+    private volatile Throwable failure;
+
+    private volatile boolean returned;
+
+    private volatile int replyCode;
+
+    private volatile String replyText;
+
+    private PublishWindow window;
+
+    private Runnable completionCallback;
+
+    private int windowBytes;
+
+    public ConfirmFuture(long sequenceNumber) {
+        this.sequenceNumber = sequenceNumber;
+    }
+
+    /**
+     * Gets the publish sequence number of the message on its channel.
+     *
+     * @return The publish sequence number
+     */
+    public long getSequenceNumber() {
+        return sequenceNumber;
+    }
+
+    /**
+     * Confirmations cannot be cancelled once a message was published.
+     *
+     * @return Always false
+     */
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        return false;
+    }
+
+    public boolean isCancelled() {
+        return false;
+    }
+
+    public boolean isDone() {
+        return completion.getCount() == 0;
+    }
+
+    /**
+     * Whether the broker acknowledged the message. Only meaningful
+     * if the future is done and has not failed.
+     *
+     * @return true if the message was acked by the broker
+     */
+    public boolean isAcked() {
+        return Boolean.TRUE.equals(acked);
+    }
+
+    /**
+     * Whether the broker returned the message as it could not be routed
+     * or delivered. Only meaningful if the future is done.
+     *
+     * @return true if the message was returned by the broker
+     */
+    public boolean isReturned() {
+        return returned;
+    }
+
+    /**
+     * Gets the AMQP reply code the message was returned with.
+     *
+     * @return The reply code, 0 if the message was not returned
+     */
+    public int getReplyCode() {
+        return replyCode;
+    }
+
+    /**
+     * Gets the description of the reply code the message was returned with.
+     *
+     * @return The reply text, null if the message was not returned
+     */
+    public String getReplyText() {
+        return replyText;
+    }
+
+    public Boolean get() throws InterruptedException, ExecutionException {
+        completion.await();
+        return result();
+    }
+
+    public Boolean get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        if (!completion.await(timeout, unit)) {
+            throw new TimeoutException("No confirm received for publish sequence number " + sequenceNumber);
+        }
+        return result();
+    }
+
+    synchronized void complete(boolean ack) {
+        if (isDone()) {
+            return;
+        }
+        this.acked = ack;
+        completion.countDown();
+        releaseWindow();
+        runCompletionCallback();
+    }
+
+    synchronized void returned(int replyCode, String replyText) {
+        if (isDone()) {
+            return;
+        }
+        this.replyCode = replyCode;
+        this.replyText = replyText;
+        this.returned = true;
+    }
+
+    synchronized void fail(Throwable cause) {
+        if (isDone()) {
+            return;
+        }
+        this.failure = cause;
+        completion.countDown();
+        releaseWindow();
+        runCompletionCallback();
+    }
+
+    /**
+     * Gives the message back to the given publish window as soon as
+     * the future is completed.
+     */
+    synchronized void releaseOnCompletion(PublishWindow window, int bytes) {
+        this.window = window;
+        this.windowBytes = bytes;
+        if (isDone()) {
+            releaseWindow();
+        }
+    }
+
+    /**
+     * Runs the given callback as soon as the future is completed,
+     * or right away if it is completed already.
+     */
+    synchronized void onCompletion(Runnable callback) {
+        this.completionCallback = callback;
+        if (isDone()) {
+            runCompletionCallback();
+        }
+    }
+
+    private void runCompletionCallback() {
+        if (completionCallback != null) {
+            Runnable callback = completionCallback;
+            completionCallback = null;
+            callback.run();
+        }
+    }
+
+    private void releaseWindow() {
+        if (window != null) {
+            window.release(1, windowBytes);
+            window = null;
+        }
+    }
+
+    private Boolean result() throws ExecutionException {
+        if (failure != null) {
+            throw new ExecutionException(failure);
+        }
+        return acked;
+    }
+}
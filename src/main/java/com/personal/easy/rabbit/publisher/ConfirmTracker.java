@@ -0,0 +1,180 @@
+package com.personal.easy.rabbit.publisher;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.personal.easy.rabbit.message.Message;
+import com.rabbitmq.client.AMQP.BasicProperties;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.ConfirmListener;
+import com.rabbitmq.client.ReturnListener;
+import com.rabbitmq.client.ShutdownListener;
+import com.rabbitmq.client.ShutdownSignalException;
+
+/**
+ * <p>A confirm tracker puts a channel into confirm mode once and keeps track
+ * of all messages published on that channel which have not been confirmed
+ * by the broker yet.</p>
+ *
+ * <p>Publishing through the tracker does not wait for the broker. Instead, every
+ * published message is associated with a {@link ConfirmFuture} which is completed
+ * as soon as the broker acks or nacks the message. Acks and nacks covering several
+ * messages at once (multiple=true) complete all affected futures.</p>
+ *
+ * <p>Mandatory and immediate messages carry their publish sequence number in the
+ * {@link #CORRELATION_HEADER} header, so a message returned by the broker is
+ * correlated to its future without any additional round trip. The return
+ * listener is only added to the channel with the first such message.</p>
+ *
+ */
+public class ConfirmTracker implements ConfirmListener, ReturnListener, ShutdownListener {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConfirmTracker.class);
+
+    public static final String CORRELATION_HEADER = "x-easyrabbit-publish-seq-no";
+
+    private final Channel channel;
+
+    private final ConcurrentNavigableMap<Long, ConfirmFuture> unconfirmed = new ConcurrentSkipListMap<Long, ConfirmFuture>();
+
+    private final Object publishMonitor = new Object();
+
+    private boolean returnListenerAdded;
+
+    /**
+     * Creates a tracker for the given channel and puts the channel into confirm mode.
+     *
+     * @param channel The channel to track confirms for
+     * @throws IOException if the channel cannot be put into confirm mode
+     */
+    public ConfirmTracker(Channel channel) throws IOException {
+        this.channel = channel;
+        channel.confirmSelect();
+        channel.addConfirmListener(this);
+        channel.addShutdownListener(this);
+    }
+
+    /**
+     * Gets the channel the tracker is attached to.
+     *
+     * @return The tracked channel
+     */
+    public Channel getChannel() {
+        return channel;
+    }
+
+    /**
+     * Gets the number of published messages still waiting for a confirm.
+     *
+     * @return The amount of unconfirmed messages
+     */
+    public int getUnconfirmedCount() {
+        return unconfirmed.size();
+    }
+
+    /**
+     * Publishes a message on the tracked channel without waiting for the broker
+     * to confirm it.
+     *
+     * @param message The message to publish
+     * @param deliveryOptions The delivery options
+     * @return The future completed by the broker confirm
+     * @throws IOException if the message could not be published
+     */
+    public ConfirmFuture publish(Message message, DeliveryOptions deliveryOptions) throws IOException {
+        // Sequence number and publish must not interleave with other publishing threads
+        synchronized (publishMonitor) {
+            long sequenceNumber = channel.getNextPublishSeqNo();
+            ConfirmFuture future = new ConfirmFuture(sequenceNumber);
+            // Register before publishing as the confirm may arrive before basicPublish returns
+            unconfirmed.put(sequenceNumber, future);
+            try {
+                if (deliveryOptions != DeliveryOptions.NONE) {
+                    addReturnListener();
+                    message.header(CORRELATION_HEADER, sequenceNumber);
+                }
+                message.publish(channel, deliveryOptions);
+            } catch (IOException e) {
+                unconfirmed.remove(sequenceNumber);
+                throw e;
+            }
+            return future;
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void handleAck(long deliveryTag, boolean multiple) {
+        LOGGER.debug("Received ack for publish sequence number {} (multiple: {})", deliveryTag, multiple);
+        confirm(deliveryTag, multiple, true);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void handleNack(long deliveryTag, boolean multiple) {
+        LOGGER.warn("Received nack for publish sequence number {} (multiple: {})", deliveryTag, multiple);
+        confirm(deliveryTag, multiple, false);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Marks the future of the returned message. The future is completed
+     * by the ack following the return.</p>
+     */
+    public void handleReturn(int replyCode, String replyText, String exchange, String routingKey,
+            BasicProperties properties, byte[] body) {
+        Object correlation = properties.getHeaders() == null ? null : properties.getHeaders().get(CORRELATION_HEADER);
+        if (!(correlation instanceof Number)) {
+            return;
+        }
+        long sequenceNumber = ((Number) correlation).longValue();
+        LOGGER.warn("Message with publish sequence number {} returned: {} {}", new Object[] {
+                sequenceNumber, replyCode, replyText });
+        ConfirmFuture future = unconfirmed.get(sequenceNumber);
+        if (future != null) {
+            future.returned(replyCode, replyText);
+        }
+    }
+
+    /**
+     * Fails all outstanding futures as no confirm can arrive on a closed channel.
+     */
+    public void shutdownCompleted(ShutdownSignalException cause) {
+        if (!unconfirmed.isEmpty()) {
+            LOGGER.warn("Channel shut down with {} unconfirmed messages", unconfirmed.size());
+        }
+        for (Map.Entry<Long, ConfirmFuture> entry = unconfirmed.pollFirstEntry(); entry != null; entry = unconfirmed.pollFirstEntry()) {
+            entry.getValue().fail(cause);
+        }
+    }
+
+    private void addReturnListener() {
+        if (!returnListenerAdded) {
+            channel.addReturnListener(this);
+            returnListenerAdded = true;
+        }
+    }
+
+    private void confirm(long deliveryTag, boolean multiple, boolean ack) {
+        if (multiple) {
+            Map<Long, ConfirmFuture> confirmed = unconfirmed.headMap(deliveryTag, true);
+            for (ConfirmFuture future : confirmed.values()) {
+                future.complete(ack);
+            }
+            confirmed.clear();
+        } else {
+            ConfirmFuture future = unconfirmed.remove(deliveryTag);
+            if (future != null) {
+                future.complete(ack);
+            }
+        }
+    }
+}
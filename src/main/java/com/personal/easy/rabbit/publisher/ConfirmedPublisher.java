@@ -1,5 +1,7 @@
 package com.personal.easy.rabbit.publisher;
 
+import com.personal.easy.rabbit.connection.ChannelMode;
+import com.personal.easy.rabbit.connection.ChannelPool;
 import com.personal.easy.rabbit.message.Message;
 import com.rabbitmq.client.Channel;
 import com.rabbitmq.client.ConnectionFactory;
@@ -8,7 +10,13 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeoutException;
 
 /**
@@ -16,51 +24,367 @@ import java.util.concurrent.TimeoutException;
  * and waits for a confirmation that the message was
  * received by the broker.</p>
  *
+ * <p>A channel is put into confirm mode only once, when it is used by the
+ * publisher for the first time, so publishing a message takes a single
+ * round trip to the broker for its confirm.</p>
+ *
+ * <p>Besides the blocking publish methods, messages can be published
+ * asynchronously via {@link #publishAsync(Message, DeliveryOptions)}. The channel
+ * is then put into confirm mode only once and many messages can be in flight
+ * at the same time, each of them being confirmed through its own
+ * {@link ConfirmFuture}.</p>
+ *
+ * <p>Lists of messages are published in batch-confirm mode: up to
+ * {@link #getMaxBatchSize()} messages are written to the channel before
+ * waiting for their confirms once, and only nacked messages are retried.</p>
+ *
+ * <p>Messages are never published again once waiting for their confirms was
+ * interrupted, as the broker may have received them already. An
+ * {@link InterruptedIOException} is thrown instead.</p>
  *
  */
 public class ConfirmedPublisher extends DiscretePublisher {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(ConfirmedPublisher.class);
 
+    public static final int DEFAULT_MAX_BATCH_SIZE = 1000;
+
+    private final Map<Channel, ConfirmTracker> confirmTrackers = new ConcurrentHashMap<Channel, ConfirmTracker>();
+
+    private int maxBatchSize = DEFAULT_MAX_BATCH_SIZE;
+
     public ConfirmedPublisher(ConnectionFactory connectionFactory) {
         super(connectionFactory);
     }
 
+    public ConfirmedPublisher(ChannelPool channelPool) {
+        super(channelPool);
+    }
+
     /**
      * {@inheritDoc}
      * @throws TimeoutException 
      */
     public void publish(Message message, DeliveryOptions deliveryOptions) throws IOException, TimeoutException {
-        for (int attempt = 1; attempt <= DEFAULT_RETRY_ATTEMPTS; attempt++) {
+        int size = message.getBodyContent().length;
+        PublishWindow window = acquirePublishWindow(1, size);
+        try {
+            publishWithRetries(message, deliveryOptions);
+        } finally {
+            releasePublishWindow(window, 1, size);
+        }
+    }
+
+    private void publishWithRetries(Message message, DeliveryOptions deliveryOptions) throws IOException, TimeoutException {
+        long startTime = System.currentTimeMillis();
+        for (int attempt = 1;; attempt++) {
             if (attempt > 1) {
                 LOGGER.info("Attempt {} to send message", attempt);
             }
 
+            Channel channel = null;
             try {
-                Channel channel = provideChannel();
-                message.publishAndWaitForConfirm(channel, deliveryOptions);
+                channel = provideChannel();
+                ConfirmFuture confirm = provideConfirmTracker(channel).publish(message, deliveryOptions);
+                awaitConfirm(confirm);
+                handlePublished(attempt, startTime);
                 return;
+            } catch (InterruptedIOException e) {
+                throw e;
             } catch (IOException e) {
-                handleIoException(attempt, e);
+                handleIoException(channel, attempt, startTime, e);
+            } finally {
+                releaseChannel(channel);
             }
         }
     }
 
+    /**
+     * Gets the maximum amount of messages written to the channel
+     * before waiting for their confirms.
+     *
+     * @return The maximum batch size
+     */
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    /**
+     * Sets the maximum amount of messages written to the channel
+     * before waiting for their confirms.
+     *
+     * @param maxBatchSize The maximum batch size
+     */
+    public void setMaxBatchSize(int maxBatchSize) {
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("Max batch size must be positive: " + maxBatchSize);
+        }
+        this.maxBatchSize = maxBatchSize;
+    }
+
     /**
      * {@inheritDoc}
+     *
+     * <p>Publishes the messages in batch-confirm mode and republishes
+     * nacked messages as told by the {@link RetryPolicy} of the publisher
+     * until all messages are acked.</p>
+     *
      * @throws TimeoutException 
      */
   
     public void publish(List<Message> messages, DeliveryOptions deliveryOptions) throws IOException, TimeoutException {
-        for (Message message : messages) {
-            publish(message, deliveryOptions);
+        long startTime = System.currentTimeMillis();
+        List<Message> pending = messages;
+        for (int attempt = 1;; attempt++) {
+            if (attempt > 1) {
+                LOGGER.info("Attempt {} to send {} nacked messages", attempt, pending.size());
+            }
+            BatchConfirmResult result = publishBatch(pending, deliveryOptions);
+            if (result.isAllAcked()) {
+                handlePublished(attempt, startTime);
+                return;
+            }
+            pending = result.getNackedMessages();
+            awaitRetry(attempt, startTime, new IOException(pending.size()
+                    + " messages were not confirmed by the broker after " + attempt + " attempts"));
         }
     }
 
+    /**
+     * <p>Publishes a list of messages in batch-confirm mode.</p>
+     *
+     * <p>The list is split into batches of at most {@link #getMaxBatchSize()} messages.
+     * All messages of a batch are written to the channel before waiting for their
+     * confirms. Nacked messages are not retried but reported in the result.</p>
+     *
+     * @param messages The messages to publish
+     * @param deliveryOptions The delivery options
+     * @return The result holding all nacked messages
+     * @throws InterruptedIOException if waiting for the confirms was interrupted,
+     *         the messages of the interrupted batch are neither acked nor nacked
+     * @throws IOException if the messages could not be written to the channel
+     * @throws TimeoutException
+     */
+    public BatchConfirmResult publishBatch(List<Message> messages, DeliveryOptions deliveryOptions)
+            throws IOException, TimeoutException {
+        BatchConfirmResult result = new BatchConfirmResult();
+        for (int from = 0; from < messages.size(); from += maxBatchSize) {
+            List<Message> batch = messages.subList(from, Math.min(from + maxBatchSize, messages.size()));
+            List<ConfirmFuture> confirms = writeBatch(batch, deliveryOptions);
+            awaitConfirms(batch, confirms, result);
+        }
+        return result;
+    }
+
+    List<ConfirmFuture> writeBatch(List<Message> batch, DeliveryOptions deliveryOptions)
+            throws IOException, TimeoutException {
+        long size = bodySize(batch);
+        PublishWindow window = acquirePublishWindow(batch.size(), size);
+        List<ConfirmFuture> confirms = null;
+        try {
+            confirms = writeBatchWithRetries(batch, deliveryOptions);
+        } finally {
+            if (confirms == null) {
+                releasePublishWindow(window, batch.size(), size);
+            }
+        }
+        // The window is released message by message as the confirms arrive
+        if (window != null) {
+            for (int i = 0; i < confirms.size(); i++) {
+                confirms.get(i).releaseOnCompletion(window, batch.get(i).getBodyContent().length);
+            }
+        }
+        return confirms;
+    }
 
-//    protected Channel provideChannel() throws IOException, TimeoutException {
-//        Channel channel = super.provideChannel();
-//        channel.confirmSelect();
-//        return channel;
-//    }
+    private List<ConfirmFuture> writeBatchWithRetries(List<Message> batch, DeliveryOptions deliveryOptions)
+            throws IOException, TimeoutException {
+        long startTime = System.currentTimeMillis();
+        for (int attempt = 1;; attempt++) {
+            if (attempt > 1) {
+                LOGGER.info("Attempt {} to send batch of {} messages", attempt, batch.size());
+            }
+
+            Channel channel = null;
+            try {
+                channel = provideChannel();
+                ConfirmTracker tracker = provideConfirmTracker(channel);
+                List<ConfirmFuture> confirms = new ArrayList<ConfirmFuture>(batch.size());
+                for (Message message : batch) {
+                    confirms.add(tracker.publish(message, deliveryOptions));
+                }
+                handlePublished(attempt, startTime);
+                return confirms;
+            } catch (IOException e) {
+                handleIoException(channel, attempt, startTime, e);
+            } finally {
+                releaseChannel(channel);
+            }
+        }
+    }
+
+    /**
+     * Waits for the broker to confirm a single message.
+     *
+     * @param confirm The future of the published message
+     * @throws InterruptedIOException if waiting was interrupted
+     * @throws IOException if the message was nacked or the channel was closed
+     *         before the confirm arrived
+     */
+    static void awaitConfirm(ConfirmFuture confirm) throws IOException {
+        LOGGER.debug("Waiting for publisher ack of publish sequence number {}", confirm.getSequenceNumber());
+        boolean acked;
+        try {
+            acked = confirm.get();
+        } catch (ExecutionException e) {
+            throw new IOException("Channel closed before message with publish sequence number "
+                    + confirm.getSequenceNumber() + " was confirmed", e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw interrupted("Publishing message interrupted while waiting for producer ack", e);
+        }
+        if (!acked) {
+            throw new IOException("Message with publish sequence number " + confirm.getSequenceNumber()
+                    + " was nacked by the broker");
+        }
+    }
+
+    static void awaitConfirms(List<Message> batch, List<ConfirmFuture> confirms, BatchConfirmResult result)
+            throws InterruptedIOException {
+        LOGGER.debug("Waiting for publisher acks of {} messages", confirms.size());
+        for (int i = 0; i < confirms.size(); i++) {
+            ConfirmFuture confirm = confirms.get(i);
+            boolean acked = false;
+            try {
+                acked = confirm.get();
+            } catch (ExecutionException e) {
+                LOGGER.warn("Channel closed before message with publish sequence number {} was confirmed",
+                        confirm.getSequenceNumber());
+            } catch (InterruptedException e) {
+                // The unconfirmed messages may have reached the broker, so they are not reported as nacked
+                Thread.currentThread().interrupt();
+                throw interrupted("Publishing batch interrupted while waiting for producer acks of "
+                        + (confirms.size() - i) + " messages", e);
+            }
+            if (acked) {
+                result.acked();
+            } else {
+                result.nacked(confirm.getSequenceNumber(), batch.get(i));
+            }
+        }
+    }
+
+    private static InterruptedIOException interrupted(String message, InterruptedException cause) {
+        InterruptedIOException exception = new InterruptedIOException(message);
+        exception.initCause(cause);
+        return exception;
+    }
+
+    /**
+     * Publishes a message without waiting for the broker to confirm it.
+     *
+     * @param message The message to publish
+     * @return The future completed by the broker confirm
+     * @throws IOException if the message could not be published
+     * @throws TimeoutException
+     */
+    public ConfirmFuture publishAsync(Message message) throws IOException, TimeoutException {
+        return publishAsync(message, DeliveryOptions.NONE);
+    }
+
+    /**
+     * <p>Publishes a message using the given delivery options without waiting for
+     * the broker to confirm it.</p>
+     *
+     * <p>The returned future is completed as soon as the broker acks or nacks the
+     * message. Retries only cover failures while handing the message to the channel,
+     * a nacked message has to be republished by the caller.</p>
+     *
+     * <p>If a {@link PublishWindow} is set, the message stays in flight until
+     * the future is completed.</p>
+     *
+     * @param message The message to publish
+     * @param deliveryOptions The delivery options
+     * @return The future completed by the broker confirm
+     * @throws IOException if the message could not be published
+     * @throws TimeoutException
+     */
+    public ConfirmFuture publishAsync(Message message, DeliveryOptions deliveryOptions) throws IOException, TimeoutException {
+        int size = message.getBodyContent().length;
+        PublishWindow window = acquirePublishWindow(1, size);
+        ConfirmFuture confirm = null;
+        try {
+            confirm = publishAsyncWithRetries(message, deliveryOptions);
+        } finally {
+            if (confirm == null) {
+                releasePublishWindow(window, 1, size);
+            }
+        }
+        if (window != null) {
+            confirm.releaseOnCompletion(window, size);
+        }
+        return confirm;
+    }
+
+    private ConfirmFuture publishAsyncWithRetries(Message message, DeliveryOptions deliveryOptions)
+            throws IOException, TimeoutException {
+        long startTime = System.currentTimeMillis();
+        for (int attempt = 1;; attempt++) {
+            if (attempt > 1) {
+                LOGGER.info("Attempt {} to send message", attempt);
+            }
+
+            Channel channel = null;
+            try {
+                channel = provideChannel();
+                ConfirmFuture confirm = provideConfirmTracker(channel).publish(message, deliveryOptions);
+                handlePublished(attempt, startTime);
+                return confirm;
+            } catch (IOException e) {
+                handleIoException(channel, attempt, startTime, e);
+            } finally {
+                releaseChannel(channel);
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    protected ChannelMode getChannelMode() {
+        return ChannelMode.CONFIRM;
+    }
+
+    /**
+     * Provides the confirm tracker of the given channel, putting
+     * a channel used for the first time into confirm mode.
+     *
+     * @param channel The leased channel
+     * @return The confirm tracker of the channel
+     * @throws IOException if the channel cannot be put into confirm mode
+     */
+    protected ConfirmTracker provideConfirmTracker(Channel channel) throws IOException {
+        ConfirmTracker tracker = confirmTrackers.get(channel);
+        if (tracker != null) {
+            return tracker;
+        }
+        synchronized (confirmTrackers) {
+            tracker = confirmTrackers.get(channel);
+            if (tracker == null) {
+                removeClosedTrackers();
+                tracker = new ConfirmTracker(channel);
+                confirmTrackers.put(channel, tracker);
+            }
+            return tracker;
+        }
+    }
+
+    private void removeClosedTrackers() {
+        Iterator<Channel> channels = confirmTrackers.keySet().iterator();
+        while (channels.hasNext()) {
+            if (!channels.next().isOpen()) {
+                channels.remove();
+            }
+        }
+    }
 }
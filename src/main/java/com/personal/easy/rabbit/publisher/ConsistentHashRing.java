@@ -0,0 +1,106 @@
+package com.personal.easy.rabbit.publisher;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * <p>A consistent hash ring maps keys to a fixed amount of partitions.</p>
+ *
+ * <p>Every partition owns {@link #VIRTUAL_NODES} points on the ring, and a key
+ * belongs to the partition owning the first point at or after the hash of the
+ * key. The points of a partition do not depend on the amount of partitions, so
+ * when partitions are added or removed, only the keys of the added or removed
+ * partitions move, roughly {@code 1 / partitions} of all keys.</p>
+ *
+ * <p>Rings are immutable and can be shared by several threads.</p>
+ *
+ */
+public final class ConsistentHashRing {
+
+    public static final int VIRTUAL_NODES = 160;
+
+    private final int partitions;
+
+    private final int[] points;
+
+    private final int[] owners;
+
+    /**
+     * Creates a ring of the given amount of partitions.
+     *
+     * @param partitions The amount of partitions, at least 1
+     */
+    public ConsistentHashRing(int partitions) {
+        if (partitions < 1) {
+            throw new IllegalArgumentException("Partitions must be positive: " + partitions);
+        }
+        this.partitions = partitions;
+        TreeMap<Integer, Integer> ring = new TreeMap<Integer, Integer>();
+        for (int partition = 0; partition < partitions; partition++) {
+            for (int node = 0; node < VIRTUAL_NODES; node++) {
+                int point = hash("partition-" + partition + "#" + node);
+                // On a rare collision the lower partition keeps the point, so rings agree
+                if (!ring.containsKey(point)) {
+                    ring.put(point, partition);
+                }
+            }
+        }
+        this.points = new int[ring.size()];
+        this.owners = new int[ring.size()];
+        int i = 0;
+        for (Map.Entry<Integer, Integer> entry : ring.entrySet()) {
+            points[i] = entry.getKey();
+            owners[i] = entry.getValue();
+            i++;
+        }
+    }
+
+    /**
+     * Gets the amount of partitions of the ring.
+     *
+     * @return The amount of partitions
+     */
+    public int getPartitions() {
+        return partitions;
+    }
+
+    /**
+     * Gets the partition the given key belongs to.
+     *
+     * @param key The key, null is treated like an empty key
+     * @return The partition between 0 and {@link #getPartitions()} - 1
+     */
+    public int partition(String key) {
+        int hash = hash(key == null ? "" : key);
+        int low = 0;
+        int high = points.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (points[middle] < hash) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        // Wraps around to the first point of the ring
+        return owners[low == points.length ? 0 : low];
+    }
+
+    /**
+     * Hashes a string with FNV-1a followed by the MurmurHash3 finalizer,
+     * which spreads similar keys evenly and does not depend on the JVM.
+     */
+    static int hash(String key) {
+        int hash = 0x811c9dc5;
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x01000193;
+        }
+        hash ^= hash >>> 16;
+        hash *= 0x85ebca6b;
+        hash ^= hash >>> 13;
+        hash *= 0xc2b2ae35;
+        hash ^= hash >>> 16;
+        return hash;
+    }
+}
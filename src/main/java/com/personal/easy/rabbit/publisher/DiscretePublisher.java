@@ -1,21 +1,57 @@
 package com.personal.easy.rabbit.publisher;
 
+import com.personal.easy.rabbit.connection.ChannelMode;
+import com.personal.easy.rabbit.connection.ChannelPool;
 import com.personal.easy.rabbit.message.Message;
+import com.rabbitmq.client.AMQP.BasicProperties;
 import com.rabbitmq.client.Channel;
-import com.rabbitmq.client.Connection;
 import com.rabbitmq.client.ConnectionFactory;
+import com.rabbitmq.client.ReturnListener;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeoutException;
 
 /**
  * Discrete publishers manage channels on their own with help of the connection
  * factory they are initialized with.
  *
+ * <p>
+ * Channels are leased from a {@link ChannelPool} for every publish and
+ * returned afterwards, so one publisher can safely be shared by several
+ * threads. By default every publisher owns a pool of one channel. Publishers
+ * can also share a bigger pool to let many threads publish concurrently.
+ * Channels are leased for the {@link ChannelMode} of the publisher, so
+ * publishers of different reliability types sharing a pool never get a
+ * channel in confirm or transaction mode they did not ask for.
+ * </p>
+ *
+ * <p>
+ * Failed attempts are retried as told by the {@link RetryPolicy}, by default
+ * {@link FixedIntervalRetryPolicy#DEFAULT}. As publishing is synchronous, the
+ * publishing thread waits for the retries. Use an {@link AsyncPublisher} with
+ * a retry policy to keep publishing threads free during broker outages.
+ * </p>
+ *
+ * <p>
+ * A {@link PublishWindow} can be set to limit the messages and bytes in
+ * flight, so publishing threads fail or wait predictably while the broker is
+ * slow or blocks the connection.
+ * </p>
+ *
+ * <p>
+ * Mandatory and immediate messages the broker cannot route or deliver are
+ * passed to the {@link ReturnCallback} if one is set. Otherwise they are
+ * dropped by the broker without notice.
+ * </p>
+ *
  */
 public abstract class DiscretePublisher implements MessagePublisher {
 
@@ -25,11 +61,87 @@ public abstract class DiscretePublisher implements MessagePublisher {
 	public static final int DEFAULT_RETRY_ATTEMPTS = 3;
 	public static final int DEFAULT_RETRY_INTERVAL = 1000;
 
-	private Channel channel;
-	private ConnectionFactory connectionFactory;
+	private final ChannelPool channelPool;
+	private final boolean ownsChannelPool;
+	private final RetryMetrics retryMetrics = new RetryMetrics();
+	private volatile RetryPolicy retryPolicy = FixedIntervalRetryPolicy.DEFAULT;
+	private volatile PublishWindow publishWindow;
+	private volatile ReturnCallback returnCallback;
+	private final Set<Channel> returnListeningChannels = Collections
+			.newSetFromMap(new ConcurrentHashMap<Channel, Boolean>());
+	private final ReturnListener returnHandler = new ReturnHandler();
 
 	public DiscretePublisher(ConnectionFactory connectionFactory) {
-		this.connectionFactory = connectionFactory;
+		this.channelPool = new ChannelPool(connectionFactory);
+		this.ownsChannelPool = true;
+	}
+
+	public DiscretePublisher(ChannelPool channelPool) {
+		this.channelPool = channelPool;
+		this.ownsChannelPool = false;
+	}
+
+	/**
+	 * Gets the pool the publisher leases its channels from.
+	 *
+	 * @return The channel pool
+	 */
+	public ChannelPool getChannelPool() {
+		return channelPool;
+	}
+
+	public RetryPolicy getRetryPolicy() {
+		return retryPolicy;
+	}
+
+	/**
+	 * Sets the policy deciding whether and when failed attempts are retried.
+	 *
+	 * @param retryPolicy
+	 *            The retry policy
+	 */
+	public void setRetryPolicy(RetryPolicy retryPolicy) {
+		this.retryPolicy = retryPolicy;
+	}
+
+	public PublishWindow getPublishWindow() {
+		return publishWindow;
+	}
+
+	/**
+	 * Sets the window limiting the messages and bytes in flight. Publishers do
+	 * not limit messages in flight by default.
+	 *
+	 * @param publishWindow
+	 *            The publish window, may be null
+	 */
+	public void setPublishWindow(PublishWindow publishWindow) {
+		this.publishWindow = publishWindow;
+	}
+
+	public ReturnCallback getReturnCallback() {
+		return returnCallback;
+	}
+
+	/**
+	 * Sets the callback notified about returned mandatory and immediate
+	 * messages. The callback is registered on every channel when it is
+	 * leased the next time.
+	 *
+	 * @param returnCallback
+	 *            The return callback, may be null
+	 */
+	public void setReturnCallback(ReturnCallback returnCallback) {
+		this.returnCallback = returnCallback;
+	}
+
+	/**
+	 * Gets the counters about the retries of this publisher.
+	 *
+	 * @return The retry metrics
+	 */
+	public RetryMetrics getRetryMetrics() {
+		return retryMetrics;
 	}
 
 	/**
@@ -52,72 +164,214 @@ public abstract class DiscretePublisher implements MessagePublisher {
 	/**
 	 * {@inheritDoc}
 	 * 
+	 * <p>
+	 * Closes the channel pool if it is owned by the publisher. A shared pool
+	 * is left open.
+	 * </p>
+	 * 
 	 * @throws TimeoutException
 	 */
 
 	public void close() throws IOException, TimeoutException {
-		if (channel == null) {
-			LOGGER.warn("Attempt to close a publisher channel that has not been initialized");
+		if (!ownsChannelPool) {
+			LOGGER.debug("Not closing shared channel pool of publisher");
 			return;
-		} else if (!channel.isOpen()) {
-			LOGGER.warn("Attempt to close a publisher channel that has already been closed or is already closing");
+		} else if (channelPool.isClosed()) {
+			LOGGER.warn("Attempt to close a publisher channel pool that has already been closed");
 			return;
 		}
-		LOGGER.debug("Closing publisher channel");
-		channel.close();
-		channel = null;
-		LOGGER.debug("Successfully closed publisher channel");
+		LOGGER.debug("Closing publisher channel pool");
+		channelPool.close();
+		LOGGER.debug("Successfully closed publisher channel pool");
 	}
 
 	/**
-	 * Initializes a channel if there is not already an open channel.
+	 * Leases a channel from the channel pool. The channel must be handed back
+	 * via {@link #releaseChannel(Channel)} after use.
 	 *
-	 * @return The initialized or already open channel.
+	 * @return The leased channel.
 	 * @throws IOException
 	 *             if the channel cannot be initialized
 	 * @throws TimeoutException
 	 */
 	protected Channel provideChannel() throws IOException, TimeoutException {
-		if (channel == null || !channel.isOpen()) {
-			Connection connection = connectionFactory.newConnection();
-			channel = connection.createChannel();
+		Channel channel = channelPool.lease(getChannelMode());
+		if (returnCallback != null && !returnListeningChannels.contains(channel)) {
+			removeClosedReturnListeningChannels();
+			channel.addReturnListener(returnHandler);
+			returnListeningChannels.add(channel);
 		}
 		return channel;
 	}
 
 	/**
-	 * Handles an IOException depending on the already used attempts to send a
-	 * message. Also performs a soft reset of the currently used channel.
+	 * Gets the mode of the channels leased by this publisher.
+	 *
+	 * @return The channel mode, plain by default
+	 */
+	protected ChannelMode getChannelMode() {
+		return ChannelMode.PLAIN;
+	}
+
+	private void removeClosedReturnListeningChannels() {
+		Iterator<Channel> channels = returnListeningChannels.iterator();
+		while (channels.hasNext()) {
+			if (!channels.next().isOpen()) {
+				channels.remove();
+			}
+		}
+	}
+
+	/**
+	 * Returns a leased channel to the channel pool. Has no effect if the
+	 * channel is null or was already invalidated.
+	 *
+	 * @param channel
+	 *            The leased channel
+	 */
+	protected void releaseChannel(Channel channel) {
+		channelPool.release(channel);
+	}
+
+	/**
+	 * Takes messages from the publish window before publishing them.
+	 *
+	 * @param messages
+	 *            The amount of messages to publish
+	 * @param bytes
+	 *            The sum of the body sizes of the messages
+	 * @return The window to release the messages to after publishing, null
+	 *         if no window is set
+	 * @throws IOException
+	 *             if the window is exceeded
+	 * @throws TimeoutException
+	 *             if the window did not open in time
+	 */
+	protected PublishWindow acquirePublishWindow(int messages, long bytes) throws IOException, TimeoutException {
+		PublishWindow window = publishWindow;
+		if (window != null) {
+			window.acquire(messages, bytes);
+		}
+		return window;
+	}
+
+	/**
+	 * Gives back published messages to the window they were taken from.
+	 *
+	 * @param window
+	 *            The window returned when acquiring, may be null
+	 * @param messages
+	 *            The amount of messages
+	 * @param bytes
+	 *            The sum of the body sizes of the messages
+	 */
+	protected void releasePublishWindow(PublishWindow window, int messages, long bytes) {
+		if (window != null) {
+			window.release(messages, bytes);
+		}
+	}
+
+	static long bodySize(List<Message> messages) {
+		long bytes = 0;
+		for (Message message : messages) {
+			bytes += message.getBodyContent().length;
+		}
+		return bytes;
+	}
+
+	/**
+	 * Records a successful attempt to send a message.
 	 *
 	 * @param attempt
+	 *            The number of the successful attempt
+	 * @param startTimeInMs
+	 *            The time the first attempt started
+	 */
+	protected void handlePublished(int attempt, long startTimeInMs) {
+		if (attempt > 1) {
+			retryMetrics.recordRecovery(attempt, System.currentTimeMillis() - startTimeInMs);
+		}
+	}
+
+	/**
+	 * Handles an IOException by asking the retry policy whether the failed
+	 * attempt is retried and waiting the delay told by the policy. Also
+	 * invalidates the channel used for the failed attempt.
+	 *
+	 * @param channel
+	 *            The channel used for the attempt, may be null if no channel
+	 *            could be leased
+	 * @param attempt
 	 *            Current attempt count
+	 * @param startTimeInMs
+	 *            The time the first attempt started
 	 * @param ioException
 	 *            The thrown exception
 	 * @throws IOException
-	 *             if the maximum amount of attempts is exceeded
-	 * @throws TimeoutException
+	 *             if the attempt is not retried or waiting for the retry is
+	 *             interrupted
 	 */
-	protected void handleIoException(int attempt, IOException ioException)
+	protected void handleIoException(Channel channel, int attempt, long startTimeInMs, IOException ioException)
 			throws IOException {
-		if (channel != null && channel.isOpen()) {
-			try {
-				channel.close();
-			} catch (IOException e) {
-				LOGGER.warn("Failed to close channel after failed publish", e);
-			} catch (TimeoutException e) {
-				LOGGER.warn("Failed to close channel after failed publish", e);
-			}
-		}
-		channel = null;
-		if (attempt == DEFAULT_RETRY_ATTEMPTS) {
+		channelPool.invalidate(channel);
+		awaitRetry(attempt, startTimeInMs, ioException);
+	}
+
+	/**
+	 * Asks the retry policy whether a failed attempt is retried and waits the
+	 * delay told by the policy. The channel of the attempt is kept, e.g. for
+	 * messages nacked by the broker.
+	 *
+	 * @param attempt
+	 *            Current attempt count
+	 * @param startTimeInMs
+	 *            The time the first attempt started
+	 * @param ioException
+	 *            The exception the attempt failed with
+	 * @throws IOException
+	 *             if the attempt is not retried or waiting for the retry is
+	 *             interrupted
+	 */
+	protected void awaitRetry(int attempt, long startTimeInMs, IOException ioException) throws IOException {
+		long delay = retryPolicy.getDelayInMs(attempt, System.currentTimeMillis() - startTimeInMs, ioException);
+		if (delay < 0) {
+			retryMetrics.recordExhausted();
 			throw ioException;
 		}
+		retryMetrics.recordRetry(delay);
+		LOGGER.debug("Retrying failed attempt {} in {} ms", attempt, delay);
 		try {
-			Thread.sleep(DEFAULT_RETRY_INTERVAL);
+			Thread.sleep(delay);
 		} catch (InterruptedException e) {
 			LOGGER.warn(
 					"Sending message interrupted while waiting for retry attempt",
 					e);
+			Thread.currentThread().interrupt();
+			throw ioException;
+		}
+	}
+
+	/**
+	 * Passes returned messages to the return callback of the publisher.
+	 */
+	private class ReturnHandler implements ReturnListener {
+
+		public void handleReturn(int replyCode, String replyText,
+				String exchange, String routingKey, BasicProperties properties,
+				byte[] body) {
+			ReturnCallback callback = returnCallback;
+			if (callback == null) {
+				return;
+			}
+			Message message = new Message(properties).exchange(exchange)
+					.routingKey(routingKey).body(body)
+					.id(properties.getMessageId());
+			try {
+				callback.onReturned(message, replyCode, replyText);
+			} catch (RuntimeException e) {
+				LOGGER.error("Return callback failed for message {}",
+						message.getId(), e);
+			}
 		}
 	}
 }
@@ -0,0 +1,134 @@
+package com.personal.easy.rabbit.publisher;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * <p>A retry policy doubling the delay after every failed attempt up to a
+ * maximum delay.</p>
+ *
+ * <p>Every delay is reduced by a random share of at most the jitter factor,
+ * so publishers failing at the same time, e.g. during a broker failover, do
+ * not retry in lockstep. Retrying stops as soon as the maximum amount of
+ * attempts is reached, the next attempt would start after the maximum
+ * elapsed time or the classifier considers the failure not retryable.</p>
+ *
+ */
+public class ExponentialBackoffRetryPolicy implements RetryPolicy {
+
+    public static final long DEFAULT_INITIAL_DELAY_IN_MS = 100;
+
+    public static final long DEFAULT_MAX_DELAY_IN_MS = 10000;
+
+    public static final int DEFAULT_MAX_ATTEMPTS = 10;
+
+    public static final long DEFAULT_MAX_ELAPSED_TIME_IN_MS = 60000;
+
+    public static final double DEFAULT_MULTIPLIER = 2.0;
+
+    public static final double DEFAULT_JITTER_FACTOR = 0.5;
+
+    private final long initialDelayInMs;
+
+    private final long maxDelayInMs;
+
+    private final int maxAttempts;
+
+    private final long maxElapsedTimeInMs;
+
+    private volatile double multiplier = DEFAULT_MULTIPLIER;
+
+    private volatile double jitterFactor = DEFAULT_JITTER_FACTOR;
+
+    private volatile RetryableExceptionClassifier classifier;
+
+    public ExponentialBackoffRetryPolicy() {
+        this(DEFAULT_INITIAL_DELAY_IN_MS, DEFAULT_MAX_DELAY_IN_MS, DEFAULT_MAX_ATTEMPTS, DEFAULT_MAX_ELAPSED_TIME_IN_MS);
+    }
+
+    /**
+     * Creates the policy.
+     *
+     * @param initialDelayInMs The delay after the first failed attempt
+     * @param maxDelayInMs The maximum delay between two attempts
+     * @param maxAttempts The maximum amount of attempts including the first one
+     * @param maxElapsedTimeInMs The maximum time after the first attempt to start another attempt
+     */
+    public ExponentialBackoffRetryPolicy(long initialDelayInMs, long maxDelayInMs, int maxAttempts,
+            long maxElapsedTimeInMs) {
+        if (initialDelayInMs < 0 || maxDelayInMs < initialDelayInMs || maxAttempts < 1 || maxElapsedTimeInMs < 0) {
+            throw new IllegalArgumentException("Invalid exponential backoff retry policy");
+        }
+        this.initialDelayInMs = initialDelayInMs;
+        this.maxDelayInMs = maxDelayInMs;
+        this.maxAttempts = maxAttempts;
+        this.maxElapsedTimeInMs = maxElapsedTimeInMs;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public long getDelayInMs(int attempt, long elapsedTimeInMs, Exception exception) {
+        if (attempt >= maxAttempts) {
+            return STOP;
+        }
+        RetryableExceptionClassifier currentClassifier = classifier;
+        if (currentClassifier != null && !currentClassifier.isRetryable(exception)) {
+            return STOP;
+        }
+        double backoff = initialDelayInMs * Math.pow(multiplier, attempt - 1);
+        long delay = (long) Math.min(backoff, maxDelayInMs);
+        if (jitterFactor > 0 && delay > 0) {
+            delay -= (long) (delay * jitterFactor * ThreadLocalRandom.current().nextDouble());
+        }
+        if (elapsedTimeInMs + delay > maxElapsedTimeInMs) {
+            return STOP;
+        }
+        return delay;
+    }
+
+    public double getMultiplier() {
+        return multiplier;
+    }
+
+    /**
+     * Sets the factor the delay grows by after every failed attempt.
+     *
+     * @param multiplier The multiplier of at least one
+     */
+    public void setMultiplier(double multiplier) {
+        if (multiplier < 1) {
+            throw new IllegalArgumentException("Multiplier must be at least one: " + multiplier);
+        }
+        this.multiplier = multiplier;
+    }
+
+    public double getJitterFactor() {
+        return jitterFactor;
+    }
+
+    /**
+     * Sets the maximum share of a delay which is randomly subtracted.
+     *
+     * @param jitterFactor The jitter factor between zero and one
+     */
+    public void setJitterFactor(double jitterFactor) {
+        if (jitterFactor < 0 || jitterFactor > 1) {
+            throw new IllegalArgumentException("Jitter factor must be between zero and one: " + jitterFactor);
+        }
+        this.jitterFactor = jitterFactor;
+    }
+
+    public RetryableExceptionClassifier getClassifier() {
+        return classifier;
+    }
+
+    /**
+     * Sets the classifier deciding which failures are retried.
+     * By default all failures are retried.
+     *
+     * @param classifier The classifier, may be null to retry all failures
+     */
+    public void setClassifier(RetryableExceptionClassifier classifier) {
+        this.classifier = classifier;
+    }
+}
@@ -0,0 +1,55 @@
+package com.personal.easy.rabbit.publisher;
+
+/**
+ * <p>A retry policy waiting the same interval before every attempt
+ * until a maximum amount of attempts is reached.</p>
+ *
+ */
+public class FixedIntervalRetryPolicy implements RetryPolicy {
+
+    /**
+     * The policy used by publishers by default.
+     */
+    public static final FixedIntervalRetryPolicy DEFAULT = new FixedIntervalRetryPolicy(
+            DiscretePublisher.DEFAULT_RETRY_ATTEMPTS, DiscretePublisher.DEFAULT_RETRY_INTERVAL);
+
+    /**
+     * A policy never retrying, e.g. for publishers used as delegate
+     * of a publisher retrying on its own.
+     */
+    public static final FixedIntervalRetryPolicy NO_RETRY = new FixedIntervalRetryPolicy(1, 0);
+
+    private final int maxAttempts;
+
+    private final long intervalInMs;
+
+    /**
+     * Creates the policy.
+     *
+     * @param maxAttempts The maximum amount of attempts including the first one
+     * @param intervalInMs The time to wait between two attempts
+     */
+    public FixedIntervalRetryPolicy(int maxAttempts, long intervalInMs) {
+        if (maxAttempts < 1 || intervalInMs < 0) {
+            throw new IllegalArgumentException("Invalid retry policy: " + maxAttempts + " attempts, "
+                    + intervalInMs + " ms interval");
+        }
+        this.maxAttempts = maxAttempts;
+        this.intervalInMs = intervalInMs;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public long getDelayInMs(int attempt, long elapsedTimeInMs, Exception exception) {
+        return attempt < maxAttempts ? intervalInMs : STOP;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    public long getIntervalInMs() {
+        return intervalInMs;
+    }
+}
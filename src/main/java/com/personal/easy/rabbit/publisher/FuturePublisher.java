@@ -0,0 +1,175 @@
+package com.personal.easy.rabbit.publisher;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+
+import com.personal.easy.rabbit.message.Message;
+import com.rabbitmq.client.ConnectionFactory;
+
+/**
+ * <p>A future publisher publishes messages with a certain level of
+ * {@link PublisherReliability} and reports the outcome by a {@link PublishFuture}.</p>
+ *
+ * <p>With {@link PublisherReliability#CONFIRMED}, the publishing thread only hands
+ * the messages to the channel. The futures are completed by the connection's I/O
+ * thread when the broker confirms the messages, and report returned mandatory
+ * messages as {@link PublishStatus#RETURNED}. No thread waits for a message in
+ * flight.</p>
+ *
+ * <p>Messages published with {@link PublisherReliability#NONE} are complete as
+ * soon as they are written to the channel. With {@link PublisherReliability#TRANSACTIONAL},
+ * committing is a synchronous broker round trip done by the publishing thread, so
+ * the returned future is already done.</p>
+ *
+ * <p>Failures, including retries exhausted by the delegate's {@link RetryPolicy},
+ * fail the future instead of being thrown.</p>
+ *
+ */
+public class FuturePublisher implements AsyncMessagePublisher {
+
+    private final DiscretePublisher publisher;
+
+    /**
+     * Initializes the publisher with a certain level of reliability.
+     *
+     * @param connectionFactory The connection factory
+     * @param reliability The reliability level
+     */
+    public FuturePublisher(ConnectionFactory connectionFactory, PublisherReliability reliability) {
+        if (reliability == PublisherReliability.CONFIRMED) {
+            publisher = new ConfirmedPublisher(connectionFactory);
+        } else if (reliability == PublisherReliability.TRANSACTIONAL) {
+            publisher = new TransactionalPublisher(connectionFactory);
+        } else {
+            publisher = new SimplePublisher(connectionFactory);
+        }
+    }
+
+    /**
+     * Initializes the publisher with a configured discrete publisher. Its reliability
+     * is derived from its type.
+     *
+     * @param publisher The publisher used to publish the messages
+     */
+    public FuturePublisher(DiscretePublisher publisher) {
+        this.publisher = publisher;
+    }
+
+    /**
+     * Gets the publisher used to publish the messages.
+     *
+     * @return The delegate publisher
+     */
+    public DiscretePublisher getPublisher() {
+        return publisher;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public PublishFuture<PublishResult> publishAsync(Message message) {
+        return publishAsync(message, DeliveryOptions.NONE);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public PublishFuture<PublishResult> publishAsync(Message message, DeliveryOptions deliveryOptions) {
+        if (publisher instanceof ConfirmedPublisher) {
+            try {
+                return toPublishFuture(message, ((ConfirmedPublisher) publisher).publishAsync(message, deliveryOptions));
+            } catch (Exception e) {
+                return PublishFuture.failed(e);
+            }
+        }
+        try {
+            publisher.publish(message, deliveryOptions);
+        } catch (Exception e) {
+            return PublishFuture.failed(e);
+        }
+        return PublishFuture.completed(new PublishResult(message, unconfirmedStatus()));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public PublishFuture<List<PublishResult>> publishAsync(List<Message> messages) {
+        return publishAsync(messages, DeliveryOptions.NONE);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>With {@link PublisherReliability#CONFIRMED}, the messages are written in
+     * batches of at most {@link ConfirmedPublisher#getMaxBatchSize()} messages.
+     * Nacked messages are reported in the results and not republished.</p>
+     */
+    public PublishFuture<List<PublishResult>> publishAsync(List<Message> messages, DeliveryOptions deliveryOptions) {
+        if (publisher instanceof ConfirmedPublisher) {
+            ConfirmedPublisher confirmedPublisher = (ConfirmedPublisher) publisher;
+            List<PublishFuture<PublishResult>> futures = new ArrayList<PublishFuture<PublishResult>>(messages.size());
+            try {
+                for (int from = 0; from < messages.size(); from += confirmedPublisher.getMaxBatchSize()) {
+                    List<Message> batch = messages.subList(from,
+                            Math.min(from + confirmedPublisher.getMaxBatchSize(), messages.size()));
+                    List<ConfirmFuture> confirms = confirmedPublisher.writeBatch(batch, deliveryOptions);
+                    for (int i = 0; i < batch.size(); i++) {
+                        futures.add(toPublishFuture(batch.get(i), confirms.get(i)));
+                    }
+                }
+            } catch (Exception e) {
+                futures.add(PublishFuture.<PublishResult>failed(e));
+            }
+            return PublishFuture.all(futures);
+        }
+        try {
+            publisher.publish(messages, deliveryOptions);
+        } catch (Exception e) {
+            return PublishFuture.failed(e);
+        }
+        List<PublishResult> results = new ArrayList<PublishResult>(messages.size());
+        for (Message message : messages) {
+            results.add(new PublishResult(message, unconfirmedStatus()));
+        }
+        return PublishFuture.completed(Collections.unmodifiableList(results));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void close() throws IOException, TimeoutException {
+        publisher.close();
+    }
+
+    private PublishStatus unconfirmedStatus() {
+        return publisher instanceof TransactionalPublisher ? PublishStatus.COMMITTED : PublishStatus.PUBLISHED;
+    }
+
+    private static PublishFuture<PublishResult> toPublishFuture(final Message message, final ConfirmFuture confirm) {
+        final PublishFuture<PublishResult> future = new PublishFuture<PublishResult>();
+        confirm.onCompletion(new Runnable() {
+            public void run() {
+                try {
+                    if (confirm.isReturned()) {
+                        future.complete(new PublishResult(message, PublishStatus.RETURNED, confirm.getReplyCode(),
+                                confirm.getReplyText()));
+                    } else {
+                        future.complete(new PublishResult(message, confirm.get() ? PublishStatus.ACKED
+                                : PublishStatus.NACKED));
+                    }
+                } catch (ExecutionException e) {
+                    future.fail(e.getCause());
+                } catch (InterruptedException e) {
+                    // Cannot happen as the confirm is done already
+                    Thread.currentThread().interrupt();
+                    future.fail(e);
+                }
+            }
+        });
+        return future;
+    }
+}
@@ -0,0 +1,166 @@
+package com.personal.easy.rabbit.publisher;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.personal.easy.rabbit.message.Message;
+
+/**
+ * <p>A bounded, lock-free ring buffer of pending publishes shared by any amount
+ * of publishing threads and I/O threads.</p>
+ *
+ * <p>All slots are allocated when the buffer is created. Every slot carries a
+ * sequence number telling whether it is ready to be written or to be read, so
+ * neither offering nor polling allocates or takes a lock.</p>
+ *
+ */
+class MessageRingBuffer {
+
+    private final int mask;
+
+    private final Message[] messages;
+
+    private final DeliveryOptions[] deliveryOptions;
+
+    private final PublishCallback[] callbacks;
+
+    private final AtomicLongArray sequences;
+
+    private final AtomicLong tail = new AtomicLong();
+
+    private final AtomicLong head = new AtomicLong();
+
+    /**
+     * Creates a ring buffer holding at least the given amount of publishes.
+     * The capacity is rounded up to the next power of two, but is at least two
+     * as a single slot cannot tell a written from a free state.
+     *
+     * @param capacity The minimum capacity
+     */
+    MessageRingBuffer(int capacity) {
+        if (capacity < 1 || capacity > (1 << 30)) {
+            throw new IllegalArgumentException("Invalid ring buffer capacity: " + capacity);
+        }
+        int size = Math.max(2, Integer.highestOneBit(capacity));
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.mask = size - 1;
+        this.messages = new Message[size];
+        this.deliveryOptions = new DeliveryOptions[size];
+        this.callbacks = new PublishCallback[size];
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    int capacity() {
+        return mask + 1;
+    }
+
+    int size() {
+        long size = tail.get() - head.get();
+        return (int) Math.max(0, Math.min(size, capacity()));
+    }
+
+    /**
+     * Tells whether all publishes offered so far were polled. A slot being
+     * written counts as taken, so polling may still fail briefly afterwards.
+     */
+    boolean isEmpty() {
+        long position = head.get();
+        return tail.get() <= position;
+    }
+
+    /**
+     * Tells whether all slots are taken. A slot being read counts as taken,
+     * so offering may still fail briefly afterwards.
+     */
+    boolean isFull() {
+        long position = tail.get();
+        return position - head.get() >= capacity();
+    }
+
+    /**
+     * Adds a publish to the buffer if there is a free slot.
+     *
+     * @return true if the publish was added, false if the buffer is full
+     */
+    boolean offer(Message message, DeliveryOptions options, PublishCallback callback) {
+        long position = tail.get();
+        int index;
+        while (true) {
+            index = (int) (position & mask);
+            long difference = sequences.get(index) - position;
+            if (difference == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    break;
+                }
+                position = tail.get();
+            } else if (difference < 0) {
+                return false;
+            } else {
+                position = tail.get();
+            }
+        }
+        messages[index] = message;
+        deliveryOptions[index] = options;
+        callbacks[index] = callback;
+        // Publishes the slot contents to the reading thread
+        sequences.lazySet(index, position + 1);
+        return true;
+    }
+
+    /**
+     * Moves the oldest publish of the buffer into the given entry.
+     *
+     * @param entry The entry to fill, owned by the calling thread
+     * @return true if an entry was taken, false if the buffer is empty
+     */
+    boolean poll(Entry entry) {
+        long position = head.get();
+        int index;
+        while (true) {
+            index = (int) (position & mask);
+            long difference = sequences.get(index) - (position + 1);
+            if (difference == 0) {
+                if (head.compareAndSet(position, position + 1)) {
+                    break;
+                }
+                position = head.get();
+            } else if (difference < 0) {
+                return false;
+            } else {
+                position = head.get();
+            }
+        }
+        entry.message = messages[index];
+        entry.deliveryOptions = deliveryOptions[index];
+        entry.callback = callbacks[index];
+        messages[index] = null;
+        deliveryOptions[index] = null;
+        callbacks[index] = null;
+        // Frees the slot for the next round of writers
+        sequences.lazySet(index, position + mask + 1);
+        return true;
+    }
+
+    /**
+     * A reusable holder for a publish taken from the buffer.
+     */
+    static class Entry {
+
+        Message message;
+
+        DeliveryOptions deliveryOptions;
+
+        PublishCallback callback;
+
+        void clear() {
+            message = null;
+            deliveryOptions = null;
+            callback = null;
+        }
+    }
+}
@@ -0,0 +1,508 @@
+package com.personal.easy.rabbit.publisher;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.personal.easy.rabbit.message.Message;
+import com.personal.easy.rabbit.message.MessageSerializer;
+
+/**
+ * <p>A durable first-in-first-out store of messages waiting to be published,
+ * backed by memory-mapped segment files in a directory.</p>
+ *
+ * <p>A list of messages can be appended as a single record, it is read and
+ * removed as a unit then, e.g. to publish it again as a list.</p>
+ *
+ * <p>Messages are appended to the last segment. A new segment is started as soon
+ * as a message does not fit into the last one. Every segment records how far its
+ * messages were removed, so a spool reopened after a restart continues with the
+ * first message not removed yet. Segments whose messages were all removed are
+ * deleted, the last segment is reused once it is empty.</p>
+ *
+ * <p>Appended messages survive a crash of the process as soon as this method
+ * returns. They survive a crash of the operating system only after {@link #force()}.
+ * Every message is protected by a checksum, a partially written message ends the
+ * recovery of its segment.</p>
+ *
+ * <p>Instances are thread-safe, but a spool directory must only be used by one
+ * instance at a time.</p>
+ *
+ */
+public class MessageSpool implements Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MessageSpool.class);
+
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+    private static final String SEGMENT_PREFIX = "spool-";
+
+    private static final String SEGMENT_SUFFIX = ".seg";
+
+    private static final int MAGIC = 0x45525350;
+
+    private static final int CONSUMED_POSITION_OFFSET = 8;
+
+    private static final int SEGMENT_HEADER_SIZE = 16;
+
+    private static final int RECORD_HEADER_SIZE = 8;
+
+    private static final int LIST_RECORD = 0x80;
+
+    private final File directory;
+
+    private final int segmentSize;
+
+    private final LinkedList<Segment> segments = new LinkedList<Segment>();
+
+    private long nextSegmentId;
+
+    private long pendingCount;
+
+    private int peekedLength = -1;
+
+    private int peekedCount;
+
+    private boolean closed;
+
+    public MessageSpool(File directory) throws IOException {
+        this(directory, DEFAULT_SEGMENT_SIZE);
+    }
+
+    /**
+     * Opens the spool in the given directory and recovers all messages not
+     * removed yet.
+     *
+     * @param directory The directory of the segment files, created if missing
+     * @param segmentSize The size of a segment file in bytes
+     * @throws IOException if the directory or its segment files cannot be opened
+     */
+    public MessageSpool(File directory, int segmentSize) throws IOException {
+        if (segmentSize <= SEGMENT_HEADER_SIZE + RECORD_HEADER_SIZE) {
+            throw new IllegalArgumentException("Segment size too small: " + segmentSize);
+        }
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Cannot create spool directory " + directory);
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        recover();
+    }
+
+    /**
+     * Appends a message to the end of the spool.
+     *
+     * @param message The message to append
+     * @param deliveryOptions The delivery options to publish the message with
+     * @throws IOException if the message cannot be written
+     */
+    public synchronized void append(Message message, DeliveryOptions deliveryOptions) throws IOException {
+        ensureOpen();
+        appendRecord(serialize(message, deliveryOptions), 1);
+    }
+
+    /**
+     * Appends a list of messages to the end of the spool as a single record,
+     * which is peeked and removed as a unit.
+     *
+     * @param messages The messages to append, must not be empty
+     * @param deliveryOptions The delivery options to publish the messages with
+     * @throws IOException if the messages cannot be written
+     */
+    public synchronized void append(List<Message> messages, DeliveryOptions deliveryOptions) throws IOException {
+        if (messages.isEmpty()) {
+            throw new IllegalArgumentException("Cannot spool an empty list of messages");
+        }
+        ensureOpen();
+        appendRecord(serialize(messages, deliveryOptions), messages.size());
+    }
+
+    private void appendRecord(byte[] record, int messageCount) throws IOException {
+        Segment tail = segments.peekLast();
+        if (tail == null || tail.buffer.capacity() - tail.writePosition < RECORD_HEADER_SIZE + record.length) {
+            tail = createSegment(Math.max(segmentSize, SEGMENT_HEADER_SIZE + RECORD_HEADER_SIZE + record.length));
+        }
+        CRC32 checksum = new CRC32();
+        checksum.update(record);
+        MappedByteBuffer buffer = tail.buffer;
+        buffer.position(tail.writePosition + RECORD_HEADER_SIZE);
+        buffer.put(record);
+        buffer.putInt(tail.writePosition + 4, (int) checksum.getValue());
+        int nextPosition = tail.writePosition + RECORD_HEADER_SIZE + record.length;
+        if (nextPosition + 4 <= buffer.capacity()) {
+            // Terminates the records as a reused segment may contain stale ones
+            buffer.putInt(nextPosition, 0);
+        }
+        // The length is written last as it marks the record as complete
+        buffer.putInt(tail.writePosition, record.length);
+        tail.writePosition = nextPosition;
+        pendingCount += messageCount;
+    }
+
+    /**
+     * Reads the first record of the spool without removing it.
+     *
+     * @return The first message or list of messages or null if the spool is empty
+     * @throws IOException if the message cannot be read
+     */
+    public synchronized SpooledMessage peek() throws IOException {
+        ensureOpen();
+        Segment head = segments.peekFirst();
+        while (head != null && head.readPosition == head.writePosition && segments.size() > 1) {
+            segments.removeFirst();
+            head.delete();
+            head = segments.peekFirst();
+        }
+        if (head == null || head.readPosition == head.writePosition) {
+            return null;
+        }
+        MappedByteBuffer buffer = head.buffer;
+        int length = buffer.getInt(head.readPosition);
+        byte[] record = new byte[length];
+        ByteBuffer view = buffer.duplicate();
+        view.position(head.readPosition + RECORD_HEADER_SIZE);
+        view.get(record);
+        SpooledMessage spooled = deserialize(record);
+        peekedLength = length;
+        peekedCount = spooled.getMessages().size();
+        return spooled;
+    }
+
+    /**
+     * Removes the first record of the spool, which must have been read by
+     * {@link #peek()} before.
+     *
+     * @throws IOException if a segment file cannot be deleted
+     */
+    public synchronized void remove() throws IOException {
+        ensureOpen();
+        if (peekedLength < 0) {
+            throw new IllegalStateException("No message was peeked before removing it");
+        }
+        Segment head = segments.getFirst();
+        head.readPosition += RECORD_HEADER_SIZE + peekedLength;
+        head.buffer.putLong(CONSUMED_POSITION_OFFSET, head.readPosition);
+        peekedLength = -1;
+        pendingCount -= peekedCount;
+        if (head.readPosition < head.writePosition) {
+            return;
+        }
+        if (segments.size() > 1) {
+            segments.removeFirst();
+            head.delete();
+        } else {
+            head.reset();
+        }
+    }
+
+    /**
+     * Gets the amount of messages in the spool.
+     *
+     * @return The amount of messages
+     */
+    public synchronized long size() {
+        return pendingCount;
+    }
+
+    public synchronized boolean isEmpty() {
+        return pendingCount == 0;
+    }
+
+    /**
+     * Gets the amount of segment files of the spool.
+     *
+     * @return The amount of segments
+     */
+    public synchronized int getSegmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * Writes all appended messages to the storage device.
+     */
+    public synchronized void force() {
+        for (Segment segment : segments) {
+            segment.buffer.force();
+        }
+    }
+
+    /**
+     * Forces and closes all segment files. Messages remaining in the spool
+     * are recovered when the spool directory is opened again.
+     *
+     * @throws IOException if a segment file cannot be closed
+     */
+    public synchronized void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        force();
+        for (Segment segment : segments) {
+            segment.channel.close();
+        }
+        segments.clear();
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Message spool " + directory + " is closed");
+        }
+    }
+
+    private void recover() throws IOException {
+        File[] files = directory.listFiles(new FilenameFilter() {
+            public boolean accept(File dir, String name) {
+                return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+            }
+        });
+        List<Long> ids = new ArrayList<Long>();
+        for (File file : files) {
+            String name = file.getName();
+            ids.add(Long.valueOf(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())));
+        }
+        Collections.sort(ids);
+        for (int i = 0; i < ids.size(); i++) {
+            long id = ids.get(i);
+            File file = segmentFile(id);
+            Segment segment = new Segment(file, (int) file.length());
+            if (segment.buffer.getInt(0) != MAGIC) {
+                segment.channel.close();
+                throw new IOException("File " + file + " is not a spool segment");
+            }
+            segment.readPosition = (int) segment.buffer.getLong(CONSUMED_POSITION_OFFSET);
+            segment.writePosition = segment.readPosition;
+            int messages = segment.scan();
+            nextSegmentId = id + 1;
+            if (messages == 0 && i < ids.size() - 1) {
+                segment.delete();
+                continue;
+            }
+            pendingCount += messages;
+            segments.add(segment);
+        }
+        if (pendingCount > 0) {
+            LOGGER.info("Recovered {} spooled messages in {} segments from {}", new Object[] {
+                    pendingCount, segments.size(), directory });
+        }
+    }
+
+    private Segment createSegment(int size) throws IOException {
+        long id = nextSegmentId++;
+        Segment segment = new Segment(segmentFile(id), size);
+        segment.buffer.putInt(0, MAGIC);
+        segment.reset();
+        segments.add(segment);
+        LOGGER.debug("Created spool segment {}", segment.file);
+        return segment;
+    }
+
+    private File segmentFile(long id) {
+        return new File(directory, String.format("%s%020d%s", SEGMENT_PREFIX, id, SEGMENT_SUFFIX));
+    }
+
+    static byte[] serialize(Message message, DeliveryOptions deliveryOptions) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(message.getBodyContent().length + 128);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(deliveryOptions.ordinal());
+        out.writeUTF(message.getExchange());
+        out.writeUTF(message.getRoutingKey());
+        MessageSerializer.write(out, message);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    static byte[] serialize(List<Message> messages, DeliveryOptions deliveryOptions) throws IOException {
+        int estimatedSize = 8;
+        for (Message message : messages) {
+            estimatedSize += message.getBodyContent().length + 128;
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(estimatedSize);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(LIST_RECORD | deliveryOptions.ordinal());
+        out.writeInt(messages.size());
+        for (Message message : messages) {
+            out.writeUTF(message.getExchange());
+            out.writeUTF(message.getRoutingKey());
+            MessageSerializer.write(out, message);
+        }
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    static SpooledMessage deserialize(byte[] record) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(record));
+        int flags = in.readUnsignedByte();
+        DeliveryOptions deliveryOptions = DeliveryOptions.values()[flags & ~LIST_RECORD];
+        if ((flags & LIST_RECORD) == 0) {
+            return new SpooledMessage(Collections.singletonList(readMessage(in)), false, deliveryOptions);
+        }
+        int count = in.readInt();
+        if (count < 1 || count > record.length) {
+            throw new IOException("Invalid message count " + count + " of spooled list");
+        }
+        List<Message> messages = new ArrayList<Message>(count);
+        for (int i = 0; i < count; i++) {
+            messages.add(readMessage(in));
+        }
+        return new SpooledMessage(messages, true, deliveryOptions);
+    }
+
+    private static Message readMessage(DataInputStream in) throws IOException {
+        String exchange = in.readUTF();
+        String routingKey = in.readUTF();
+        return MessageSerializer.read(in).exchange(exchange).routingKey(routingKey);
+    }
+
+    /**
+     * Gets the amount of messages of a record without deserializing it.
+     */
+    static int messageCount(byte[] record) {
+        if (record.length < 5 || (record[0] & LIST_RECORD) == 0) {
+            return 1;
+        }
+        return ByteBuffer.wrap(record, 1, 4).getInt();
+    }
+
+    /**
+     * A message or a list of messages read from the spool together with
+     * their delivery options.
+     */
+    public static final class SpooledMessage {
+
+        private final List<Message> messages;
+
+        private final boolean list;
+
+        private final DeliveryOptions deliveryOptions;
+
+        SpooledMessage(List<Message> messages, boolean list, DeliveryOptions deliveryOptions) {
+            this.messages = messages;
+            this.list = list;
+            this.deliveryOptions = deliveryOptions;
+        }
+
+        /**
+         * Gets the spooled message, or the first message of a spooled list.
+         *
+         * @return The message
+         */
+        public Message getMessage() {
+            return messages.get(0);
+        }
+
+        /**
+         * Gets all messages of the record.
+         *
+         * @return The messages of the list or the single spooled message
+         */
+        public List<Message> getMessages() {
+            return messages;
+        }
+
+        /**
+         * Tells whether the messages were appended as a list.
+         *
+         * @return true if a list was spooled
+         */
+        public boolean isList() {
+            return list;
+        }
+
+        public DeliveryOptions getDeliveryOptions() {
+            return deliveryOptions;
+        }
+    }
+
+    /**
+     * A memory-mapped segment file.
+     */
+    private static class Segment {
+
+        final File file;
+
+        final FileChannel channel;
+
+        final MappedByteBuffer buffer;
+
+        int readPosition;
+
+        int writePosition;
+
+        Segment(File file, int size) throws IOException {
+            this.file = file;
+            RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+            try {
+                this.channel = randomAccessFile.getChannel();
+                this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            } catch (IOException e) {
+                randomAccessFile.close();
+                throw e;
+            }
+        }
+
+        /**
+         * Finds the end of the complete records following the read position.
+         *
+         * @return The amount of messages of the records found
+         */
+        int scan() {
+            int messages = 0;
+            CRC32 checksum = new CRC32();
+            while (writePosition + RECORD_HEADER_SIZE <= buffer.capacity()) {
+                int length = buffer.getInt(writePosition);
+                if (length <= 0 || writePosition + RECORD_HEADER_SIZE + length > buffer.capacity()) {
+                    break;
+                }
+                byte[] record = new byte[length];
+                ByteBuffer view = buffer.duplicate();
+                view.position(writePosition + RECORD_HEADER_SIZE);
+                view.get(record);
+                checksum.reset();
+                checksum.update(record);
+                if ((int) checksum.getValue() != buffer.getInt(writePosition + 4)) {
+                    LOGGER.warn("Ignoring incomplete record at position {} of spool segment {}", writePosition, file);
+                    break;
+                }
+                writePosition += RECORD_HEADER_SIZE + length;
+                messages += messageCount(record);
+            }
+            return messages;
+        }
+
+        /**
+         * Empties the segment so it can be reused.
+         */
+        void reset() {
+            // Invalidates the first record before moving the read position back
+            buffer.putInt(SEGMENT_HEADER_SIZE, 0);
+            buffer.putLong(CONSUMED_POSITION_OFFSET, SEGMENT_HEADER_SIZE);
+            readPosition = SEGMENT_HEADER_SIZE;
+            writePosition = SEGMENT_HEADER_SIZE;
+        }
+
+        void delete() throws IOException {
+            channel.close();
+            if (!file.delete()) {
+                LOGGER.warn("Could not delete spool segment {}", file);
+            }
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.personal.easy.rabbit.publisher;
+
+/**
+ * Defines how an {@link AsyncPublisher} reacts to a message
+ * that is published while its buffer is full.
+ *
+ */
+public enum OverflowPolicy {
+    /**
+     * The publishing thread waits until the buffer has room for the message
+     */
+    BLOCK,
+    /**
+     * The message is discarded, the publishing thread is not notified
+     */
+    DROP,
+    /**
+     * Publishing fails immediately with an exception
+     */
+    FAIL_FAST
+}
@@ -0,0 +1,46 @@
+package com.personal.easy.rabbit.publisher;
+
+import java.io.IOException;
+
+/**
+ * <p>Signals that publishing a list of messages in chunked commit mode
+ * failed after some of its chunks were already committed.</p>
+ *
+ * <p>The messages before {@link #getCommittedCount()} are in their destination
+ * queues and must not be published again, the remaining ones were not
+ * published.</p>
+ *
+ * @see TransactionalPublisher#setChunkSize(int, long)
+ */
+public class PartiallyCommittedException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int committedCount;
+
+    private final int totalCount;
+
+    public PartiallyCommittedException(int committedCount, int totalCount, IOException cause) {
+        super("Committed only " + committedCount + " of " + totalCount + " messages", cause);
+        this.committedCount = committedCount;
+        this.totalCount = totalCount;
+    }
+
+    /**
+     * Gets the amount of messages at the start of the list which were committed.
+     *
+     * @return The amount of committed messages
+     */
+    public int getCommittedCount() {
+        return committedCount;
+    }
+
+    /**
+     * Gets the amount of messages which should have been published.
+     *
+     * @return The size of the published list
+     */
+    public int getTotalCount() {
+        return totalCount;
+    }
+}
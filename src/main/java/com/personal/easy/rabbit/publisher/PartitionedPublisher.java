@@ -0,0 +1,189 @@
+package com.personal.easy.rabbit.publisher;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeoutException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.personal.easy.rabbit.message.Message;
+
+/**
+ * <p>A partitioned publisher spreads the messages of one topic over several
+ * shard queues, so several consumers can work in parallel while the order
+ * of messages with the same partition key is kept.</p>
+ *
+ * <p>The partition key of a message is the value of the configured header,
+ * or its routing key if no header is configured or the header is missing. The
+ * key is mapped to a partition by a {@link ConsistentHashRing}, and the message
+ * is published by the delegate with the shard routing key of the partition,
+ * see {@link #shardName(String, int)}. The routing key of the message is
+ * replaced by the shard routing key. A routing key used as partition key is
+ * kept in the {@link #PARTITION_KEY_HEADER} header, so a message published
+ * again, e.g. retried or replayed from a spool, stays in its partition.</p>
+ *
+ * <p>The amount of partitions can be changed by {@link #setPartitions(int)}.
+ * Only the keys of added or removed partitions move to another shard queue,
+ * all other keys keep their shard queue and thus their order. The shard queues
+ * can be declared and bound by
+ * {@link com.personal.easy.rabbit.setting.BrokerSetup#declareAndBindShardQueues(String, String, String, int)}.</p>
+ *
+ */
+public class PartitionedPublisher implements MessagePublisher {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PartitionedPublisher.class);
+
+    public static final String PARTITION_KEY_HEADER = "x-easyrabbit-partition-key";
+
+    private final MessagePublisher delegate;
+
+    private final String routingKey;
+
+    private final String partitionKeyHeader;
+
+    private volatile ConsistentHashRing ring;
+
+    /**
+     * Creates a publisher using the routing key of a message as partition key.
+     *
+     * @param delegate The publisher publishing the messages to the shards
+     * @param routingKey The routing key of the topic the shard routing keys are derived from
+     * @param partitions The amount of partitions
+     */
+    public PartitionedPublisher(MessagePublisher delegate, String routingKey, int partitions) {
+        this(delegate, routingKey, partitions, null);
+    }
+
+    /**
+     * Creates a publisher using the given header of a message as partition key.
+     *
+     * @param delegate The publisher publishing the messages to the shards
+     * @param routingKey The routing key of the topic the shard routing keys are derived from
+     * @param partitions The amount of partitions
+     * @param partitionKeyHeader The header holding the partition key, may be null
+     */
+    public PartitionedPublisher(MessagePublisher delegate, String routingKey, int partitions,
+            String partitionKeyHeader) {
+        this.delegate = delegate;
+        this.routingKey = routingKey;
+        this.partitionKeyHeader = partitionKeyHeader;
+        this.ring = new ConsistentHashRing(partitions);
+    }
+
+    /**
+     * Gets the name of a shard queue or shard routing key.
+     *
+     * @param name The name of the topic queue or routing key
+     * @param partition The partition
+     * @return The name suffixed by the partition
+     */
+    public static String shardName(String name, int partition) {
+        return name + "." + partition;
+    }
+
+    public int getPartitions() {
+        return ring.getPartitions();
+    }
+
+    /**
+     * Changes the amount of partitions. Messages published afterwards are
+     * mapped to the new partitions. Shard queues of added partitions must
+     * exist before.
+     *
+     * @param partitions The new amount of partitions
+     */
+    public void setPartitions(int partitions) {
+        if (partitions != ring.getPartitions()) {
+            LOGGER.info("Rebalancing routing key {} from {} to {} partitions", new Object[] {
+                    routingKey, ring.getPartitions(), partitions });
+            this.ring = new ConsistentHashRing(partitions);
+        }
+    }
+
+    /**
+     * Gets the partition a message is published to.
+     *
+     * @param message The message
+     * @return The partition of the message
+     */
+    public int partition(Message message) {
+        return ring.partition(partitionKeyOrRoutingKey(message));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void publish(Message message) throws IOException, TimeoutException {
+        publish(message, DeliveryOptions.NONE);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void publish(Message message, DeliveryOptions deliveryOptions) throws IOException, TimeoutException {
+        delegate.publish(route(message, ring), deliveryOptions);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void publish(List<Message> messages) throws IOException, TimeoutException {
+        publish(messages, DeliveryOptions.NONE);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>All messages of the list are mapped with the same partitions, even if
+     * the amount of partitions is changed concurrently.</p>
+     */
+    public void publish(List<Message> messages, DeliveryOptions deliveryOptions) throws IOException, TimeoutException {
+        ConsistentHashRing current = ring;
+        for (Message message : messages) {
+            route(message, current);
+        }
+        delegate.publish(messages, deliveryOptions);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void close() throws IOException, TimeoutException {
+        delegate.close();
+    }
+
+    private Message route(Message message, ConsistentHashRing current) {
+        String partitionKey = partitionKey(message);
+        if (partitionKey == null) {
+            // Keeps the routing key as it is replaced by the shard routing key
+            partitionKey = message.getRoutingKey();
+            message.header(PARTITION_KEY_HEADER, partitionKey);
+        }
+        return message.routingKey(shardName(routingKey, current.partition(partitionKey)));
+    }
+
+    private String partitionKeyOrRoutingKey(Message message) {
+        String partitionKey = partitionKey(message);
+        return partitionKey != null ? partitionKey : message.getRoutingKey();
+    }
+
+    /**
+     * Gets the partition key from the configured header or the routing key
+     * kept by a previous publish.
+     *
+     * @return The partition key, null if the routing key is the partition key
+     */
+    private String partitionKey(Message message) {
+        Map<String, Object> headers = message.getBasicProperties().getHeaders();
+        if (headers == null) {
+            return null;
+        }
+        Object value = partitionKeyHeader == null ? null : headers.get(partitionKeyHeader);
+        if (value == null) {
+            value = headers.get(PARTITION_KEY_HEADER);
+        }
+        return value == null ? null : value.toString();
+    }
+}
@@ -0,0 +1,27 @@
+package com.personal.easy.rabbit.publisher;
+
+import com.personal.easy.rabbit.message.Message;
+
+/**
+ * A publish callback is notified about the outcome of a message
+ * published asynchronously. Callbacks are called from the publisher's
+ * I/O threads and must therefore be thread-safe and return quickly.
+ *
+ */
+public interface PublishCallback {
+
+    /**
+     * Called when the message was handed to the broker successfully.
+     *
+     * @param message The published message
+     */
+    void onPublished(Message message);
+
+    /**
+     * Called when the message could not be published.
+     *
+     * @param message The message that failed to be published
+     * @param cause The reason of the failure
+     */
+    void onFailure(Message message, Throwable cause);
+}
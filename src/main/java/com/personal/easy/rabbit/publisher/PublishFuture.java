@@ -0,0 +1,217 @@
+package com.personal.easy.rabbit.publisher;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * <p>A publish future is the result of a publish via an {@link AsyncMessagePublisher}
+ * to which listeners can be attached.</p>
+ *
+ * <p>The future is completed by the thread learning about the outcome, e.g. by
+ * the connection's I/O thread receiving a broker confirm, so no thread waits for
+ * a message in flight. Listeners added to a done future are called right away by
+ * the adding thread. Blocking via {@link #get()} is possible as well.</p>
+ *
+ * @param <T> The result type
+ */
+public class PublishFuture<T> implements Future<T> {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PublishFuture.class);
+
+    private final CountDownLatch completion = new CountDownLatch(1);
+
+    private volatile T result;
+
+    private volatile Throwable failure;
+
+    private List<PublishListener<T>> listeners = new ArrayList<PublishListener<T>>(1);
+
+    /**
+     * Creates a future already completed with the given result.
+     *
+     * @param result The result
+     * @return The completed future
+     */
+    public static <T> PublishFuture<T> completed(T result) {
+        PublishFuture<T> future = new PublishFuture<T>();
+        future.complete(result);
+        return future;
+    }
+
+    /**
+     * Creates a future already failed with the given cause.
+     *
+     * @param cause The failure
+     * @return The failed future
+     */
+    public static <T> PublishFuture<T> failed(Throwable cause) {
+        PublishFuture<T> future = new PublishFuture<T>();
+        future.fail(cause);
+        return future;
+    }
+
+    /**
+     * Combines several futures into one future completed with the results in
+     * the order of the futures as soon as all of them completed. It fails with
+     * the first failure as soon as all futures are done.
+     *
+     * @param futures The futures to combine
+     * @return The combined future
+     */
+    public static <T> PublishFuture<List<T>> all(final List<PublishFuture<T>> futures) {
+        final PublishFuture<List<T>> all = new PublishFuture<List<T>>();
+        if (futures.isEmpty()) {
+            all.complete(Collections.<T>emptyList());
+            return all;
+        }
+        final AtomicInteger remaining = new AtomicInteger(futures.size());
+        PublishListener<T> listener = new PublishListener<T>() {
+            public void onComplete(PublishFuture<T> future) {
+                if (remaining.decrementAndGet() > 0) {
+                    return;
+                }
+                @SuppressWarnings("unchecked")
+                T[] results = (T[]) new Object[futures.size()];
+                for (int i = 0; i < results.length; i++) {
+                    PublishFuture<T> each = futures.get(i);
+                    if (each.failure != null) {
+                        all.fail(each.failure);
+                        return;
+                    }
+                    results[i] = each.result;
+                }
+                all.complete(Arrays.asList(results));
+            }
+        };
+        for (PublishFuture<T> future : futures) {
+            future.addListener(listener);
+        }
+        return all;
+    }
+
+    /**
+     * Adds a listener called as soon as the future is done, or right away if
+     * the future is done already.
+     *
+     * @param listener The listener
+     * @return This future
+     */
+    public PublishFuture<T> addListener(PublishListener<T> listener) {
+        synchronized (this) {
+            if (!isDone()) {
+                listeners.add(listener);
+                return this;
+            }
+        }
+        notifyListener(listener);
+        return this;
+    }
+
+    /**
+     * Published messages cannot be withdrawn.
+     *
+     * @return Always false
+     */
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        return false;
+    }
+
+    public boolean isCancelled() {
+        return false;
+    }
+
+    public boolean isDone() {
+        return completion.getCount() == 0;
+    }
+
+    /**
+     * Whether the future completed with a result. Only meaningful
+     * if the future is done.
+     *
+     * @return true if the future did not fail
+     */
+    public boolean isSuccess() {
+        return isDone() && failure == null;
+    }
+
+    /**
+     * Gets the cause of a failed future.
+     *
+     * @return The failure, null if the future did not fail
+     */
+    public Throwable getFailure() {
+        return failure;
+    }
+
+    public T get() throws InterruptedException, ExecutionException {
+        completion.await();
+        return result();
+    }
+
+    public T get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        if (!completion.await(timeout, unit)) {
+            throw new TimeoutException("Publish did not complete within " + unit.toMillis(timeout) + " ms");
+        }
+        return result();
+    }
+
+    void complete(T result) {
+        List<PublishListener<T>> completed;
+        synchronized (this) {
+            if (isDone()) {
+                return;
+            }
+            this.result = result;
+            completion.countDown();
+            completed = listeners;
+            listeners = null;
+        }
+        notifyListeners(completed);
+    }
+
+    void fail(Throwable cause) {
+        List<PublishListener<T>> completed;
+        synchronized (this) {
+            if (isDone()) {
+                return;
+            }
+            this.failure = cause;
+            completion.countDown();
+            completed = listeners;
+            listeners = null;
+        }
+        notifyListeners(completed);
+    }
+
+    private void notifyListeners(List<PublishListener<T>> completed) {
+        for (PublishListener<T> listener : completed) {
+            notifyListener(listener);
+        }
+    }
+
+    private void notifyListener(PublishListener<T> listener) {
+        try {
+            listener.onComplete(this);
+        } catch (RuntimeException e) {
+            LOGGER.error("Publish listener failed", e);
+        }
+    }
+
+    private T result() throws ExecutionException {
+        if (failure != null) {
+            throw new ExecutionException(failure);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,96 @@
+package com.personal.easy.rabbit.publisher;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import com.personal.easy.rabbit.message.Message;
+
+/**
+ * <p>A publish handle is the completion handle of a message published
+ * via {@link AsyncPublisher#submit(Message, DeliveryOptions)}.</p>
+ *
+ * <p>The handle completes with the published message as soon as one of the
+ * publisher's I/O threads handed the message to the broker, or fails
+ * with the cause of the failed publish.</p>
+ *
+ */
+public class PublishHandle implements Future<Message>, PublishCallback {
+
+    private final CountDownLatch completion = new CountDownLatch(1);
+
+    private volatile Message message;
+
+    private volatile Throwable failure;
+
+    /**
+     * {@inheritDoc}
+     */
+    public synchronized void onPublished(Message message) {
+        if (isDone()) {
+            return;
+        }
+        this.message = message;
+        completion.countDown();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public synchronized void onFailure(Message message, Throwable cause) {
+        if (isDone()) {
+            return;
+        }
+        this.message = message;
+        this.failure = cause;
+        completion.countDown();
+    }
+
+    /**
+     * Published messages cannot be withdrawn.
+     *
+     * @return Always false
+     */
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        return false;
+    }
+
+    public boolean isCancelled() {
+        return false;
+    }
+
+    public boolean isDone() {
+        return completion.getCount() == 0;
+    }
+
+    /**
+     * Whether the message was published successfully. Only meaningful
+     * if the handle is done.
+     *
+     * @return true if the message was published
+     */
+    public boolean isPublished() {
+        return isDone() && failure == null;
+    }
+
+    public Message get() throws InterruptedException, ExecutionException {
+        completion.await();
+        return result();
+    }
+
+    public Message get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+        if (!completion.await(timeout, unit)) {
+            throw new TimeoutException("Message was not published within " + unit.toMillis(timeout) + " ms");
+        }
+        return result();
+    }
+
+    private Message result() throws ExecutionException {
+        if (failure != null) {
+            throw new ExecutionException(failure);
+        }
+        return message;
+    }
+}
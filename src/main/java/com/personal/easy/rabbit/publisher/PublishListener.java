@@ -0,0 +1,18 @@
+package com.personal.easy.rabbit.publisher;
+
+/**
+ * A publish listener is notified as soon as a {@link PublishFuture} is done.
+ * Listeners are called from the thread completing the future, usually the
+ * connection's I/O thread, and must therefore return quickly.
+ *
+ * @param <T> The result type of the future
+ */
+public interface PublishListener<T> {
+
+    /**
+     * Called when the future completed or failed.
+     *
+     * @param future The done future
+     */
+    void onComplete(PublishFuture<T> future);
+}
@@ -0,0 +1,69 @@
+package com.personal.easy.rabbit.publisher;
+
+import com.personal.easy.rabbit.message.Message;
+
+/**
+ * The result of a message published via an {@link AsyncMessagePublisher}.
+ *
+ */
+public class PublishResult {
+
+    private final Message message;
+
+    private final PublishStatus status;
+
+    private final int replyCode;
+
+    private final String replyText;
+
+    public PublishResult(Message message, PublishStatus status) {
+        this(message, status, 0, null);
+    }
+
+    public PublishResult(Message message, PublishStatus status, int replyCode, String replyText) {
+        this.message = message;
+        this.status = status;
+        this.replyCode = replyCode;
+        this.replyText = replyText;
+    }
+
+    public Message getMessage() {
+        return message;
+    }
+
+    public PublishStatus getStatus() {
+        return status;
+    }
+
+    /**
+     * Whether the message reached the broker and was neither nacked nor returned.
+     *
+     * @return true if the message was published successfully
+     */
+    public boolean isSuccess() {
+        return status != PublishStatus.NACKED && status != PublishStatus.RETURNED;
+    }
+
+    /**
+     * Gets the AMQP reply code a returned message was returned with.
+     *
+     * @return The reply code, 0 if the message was not returned
+     */
+    public int getReplyCode() {
+        return replyCode;
+    }
+
+    /**
+     * Gets the description of the reply code a returned message was returned with.
+     *
+     * @return The reply text, null if the message was not returned
+     */
+    public String getReplyText() {
+        return replyText;
+    }
+
+    @Override
+    public String toString() {
+        return "PublishResult[" + message.getId() + ", " + status + "]";
+    }
+}
@@ -0,0 +1,35 @@
+package com.personal.easy.rabbit.publisher;
+
+/**
+ * The outcome of a message published via an {@link AsyncMessagePublisher}.
+ *
+ */
+public enum PublishStatus {
+    /**
+     * The message was handed to the broker without any confirmation
+     *
+     * @see PublisherReliability#NONE
+     */
+    PUBLISHED,
+    /**
+     * The transaction the message was published in was committed
+     *
+     * @see PublisherReliability#TRANSACTIONAL
+     */
+    COMMITTED,
+    /**
+     * The broker acknowledged the message
+     *
+     * @see PublisherReliability#CONFIRMED
+     */
+    ACKED,
+    /**
+     * The broker negatively acknowledged the message, it was not stored
+     */
+    NACKED,
+    /**
+     * The broker returned the mandatory or immediate message as it could not
+     * be routed or delivered
+     */
+    RETURNED
+}
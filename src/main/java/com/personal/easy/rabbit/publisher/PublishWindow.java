@@ -0,0 +1,213 @@
+package com.personal.easy.rabbit.publisher;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.personal.easy.rabbit.connection.ConnectionBlockedListener;
+
+/**
+ * <p>A publish window limits the amount of messages and bytes a publisher has in
+ * flight, i.e. published but not completed yet. For confirmed publishing this
+ * includes all messages not confirmed by the broker yet.</p>
+ *
+ * <p>A publish exceeding the window either fails right away or waits up to a
+ * maximum time for the window to open. The window also closes while the broker
+ * blocks the connection, if the window is registered as
+ * {@link ConnectionBlockedListener} at the connection factory. Publishing threads
+ * then fail or wait predictably instead of piling up in blocked socket writes.</p>
+ *
+ * <p>A single publish larger than the window is admitted if nothing else is in
+ * flight.</p>
+ *
+ */
+public class PublishWindow implements ConnectionBlockedListener {
+
+    public static final int DEFAULT_MAX_MESSAGES = 1000;
+
+    public static final long DEFAULT_MAX_BYTES = 16 * 1024 * 1024;
+
+    private final int maxMessages;
+
+    private final long maxBytes;
+
+    private final long maxWaitInMs;
+
+    private final ReentrantLock lock = new ReentrantLock();
+
+    private final Condition opened = lock.newCondition();
+
+    private int inFlightMessages;
+
+    private long inFlightBytes;
+
+    private String blockedReason;
+
+    private long rejectedCount;
+
+    /**
+     * Creates a window failing right away if it is exceeded.
+     *
+     * @param maxMessages The maximum amount of messages in flight
+     * @param maxBytes The maximum sum of body sizes in flight
+     */
+    public PublishWindow(int maxMessages, long maxBytes) {
+        this(maxMessages, maxBytes, 0);
+    }
+
+    /**
+     * Creates a window.
+     *
+     * @param maxMessages The maximum amount of messages in flight
+     * @param maxBytes The maximum sum of body sizes in flight
+     * @param maxWaitInMs The maximum time to wait for the window to open, zero to fail right away
+     */
+    public PublishWindow(int maxMessages, long maxBytes, long maxWaitInMs) {
+        if (maxMessages < 1 || maxBytes < 1 || maxWaitInMs < 0) {
+            throw new IllegalArgumentException("Invalid publish window");
+        }
+        this.maxMessages = maxMessages;
+        this.maxBytes = maxBytes;
+        this.maxWaitInMs = maxWaitInMs;
+    }
+
+    /**
+     * Takes the given amount of messages and bytes from the window.
+     *
+     * @param messages The amount of messages to publish
+     * @param bytes The sum of the body sizes of the messages
+     * @throws IOException if the window is exceeded and waiting is not allowed,
+     * or if waiting was interrupted
+     * @throws TimeoutException if the window did not open within the maximum wait time
+     */
+    public void acquire(int messages, long bytes) throws IOException, TimeoutException {
+        lock.lock();
+        try {
+            long remainingNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitInMs);
+            while (!admits(messages, bytes)) {
+                if (maxWaitInMs == 0) {
+                    rejectedCount++;
+                    throw new IOException(describeClosedWindow());
+                }
+                if (remainingNanos <= 0) {
+                    rejectedCount++;
+                    throw new TimeoutException(describeClosedWindow() + " after waiting " + maxWaitInMs + " ms");
+                }
+                try {
+                    remainingNanos = opened.awaitNanos(remainingNanos);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while waiting for the publish window to open", e);
+                }
+            }
+            inFlightMessages += messages;
+            inFlightBytes += bytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gives back messages and bytes taken from the window once their
+     * publish completed.
+     *
+     * @param messages The amount of completed messages
+     * @param bytes The sum of the body sizes of the messages
+     */
+    public void release(int messages, long bytes) {
+        lock.lock();
+        try {
+            inFlightMessages = Math.max(0, inFlightMessages - messages);
+            inFlightBytes = Math.max(0, inFlightBytes - bytes);
+            opened.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Closes the window until the connection is unblocked.</p>
+     */
+    public void onConnectionBlocked(String reason) {
+        lock.lock();
+        try {
+            blockedReason = reason == null ? "" : reason;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void onConnectionUnblocked() {
+        lock.lock();
+        try {
+            blockedReason = null;
+            opened.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getInFlightMessages() {
+        lock.lock();
+        try {
+            return inFlightMessages;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getInFlightBytes() {
+        lock.lock();
+        try {
+            return inFlightBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Gets the amount of publishes rejected as the window did not open in time.
+     *
+     * @return The amount of rejected publishes
+     */
+    public long getRejectedCount() {
+        lock.lock();
+        try {
+            return rejectedCount;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean isBlocked() {
+        lock.lock();
+        try {
+            return blockedReason != null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private boolean admits(int messages, long bytes) {
+        if (blockedReason != null) {
+            return false;
+        }
+        return inFlightMessages == 0
+                || (inFlightMessages + messages <= maxMessages && inFlightBytes + bytes <= maxBytes);
+    }
+
+    private String describeClosedWindow() {
+        if (blockedReason != null) {
+            return "Connection blocked by broker: " + blockedReason;
+        }
+        return "Publish window exceeded: " + inFlightMessages + " messages and " + inFlightBytes
+                + " bytes in flight";
+    }
+}
@@ -0,0 +1,96 @@
+package com.personal.easy.rabbit.publisher;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>Counters about the retries of a publisher.</p>
+ *
+ * <p>A publish is recovered if it succeeded after at least one retry and
+ * exhausted if it was given up by the retry policy. The recovery latency is
+ * the time from the start of the first attempt to the successful attempt.</p>
+ *
+ */
+public class RetryMetrics {
+
+    private final AtomicLong retryCount = new AtomicLong();
+
+    private final AtomicLong totalRetryDelayInMs = new AtomicLong();
+
+    private final AtomicLong recoveredCount = new AtomicLong();
+
+    private final AtomicLong recoveredAttempts = new AtomicLong();
+
+    private final AtomicLong totalRecoveryLatencyInMs = new AtomicLong();
+
+    private final AtomicLong maxRecoveryLatencyInMs = new AtomicLong();
+
+    private final AtomicLong exhaustedCount = new AtomicLong();
+
+    void recordRetry(long delayInMs) {
+        retryCount.incrementAndGet();
+        totalRetryDelayInMs.addAndGet(delayInMs);
+    }
+
+    void recordRecovery(int attempts, long latencyInMs) {
+        recoveredCount.incrementAndGet();
+        recoveredAttempts.addAndGet(attempts);
+        totalRecoveryLatencyInMs.addAndGet(latencyInMs);
+        long max = maxRecoveryLatencyInMs.get();
+        while (latencyInMs > max && !maxRecoveryLatencyInMs.compareAndSet(max, latencyInMs)) {
+            max = maxRecoveryLatencyInMs.get();
+        }
+    }
+
+    void recordExhausted() {
+        exhaustedCount.incrementAndGet();
+    }
+
+    /**
+     * Gets the amount of scheduled retries.
+     *
+     * @return The retry count
+     */
+    public long getRetryCount() {
+        return retryCount.get();
+    }
+
+    public long getTotalRetryDelay(TimeUnit unit) {
+        return unit.convert(totalRetryDelayInMs.get(), TimeUnit.MILLISECONDS);
+    }
+
+    public long getRecoveredCount() {
+        return recoveredCount.get();
+    }
+
+    /**
+     * Gets the average amount of attempts of recovered publishes.
+     *
+     * @return The average attempts or zero if no publish was recovered
+     */
+    public double getAverageRecoveredAttempts() {
+        long count = recoveredCount.get();
+        return count == 0 ? 0 : (double) recoveredAttempts.get() / count;
+    }
+
+    public long getAverageRecoveryLatency(TimeUnit unit) {
+        long count = recoveredCount.get();
+        return count == 0 ? 0 : unit.convert(totalRecoveryLatencyInMs.get() / count, TimeUnit.MILLISECONDS);
+    }
+
+    public long getMaxRecoveryLatency(TimeUnit unit) {
+        return unit.convert(maxRecoveryLatencyInMs.get(), TimeUnit.MILLISECONDS);
+    }
+
+    public long getExhaustedCount() {
+        return exhaustedCount.get();
+    }
+
+    @Override
+    public String toString() {
+        return "RetryMetrics [retries=" + getRetryCount() + ", recovered=" + getRecoveredCount() + ", exhausted="
+                + getExhaustedCount() + ", averageRecoveryLatencyInMs="
+                + getAverageRecoveryLatency(TimeUnit.MILLISECONDS) + ", maxRecoveryLatencyInMs="
+                + getMaxRecoveryLatency(TimeUnit.MILLISECONDS) + "]";
+    }
+}
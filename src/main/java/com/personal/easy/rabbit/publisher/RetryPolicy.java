@@ -0,0 +1,26 @@
+package com.personal.easy.rabbit.publisher;
+
+/**
+ * <p>A retry policy decides whether and when a failed publish is attempted again.</p>
+ *
+ * <p>Policies are consulted after every failed attempt and must be thread-safe,
+ * as one policy is usually shared by all threads using a publisher.</p>
+ *
+ */
+public interface RetryPolicy {
+
+    /**
+     * The delay telling that a failed publish must not be retried.
+     */
+    long STOP = -1;
+
+    /**
+     * Gets the time to wait before the next attempt.
+     *
+     * @param attempt The number of the failed attempt, starting with one
+     * @param elapsedTimeInMs The time passed since the first attempt started
+     * @param exception The exception the attempt failed with
+     * @return The delay in milliseconds before the next attempt or {@link #STOP}
+     */
+    long getDelayInMs(int attempt, long elapsedTimeInMs, Exception exception);
+}
@@ -0,0 +1,17 @@
+package com.personal.easy.rabbit.publisher;
+
+/**
+ * A classifier telling whether a publish failing with an exception
+ * may succeed if it is attempted again.
+ *
+ */
+public interface RetryableExceptionClassifier {
+
+    /**
+     * Classifies the exception a publish failed with.
+     *
+     * @param exception The exception
+     * @return true if the publish may be retried, false if retrying is pointless
+     */
+    boolean isRetryable(Exception exception);
+}
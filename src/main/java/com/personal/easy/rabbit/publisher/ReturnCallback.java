@@ -0,0 +1,23 @@
+package com.personal.easy.rabbit.publisher;
+
+import com.personal.easy.rabbit.message.Message;
+
+/**
+ * A return callback is notified about mandatory or immediate messages
+ * which the broker returned because it could not route or deliver them.
+ * Callbacks are called from the connection's I/O thread and must therefore
+ * be thread-safe and return quickly.
+ *
+ */
+public interface ReturnCallback {
+
+    /**
+     * Called when the broker returned a published message.
+     *
+     * @param message The returned message, holding the id, exchange and routing key
+     *        it was published with
+     * @param replyCode The AMQP reply code telling why the message was returned
+     * @param replyText The description of the reply code
+     */
+    void onReturned(Message message, int replyCode, String replyText);
+}
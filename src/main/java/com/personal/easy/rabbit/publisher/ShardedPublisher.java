@@ -0,0 +1,241 @@
+package com.personal.easy.rabbit.publisher;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.personal.easy.rabbit.connection.ChannelPool;
+import com.personal.easy.rabbit.message.Message;
+import com.rabbitmq.client.ConnectionFactory;
+
+/**
+ * <p>A sharded publisher spreads publishes over several shard publishers,
+ * usually each of them using a connection of its own.</p>
+ *
+ * <p>All channels of a connection share one client writer thread and one
+ * broker process, so a single connection limits the throughput long before
+ * the broker is saturated. Publishing over several connections lets client
+ * and broker use more cores.</p>
+ *
+ * <p>The shard of a message is chosen by the {@link ShardingStrategy}. Only
+ * {@link ShardingStrategy#ROUTING_KEY_HASH} keeps the publish order of messages
+ * with the same routing key, given the shard publisher itself keeps the order
+ * of messages published one after another.</p>
+ *
+ */
+public class ShardedPublisher implements MessagePublisher {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ShardedPublisher.class);
+
+    private final List<MessagePublisher> shards;
+
+    private final List<ChannelPool> channelPools;
+
+    private final ShardingStrategy strategy;
+
+    private final AtomicIntegerArray inFlight;
+
+    private final AtomicInteger next = new AtomicInteger();
+
+    /**
+     * Creates a sharded publisher spreading publishes over the given publishers.
+     * The publishers are closed together with the sharded publisher.
+     *
+     * @param shards The publishers to spread the publishes over
+     * @param strategy The strategy choosing the shard of a message
+     */
+    public ShardedPublisher(List<? extends MessagePublisher> shards, ShardingStrategy strategy) {
+        this(shards, Collections.<ChannelPool>emptyList(), strategy);
+    }
+
+    private ShardedPublisher(List<? extends MessagePublisher> shards, List<ChannelPool> channelPools,
+            ShardingStrategy strategy) {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("A sharded publisher needs at least one shard");
+        }
+        this.shards = new ArrayList<MessagePublisher>(shards);
+        this.channelPools = channelPools;
+        this.strategy = strategy;
+        this.inFlight = new AtomicIntegerArray(shards.size());
+    }
+
+    /**
+     * Creates a sharded publisher with one shard per connection factory. Every
+     * shard publishes with the given reliability over a pool of channels on the
+     * connection of its factory.
+     *
+     * @param connectionFactories The connection factories, one per shard
+     * @param channelsPerConnection The maximum amount of channels of each shard
+     * @param reliability The reliability of the shard publishers
+     * @param strategy The strategy choosing the shard of a message
+     * @return The sharded publisher
+     */
+    public static ShardedPublisher create(List<? extends ConnectionFactory> connectionFactories,
+            int channelsPerConnection, PublisherReliability reliability, ShardingStrategy strategy) {
+        List<MessagePublisher> shards = new ArrayList<MessagePublisher>(connectionFactories.size());
+        List<ChannelPool> channelPools = new ArrayList<ChannelPool>(connectionFactories.size());
+        for (ConnectionFactory connectionFactory : connectionFactories) {
+            ChannelPool channelPool = new ChannelPool(connectionFactory, channelsPerConnection);
+            channelPools.add(channelPool);
+            if (reliability == PublisherReliability.CONFIRMED) {
+                shards.add(new ConfirmedPublisher(channelPool));
+            } else if (reliability == PublisherReliability.TRANSACTIONAL) {
+                shards.add(new TransactionalPublisher(channelPool));
+            } else {
+                shards.add(new SimplePublisher(channelPool));
+            }
+        }
+        return new ShardedPublisher(shards, channelPools, strategy);
+    }
+
+    /**
+     * Gets the amount of shards.
+     *
+     * @return The amount of shards
+     */
+    public int getShardCount() {
+        return shards.size();
+    }
+
+    /**
+     * Gets the amount of messages currently being published with a shard.
+     *
+     * @param shard The index of the shard
+     * @return The amount of messages in flight
+     */
+    public int getInFlight(int shard) {
+        return inFlight.get(shard);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void publish(Message message) throws IOException, TimeoutException {
+        publish(message, DeliveryOptions.NONE);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void publish(Message message, DeliveryOptions deliveryOptions) throws IOException, TimeoutException {
+        publish(selectShard(message), Collections.singletonList(message), deliveryOptions);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void publish(List<Message> messages) throws IOException, TimeoutException {
+        publish(messages, DeliveryOptions.NONE);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>The list is published with a single shard, unless the routing key hash
+     * strategy is used. The messages are then grouped by shard keeping their order,
+     * and the groups are published one after another, so the list is not published
+     * as a whole anymore.</p>
+     */
+    public void publish(List<Message> messages, DeliveryOptions deliveryOptions) throws IOException, TimeoutException {
+        if (messages.isEmpty()) {
+            return;
+        }
+        if (strategy != ShardingStrategy.ROUTING_KEY_HASH) {
+            publish(selectShard(messages.get(0)), messages, deliveryOptions);
+            return;
+        }
+        List<List<Message>> groups = new ArrayList<List<Message>>(shards.size());
+        for (int i = 0; i < shards.size(); i++) {
+            groups.add(new ArrayList<Message>());
+        }
+        for (Message message : messages) {
+            groups.get(hashShard(message)).add(message);
+        }
+        for (int shard = 0; shard < groups.size(); shard++) {
+            if (!groups.get(shard).isEmpty()) {
+                publish(shard, groups.get(shard), deliveryOptions);
+            }
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Closes all shards, even if closing one of them fails.</p>
+     */
+    public void close() throws IOException, TimeoutException {
+        IOException failure = null;
+        for (MessagePublisher shard : shards) {
+            try {
+                shard.close();
+            } catch (IOException e) {
+                LOGGER.warn("Failed to close shard publisher", e);
+                failure = e;
+            }
+        }
+        for (ChannelPool channelPool : channelPools) {
+            channelPool.close();
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    private void publish(int shard, List<Message> messages, DeliveryOptions deliveryOptions)
+            throws IOException, TimeoutException {
+        inFlight.addAndGet(shard, messages.size());
+        try {
+            if (messages.size() == 1) {
+                shards.get(shard).publish(messages.get(0), deliveryOptions);
+            } else {
+                shards.get(shard).publish(messages, deliveryOptions);
+            }
+        } finally {
+            inFlight.addAndGet(shard, -messages.size());
+        }
+    }
+
+    int selectShard(Message message) {
+        switch (strategy) {
+        case ROUTING_KEY_HASH:
+            return hashShard(message);
+        case LEAST_IN_FLIGHT:
+            return leastInFlightShard();
+        default:
+            return nextShard();
+        }
+    }
+
+    private int hashShard(Message message) {
+        String routingKey = message.getRoutingKey();
+        int hash = routingKey == null ? 0 : routingKey.hashCode();
+        return (hash & Integer.MAX_VALUE) % shards.size();
+    }
+
+    private int nextShard() {
+        return (next.getAndIncrement() & Integer.MAX_VALUE) % shards.size();
+    }
+
+    private int leastInFlightShard() {
+        // Starts at the next shard in turn so idle shards are used evenly
+        int start = nextShard();
+        int best = start;
+        int bestInFlight = inFlight.get(start);
+        for (int i = 1; i < shards.size() && bestInFlight > 0; i++) {
+            int shard = (start + i) % shards.size();
+            int shardInFlight = inFlight.get(shard);
+            if (shardInFlight < bestInFlight) {
+                best = shard;
+                bestInFlight = shardInFlight;
+            }
+        }
+        return best;
+    }
+}
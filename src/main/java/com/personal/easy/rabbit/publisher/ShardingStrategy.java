@@ -0,0 +1,22 @@
+package com.personal.easy.rabbit.publisher;
+
+/**
+ * Defines how a {@link ShardedPublisher} chooses the shard
+ * a message is published with.
+ *
+ */
+public enum ShardingStrategy {
+    /**
+     * The shards are used one after another
+     */
+    ROUND_ROBIN,
+    /**
+     * The shard with the fewest messages currently being published is used
+     */
+    LEAST_IN_FLIGHT,
+    /**
+     * The shard is chosen by the hash of the routing key, so all messages with
+     * the same routing key are published with the same shard in publish order
+     */
+    ROUTING_KEY_HASH
+}
@@ -1,5 +1,6 @@
 package com.personal.easy.rabbit.publisher;
 
+import com.personal.easy.rabbit.connection.ChannelPool;
 import com.personal.easy.rabbit.message.Message;
 import com.rabbitmq.client.Channel;
 import com.rabbitmq.client.ConnectionFactory;
@@ -25,23 +26,42 @@ public class SimplePublisher extends DiscretePublisher {
         super(connectionFactory);
     }
 
+    public SimplePublisher(ChannelPool channelPool) {
+        super(channelPool);
+    }
+
     /**
      * {@inheritDoc}
      * @throws TimeoutException 
      */
   
     public void publish(Message message, DeliveryOptions deliveryOptions) throws IOException, TimeoutException {
-        for (int attempt = 1; attempt <= DEFAULT_RETRY_ATTEMPTS; attempt++) {
+        int size = message.getBodyContent().length;
+        PublishWindow window = acquirePublishWindow(1, size);
+        try {
+            publishWithRetries(message, deliveryOptions);
+        } finally {
+            releasePublishWindow(window, 1, size);
+        }
+    }
+
+    private void publishWithRetries(Message message, DeliveryOptions deliveryOptions) throws IOException, TimeoutException {
+        long startTime = System.currentTimeMillis();
+        for (int attempt = 1;; attempt++) {
             if (attempt > 1) {
                 LOGGER.info("Attempt {} to send message", attempt);
             }
 
+            Channel channel = null;
             try {
-                Channel channel = provideChannel();
+                channel = provideChannel();
                 message.publish(channel, deliveryOptions);
+                handlePublished(attempt, startTime);
                 return;
             } catch (IOException e) {
-                handleIoException(attempt, e);
+                handleIoException(channel, attempt, startTime, e);
+            } finally {
+                releaseChannel(channel);
             }
         }
     }
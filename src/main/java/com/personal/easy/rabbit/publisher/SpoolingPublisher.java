@@ -0,0 +1,301 @@
+package com.personal.easy.rabbit.publisher;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.personal.easy.rabbit.connection.ConnectionListener;
+import com.personal.easy.rabbit.connection.SingleConnectionFactory;
+import com.personal.easy.rabbit.message.Message;
+import com.rabbitmq.client.Connection;
+
+/**
+ * <p>A spooling publisher keeps accepting messages while the broker is unreachable
+ * by writing them to a local {@link MessageSpool}.</p>
+ *
+ * <p>Messages are published by a delegate publisher as long as the connection is
+ * alive. While the connection factory is reconnecting, or if the delegate fails,
+ * messages are appended to the spool instead. Once the connection is reestablished,
+ * the spool is replayed in order by a background thread, and new messages keep
+ * going to the spool until it is drained, so the publish order is kept.</p>
+ *
+ * <p>A spooled message is removed from the spool only after the delegate published
+ * it successfully. With a {@link ConfirmedPublisher} as delegate, messages are thus
+ * removed only after the broker confirmed them. The delegate should not retry on its
+ * own for long, e.g. by using {@link FixedIntervalRetryPolicy#NO_RETRY}, as failed
+ * publishes are spooled anyway.</p>
+ *
+ * <p>A list of messages is spooled and replayed as a unit, so the delegate always
+ * publishes it as a list, e.g. within a single transaction. If the delegate fails
+ * to publish a list, the whole list is spooled, even if some of its messages may
+ * have reached the broker already.</p>
+ *
+ */
+public class SpoolingPublisher implements MessagePublisher, ConnectionListener {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SpoolingPublisher.class);
+
+    public static final long DEFAULT_REPLAY_INTERVAL_IN_MS = 1000;
+
+    private final MessagePublisher delegate;
+
+    private final MessageSpool spool;
+
+    private final SingleConnectionFactory connectionFactory;
+
+    private final ScheduledExecutorService replayExecutor;
+
+    private final AtomicBoolean replayScheduled = new AtomicBoolean();
+
+    private final Runnable replayTask = new Runnable() {
+        public void run() {
+            if (!replay() && !connectionFactory.isConnecting()) {
+                scheduleReplay(DEFAULT_REPLAY_INTERVAL_IN_MS);
+            }
+        }
+    };
+
+    private volatile boolean spooling;
+
+    private volatile boolean closed;
+
+    /**
+     * Creates the publisher and registers it as listener of the connection
+     * factory. Messages recovered from the spool are replayed right away.
+     *
+     * @param delegate The publisher used to publish to the broker
+     * @param spool The spool to write messages to while the broker is unreachable
+     * @param connectionFactory The connection factory used by the delegate
+     */
+    public SpoolingPublisher(MessagePublisher delegate, MessageSpool spool, SingleConnectionFactory connectionFactory) {
+        this.delegate = delegate;
+        this.spool = spool;
+        this.connectionFactory = connectionFactory;
+        this.replayExecutor = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "easyrabbit-spool-replay");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        connectionFactory.registerListener(this);
+        if (!spool.isEmpty()) {
+            spooling = true;
+            replayNow();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void publish(Message message) throws IOException, TimeoutException {
+        publish(message, DeliveryOptions.NONE);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Returns as soon as the message was published or spooled. The message is
+     * spooled if the delegate fails or times out.</p>
+     *
+     * @throws IOException if the message could neither be published nor spooled
+     */
+    public void publish(Message message, DeliveryOptions deliveryOptions) throws IOException, TimeoutException {
+        if (closed) {
+            throw new IOException("Attempt to publish with a closed spooling publisher");
+        }
+        if (!spooling && !connectionFactory.isConnecting()) {
+            try {
+                delegate.publish(message, deliveryOptions);
+                return;
+            } catch (IOException e) {
+                LOGGER.warn("Spooling message {} as it could not be published", message.getId(), e);
+            } catch (TimeoutException e) {
+                LOGGER.warn("Spooling message {} as publishing it timed out", message.getId(), e);
+            }
+        }
+        synchronized (this) {
+            spool.append(message, deliveryOptions);
+            spooling = true;
+        }
+        spooled();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void publish(List<Message> messages) throws IOException, TimeoutException {
+        publish(messages, DeliveryOptions.NONE);
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Returns as soon as the messages were published or spooled. The messages
+     * are spooled as a unit if the delegate fails or times out.</p>
+     *
+     * @throws IOException if the messages could neither be published nor spooled
+     */
+    public void publish(List<Message> messages, DeliveryOptions deliveryOptions) throws IOException, TimeoutException {
+        if (closed) {
+            throw new IOException("Attempt to publish with a closed spooling publisher");
+        }
+        if (messages.isEmpty()) {
+            return;
+        }
+        if (!spooling && !connectionFactory.isConnecting()) {
+            try {
+                delegate.publish(messages, deliveryOptions);
+                return;
+            } catch (IOException e) {
+                LOGGER.warn("Spooling {} messages as they could not be published", messages.size(), e);
+            } catch (TimeoutException e) {
+                LOGGER.warn("Spooling {} messages as publishing them timed out", messages.size(), e);
+            }
+        }
+        synchronized (this) {
+            spool.append(messages, deliveryOptions);
+            spooling = true;
+        }
+        spooled();
+    }
+
+    private void spooled() {
+        if (!connectionFactory.isConnecting()) {
+            scheduleReplay(DEFAULT_REPLAY_INTERVAL_IN_MS);
+        }
+    }
+
+    /**
+     * Gets the amount of messages waiting in the spool.
+     *
+     * @return The amount of spooled messages
+     */
+    public long getSpooledCount() {
+        return spool.size();
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Replays the spool.</p>
+     */
+    public void onConnectionEstablished(Connection connection) {
+        if (spooling) {
+            LOGGER.info("Connection established, replaying {} spooled messages", spool.size());
+            replayNow();
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void onConnectionLost(Connection connection) {
+        LOGGER.info("Connection lost, spooling messages until the connection is reestablished");
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    public void onConnectionClosed(Connection connection) {
+        LOGGER.debug("Connection closed");
+    }
+
+    /**
+     * {@inheritDoc}
+     *
+     * <p>Stops replaying, closes the spool and closes the delegate afterwards.
+     * Messages remaining in the spool are replayed by the next publisher using
+     * the same spool directory.</p>
+     */
+    public void close() throws IOException, TimeoutException {
+        if (closed) {
+            LOGGER.warn("Attempt to close a spooling publisher which is already closed");
+            return;
+        }
+        closed = true;
+        connectionFactory.removeConnectionListener(this);
+        replayExecutor.shutdownNow();
+        try {
+            replayExecutor.awaitTermination(AsyncPublisher.DEFAULT_CLOSE_TIMEOUT_IN_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            LOGGER.warn("Closing spooling publisher interrupted while waiting for replay", e);
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            spool.close();
+        }
+        delegate.close();
+    }
+
+    void replayNow() {
+        try {
+            replayExecutor.execute(replayTask);
+        } catch (RejectedExecutionException e) {
+            LOGGER.debug("Not replaying spool of closed publisher");
+        }
+    }
+
+    /**
+     * Schedules a delayed replay unless one is scheduled already.
+     */
+    void scheduleReplay(long delayInMs) {
+        if (closed || !replayScheduled.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            replayExecutor.schedule(new Runnable() {
+                public void run() {
+                    replayScheduled.set(false);
+                    replayTask.run();
+                }
+            }, delayInMs, TimeUnit.MILLISECONDS);
+        } catch (RejectedExecutionException e) {
+            replayScheduled.set(false);
+        }
+    }
+
+    /**
+     * Publishes spooled messages in order until the spool is drained or
+     * publishing fails. Spooled lists are published as lists.
+     *
+     * @return true if the spool was drained
+     */
+    boolean replay() {
+        long replayed = 0;
+        try {
+            while (!closed && !Thread.currentThread().isInterrupted()) {
+                MessageSpool.SpooledMessage next;
+                synchronized (this) {
+                    next = spool.peek();
+                    if (next == null) {
+                        spooling = false;
+                        LOGGER.info("Replayed {} spooled messages, spool drained", replayed);
+                        return true;
+                    }
+                }
+                if (next.isList()) {
+                    delegate.publish(next.getMessages(), next.getDeliveryOptions());
+                } else {
+                    delegate.publish(next.getMessage(), next.getDeliveryOptions());
+                }
+                synchronized (this) {
+                    spool.remove();
+                }
+                replayed += next.getMessages().size();
+            }
+        } catch (Exception e) {
+            LOGGER.warn("Replaying spooled messages stopped after {} messages", replayed, e);
+        }
+        return false;
+    }
+}
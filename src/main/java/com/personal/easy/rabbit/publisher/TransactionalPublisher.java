@@ -1,5 +1,7 @@
 package com.personal.easy.rabbit.publisher;
 
+import com.personal.easy.rabbit.connection.ChannelMode;
+import com.personal.easy.rabbit.connection.ChannelPool;
 import com.personal.easy.rabbit.message.Message;
 import com.rabbitmq.client.Channel;
 import com.rabbitmq.client.ConnectionFactory;
@@ -9,7 +11,10 @@ import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeoutException;
 
 /**
@@ -17,15 +22,36 @@ import java.util.concurrent.TimeoutException;
  * within a transaction scope. A message is only put into
  * its destination queues when the transaction is committed</p>
  *
+ * <p>A channel is put into transaction mode only once, when it is
+ * used by the publisher for the first time. The mode stays selected
+ * for the lifetime of the channel.</p>
+ *
+ * <p>By default a list of messages is published within a single transaction.
+ * With {@link #setChunkSize(int, long)} large lists are committed in chunks
+ * instead, and a failed publish is retried from the first uncommitted
+ * message. If all attempts fail after some chunks were committed, a
+ * {@link PartiallyCommittedException} tells how many messages made it.</p>
+ *
  */
 public class TransactionalPublisher extends DiscretePublisher {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(TransactionalPublisher.class);
 
+    private final Set<Channel> transactionalChannels =
+            Collections.newSetFromMap(new ConcurrentHashMap<Channel, Boolean>());
+
+    private volatile int chunkMaxMessages;
+
+    private volatile long chunkMaxBytes;
+
     public TransactionalPublisher(ConnectionFactory connectionFactory) {
         super(connectionFactory);
     }
 
+    public TransactionalPublisher(ChannelPool channelPool) {
+        super(channelPool);
+    }
+
     /**
      * {@inheritDoc}
      * @throws TimeoutException 
@@ -41,41 +67,169 @@ public class TransactionalPublisher extends DiscretePublisher {
      */
 
     public void publish(List<Message> messages, DeliveryOptions deliveryOptions) throws IOException, TimeoutException {
-        for (int attempt = 1; attempt <= DEFAULT_RETRY_ATTEMPTS; attempt++) {
+        long size = bodySize(messages);
+        PublishWindow window = acquirePublishWindow(messages.size(), size);
+        try {
+            publishWithRetries(messages, deliveryOptions);
+        } finally {
+            releasePublishWindow(window, messages.size(), size);
+        }
+    }
+
+    private void publishWithRetries(List<Message> messages, DeliveryOptions deliveryOptions)
+            throws IOException, TimeoutException {
+        long startTime = System.currentTimeMillis();
+        // Messages before this index are committed and never published again
+        int committed = 0;
+        for (int attempt = 1;; attempt++) {
             if (attempt > 1) {
-                LOGGER.info("Attempt {} to send messages within transaction", attempt);
+                LOGGER.info("Attempt {} to send {} messages within transaction", attempt, messages.size() - committed);
             }
 
+            Channel channel = null;
             try {
-                Channel channel = provideChannel();
-                try {
-                    for (Message message : messages) {
-                        message.publish(channel, deliveryOptions);
-                    }
-                    commitTransaction(channel);
-                } catch (IOException e) {
-                    rollbackTransaction(channel);
-                    throw e;
-                }
+                channel = provideChannel();
+                do {
+                    int chunkEnd = chunkEnd(messages, committed);
+                    publishChunk(channel, messages.subList(committed, chunkEnd), deliveryOptions);
+                    committed = chunkEnd;
+                } while (committed < messages.size());
+                handlePublished(attempt, startTime);
                 return;
             } catch (IOException e) {
-                handleIoException(attempt, e);
+                if (committed == 0) {
+                    handleIoException(channel, attempt, startTime, e);
+                } else {
+                    LOGGER.info("Resuming after {} of {} committed messages", committed, messages.size());
+                    try {
+                        handleIoException(channel, attempt, startTime, e);
+                    } catch (IOException exhausted) {
+                        throw new PartiallyCommittedException(committed, messages.size(), exhausted);
+                    }
+                }
+            } finally {
+                releaseChannel(channel);
+            }
+        }
+    }
+
+    private static void publishChunk(Channel channel, List<Message> chunk, DeliveryOptions deliveryOptions)
+            throws IOException {
+        try {
+            for (Message message : chunk) {
+                message.publish(channel, deliveryOptions);
+            }
+            commitTransaction(channel);
+        } catch (IOException e) {
+            rollbackTransaction(channel);
+            throw e;
+        }
+    }
+
+    /**
+     * Gets the end index of the chunk starting at the given index. A chunk
+     * holds at least one message.
+     */
+    int chunkEnd(List<Message> messages, int chunkStart) {
+        int end = chunkStart;
+        long bytes = 0;
+        while (end < messages.size()) {
+            if (chunkMaxMessages > 0 && end - chunkStart >= chunkMaxMessages) {
+                break;
+            }
+            bytes += messages.get(end).getBodyContent().length;
+            if (chunkMaxBytes > 0 && bytes > chunkMaxBytes && end > chunkStart) {
+                break;
             }
+            end++;
         }
+        return end;
+    }
+
+    /**
+     * Gets the maximum amount of messages committed within one transaction.
+     *
+     * @return The maximum amount of messages per chunk, 0 if unlimited
+     */
+    public int getChunkMaxMessages() {
+        return chunkMaxMessages;
+    }
+
+    /**
+     * Gets the maximum sum of body sizes committed within one transaction.
+     *
+     * @return The maximum amount of bytes per chunk, 0 if unlimited
+     */
+    public long getChunkMaxBytes() {
+        return chunkMaxBytes;
+    }
+
+    /**
+     * <p>Enables the chunked commit mode. Lists of messages are committed in
+     * chunks of at most the given amount of messages and bytes instead of a
+     * single transaction. Retries resume after the last committed chunk.</p>
+     *
+     * <p>A message larger than the byte limit is committed in a chunk of its own.
+     * Passing 0 for both limits commits a list within a single transaction again,
+     * which is the default.</p>
+     *
+     * @param maxMessages The maximum amount of messages per chunk, 0 if unlimited
+     * @param maxBytes The maximum sum of body sizes per chunk, 0 if unlimited
+     */
+    public void setChunkSize(int maxMessages, long maxBytes) {
+        if (maxMessages < 0 || maxBytes < 0) {
+            throw new IllegalArgumentException("Chunk limits must not be negative");
+        }
+        this.chunkMaxMessages = maxMessages;
+        this.chunkMaxBytes = maxBytes;
     }
 
   
+    /**
+     * {@inheritDoc}
+     */
+    protected ChannelMode getChannelMode() {
+        return ChannelMode.TRANSACTIONAL;
+    }
+
+    /**
+     * Provides a leased channel, putting a channel used for
+     * the first time into transaction mode.
+     *
+     * @return The leased channel in transaction mode
+     * @throws IOException if the channel cannot be put into transaction mode
+     * @throws TimeoutException
+     */
     protected Channel provideChannel() throws IOException, TimeoutException {
         Channel channel = super.provideChannel();
-        channel.txSelect();
+        if (transactionalChannels.contains(channel)) {
+            return channel;
+        }
+        try {
+            channel.txSelect();
+        } catch (IOException e) {
+            getChannelPool().invalidate(channel);
+            throw e;
+        }
+        removeClosedChannels();
+        transactionalChannels.add(channel);
         return  channel;
     }
 
+    private void removeClosedChannels() {
+        Iterator<Channel> channels = transactionalChannels.iterator();
+        while (channels.hasNext()) {
+            if (!channels.next().isOpen()) {
+                channels.remove();
+            }
+        }
+    }
+
     static void commitTransaction(Channel channel) throws IOException {
         try {
-            LOGGER.info("Committing transaction");
+            LOGGER.debug("Committing transaction");
             channel.txCommit();
-            LOGGER.info("Transaction committed");
+            LOGGER.debug("Transaction committed");
         } catch (IOException e) {
             LOGGER.error("Failed to commit transaction", e);
             throw e;
@@ -84,9 +238,9 @@ public class TransactionalPublisher extends DiscretePublisher {
 
     static void rollbackTransaction(Channel channel) throws IOException {
         try {
-            LOGGER.info("Rolling back transaction");
+            LOGGER.debug("Rolling back transaction");
             channel.txRollback();
-            LOGGER.info("Transaction rolled back");
+            LOGGER.debug("Transaction rolled back");
         } catch (IOException e) {
             LOGGER.error("Failed to roll back transaction", e);
             throw e;
@@ -1,5 +1,6 @@
 package com.personal.easy.rabbit.setting;
 
+import com.personal.easy.rabbit.publisher.PartitionedPublisher;
 import com.rabbitmq.client.Channel;
 import com.rabbitmq.client.Connection;
 
@@ -154,6 +155,25 @@ public class BrokerSetup {
         channel.queueBind(queue, exchange, routingKey);
     }
     
+    /**
+     * Declares the shard queues of a partitioned topic and binds each of them
+     * to the given exchange with its shard routing key, as used by a
+     * {@link PartitionedPublisher} with the same routing key and amount of partitions.
+     * Declaring the shard queues again with more partitions adds the missing ones.
+     * 
+     * @param queue The queue name the shard queue names are derived from
+     * @param exchange The exchange name
+     * @param routingKey The routing key the shard routing keys are derived from
+     * @param partitions The amount of partitions
+     * @throws IOException if the declaration of a queue or binding fails
+     */
+    public void declareAndBindShardQueues(String queue, String exchange, String routingKey, int partitions) throws IOException {
+        for (int partition = 0; partition < partitions; partition++) {
+            declareAndBindQueue(PartitionedPublisher.shardName(queue, partition), exchange,
+                    PartitionedPublisher.shardName(routingKey, partition));
+        }
+    }
+    
     /**
      * Removes all declared exchanges, queue and bindings
      * declared with the instance of this broker setup.
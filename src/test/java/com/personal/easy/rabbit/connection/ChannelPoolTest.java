@@ -0,0 +1,133 @@
+package com.personal.easy.rabbit.connection;
+
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.powermock.api.easymock.PowerMock;
+import org.powermock.api.easymock.annotation.Mock;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Connection;
+import com.rabbitmq.client.ConnectionFactory;
+
+@RunWith(PowerMockRunner.class)
+public class ChannelPoolTest {
+
+    @Mock
+    private ConnectionFactory connectionFactory;
+    @Mock
+    private Connection connection;
+    @Mock
+    private Channel channel;
+    @Mock
+    private Channel otherChannel;
+
+    @Test
+    public void shouldReuseReleasedChannel() throws Exception {
+        ChannelPool channelPool = new ChannelPool(this.connectionFactory);
+
+        expect(this.connectionFactory.newConnection()).andReturn(this.connection).once();
+        expect(this.connection.createChannel()).andReturn(this.channel).once();
+        expect(this.channel.isOpen()).andReturn(true).anyTimes();
+        PowerMock.replayAll();
+
+        Channel first = channelPool.lease();
+        channelPool.release(first);
+        Channel second = channelPool.lease();
+
+        Assert.assertSame(first, second);
+        ChannelPoolMetrics metrics = channelPool.getMetrics();
+        Assert.assertEquals(2, metrics.getLeaseCount());
+        Assert.assertEquals(1, metrics.getLeasedChannels());
+        Assert.assertEquals(0, metrics.getIdleChannels());
+        Assert.assertEquals(1, metrics.getCreatedChannels());
+        PowerMock.verifyAll();
+    }
+
+    @Test(expected = TimeoutException.class)
+    public void shouldTimeOutIfAllChannelsAreLeased() throws Exception {
+        ChannelPool channelPool = new ChannelPool(this.connectionFactory, 1);
+
+        expect(this.connectionFactory.newConnection()).andReturn(this.connection).once();
+        expect(this.connection.createChannel()).andReturn(this.channel).once();
+        PowerMock.replayAll();
+
+        channelPool.lease();
+        channelPool.lease(10, TimeUnit.MILLISECONDS);
+    }
+
+    @Test
+    public void shouldCloseAndReplaceInvalidatedChannel() throws Exception {
+        ChannelPool channelPool = new ChannelPool(this.connectionFactory);
+
+        expect(this.connectionFactory.newConnection()).andReturn(this.connection).times(2);
+        expect(this.connection.createChannel()).andReturn(this.channel).times(2);
+        expect(this.channel.isOpen()).andReturn(true).anyTimes();
+        this.channel.close();
+        expectLastCall().once();
+        PowerMock.replayAll();
+
+        Channel broken = channelPool.lease();
+        channelPool.invalidate(broken);
+        // releasing an invalidated channel must not return it to the pool
+        channelPool.release(broken);
+        channelPool.lease();
+
+        ChannelPoolMetrics metrics = channelPool.getMetrics();
+        Assert.assertEquals(1, metrics.getInvalidatedChannels());
+        Assert.assertEquals(2, metrics.getCreatedChannels());
+        Assert.assertEquals(1, metrics.getLeasedChannels());
+        PowerMock.verifyAll();
+    }
+
+    @Test
+    public void shouldOnlyReuseChannelsOfLeasedMode() throws Exception {
+        ChannelPool channelPool = new ChannelPool(this.connectionFactory, 2);
+
+        expect(this.connectionFactory.newConnection()).andReturn(this.connection).times(2);
+        expect(this.connection.createChannel()).andReturn(this.channel).andReturn(this.otherChannel);
+        expect(this.channel.isOpen()).andReturn(true).anyTimes();
+        expect(this.otherChannel.isOpen()).andReturn(true).anyTimes();
+        PowerMock.replayAll();
+
+        Channel transactional = channelPool.lease(ChannelMode.TRANSACTIONAL);
+        channelPool.release(transactional);
+        Channel plain = channelPool.lease();
+        channelPool.release(plain);
+
+        Assert.assertNotSame(transactional, plain);
+        Assert.assertSame(transactional, channelPool.lease(ChannelMode.TRANSACTIONAL));
+        Assert.assertSame(plain, channelPool.lease(ChannelMode.PLAIN));
+        Assert.assertEquals(ChannelMode.TRANSACTIONAL, channelPool.getChannelMode(transactional));
+        Assert.assertEquals(ChannelMode.PLAIN, channelPool.getChannelMode(plain));
+        PowerMock.verifyAll();
+    }
+
+    @Test
+    public void shouldCloseIdleChannelOfOtherModeWhenPoolIsFull() throws Exception {
+        ChannelPool channelPool = new ChannelPool(this.connectionFactory, 1);
+
+        expect(this.connectionFactory.newConnection()).andReturn(this.connection).times(2);
+        expect(this.connection.createChannel()).andReturn(this.channel).andReturn(this.otherChannel);
+        expect(this.channel.isOpen()).andReturn(true).anyTimes();
+        expect(this.otherChannel.isOpen()).andReturn(true).anyTimes();
+        this.channel.close();
+        expectLastCall().once();
+        PowerMock.replayAll();
+
+        channelPool.release(channelPool.lease(ChannelMode.CONFIRM));
+        Channel plain = channelPool.lease();
+
+        Assert.assertSame(this.otherChannel, plain);
+        Assert.assertNull(channelPool.getChannelMode(this.channel));
+        Assert.assertEquals(0, channelPool.getMetrics().getIdleChannels());
+        PowerMock.verifyAll();
+    }
+}
@@ -0,0 +1,166 @@
+package com.personal.easy.rabbit.consumer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.personal.easy.rabbit.message.Message;
+import com.personal.easy.rabbit.message.MessageChunks;
+
+public class ChunkReassemblerTest {
+
+    private static final String QUEUE = "lib.test.queue";
+
+    private final List<byte[]> streamed = new ArrayList<byte[]>();
+
+    private final List<byte[]> mapped = new ArrayList<byte[]>();
+
+    private final List<ChunkedTransfer> transfers = new ArrayList<ChunkedTransfer>();
+
+    private File spillDirectory;
+
+    private ChunkReassembler reassembler;
+
+    private final ChunkedTransferCallback callback = new ChunkedTransferCallback() {
+        public void handleTransfer(final ChunkedTransfer transfer) {
+            try {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                InputStream in = transfer.openStream();
+                byte[] buffer = new byte[3];
+                int read;
+                while ((read = in.read(buffer)) != -1) {
+                    out.write(buffer, 0, read);
+                }
+                in.close();
+                ByteBuffer content = transfer.getBuffer();
+                byte[] bytes = new byte[content.remaining()];
+                content.get(bytes);
+                ChunkReassemblerTest.this.streamed.add(out.toByteArray());
+                ChunkReassemblerTest.this.mapped.add(bytes);
+                ChunkReassemblerTest.this.transfers.add(transfer);
+            }
+            catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        }
+    };
+
+    @Before
+    public void setUp() throws Exception {
+        this.spillDirectory = File.createTempFile("easyrabbit-reassembler", "");
+        this.spillDirectory.delete();
+        this.spillDirectory.mkdirs();
+        this.reassembler = new ChunkReassembler(this.callback, null, 8, this.spillDirectory, 60000);
+    }
+
+    @After
+    public void tearDown() {
+        this.reassembler.close();
+        for (File file : this.spillDirectory.listFiles()) {
+            file.delete();
+        }
+        this.spillDirectory.delete();
+    }
+
+    @Test
+    public void shouldReassembleChunksInMemory() throws Exception {
+        List<Message> chunks = chunks("t1", "abcdef", 3);
+
+        this.reassembler.handleMessage(chunks.get(1));
+        this.reassembler.handleMessage(chunks.get(1));
+        Assert.assertEquals(1, this.reassembler.getPendingCount());
+        this.reassembler.handleMessage(chunks.get(0));
+
+        Assert.assertEquals(1, this.transfers.size());
+        ChunkedTransfer transfer = this.transfers.get(0);
+        Assert.assertEquals("t1", transfer.getTransferId());
+        Assert.assertEquals(QUEUE, transfer.getRoutingKey());
+        Assert.assertEquals(Message.APPLICATION_OCTET_STREAM, transfer.getContentType());
+        Assert.assertEquals("UTF-8", transfer.getContentEncoding());
+        Assert.assertEquals(6, transfer.getSize());
+        Assert.assertEquals(2, transfer.getChunkCount());
+        Assert.assertFalse(transfer.isSpilled());
+        Assert.assertEquals("abcdef", new String(this.streamed.get(0), "UTF-8"));
+        Assert.assertEquals("abcdef", new String(this.mapped.get(0), "UTF-8"));
+        Assert.assertEquals(0, this.reassembler.getPendingCount());
+        Assert.assertEquals(1, this.reassembler.getCompletedCount());
+    }
+
+    @Test
+    public void shouldSpillLargeTransfersToFile() throws Exception {
+        List<Message> chunks = chunks("t2", "0123456789abcdefghij", 4);
+
+        for (int i = chunks.size() - 1; i >= 0; i--) {
+            this.reassembler.handleMessage(chunks.get(i));
+        }
+
+        Assert.assertEquals(1, this.transfers.size());
+        Assert.assertTrue(this.transfers.get(0).isSpilled());
+        Assert.assertEquals("0123456789abcdefghij", new String(this.streamed.get(0), "UTF-8"));
+        Assert.assertEquals("0123456789abcdefghij", new String(this.mapped.get(0), "UTF-8"));
+        Assert.assertEquals(1, this.reassembler.getSpilledCount());
+        Assert.assertEquals(0, this.spillDirectory.listFiles().length);
+    }
+
+    @Test
+    public void shouldExpireIncompleteTransfers() throws Exception {
+        List<Message> chunks = chunks("t3", "0123456789abcdefghij", 4);
+        this.reassembler.handleMessage(chunks.get(0));
+        this.reassembler.handleMessage(chunks.get(3));
+        Assert.assertEquals(1, this.spillDirectory.listFiles().length);
+
+        this.reassembler.expireTransfers(System.currentTimeMillis() + 60000);
+
+        Assert.assertEquals(0, this.reassembler.getPendingCount());
+        Assert.assertEquals(1, this.reassembler.getExpiredCount());
+        Assert.assertEquals(0, this.spillDirectory.listFiles().length);
+        Assert.assertTrue(this.transfers.isEmpty());
+    }
+
+    @Test
+    public void shouldPassOtherMessagesToMessageCallback() {
+        final List<Message> messages = new ArrayList<Message>();
+        ChunkReassembler withFallback = new ChunkReassembler(this.callback, new MessageCallback() {
+            public void handleMessage(final Message message) {
+                messages.add(message);
+            }
+        }, 8, this.spillDirectory, 60000);
+        Message message = new Message().queue(QUEUE).body("plain");
+
+        withFallback.handleMessage(message);
+        withFallback.close();
+
+        Assert.assertEquals(1, messages.size());
+        Assert.assertSame(message, messages.get(0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectOtherMessagesWithoutMessageCallback() {
+        this.reassembler.handleMessage(new Message().queue(QUEUE).body("plain"));
+    }
+
+    private static List<Message> chunks(final String transferId, final String content, final int chunkSize)
+            throws Exception {
+        Message template = new Message().queue(QUEUE).contentType(Message.APPLICATION_OCTET_STREAM)
+                .contentEncoding("UTF-8");
+        byte[] bytes = content.getBytes("UTF-8");
+        List<Message> chunks = new ArrayList<Message>();
+        for (int offset = 0, index = 0; offset < bytes.length; offset += chunkSize, index++) {
+            byte[] chunk = new byte[Math.min(chunkSize, bytes.length - offset)];
+            System.arraycopy(bytes, offset, chunk, 0, chunk.length);
+            Message message = MessageChunks.chunk(template, transferId, index, offset, chunk,
+                    offset + chunkSize >= bytes.length);
+            // Properties as received from the broker
+            chunks.add(new Message(message.getBasicProperties()).queue(QUEUE).body(message.getBodyContent()));
+        }
+        return chunks;
+    }
+}
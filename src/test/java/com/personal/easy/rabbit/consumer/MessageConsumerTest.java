@@ -0,0 +1,102 @@
+package com.personal.easy.rabbit.consumer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.powermock.api.easymock.PowerMock;
+import org.powermock.api.easymock.annotation.Mock;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import com.personal.easy.rabbit.message.Message;
+import com.personal.easy.rabbit.message.MessageBatch;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Envelope;
+
+@RunWith(PowerMockRunner.class)
+public class MessageConsumerTest {
+
+    @Mock
+    private Channel channel;
+
+    @Test
+    public void shouldDeliverBatchedMessagesIndividuallyAndAckEnvelopeOnce() throws Exception {
+        final List<String> received = new ArrayList<String>();
+        MessageConsumer consumer = createConsumer(new MessageCallback() {
+            public void handleMessage(Message message) {
+                Assert.assertEquals(42L, message.getDeliveryTag());
+                received.add(message.getBodyAs(String.class));
+            }
+        });
+        this.channel.basicAck(42L, false);
+        PowerMock.replayAll();
+
+        deliver(consumer, 42L, createEnvelope());
+
+        PowerMock.verifyAll();
+        Assert.assertEquals(Arrays.asList("first", "second"), received);
+    }
+
+    @Test
+    public void shouldNackEnvelopeIfInnerMessageFails() throws Exception {
+        MessageConsumer consumer = createConsumer(new MessageCallback() {
+            public void handleMessage(Message message) {
+                if ("second".equals(message.getBodyAs(String.class))) {
+                    throw new IllegalStateException("processing failed");
+                }
+            }
+        });
+        this.channel.basicNack(42L, false, false);
+        PowerMock.replayAll();
+
+        deliver(consumer, 42L, createEnvelope());
+
+        PowerMock.verifyAll();
+    }
+
+    @Test
+    public void shouldSubmitEagerDecodingOfAllInnerMessages() throws Exception {
+        final List<Runnable> decodings = new ArrayList<Runnable>();
+        final List<String> received = new ArrayList<String>();
+        MessageConsumer consumer = createConsumer(new MessageCallback() {
+            public void handleMessage(Message message) {
+                received.add(message.getBodyAs(String.class));
+            }
+        });
+        consumer.getConfiguration().setEagerDecoding(String.class, new Executor() {
+            public void execute(Runnable decoding) {
+                decodings.add(decoding);
+            }
+        });
+        this.channel.basicAck(42L, false);
+        PowerMock.replayAll();
+
+        deliver(consumer, 42L, createEnvelope());
+
+        PowerMock.verifyAll();
+        Assert.assertEquals(2, decodings.size());
+        Assert.assertEquals(Arrays.asList("first", "second"), received);
+    }
+
+    private MessageConsumer createConsumer(MessageCallback callback) {
+        MessageConsumer consumer = new MessageConsumer(callback);
+        consumer.setChannel(this.channel);
+        consumer.setConfiguration(new ConsumerConfiguration("queue"));
+        return consumer;
+    }
+
+    private static Message createEnvelope() throws Exception {
+        return MessageBatch.wrap(Arrays.asList(
+                new Message().exchange("exchange").routingKey("key").body("first"),
+                new Message().exchange("exchange").routingKey("key").body("second")));
+    }
+
+    private static void deliver(MessageConsumer consumer, long deliveryTag, Message message) throws Exception {
+        consumer.handleDelivery("consumer", new Envelope(deliveryTag, false, "exchange", "key"),
+                message.getBasicProperties(), message.getBodyContent());
+    }
+}
@@ -0,0 +1,178 @@
+package com.personal.easy.rabbit.consumer;
+
+import static org.easymock.EasyMock.anyLong;
+import static org.easymock.EasyMock.capture;
+import static org.easymock.EasyMock.eq;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.easymock.Capture;
+import org.junit.Assert;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.powermock.api.easymock.PowerMock;
+import org.powermock.api.easymock.annotation.Mock;
+import org.powermock.modules.junit4.PowerMockRunner;
+
+import com.personal.easy.rabbit.message.Message;
+import com.rabbitmq.client.AMQP.BasicProperties;
+import com.rabbitmq.client.Channel;
+import com.rabbitmq.client.Connection;
+import com.rabbitmq.client.ConnectionFactory;
+import com.rabbitmq.client.Consumer;
+import com.rabbitmq.client.Envelope;
+import com.rabbitmq.client.MessageProperties;
+
+@RunWith(PowerMockRunner.class)
+public class MessageStreamTest {
+
+    private static final String QUEUE = "lib.test.queue";
+
+    @Mock
+    private ConnectionFactory connectionFactory;
+
+    @Mock
+    private Connection connection;
+
+    @Mock
+    private Channel channel;
+
+    private final Capture<Consumer> consumer = new Capture<Consumer>();
+
+    @Test
+    public void shouldDeliverOnlyRequestedMessagesAndAckThem() throws Exception {
+        RecordingSubscriber subscriber = new RecordingSubscriber(2);
+        mockConsume(2);
+        this.channel.basicQos(1, true);
+        expectLastCall().once();
+        this.channel.basicAck(1L, false);
+        this.channel.basicAck(2L, false);
+        this.channel.basicAck(3L, false);
+        expect(this.channel.isOpen()).andReturn(true);
+        this.channel.close();
+        PowerMock.replayAll();
+
+        new MessageStream(this.connectionFactory, QUEUE).subscribe(subscriber);
+        deliver(1L, "first");
+        deliver(2L, "second");
+        deliver(3L, "third");
+        Assert.assertEquals(Arrays.asList("first", "second"), subscriber.received);
+
+        subscriber.subscription.request(1);
+        Assert.assertEquals(Arrays.asList("first", "second", "third"), subscriber.received);
+        subscriber.subscription.cancel();
+
+        PowerMock.verifyAll();
+    }
+
+    @Test
+    public void shouldGrowPrefetchWithDemandUpToMaximum() throws Exception {
+        RecordingSubscriber subscriber = new RecordingSubscriber(1);
+        mockConsume(1);
+        this.channel.basicQos(4, true);
+        expectLastCall().once();
+        PowerMock.replayAll();
+
+        new MessageStream(this.connectionFactory, QUEUE, 4).subscribe(subscriber);
+        subscriber.subscription.request(Long.MAX_VALUE);
+
+        PowerMock.verifyAll();
+    }
+
+    @Test
+    public void shouldLowerPrefetchAsDemandIsServed() throws Exception {
+        RecordingSubscriber subscriber = new RecordingSubscriber(8);
+        mockConsume(8);
+        this.channel.basicQos(4, true);
+        expectLastCall().once();
+        this.channel.basicQos(2, true);
+        expectLastCall().once();
+        this.channel.basicQos(1, true);
+        expectLastCall().once();
+        this.channel.basicAck(anyLong(), eq(false));
+        expectLastCall().times(8);
+        PowerMock.replayAll();
+
+        new MessageStream(this.connectionFactory, QUEUE).subscribe(subscriber);
+        for (long deliveryTag = 1; deliveryTag <= 8; deliveryTag++) {
+            deliver(deliveryTag, "message");
+        }
+
+        Assert.assertEquals(8, subscriber.received.size());
+        PowerMock.verifyAll();
+    }
+
+    @Test
+    public void shouldRejectMessageAndFailIfSubscriberThrows() throws Exception {
+        RecordingSubscriber subscriber = new RecordingSubscriber(5);
+        subscriber.failOn = "poison";
+        mockConsume(5);
+        this.channel.basicNack(1L, false, false);
+        expect(this.channel.isOpen()).andReturn(true);
+        this.channel.close();
+        PowerMock.replayAll();
+
+        new MessageStream(this.connectionFactory, QUEUE).subscribe(subscriber);
+        deliver(1L, "poison");
+        deliver(2L, "ignored");
+
+        Assert.assertTrue(subscriber.error instanceof IllegalStateException);
+        Assert.assertEquals(Arrays.asList("poison"), subscriber.received);
+        PowerMock.verifyAll();
+    }
+
+    private void mockConsume(int initialPrefetch) throws Exception {
+        expect(this.connectionFactory.newConnection()).andReturn(this.connection);
+        expect(this.connection.createChannel()).andReturn(this.channel);
+        this.channel.basicQos(initialPrefetch, true);
+        expectLastCall().once();
+        expect(this.channel.basicConsume(eq(QUEUE), eq(false), capture(this.consumer))).andReturn("tag");
+    }
+
+    private void deliver(long deliveryTag, String body) throws Exception {
+        BasicProperties properties = MessageProperties.BASIC;
+        this.consumer.getValue().handleDelivery("tag", new Envelope(deliveryTag, false, "", QUEUE), properties,
+                body.getBytes("UTF-8"));
+    }
+
+    private static class RecordingSubscriber implements MessageSubscriber {
+
+        final List<String> received = new ArrayList<String>();
+
+        final long initialRequest;
+
+        MessageSubscription subscription;
+
+        String failOn;
+
+        Throwable error;
+
+        RecordingSubscriber(long initialRequest) {
+            this.initialRequest = initialRequest;
+        }
+
+        public void onSubscribe(MessageSubscription subscription) {
+            this.subscription = subscription;
+            subscription.request(this.initialRequest);
+        }
+
+        public void onNext(Message message) {
+            String body = message.getBodyAs(String.class);
+            this.received.add(body);
+            if (body.equals(this.failOn)) {
+                throw new IllegalStateException("processing failed");
+            }
+        }
+
+        public void onError(Throwable cause) {
+            this.error = cause;
+        }
+
+        public void onComplete() {
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.personal.easy.rabbit.message;
+
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.alibaba.fastjson.JSON;
+
+public class BodyBufferPoolTest {
+
+    @Test
+    public void shouldReuseReleasedBuffers() {
+        BodyBufferPool pool = new BodyBufferPool(2, 16, 64);
+
+        BodyBuffer first = pool.acquire();
+        first.write(new byte[] { 1, 2, 3 }, 0, 3);
+        pool.release(first);
+        BodyBuffer second = pool.acquire();
+
+        Assert.assertSame(first, second);
+        Assert.assertEquals(0, second.size());
+        Assert.assertEquals(2, pool.getAcquireCount());
+        Assert.assertEquals(1, pool.getHitCount());
+        Assert.assertEquals(0.5, pool.getHitRate(), 0.0);
+        Assert.assertEquals(16, pool.getRecycledBytes());
+    }
+
+    @Test
+    public void shouldDropBuffersGrownBeyondRetainedCapacity() {
+        BodyBufferPool pool = new BodyBufferPool(2, 16, 64);
+
+        BodyBuffer buffer = pool.acquire();
+        buffer.write(new byte[100], 0, 100);
+        pool.release(buffer);
+
+        Assert.assertEquals(0, pool.getPooledCount());
+        Assert.assertNotSame(buffer, pool.acquire());
+    }
+
+    @Test
+    public void shouldEncodeJsonLikeFastjson() throws Exception {
+        BodyBufferPool pool = new BodyBufferPool(1, 16, 1024 * 1024);
+        JsonCodec codec = new JsonCodec(pool);
+        Map<String, Object> body = new HashMap<String, Object>();
+        char[] text = new char[10000];
+        Arrays.fill(text, '€');
+        body.put("text", new String(text));
+        body.put("number", 42);
+
+        for (String charset : new String[] { "UTF-8", "UTF-16", "ISO-8859-1" }) {
+            byte[] expected = JSON.toJSONString(body).getBytes(Charset.forName(charset));
+            Assert.assertArrayEquals(expected, codec.encode(body, Charset.forName(charset)));
+        }
+        Assert.assertEquals(2, pool.getHitCount());
+    }
+
+    @Test
+    public void shouldFinishEncodingOfWrittenChars() throws Exception {
+        BodyBuffer buffer = new BodyBuffer(4);
+        Charset utf8 = Charset.forName("UTF-8");
+
+        // A surrogate pair split between two writes and a trailing lone surrogate
+        buffer.writer(utf8).write("a\uD83D");
+        buffer.writer(utf8).write("\uDE00b\uD83D");
+
+        Assert.assertArrayEquals("a\uD83D\uDE00b\uD83D".getBytes(utf8), buffer.toByteArray());
+    }
+
+    @Test
+    public void shouldWriteFinalShiftSequenceOfStatefulCharset() throws Exception {
+        BodyBuffer buffer = new BodyBuffer(4);
+        Charset charset = Charset.forName("ISO-2022-JP");
+
+        Writer writer = buffer.writer(charset);
+        writer.write("\u65E5\u672C");
+        writer.close();
+
+        Assert.assertArrayEquals("\u65E5\u672C".getBytes(charset), buffer.toByteArray());
+    }
+}
@@ -0,0 +1,67 @@
+package com.personal.easy.rabbit.message;
+
+import java.math.BigDecimal;
+import java.nio.charset.Charset;
+import java.util.Date;
+
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compares the encode and decode cost and the body size of the body codecs
+ * for a small object.
+ */
+public class BodyCodecIT {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BodyCodecIT.class);
+
+    private static final Charset CHARSET = Message.DEFAULT_MESSAGE_CHARSET;
+
+    private static final int WARMUP_BODIES = 100000;
+
+    private static final int MEASURED_BODIES = 500000;
+
+    private static volatile Object sink;
+
+    @Test
+    public void shouldReportCostPerCodec() throws Exception {
+        BodyCodecsTest.Trade trade = new BodyCodecsTest.Trade();
+        trade.symbol = "ACME";
+        trade.quantity = 1000;
+        trade.price = new BigDecimal("12.34");
+        trade.time = new Date();
+        trade.side = BodyCodecsTest.Side.BUY;
+
+        report("text", BodyCodecs.TEXT, "ACME;1000;12.34;BUY", String.class);
+        report("json", BodyCodecs.JSON, trade, BodyCodecsTest.Trade.class);
+        report("binary", BodyCodecs.BINARY, trade, BodyCodecsTest.Trade.class);
+    }
+
+    private static <T> void report(final String name, final BodyCodec codec, final T body, final Class<T> type)
+            throws Exception {
+        byte[] content = codec.encode(body, CHARSET);
+        encode(codec, body, WARMUP_BODIES);
+        decode(codec, content, type, WARMUP_BODIES);
+        long encode = encode(codec, body, MEASURED_BODIES);
+        long decode = decode(codec, content, type, MEASURED_BODIES);
+        LOGGER.info("{}: encode {} ns, decode {} ns, {} bytes", new Object[] { name, encode, decode, content.length });
+    }
+
+    private static long encode(final BodyCodec codec, final Object body, final int bodies) throws Exception {
+        long start = System.nanoTime();
+        for (int i = 0; i < bodies; i++) {
+            sink = codec.encode(body, CHARSET);
+        }
+        return (System.nanoTime() - start) / bodies;
+    }
+
+    private static long decode(final BodyCodec codec, final byte[] content, final Class<?> type, final int bodies)
+            throws Exception {
+        long start = System.nanoTime();
+        for (int i = 0; i < bodies; i++) {
+            sink = codec.decode(content, CHARSET, type);
+        }
+        return (System.nanoTime() - start) / bodies;
+    }
+}
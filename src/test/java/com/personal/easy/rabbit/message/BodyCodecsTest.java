@@ -0,0 +1,219 @@
+package com.personal.easy.rabbit.message;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class BodyCodecsTest {
+
+    @After
+    public void unbind() {
+        BodyCodecs.unbind(Trade.class);
+    }
+
+    @Test
+    public void shouldResolveDefaultCodecsByType() {
+        Assert.assertSame(BodyCodecs.RAW, BodyCodecs.forType(byte[].class));
+        Assert.assertSame(BodyCodecs.TEXT, BodyCodecs.forType(String.class));
+        Assert.assertSame(BodyCodecs.TEXT, BodyCodecs.forType(Long.class));
+        Assert.assertSame(BodyCodecs.JSON, BodyCodecs.forType(Trade.class));
+    }
+
+    @Test
+    public void shouldReadBodyAsPrimitiveTypes() {
+        long longValue = new Message().body(42L).getBodyAs(long.class);
+        int intValue = new Message().body(42).getBodyAs(int.class);
+        short shortValue = new Message().body((short) 42).getBodyAs(short.class);
+        byte byteValue = new Message().body((byte) 42).getBodyAs(byte.class);
+        double doubleValue = new Message().body(4.2d).getBodyAs(double.class);
+        float floatValue = new Message().body(4.2f).getBodyAs(float.class);
+        boolean booleanValue = new Message().body(true).getBodyAs(boolean.class);
+        char charValue = new Message().body('x').getBodyAs(char.class);
+
+        Assert.assertEquals(42L, longValue);
+        Assert.assertEquals(42, intValue);
+        Assert.assertEquals((short) 42, shortValue);
+        Assert.assertEquals((byte) 42, byteValue);
+        Assert.assertEquals(4.2d, doubleValue, 0);
+        Assert.assertEquals(4.2f, floatValue, 0);
+        Assert.assertTrue(booleanValue);
+        Assert.assertEquals('x', charValue);
+    }
+
+    @Test
+    public void shouldReadJsonBodyAsPrimitiveType() {
+        long value = new Message().contentType(Message.APPLICATION_JSON).body("42".getBytes()).getBodyAs(long.class);
+
+        Assert.assertEquals(42L, value);
+    }
+
+    @Test
+    public void shouldFindCodecByContentTypeIgnoringParameters() {
+        Assert.assertSame(BodyCodecs.JSON, BodyCodecs.forContentType("Application/JSON; charset=UTF-8"));
+        Assert.assertSame(BodyCodecs.BINARY, BodyCodecs.forContentType(BinaryCodec.CONTENT_TYPE));
+        Assert.assertNull(BodyCodecs.forContentType("application/unknown"));
+        Assert.assertNull(BodyCodecs.forContentType(null));
+    }
+
+    @Test
+    public void shouldReadBoundTypeWithCodecOfContentType() {
+        Trade trade = trade();
+        Message json = new Message().body(trade);
+        BodyCodecs.bind(Trade.class, BodyCodecs.BINARY);
+        Message binary = new Message().body(trade);
+
+        Assert.assertEquals(Message.APPLICATION_JSON, json.getBasicProperties().getContentType());
+        Assert.assertEquals(BinaryCodec.CONTENT_TYPE, binary.getBasicProperties().getContentType());
+        Assert.assertNull(binary.getBasicProperties().getContentEncoding());
+        assertTrade(trade, json.getBodyAs(Trade.class));
+        assertTrade(trade, binary.getBodyAs(Trade.class));
+    }
+
+    @Test
+    public void shouldReadJsonBodyAsText() {
+        Message message = new Message().body(trade());
+
+        Assert.assertTrue(message.getBodyAs(String.class).startsWith("{"));
+    }
+
+    @Test
+    public void shouldWriteAndReadNullFieldsInBinary() throws Exception {
+        Trade trade = new Trade();
+        trade.quantity = -42;
+
+        byte[] content = BodyCodecs.BINARY.encode(trade, Message.DEFAULT_MESSAGE_CHARSET);
+        Trade decoded = BodyCodecs.BINARY.decode(content, Message.DEFAULT_MESSAGE_CHARSET, Trade.class);
+
+        assertTrade(trade, decoded);
+    }
+
+    @Test
+    public void shouldNotSupportCollectionsInBinary() {
+        Assert.assertFalse(BodyCodecs.BINARY.canEncode(WithList.class));
+        Assert.assertFalse(BodyCodecs.BINARY.canEncode(String.class));
+        Assert.assertTrue(BodyCodecs.BINARY.canEncode(Trade.class));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldNotBindUnsupportedType() {
+        BodyCodecs.bind(WithList.class, BodyCodecs.BINARY);
+    }
+
+    @Test
+    public void shouldNotEncodeTypeWithUnsupportedNestedType() {
+        Assert.assertFalse(BodyCodecs.BINARY.canEncode(WithNestedList.class));
+        Assert.assertFalse(BodyCodecs.BINARY.canDecode(WithNestedList.class));
+    }
+
+    @Test
+    public void shouldWriteAndReadSelfReferencingTypeInBinary() throws Exception {
+        Node node = new Node();
+        node.name = "first";
+        node.next = new Node();
+        node.next.name = "second";
+
+        Assert.assertTrue(BodyCodecs.BINARY.canEncode(Node.class));
+        byte[] content = BodyCodecs.BINARY.encode(node, Message.DEFAULT_MESSAGE_CHARSET);
+        Node read = BodyCodecs.BINARY.decode(content, Message.DEFAULT_MESSAGE_CHARSET, Node.class);
+
+        Assert.assertEquals("first", read.name);
+        Assert.assertEquals("second", read.next.name);
+        Assert.assertNull(read.next.next);
+    }
+
+    @Test(expected = IOException.class)
+    public void shouldNotEncodeSubclassOfNestedTypeInBinary() throws Exception {
+        Trade trade = trade();
+        trade.counterparty = new Broker();
+        BodyCodecs.BINARY.encode(trade, Message.DEFAULT_MESSAGE_CHARSET);
+    }
+
+    @Test(expected = IOException.class)
+    public void shouldNotEncodeCyclicObjectsInBinary() throws Exception {
+        Node node = new Node();
+        node.next = new Node();
+        node.next.next = node;
+        BodyCodecs.BINARY.encode(node, Message.DEFAULT_MESSAGE_CHARSET);
+    }
+
+    private static Trade trade() {
+        Trade trade = new Trade();
+        trade.symbol = "ACME";
+        trade.quantity = 1000;
+        trade.price = new BigDecimal("12.34");
+        trade.time = new Date(1434000000000L);
+        trade.side = Side.SELL;
+        trade.counterparty = new Counterparty();
+        trade.counterparty.name = "Counterparty";
+        trade.counterparty.id = Long.MIN_VALUE;
+        return trade;
+    }
+
+    private static void assertTrade(final Trade expected, final Trade actual) {
+        Assert.assertEquals(expected.symbol, actual.symbol);
+        Assert.assertEquals(expected.quantity, actual.quantity);
+        Assert.assertEquals(expected.price, actual.price);
+        Assert.assertEquals(expected.time, actual.time);
+        Assert.assertEquals(expected.side, actual.side);
+        if (expected.counterparty == null) {
+            Assert.assertNull(actual.counterparty);
+        }
+        else {
+            Assert.assertEquals(expected.counterparty.name, actual.counterparty.name);
+            Assert.assertEquals(expected.counterparty.id, actual.counterparty.id);
+        }
+    }
+
+    public enum Side {
+        BUY, SELL
+    }
+
+    public static class Counterparty {
+
+        public String name;
+
+        public Long id;
+    }
+
+    public static class Broker extends Counterparty {
+
+        public String desk;
+    }
+
+    public static class Trade {
+
+        public String symbol;
+
+        public int quantity;
+
+        public BigDecimal price;
+
+        public Date time;
+
+        public Side side;
+
+        public Counterparty counterparty;
+    }
+
+    public static class WithList {
+
+        public List<String> values;
+    }
+
+    public static class WithNestedList {
+
+        public WithList nested;
+    }
+
+    public static class Node {
+
+        public String name;
+
+        public Node next;
+    }
+}
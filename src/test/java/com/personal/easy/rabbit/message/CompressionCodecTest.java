@@ -0,0 +1,100 @@
+package com.personal.easy.rabbit.message;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class CompressionCodecTest {
+
+    private static final CompressionCodec[] CODECS = new CompressionCodec[] {
+            CompressionCodecs.DEFLATE, CompressionCodecs.GZIP, CompressionCodecs.LZ4_BLOCK
+    };
+
+    @Test
+    public void shouldRestoreCompressibleContent() throws Exception {
+        StringBuilder json = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            json.append("{\"id\":").append(i).append(",\"name\":\"customer\",\"active\":true},");
+        }
+        byte[] content = json.toString().getBytes("UTF-8");
+        for (CompressionCodec codec : CODECS) {
+            byte[] compressed = codec.compress(content);
+            Assert.assertTrue(codec.getName(), compressed.length * 5 < content.length);
+            Assert.assertArrayEquals(codec.getName(), content, codec.decompress(compressed));
+        }
+    }
+
+    @Test
+    public void shouldRestoreIncompressibleAndTinyContent() throws Exception {
+        byte[] random = new byte[70000];
+        new Random(42).nextBytes(random);
+        byte[][] contents = new byte[][] {
+                random, new byte[0], new byte[] { 1 }, Arrays.copyOf(random, 13), new byte[300]
+        };
+        for (CompressionCodec codec : CODECS) {
+            for (byte[] content : contents) {
+                Assert.assertArrayEquals(codec.getName(), content, codec.decompress(codec.compress(content)));
+            }
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void shouldRejectTruncatedLz4Block() throws Exception {
+        byte[] compressed = CompressionCodecs.LZ4_BLOCK.compress(new byte[1000]);
+        CompressionCodecs.LZ4_BLOCK.decompress(Arrays.copyOf(compressed, compressed.length - 1));
+    }
+
+    @Test
+    public void shouldRejectLz4LengthBeyondMaximumRatio() throws Exception {
+        byte[] zeros = new byte[1024 * 1024];
+        Assert.assertArrayEquals(zeros,
+                CompressionCodecs.LZ4_BLOCK.decompress(CompressionCodecs.LZ4_BLOCK.compress(zeros)));
+        try {
+            CompressionCodecs.LZ4_BLOCK.decompress(new byte[] { 0x7F, -1, -1, -1, 0x10, 0, 0, 0, 0 });
+            Assert.fail("Expected the declared length to be rejected");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void shouldRejectContentExceedingMaxDecompressedSize() throws Exception {
+        CompressionCodec[] codecs = new CompressionCodec[] {
+                new DeflateCodec(1000), new GzipCodec(1000), new Lz4BlockCodec(1000)
+        };
+        for (CompressionCodec codec : codecs) {
+            Assert.assertEquals(1000, codec.decompress(codec.compress(new byte[1000])).length);
+            try {
+                codec.decompress(codec.compress(new byte[1001]));
+                Assert.fail("Expected " + codec.getName() + " to reject the decompressed size");
+            } catch (IOException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void shouldCompressMessageBodyAboveThreshold() {
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            body.append("öüä");
+        }
+        Message message = new Message().body(body.toString()).compress(CompressionCodecs.GZIP, 64);
+
+        Assert.assertEquals(GzipCodec.NAME, message.getBasicProperties().getContentEncoding());
+        Assert.assertEquals(Message.TEXT_PLAIN + ";charset=UTF-8", message.getBasicProperties().getContentType());
+        Assert.assertTrue(message.getBodyContent().length < 100);
+        Assert.assertEquals(body.toString(), message.getBodyAs(String.class));
+    }
+
+    @Test
+    public void shouldNotCompressMessageBodyBelowThreshold() {
+        Message message = new Message().body("small").compress(CompressionCodecs.LZ4_BLOCK, 64);
+
+        Assert.assertEquals("UTF-8", message.getBasicProperties().getContentEncoding());
+        Assert.assertEquals("small", message.getBodyAs(String.class));
+    }
+}
@@ -0,0 +1,64 @@
+package com.personal.easy.rabbit.message;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.rabbitmq.client.MessageProperties;
+
+public class MessageBatchTest {
+
+    @Test
+    public void shouldRestoreInnerMessagesFromEnvelope() throws Exception {
+        Message first = new Message(MessageProperties.BASIC).exchange("exchange").routingKey("key").id("1").body("first");
+        Message second = new Message().exchange("exchange").routingKey("key").persistent()
+                .contentType(Message.TEXT_PLAIN).body("second");
+
+        Message envelope = MessageBatch.wrap(Arrays.asList(first, second));
+        envelope.deliveryTag(7L);
+        List<Message> messages = MessageBatch.unwrap(envelope);
+
+        Assert.assertTrue(MessageBatch.isBatch(envelope.getBasicProperties()));
+        Assert.assertEquals(Integer.valueOf(Message.DELIVERY_MODE_PERSISTENT),
+                envelope.getBasicProperties().getDeliveryMode());
+        Assert.assertEquals("exchange", envelope.getExchange());
+        Assert.assertEquals(2, messages.size());
+        Assert.assertEquals("1", messages.get(0).getId());
+        Assert.assertEquals("first", messages.get(0).getBodyAs(String.class));
+        Assert.assertEquals(Integer.valueOf(1), messages.get(0).getBasicProperties().getDeliveryMode());
+        Assert.assertEquals("second", messages.get(1).getBodyAs(String.class));
+        Assert.assertEquals(Message.TEXT_PLAIN, messages.get(1).getBasicProperties().getContentType());
+        Assert.assertEquals(Integer.valueOf(Message.DELIVERY_MODE_PERSISTENT),
+                messages.get(1).getBasicProperties().getDeliveryMode());
+        Assert.assertEquals("key", messages.get(1).getRoutingKey());
+        Assert.assertEquals(7L, messages.get(1).getDeliveryTag());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectEmptyBatch() throws Exception {
+        MessageBatch.wrap(Collections.<Message> emptyList());
+    }
+
+    @Test
+    public void shouldRejectEnvelopeWithInvalidCount() throws Exception {
+        for (int count : new int[] { -1, Integer.MAX_VALUE }) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeByte(1);
+            out.writeInt(count);
+            Message envelope = new Message().contentType(MessageBatch.CONTENT_TYPE).body(bytes.toByteArray());
+            try {
+                MessageBatch.unwrap(envelope);
+                Assert.fail("Expected message count " + count + " to be rejected");
+            } catch (IOException e) {
+                // expected
+            }
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.personal.easy.rabbit.message;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MessageDecodingTest {
+
+    @Test
+    public void shouldCacheDecodedBodyPerType() {
+        Map<String, Object> body = new HashMap<String, Object>();
+        body.put("name", "value");
+        Message message = new Message().body(body);
+
+        Map<?, ?> first = message.getBodyAs(Map.class);
+        String text = message.getBodyAs(String.class);
+
+        Assert.assertSame(first, message.getBodyAs(Map.class));
+        Assert.assertSame(text, message.getBodyAs(String.class));
+        Assert.assertEquals("value", first.get("name"));
+    }
+
+    @Test
+    public void shouldDecodeAgainAfterBodyChanged() {
+        Message message = new Message().body("first");
+        Assert.assertEquals("first", message.getBodyAs(String.class));
+
+        message.body("second");
+
+        Assert.assertEquals("second", message.getBodyAs(String.class));
+    }
+
+    @Test
+    public void shouldDecodeAgainAfterPropertiesChanged() {
+        Message message = new Message().body("ä".getBytes(Message.DEFAULT_MESSAGE_CHARSET));
+        message.getBodyAs(String.class);
+
+        message.contentEncoding("ISO-8859-1");
+
+        Assert.assertEquals(2, message.getBodyAs(String.class).length());
+    }
+
+    @Test
+    public void shouldUseBodyDecodedByExecutor() {
+        final List<Runnable> tasks = new ArrayList<Runnable>();
+        Message message = new Message().body("body").decodeBodyAsync(String.class, new Executor() {
+            public void execute(Runnable task) {
+                tasks.add(task);
+            }
+        });
+        Assert.assertEquals(1, tasks.size());
+
+        tasks.get(0).run();
+
+        Assert.assertEquals("body", message.getBodyAs(String.class));
+    }
+
+    @Test
+    public void shouldDecodeInCallingThreadIfExecutorDidNotStart() {
+        Message message = new Message().body("body").decodeBodyAsync(String.class, new Executor() {
+            public void execute(Runnable task) {
+                // Never runs the task
+            }
+        });
+
+        Assert.assertEquals("body", message.getBodyAs(String.class));
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void shouldPropagateFailureOfAsyncDecoding() {
+        Message message = new Message().body("no number").decodeBodyAsync(Long.class, new Executor() {
+            public void execute(Runnable task) {
+                task.run();
+            }
+        });
+
+        message.getBodyAs(Long.class);
+    }
+}
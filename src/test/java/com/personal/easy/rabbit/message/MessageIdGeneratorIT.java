@@ -0,0 +1,70 @@
+package com.personal.easy.rabbit.message;
+
+import java.util.UUID;
+
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compares the cost of generated message ids with random UUIDs, single
+ * threaded and with as many threads as processors.
+ */
+public class MessageIdGeneratorIT {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MessageIdGeneratorIT.class);
+
+    private static final int WARMUP_IDS = 200000;
+
+    private static final int MEASURED_IDS = 1000000;
+
+    @Test
+    public void shouldReportCostComparedToRandomUuids() throws Exception {
+        int processors = Runtime.getRuntime().availableProcessors();
+        for (int threads : new int[] { 1, processors }) {
+            run("uuid", threads, WARMUP_IDS, new Runnable() {
+                public void run() {
+                    UUID.randomUUID().toString();
+                }
+            });
+            run("message id", threads, WARMUP_IDS, new Runnable() {
+                public void run() {
+                    MessageIdGenerator.DEFAULT.nextId();
+                }
+            });
+            long uuid = run("uuid", threads, MEASURED_IDS, new Runnable() {
+                public void run() {
+                    UUID.randomUUID().toString();
+                }
+            });
+            long messageId = run("message id", threads, MEASURED_IDS, new Runnable() {
+                public void run() {
+                    MessageIdGenerator.DEFAULT.nextId();
+                }
+            });
+            LOGGER.info("{} threads: uuid {} ns/id, message id {} ns/id", new Object[] { threads, uuid, messageId });
+        }
+    }
+
+    private static long run(String name, int threadCount, final int ids, final Runnable generate)
+            throws InterruptedException {
+        Thread[] threads = new Thread[threadCount];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(new Runnable() {
+                public void run() {
+                    for (int j = 0; j < ids; j++) {
+                        generate.run();
+                    }
+                }
+            }, "benchmark-" + name + "-" + i);
+        }
+        long start = System.nanoTime();
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        return (System.nanoTime() - start) / ids;
+    }
+}
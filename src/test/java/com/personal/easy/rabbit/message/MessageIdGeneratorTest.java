@@ -0,0 +1,69 @@
+package com.personal.easy.rabbit.message;
+
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.Collections;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MessageIdGeneratorTest {
+
+    @Test
+    public void shouldCreateIncreasingIdsOfFixedLength() {
+        MessageIdGenerator generator = new MessageIdGenerator(42);
+        String previous = generator.nextId();
+        for (int i = 0; i < 10000; i++) {
+            String next = generator.nextId();
+            Assert.assertEquals(MessageIdGenerator.BASE62_LENGTH, next.length());
+            Assert.assertTrue(previous + " < " + next, previous.compareTo(next) < 0);
+            previous = next;
+        }
+    }
+
+    @Test
+    public void shouldCreateUniqueIdsFromManyThreads() throws Exception {
+        final MessageIdGenerator generator = new MessageIdGenerator(7);
+        final Set<String> ids = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+        Thread[] threads = new Thread[8];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(new Runnable() {
+                public void run() {
+                    for (int j = 0; j < 5000; j++) {
+                        ids.add(generator.nextId());
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Assert.assertEquals(threads.length * 5000, ids.size());
+    }
+
+    @Test
+    public void shouldEncodeAndDecodeBinaryForm() {
+        Assert.assertEquals("0000000000000000000000", MessageIdGenerator.encodeBase62(0, 0));
+        Assert.assertEquals("7n42DGM5Tflk9n8mt7Fhc7", MessageIdGenerator.encodeBase62(-1, -1));
+
+        byte[] binary = new MessageIdGenerator(1).nextBinaryId();
+        long high = 0;
+        long low = 0;
+        for (int i = 0; i < 8; i++) {
+            high = high << 8 | binary[i] & 0xFF;
+            low = low << 8 | binary[i + 8] & 0xFF;
+        }
+        String id = MessageIdGenerator.encodeBase62(high, low);
+        Assert.assertTrue(Arrays.equals(binary, MessageIdGenerator.decodeBase62(id)));
+    }
+
+    @Test
+    public void shouldKeepCreationTime() {
+        long before = System.currentTimeMillis();
+        String id = MessageIdGenerator.DEFAULT.nextId();
+        long timestamp = MessageIdGenerator.getTimestamp(id);
+        Assert.assertTrue(timestamp >= before && timestamp <= System.currentTimeMillis());
+    }
+}
@@ -0,0 +1,86 @@
+package com.personal.easy.rabbit.message;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.lang.reflect.Method;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.rabbitmq.client.AMQP.BasicProperties;
+import com.rabbitmq.client.MessageProperties;
+
+/**
+ * Compares the allocation and time per message of building the properties
+ * once with copying them on every change, as done before by the fluent
+ * methods of {@link Message}. Allocations are only reported on JVMs
+ * supporting per thread allocation counters.
+ */
+public class MessagePropertiesBuilderIT {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(MessagePropertiesBuilderIT.class);
+
+    private static final int WARMUP_MESSAGES = 200000;
+
+    private static final int MEASURED_MESSAGES = 1000000;
+
+    private static volatile Object sink;
+
+    @Test
+    public void shouldReportAllocationComparedToCopyingProperties() throws Exception {
+        Runnable copying = new Runnable() {
+            public void run() {
+                BasicProperties properties = MessageProperties.PERSISTENT_BASIC;
+                properties = properties.builder().messageId("id").build();
+                properties = properties.builder().contentType(Message.TEXT_PLAIN).build();
+                properties = properties.builder().contentEncoding("UTF-8").build();
+                Map<String, Object> headers = new HashMap<String, Object>();
+                headers.put("name", "value");
+                properties = properties.builder().headers(headers).build();
+                sink = properties.builder().timestamp(new Date()).build();
+            }
+        };
+        Runnable building = new Runnable() {
+            public void run() {
+                sink = new Message().id("id").contentType(Message.TEXT_PLAIN).contentEncoding("UTF-8")
+                        .header("name", "value").properties().timestamp(new Date()).build();
+            }
+        };
+        run(copying, WARMUP_MESSAGES);
+        run(building, WARMUP_MESSAGES);
+        long[] copied = run(copying, MEASURED_MESSAGES);
+        long[] built = run(building, MEASURED_MESSAGES);
+        LOGGER.info("Copying properties: {} ns and {} bytes per message", copied[0], copied[1]);
+        LOGGER.info("Building properties once: {} ns and {} bytes per message", built[0], built[1]);
+    }
+
+    private static long[] run(Runnable task, int messages) throws Exception {
+        long allocatedBefore = allocatedBytes();
+        long start = System.nanoTime();
+        for (int i = 0; i < messages; i++) {
+            task.run();
+        }
+        long nanos = System.nanoTime() - start;
+        long allocated = allocatedBytes() - allocatedBefore;
+        return new long[] { nanos / messages, allocatedBefore < 0 ? -1 : allocated / messages };
+    }
+
+    /**
+     * Gets the bytes allocated by the current thread, or -1 if not supported.
+     */
+    private static long allocatedBytes() throws Exception {
+        ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        try {
+            Method method = threadBean.getClass().getMethod("getThreadAllocatedBytes", long.class);
+            method.setAccessible(true);
+            return (Long) method.invoke(threadBean, Thread.currentThread().getId());
+        }
+        catch (NoSuchMethodException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.personal.easy.rabbit.message;
+
+import java.util.Date;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.rabbitmq.client.AMQP.BasicProperties;
+import com.rabbitmq.client.MessageProperties;
+
+public class MessagePropertiesBuilderTest {
+
+    @Test
+    public void shouldCopyAllValuesOfProperties() {
+        BasicProperties properties = new BasicProperties("type/subtype", "UTF-8", null, 2, 5, "correlation",
+                "reply", "1000", "id", new Date(1000L), "type", "user", "app", "cluster");
+
+        BasicProperties copy = new MessagePropertiesBuilder(properties).build();
+
+        Assert.assertEquals(properties.toString(), copy.toString());
+    }
+
+    @Test
+    public void shouldBeReusableAfterReset() {
+        MessagePropertiesBuilder builder = new MessagePropertiesBuilder().contentType(Message.TEXT_PLAIN)
+                .messageId("1");
+        BasicProperties first = builder.build();
+        BasicProperties second = builder.reset().messageId("2").build();
+
+        Assert.assertEquals("1", first.getMessageId());
+        Assert.assertEquals(Message.TEXT_PLAIN, first.getContentType());
+        Assert.assertEquals("2", second.getMessageId());
+        Assert.assertNull(second.getContentType());
+    }
+
+    @Test
+    public void shouldMaterializeMessagePropertiesOnlyAfterChanges() {
+        Message message = new Message().id("1").contentType(Message.TEXT_PLAIN).contentEncoding("UTF-8")
+                .header("name", "value");
+
+        BasicProperties properties = message.getBasicProperties();
+
+        Assert.assertSame(properties, message.getBasicProperties());
+        Assert.assertSame(properties, message.id("1").getBasicProperties());
+        Assert.assertEquals("1", properties.getMessageId());
+        Assert.assertEquals(Message.TEXT_PLAIN, properties.getContentType());
+        Assert.assertEquals("UTF-8", properties.getContentEncoding());
+        Assert.assertEquals("value", properties.getHeaders().get("name"));
+        Assert.assertEquals(Integer.valueOf(Message.DELIVERY_MODE_PERSISTENT), properties.getDeliveryMode());
+
+        BasicProperties changed = message.header("other", "value").getBasicProperties();
+
+        Assert.assertNotSame(properties, changed);
+        Assert.assertNull(properties.getHeaders().get("other"));
+        Assert.assertEquals("value", changed.getHeaders().get("other"));
+    }
+
+    @Test
+    public void shouldKeepPropertiesOfUnchangedMessage() {
+        Message message = new Message(MessageProperties.MINIMAL_BASIC);
+
+        Assert.assertSame(MessageProperties.MINIMAL_BASIC, message.getBasicProperties());
+    }
+}
@@ -0,0 +1,95 @@
+package com.personal.easy.rabbit.message;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MessageReaderTest {
+
+    @Test
+    public void shouldReadJsonInDeclaredCharset() {
+        Message message = new Message().body("{\"name\":\"ä€\",\"size\":3}".getBytes(Charset.forName("UTF-16")))
+                .contentType(Message.APPLICATION_JSON).contentEncoding("UTF-16");
+
+        Report report = message.getBodyAs(Report.class);
+
+        Assert.assertEquals("ä€", report.getName());
+        Assert.assertEquals(3, report.getSize());
+    }
+
+    @Test
+    public void shouldReadJsonFromSlice() {
+        byte[] content = "xx{\"name\":\"slice\",\"size\":1}yy".getBytes(Message.DEFAULT_MESSAGE_CHARSET);
+
+        Report report = MessageReader.readJson(content, 2, content.length - 4, Message.DEFAULT_MESSAGE_CHARSET,
+                Report.class);
+
+        Assert.assertEquals("slice", report.getName());
+    }
+
+    @Test
+    public void shouldReadJsonLargerThanCachedDecodingLimit() {
+        char[] name = new char[MessageReader.CACHED_DECODING_LIMIT_IN_BYTES * 2];
+        Arrays.fill(name, 'ü');
+        Report large = new Report();
+        large.setName(new String(name));
+        large.setSize(name.length);
+        Message message = new Message().body(large);
+
+        Report report = message.getBodyAs(Report.class);
+
+        Assert.assertEquals(large.getName(), report.getName());
+        Assert.assertEquals(name.length, report.getSize());
+    }
+
+    @Test
+    public void shouldReadJsonFromStream() throws Exception {
+        byte[] content = "{\"name\":\"stream\",\"size\":2}".getBytes(Message.DEFAULT_MESSAGE_CHARSET);
+
+        Report report = MessageReader.readJson(new ByteArrayInputStream(content), Message.DEFAULT_MESSAGE_CHARSET,
+                Report.class);
+
+        Assert.assertEquals("stream", report.getName());
+        Assert.assertEquals(2, report.getSize());
+    }
+
+    @Test
+    public void shouldReadJsonFromStreamWithLengthHint() throws Exception {
+        byte[] content = "{\"name\":\"hinted\",\"size\":4}".getBytes(Message.DEFAULT_MESSAGE_CHARSET);
+
+        Report exact = MessageReader.readJson(new ByteArrayInputStream(content), content.length,
+                Message.DEFAULT_MESSAGE_CHARSET, Report.class);
+        Report tooShort = MessageReader.readJson(new ByteArrayInputStream(content), 3,
+                Message.DEFAULT_MESSAGE_CHARSET, Report.class);
+
+        Assert.assertEquals("hinted", exact.getName());
+        Assert.assertEquals("hinted", tooShort.getName());
+        Assert.assertEquals(4, tooShort.getSize());
+    }
+
+    public static class Report {
+
+        private String name;
+
+        private int size;
+
+        public String getName() {
+            return this.name;
+        }
+
+        public void setName(final String name) {
+            this.name = name;
+        }
+
+        public int getSize() {
+            return this.size;
+        }
+
+        public void setSize(final int size) {
+            this.size = size;
+        }
+    }
+}
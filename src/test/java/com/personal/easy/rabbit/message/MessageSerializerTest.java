@@ -0,0 +1,120 @@
+package com.personal.easy.rabbit.message;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.rabbitmq.client.AMQP.BasicProperties;
+import com.rabbitmq.client.LongString;
+
+public class MessageSerializerTest {
+
+    @Test
+    public void shouldWriteAndReadAllProperties() throws Exception {
+        Date timestamp = new Date();
+        BasicProperties properties = new BasicProperties.Builder().contentType(Message.TEXT_PLAIN)
+                .contentEncoding("UTF-8").messageId("id").correlationId("correlation").type("type")
+                .timestamp(timestamp).deliveryMode(2).priority(5).replyTo("reply").expiration("60000")
+                .userId("guest").appId("app").clusterId("cluster")
+                .headers(Collections.<String, Object> singletonMap("name", "value")).build();
+
+        BasicProperties read = roundTrip(new Message(properties).body("body")).getBasicProperties();
+
+        Assert.assertEquals(Message.TEXT_PLAIN, read.getContentType());
+        Assert.assertEquals("UTF-8", read.getContentEncoding());
+        Assert.assertEquals("id", read.getMessageId());
+        Assert.assertEquals("correlation", read.getCorrelationId());
+        Assert.assertEquals("type", read.getType());
+        Assert.assertEquals(timestamp, read.getTimestamp());
+        Assert.assertEquals(Integer.valueOf(2), read.getDeliveryMode());
+        Assert.assertEquals(Integer.valueOf(5), read.getPriority());
+        Assert.assertEquals("reply", read.getReplyTo());
+        Assert.assertEquals("60000", read.getExpiration());
+        Assert.assertEquals("guest", read.getUserId());
+        Assert.assertEquals("app", read.getAppId());
+        Assert.assertEquals("cluster", read.getClusterId());
+        Assert.assertEquals("value", read.getHeaders().get("name").toString());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void shouldKeepTypesOfHeaderValues() throws Exception {
+        char[] longText = new char[70000];
+        Arrays.fill(longText, 'x');
+        Map<String, Object> nested = new HashMap<String, Object>();
+        nested.put("count", 3);
+        Date date = new Date();
+        Message message = new Message().header("int", 42).header("long", 42L).header("bool", true)
+                .header("double", 4.2d).header("decimal", new BigDecimal("-12.345")).header("date", date)
+                .header("bytes", new byte[] { 1, 2, 3 }).header("text", new String(longText))
+                .header("list", Arrays.asList("a", 1)).header("table", nested).header("null", null);
+
+        Map<String, Object> headers = roundTrip(message).getBasicProperties().getHeaders();
+
+        Assert.assertEquals(Integer.valueOf(42), headers.get("int"));
+        Assert.assertEquals(Long.valueOf(42), headers.get("long"));
+        Assert.assertEquals(Boolean.TRUE, headers.get("bool"));
+        Assert.assertEquals(Double.valueOf(4.2d), headers.get("double"));
+        Assert.assertEquals(new BigDecimal("-12.345"), headers.get("decimal"));
+        Assert.assertEquals(date, headers.get("date"));
+        Assert.assertArrayEquals(new byte[] { 1, 2, 3 }, (byte[]) headers.get("bytes"));
+        Assert.assertTrue(headers.get("text") instanceof LongString);
+        Assert.assertEquals(70000, headers.get("text").toString().length());
+        List<Object> list = (List<Object>) headers.get("list");
+        Assert.assertEquals("a", list.get(0).toString());
+        Assert.assertEquals(Integer.valueOf(1), list.get(1));
+        Assert.assertEquals(Integer.valueOf(3), ((Map<String, Object>) headers.get("table")).get("count"));
+        Assert.assertTrue(headers.containsKey("null"));
+        Assert.assertNull(headers.get("null"));
+    }
+
+    @Test
+    public void shouldReadHeadersWrittenAsStrings() throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        // The form written before header values were tagged
+        out.writeShort(1 << 8);
+        out.writeShort(1);
+        out.writeUTF("name");
+        out.writeUTF("42");
+        out.writeInt(0);
+
+        Message message = MessageSerializer.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        Assert.assertEquals("42", message.getBasicProperties().getHeaders().get("name"));
+    }
+
+    @Test
+    public void shouldRejectInvalidBodyLengths() throws Exception {
+        for (int length : new int[] { -1, Integer.MAX_VALUE }) {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeShort(0);
+            out.writeInt(length);
+            try {
+                MessageSerializer.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+                Assert.fail("Expected body length " + length + " to be rejected");
+            } catch (IOException e) {
+                // expected
+            }
+        }
+    }
+
+    private static Message roundTrip(final Message message) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        MessageSerializer.write(new DataOutputStream(bytes), message);
+        return MessageSerializer.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+    }
+}
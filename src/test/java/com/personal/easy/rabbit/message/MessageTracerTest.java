@@ -0,0 +1,54 @@
+package com.personal.easy.rabbit.message;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class MessageTracerTest {
+
+    @Test
+    public void shouldSampleOneOutOfEveryInterval() {
+        MessageTracer tracer = new MessageTracer("test");
+        tracer.setSampleRate(0.25);
+
+        int sampled = 0;
+        for (int i = 0; i < 100; i++) {
+            if (tracer.sample()) {
+                sampled++;
+            }
+        }
+
+        Assert.assertEquals(25, sampled);
+        Assert.assertEquals(0.25, tracer.getSampleRate(), 0.0001);
+    }
+
+    @Test
+    public void shouldNotSampleIfDisabled() {
+        MessageTracer tracer = new MessageTracer("test");
+        tracer.setSampleRate(0);
+
+        for (int i = 0; i < 100; i++) {
+            Assert.assertFalse(tracer.sample());
+        }
+    }
+
+    @Test
+    public void shouldCountMessagesAndErrorsAcrossSummaries() throws Exception {
+        MessageTracer tracer = new MessageTracer("test");
+        tracer.setSummaryInterval(1, TimeUnit.MILLISECONDS);
+
+        tracer.recordSuccess();
+        Thread.sleep(2);
+        tracer.recordError();
+        tracer.recordSuccess();
+
+        Assert.assertEquals(3, tracer.getCount());
+        Assert.assertEquals(1, tracer.getErrorCount());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectInvalidSampleRate() {
+        new MessageTracer("test").setSampleRate(2);
+    }
+}
@@ -0,0 +1,90 @@
+package com.personal.easy.rabbit.message;
+
+import java.nio.charset.Charset;
+import java.util.Random;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PrimitiveCodecTest {
+
+    private static final Charset UTF_8 = Message.DEFAULT_MESSAGE_CHARSET;
+
+    @Test
+    public void shouldWriteAndParseLongs() {
+        long[] values = { 0, 1, -1, 9, 10, -10, 1234567890123L, Integer.MIN_VALUE, Long.MAX_VALUE, Long.MIN_VALUE,
+                999999999999999999L, 1000000000000000000L };
+        for (long value : values) {
+            byte[] content = PrimitiveCodec.toBytes(value);
+            Assert.assertEquals(String.valueOf(value), new String(content, UTF_8));
+            Assert.assertEquals(value, PrimitiveCodec.parseLong(content, UTF_8));
+        }
+    }
+
+    @Test
+    public void shouldParseLongInNonAsciiCharset() {
+        Charset utf16 = Charset.forName("UTF-16");
+
+        Assert.assertEquals(-42L, PrimitiveCodec.parseLong("-42".getBytes(utf16), utf16));
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void shouldRejectLongOverflow() {
+        PrimitiveCodec.parseLong("9223372036854775808".getBytes(UTF_8), UTF_8);
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void shouldRejectIntOverflow() {
+        PrimitiveCodec.parseInt("2147483648".getBytes(UTF_8), UTF_8);
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void shouldRejectEmptyBody() {
+        PrimitiveCodec.parseLong(new byte[0], UTF_8);
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void shouldRejectSignOnly() {
+        PrimitiveCodec.parseLong("-".getBytes(UTF_8), UTF_8);
+    }
+
+    @Test
+    public void shouldParseDoublesLikeDoubleParseDouble() {
+        String[] values = { "0", "-0.0", "1.5", "-12.375", "0.1", "3.141592653589793", "1e10", "1.0E-5", "123456789012345678",
+                "4.9E-324", "1.7976931348623157E308", "NaN", "-Infinity", ".5", "5." };
+        for (String value : values) {
+            Assert.assertEquals(value, Double.parseDouble(value), PrimitiveCodec.parseDouble(value.getBytes(UTF_8), UTF_8),
+                    0.0);
+        }
+        Random random = new Random(42);
+        for (int i = 0; i < 10000; i++) {
+            double value = random.nextDouble() * Math.pow(10, random.nextInt(40) - 20);
+            byte[] content = PrimitiveCodec.toBytes(value);
+            Assert.assertEquals(value, PrimitiveCodec.parseDouble(content, UTF_8), 0.0);
+        }
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void shouldRejectMalformedDouble() {
+        PrimitiveCodec.parseDouble("1.2.3".getBytes(UTF_8), UTF_8);
+    }
+
+    @Test
+    public void shouldWriteAndParseBooleans() {
+        Assert.assertTrue(PrimitiveCodec.parseBoolean(PrimitiveCodec.toBytes(true), UTF_8));
+        Assert.assertFalse(PrimitiveCodec.parseBoolean(PrimitiveCodec.toBytes(false), UTF_8));
+        Assert.assertTrue(PrimitiveCodec.parseBoolean("TRUE".getBytes(UTF_8), UTF_8));
+        Assert.assertFalse(PrimitiveCodec.parseBoolean("yes".getBytes(UTF_8), UTF_8));
+    }
+
+    @Test
+    public void shouldReadUnboxedBodies() {
+        Assert.assertEquals(-17L, new Message().body(-17L).getBodyAsLong());
+        Assert.assertEquals(-17, new Message().body(-17).getBodyAsInt());
+        Assert.assertEquals(2.5, new Message().body(2.5).getBodyAsDouble(), 0.0);
+        Assert.assertTrue(new Message().body(true).getBodyAsBoolean());
+        Assert.assertEquals(Long.valueOf(-5), new Message().body("-5").getBodyAs(Long.class));
+        Assert.assertEquals(Double.valueOf(0.25), new Message().body("0.25").getBodyAs(Double.class));
+        Assert.assertEquals(Short.valueOf((short) -3), new Message().body("-3").getBodyAs(Short.class));
+    }
+}
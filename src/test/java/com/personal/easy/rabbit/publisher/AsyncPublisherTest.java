@@ -0,0 +1,295 @@
+package com.personal.easy.rabbit.publisher;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.personal.easy.rabbit.message.Message;
+
+public class AsyncPublisherTest {
+
+    @Test
+    public void shouldPublishBufferedMessagesInOrder() throws Exception {
+        RecordingPublisher delegate = new RecordingPublisher();
+        AsyncPublisher publisher = new AsyncPublisher(delegate, 4, 1, OverflowPolicy.BLOCK);
+        Message first = new Message().id("1");
+        Message second = new Message().id("2");
+        Message third = new Message().id("3");
+
+        publisher.publish(first);
+        publisher.publish(second);
+        PublishHandle handle = publisher.submit(third, DeliveryOptions.NONE);
+
+        Assert.assertSame(third, handle.get(1, TimeUnit.SECONDS));
+        Assert.assertTrue(handle.isPublished());
+        publisher.close();
+        Assert.assertEquals(3, delegate.published.size());
+        Assert.assertSame(first, delegate.published.get(0));
+        Assert.assertSame(second, delegate.published.get(1));
+        Assert.assertSame(third, delegate.published.get(2));
+        Assert.assertEquals(3, publisher.getPublishedCount());
+        Assert.assertTrue(delegate.closed);
+    }
+
+    @Test
+    public void shouldFailFastIfBufferIsFull() throws Exception {
+        RecordingPublisher delegate = new RecordingPublisher();
+        delegate.blocked = new CountDownLatch(1);
+        AsyncPublisher publisher = new AsyncPublisher(delegate, 2, 1, OverflowPolicy.FAIL_FAST);
+
+        // The first message is taken by the blocked I/O thread, the next two fill the buffer
+        publisher.publish(new Message());
+        awaitBufferedCount(publisher, 0);
+        publisher.publish(new Message());
+        publisher.publish(new Message());
+        try {
+            publisher.publish(new Message());
+            Assert.fail("Expected publishing to fail as the buffer is full");
+        } catch (IOException e) {
+            // expected
+        } finally {
+            delegate.blocked.countDown();
+            publisher.close();
+        }
+        Assert.assertEquals(3, delegate.published.size());
+    }
+
+    @Test
+    public void shouldDropMessageIfBufferIsFull() throws Exception {
+        RecordingPublisher delegate = new RecordingPublisher();
+        delegate.blocked = new CountDownLatch(1);
+        AsyncPublisher publisher = new AsyncPublisher(delegate, 2, 1, OverflowPolicy.DROP);
+
+        publisher.publish(new Message());
+        awaitBufferedCount(publisher, 0);
+        publisher.publish(new Message());
+        publisher.publish(new Message());
+        PublishHandle dropped = publisher.submit(new Message(), DeliveryOptions.NONE);
+        delegate.blocked.countDown();
+        publisher.close();
+
+        Assert.assertTrue(dropped.isDone());
+        Assert.assertFalse(dropped.isPublished());
+        Assert.assertEquals(1, publisher.getDroppedCount());
+        Assert.assertEquals(3, delegate.published.size());
+    }
+
+    @Test(expected = ExecutionException.class)
+    public void shouldFailHandleIfDelegateFails() throws Exception {
+        RecordingPublisher delegate = new RecordingPublisher();
+        delegate.failure = new IOException("broker unavailable");
+        AsyncPublisher publisher = new AsyncPublisher(delegate);
+        try {
+            publisher.submit(new Message(), DeliveryOptions.NONE).get(1, TimeUnit.SECONDS);
+        } finally {
+            publisher.close();
+        }
+    }
+
+    @Test
+    public void shouldRetryFailedPublishWithoutBlockingIoThread() throws Exception {
+        RecordingPublisher delegate = new RecordingPublisher();
+        delegate.remainingFailures.set(2);
+        AsyncPublisher publisher = new AsyncPublisher(delegate);
+        publisher.setRetryPolicy(new FixedIntervalRetryPolicy(3, 20));
+        Message retried = new Message().id("retried");
+        Message other = new Message().id("other");
+
+        PublishHandle handle = publisher.submit(retried, DeliveryOptions.NONE);
+        PublishHandle otherHandle = publisher.submit(other, DeliveryOptions.NONE);
+
+        // The second message fails once as well but does not wait for the first one
+        Assert.assertSame(other, otherHandle.get(1, TimeUnit.SECONDS));
+        Assert.assertSame(retried, handle.get(1, TimeUnit.SECONDS));
+        publisher.close();
+        Assert.assertEquals(2, publisher.getRetryMetrics().getRetryCount());
+        Assert.assertEquals(2, publisher.getRetryMetrics().getRecoveredCount());
+        Assert.assertEquals(0, publisher.getFailedCount());
+    }
+
+    @Test(expected = ExecutionException.class)
+    public void shouldFailHandleIfRetriesAreExhausted() throws Exception {
+        RecordingPublisher delegate = new RecordingPublisher();
+        delegate.failure = new IOException("broker unavailable");
+        AsyncPublisher publisher = new AsyncPublisher(delegate);
+        publisher.setRetryPolicy(new FixedIntervalRetryPolicy(2, 1));
+        try {
+            publisher.submit(new Message(), DeliveryOptions.NONE).get(1, TimeUnit.SECONDS);
+        } finally {
+            publisher.close();
+            Assert.assertEquals(1, publisher.getRetryMetrics().getRetryCount());
+            Assert.assertEquals(1, publisher.getRetryMetrics().getExhaustedCount());
+        }
+    }
+
+    @Test
+    public void shouldBlockIdleIoThreadUntilMessageIsPublished() throws Exception {
+        RecordingPublisher delegate = new RecordingPublisher();
+        AsyncPublisher publisher = new AsyncPublisher(delegate);
+        Thread ioThread = findThread("easyrabbit-async-publisher-0");
+        try {
+            for (int i = 0; i < 1000 && ioThread.getState() != Thread.State.WAITING; i++) {
+                Thread.sleep(1);
+            }
+            Assert.assertEquals(Thread.State.WAITING, ioThread.getState());
+
+            Message message = new Message();
+            Assert.assertSame(message, publisher.submit(message, DeliveryOptions.NONE).get(1, TimeUnit.SECONDS));
+        } finally {
+            publisher.close();
+        }
+        Assert.assertFalse(ioThread.isAlive());
+    }
+
+    @Test
+    public void shouldWakeBlockedPublishWhenBufferHasRoom() throws Exception {
+        RecordingPublisher delegate = new RecordingPublisher();
+        delegate.blocked = new CountDownLatch(1);
+        final AsyncPublisher publisher = new AsyncPublisher(delegate, 2, 1, OverflowPolicy.BLOCK);
+        final Message blocked = new Message();
+
+        publisher.publish(new Message());
+        awaitBufferedCount(publisher, 0);
+        publisher.publish(new Message());
+        publisher.publish(new Message());
+        Thread producer = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    publisher.publish(blocked);
+                } catch (IOException e) {
+                    // detected by the producer still being alive
+                }
+            }
+        });
+        producer.start();
+        for (int i = 0; i < 1000 && producer.getState() != Thread.State.WAITING; i++) {
+            Thread.sleep(1);
+        }
+        Assert.assertEquals(Thread.State.WAITING, producer.getState());
+
+        delegate.blocked.countDown();
+        producer.join(1000);
+        Assert.assertFalse(producer.isAlive());
+        publisher.close();
+        Assert.assertEquals(4, delegate.published.size());
+        Assert.assertSame(blocked, delegate.published.get(3));
+    }
+
+    private static Thread findThread(String name) {
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (name.equals(thread.getName())) {
+                return thread;
+            }
+        }
+        throw new AssertionError("No thread named " + name);
+    }
+
+    @Test
+    public void shouldCompleteEveryBufferedMessageWhenClosedWhilePublishing() throws Exception {
+        RecordingPublisher delegate = new RecordingPublisher();
+        final AsyncPublisher publisher = new AsyncPublisher(delegate, 16, 1, OverflowPolicy.BLOCK);
+        final List<PublishHandle> handles = new CopyOnWriteArrayList<PublishHandle>();
+        final CountDownLatch started = new CountDownLatch(4);
+        List<Thread> producers = new ArrayList<Thread>();
+        for (int i = 0; i < 4; i++) {
+            Thread producer = new Thread(new Runnable() {
+                public void run() {
+                    started.countDown();
+                    try {
+                        while (true) {
+                            handles.add(publisher.submit(new Message(), DeliveryOptions.NONE));
+                        }
+                    } catch (IOException e) {
+                        // the publisher was closed
+                    }
+                }
+            });
+            producer.start();
+            producers.add(producer);
+        }
+        started.await();
+        Thread.sleep(20);
+
+        publisher.close();
+        for (Thread producer : producers) {
+            producer.join(1000);
+            Assert.assertFalse(producer.isAlive());
+        }
+        for (PublishHandle handle : handles) {
+            Assert.assertTrue(handle.isDone());
+        }
+        Assert.assertEquals(handles.size(), publisher.getPublishedCount() + publisher.getFailedCount());
+    }
+
+    private static void awaitBufferedCount(AsyncPublisher publisher, int count) throws InterruptedException {
+        for (int i = 0; i < 1000 && publisher.getBufferedCount() != count; i++) {
+            Thread.sleep(1);
+        }
+        Assert.assertEquals(count, publisher.getBufferedCount());
+    }
+
+    static class RecordingPublisher implements MessagePublisher {
+
+        final List<Message> published = new CopyOnWriteArrayList<Message>();
+
+        final List<List<Message>> publishedLists = new CopyOnWriteArrayList<List<Message>>();
+
+        volatile CountDownLatch blocked;
+
+        volatile IOException failure;
+
+        volatile TimeoutException timeout;
+
+        final AtomicInteger remainingFailures = new AtomicInteger();
+
+        volatile boolean closed;
+
+        public void publish(Message message) throws IOException, TimeoutException {
+            publish(message, DeliveryOptions.NONE);
+        }
+
+        public void publish(Message message, DeliveryOptions deliveryOptions) throws IOException, TimeoutException {
+            if (blocked != null) {
+                try {
+                    blocked.await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+            if (timeout != null) {
+                throw timeout;
+            }
+            if (remainingFailures.getAndDecrement() > 0) {
+                throw new IOException("broker unavailable");
+            }
+            published.add(message);
+        }
+
+        public void publish(List<Message> messages) throws IOException, TimeoutException {
+            publish(messages, DeliveryOptions.NONE);
+        }
+
+        public void publish(List<Message> messages, DeliveryOptions deliveryOptions) throws IOException, TimeoutException {
+            publishedLists.add(new ArrayList<Message>(messages));
+            for (Message message : messages) {
+                publish(message, deliveryOptions);
+            }
+        }
+
+        public void close() {
+            closed = true;
+        }
+    }
+}
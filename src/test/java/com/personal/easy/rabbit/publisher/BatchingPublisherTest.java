@@ -0,0 +1,85 @@
+package com.personal.easy.rabbit.publisher;
+
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.personal.easy.rabbit.message.Message;
+import com.personal.easy.rabbit.message.MessageBatch;
+import com.personal.easy.rabbit.publisher.AsyncPublisherTest.RecordingPublisher;
+
+public class BatchingPublisherTest {
+
+    @Test
+    public void shouldFlushBatchWhenFull() throws Exception {
+        RecordingPublisher delegate = new RecordingPublisher();
+        BatchingPublisher publisher = new BatchingPublisher(delegate, 200, 3, 1024, 60000);
+
+        publisher.publish(createMessage("key", "1"));
+        publisher.publish(createMessage("key", "2"));
+        Assert.assertTrue(delegate.published.isEmpty());
+        publisher.publish(createMessage("key", "3"));
+
+        Assert.assertEquals(1, delegate.published.size());
+        List<Message> messages = MessageBatch.unwrap(delegate.published.get(0));
+        Assert.assertEquals(3, messages.size());
+        Assert.assertEquals("3", messages.get(2).getBodyAs(String.class));
+        Assert.assertEquals(0, publisher.getPendingCount());
+        publisher.close();
+        Assert.assertTrue(delegate.closed);
+    }
+
+    @Test
+    public void shouldBatchPerRoutingKeyAndFlushOnClose() throws Exception {
+        RecordingPublisher delegate = new RecordingPublisher();
+        BatchingPublisher publisher = new BatchingPublisher(delegate, 200, 10, 1024, 60000);
+
+        publisher.publish(createMessage("first", "1"));
+        publisher.publish(createMessage("second", "2"));
+        publisher.publish(createMessage("first", "3"));
+        Assert.assertEquals(3, publisher.getPendingCount());
+        publisher.close();
+
+        Assert.assertEquals(2, delegate.published.size());
+        Assert.assertTrue(MessageBatch.isBatch(delegate.published.get(0).getBasicProperties()));
+        Assert.assertEquals("first", delegate.published.get(0).getRoutingKey());
+        Assert.assertEquals(2, MessageBatch.unwrap(delegate.published.get(0)).size());
+        // A single pending message is published as it is
+        Assert.assertEquals("2", delegate.published.get(1).getBodyAs(String.class));
+    }
+
+    @Test
+    public void shouldPublishLargeMessageDirectlyAfterPendingBatch() throws Exception {
+        RecordingPublisher delegate = new RecordingPublisher();
+        BatchingPublisher publisher = new BatchingPublisher(delegate, 4, 10, 1024, 60000);
+        Message large = createMessage("key", "large message");
+
+        publisher.publish(createMessage("key", "1"));
+        publisher.publish(large);
+
+        Assert.assertEquals(2, delegate.published.size());
+        Assert.assertSame(large, delegate.published.get(1));
+        publisher.close();
+    }
+
+    @Test
+    public void shouldFlushBatchAfterLingerTime() throws Exception {
+        RecordingPublisher delegate = new RecordingPublisher();
+        BatchingPublisher publisher = new BatchingPublisher(delegate, 200, 10, 1024, 10);
+
+        publisher.publish(createMessage("key", "1"));
+        publisher.publish(createMessage("key", "2"));
+        for (int i = 0; i < 1000 && delegate.published.isEmpty(); i++) {
+            Thread.sleep(1);
+        }
+
+        Assert.assertEquals(1, delegate.published.size());
+        Assert.assertEquals(2, MessageBatch.unwrap(delegate.published.get(0)).size());
+        publisher.close();
+    }
+
+    private static Message createMessage(String routingKey, String body) {
+        return new Message().exchange("exchange").routingKey(routingKey).body(body);
+    }
+}
@@ -0,0 +1,115 @@
+package com.personal.easy.rabbit.publisher;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.personal.easy.rabbit.message.GzipCodec;
+import com.personal.easy.rabbit.message.Message;
+import com.personal.easy.rabbit.message.MessageChunks;
+
+public class ChunkingPublisherTest {
+
+    private static final String QUEUE = "lib.test.queue";
+
+    @Test
+    public void shouldSplitStreamIntoChunks() throws Exception {
+        AsyncPublisherTest.RecordingPublisher delegate = new AsyncPublisherTest.RecordingPublisher();
+        ChunkingPublisher publisher = new ChunkingPublisher(delegate, 4);
+        byte[] content = "0123456789".getBytes("UTF-8");
+        Message template = new Message().queue(QUEUE).contentType(Message.APPLICATION_OCTET_STREAM);
+
+        String transferId = publisher.publish(new ByteArrayInputStream(content), template);
+
+        Assert.assertEquals(3, delegate.published.size());
+        ByteArrayOutputStream reassembled = new ByteArrayOutputStream();
+        for (int i = 0; i < 3; i++) {
+            Message chunk = delegate.published.get(i);
+            Assert.assertTrue(MessageChunks.isChunk(chunk.getBasicProperties()));
+            Assert.assertEquals(transferId, MessageChunks.getTransferId(chunk));
+            Assert.assertEquals(i, MessageChunks.getChunkIndex(chunk));
+            Assert.assertEquals(i * 4, MessageChunks.getChunkOffset(chunk));
+            Assert.assertEquals(QUEUE, chunk.getRoutingKey());
+            Assert.assertEquals(Message.APPLICATION_OCTET_STREAM, MessageChunks.getContentType(chunk));
+            reassembled.write(chunk.getBodyContent());
+        }
+        Assert.assertEquals(-1, MessageChunks.getChunkCount(delegate.published.get(0)));
+        Assert.assertEquals(3, MessageChunks.getChunkCount(delegate.published.get(2)));
+        Assert.assertEquals(10, MessageChunks.getTransferSize(delegate.published.get(2)));
+        Assert.assertArrayEquals(content, reassembled.toByteArray());
+    }
+
+    @Test
+    public void shouldPublishEmptyStreamAsSingleChunk() throws Exception {
+        AsyncPublisherTest.RecordingPublisher delegate = new AsyncPublisherTest.RecordingPublisher();
+        ChunkingPublisher publisher = new ChunkingPublisher(delegate, 4);
+
+        publisher.publish(new ByteArrayInputStream(new byte[0]), new Message().queue(QUEUE));
+
+        Assert.assertEquals(1, delegate.published.size());
+        Message chunk = delegate.published.get(0);
+        Assert.assertEquals(1, MessageChunks.getChunkCount(chunk));
+        Assert.assertEquals(0, MessageChunks.getTransferSize(chunk));
+    }
+
+    @Test
+    public void shouldPublishSmallMessagesUnchanged() throws Exception {
+        AsyncPublisherTest.RecordingPublisher delegate = new AsyncPublisherTest.RecordingPublisher();
+        ChunkingPublisher publisher = new ChunkingPublisher(delegate, 4);
+        Message message = new Message().queue(QUEUE).body("1234");
+
+        publisher.publish(message);
+
+        Assert.assertEquals(1, delegate.published.size());
+        Assert.assertSame(message, delegate.published.get(0));
+    }
+
+    @Test
+    public void shouldChunkLargeMessages() throws Exception {
+        AsyncPublisherTest.RecordingPublisher delegate = new AsyncPublisherTest.RecordingPublisher();
+        ChunkingPublisher publisher = new ChunkingPublisher(delegate, 4);
+
+        publisher.publish(new Message().queue(QUEUE).body("12345"));
+
+        Assert.assertEquals(2, delegate.published.size());
+        Assert.assertEquals(Message.TEXT_PLAIN, MessageChunks.getContentType(delegate.published.get(1)));
+    }
+
+    @Test
+    public void shouldPublishUnchunkedMessagesOfListAsLists() throws Exception {
+        AsyncPublisherTest.RecordingPublisher delegate = new AsyncPublisherTest.RecordingPublisher();
+        ChunkingPublisher publisher = new ChunkingPublisher(delegate, 4);
+        Message first = new Message().queue(QUEUE).body("1");
+        Message second = new Message().queue(QUEUE).body("2");
+        Message large = new Message().queue(QUEUE).body("12345");
+        Message third = new Message().queue(QUEUE).body("3");
+
+        publisher.publish(Arrays.asList(first, second, large, third));
+
+        Assert.assertEquals(2, delegate.publishedLists.size());
+        Assert.assertEquals(Arrays.asList(first, second), delegate.publishedLists.get(0));
+        Assert.assertEquals(Arrays.asList(third), delegate.publishedLists.get(1));
+        Assert.assertEquals(5, delegate.published.size());
+        Assert.assertTrue(MessageChunks.isChunk(delegate.published.get(2).getBasicProperties()));
+        Assert.assertTrue(MessageChunks.isChunk(delegate.published.get(3).getBasicProperties()));
+        Assert.assertSame(third, delegate.published.get(4));
+    }
+
+    @Test
+    public void shouldKeepContentEncodingOfCompressedMessages() throws Exception {
+        AsyncPublisherTest.RecordingPublisher delegate = new AsyncPublisherTest.RecordingPublisher();
+        ChunkingPublisher publisher = new ChunkingPublisher(delegate, 4);
+        char[] text = new char[100];
+        Arrays.fill(text, 'a');
+        Message message = new Message().queue(QUEUE).body(new String(text)).compress(new GzipCodec(), 0);
+
+        publisher.publish(message);
+
+        Message chunk = delegate.published.get(0);
+        Assert.assertNull(chunk.getBasicProperties().getContentEncoding());
+        Assert.assertEquals(GzipCodec.NAME, MessageChunks.getContentEncoding(chunk));
+    }
+}
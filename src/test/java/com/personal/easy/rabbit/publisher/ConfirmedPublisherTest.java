@@ -1,13 +1,28 @@
 package com.personal.easy.rabbit.publisher;
 
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.capture;
+import static org.easymock.EasyMock.eq;
 import static org.easymock.EasyMock.expect;
 import static org.easymock.EasyMock.expectLastCall;
 
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.easymock.Capture;
+import org.easymock.IAnswer;
+import org.junit.Assert;
 import org.junit.Test;
 import org.powermock.api.easymock.PowerMock;
 
 import com.personal.easy.rabbit.message.Message;
 import com.personal.easy.rabbit.publisher.ConfirmedPublisher;
+import com.rabbitmq.client.AMQP.BasicProperties;
+import com.rabbitmq.client.ConfirmListener;
+import com.rabbitmq.client.ReturnListener;
+import com.rabbitmq.client.ShutdownListener;
 
 
 
@@ -18,12 +33,20 @@ public class ConfirmedPublisherTest extends MessagePublisherTest {
         Message message = new Message().exchange(TEST_EXCHANGE).routingKey(TEST_ROUTING_KEY);
         ConfirmedPublisher publisher = new ConfirmedPublisher(connectionFactory);
         
+        final Capture<ConfirmListener> confirmListener = new Capture<ConfirmListener>();
+
         mockConnectionOperations();
         expect(channel.confirmSelect()).andReturn(null);
+        channel.addConfirmListener(capture(confirmListener));
+        channel.addShutdownListener(anyObject(ShutdownListener.class));
+        expect(channel.getNextPublishSeqNo()).andReturn(1L);
         channel.basicPublish(TEST_EXCHANGE, TEST_ROUTING_KEY, false, false, message.getBasicProperties(), message.getBodyContent());
-        expectLastCall().once();
-        channel.waitForConfirmsOrDie();
-        expectLastCall().once();
+        expectLastCall().andAnswer(new IAnswer<Object>() {
+            public Object answer() throws Throwable {
+                confirmListener.getValue().handleAck(1L, false);
+                return null;
+            }
+        }).once();
         PowerMock.replayAll();
         
         publisher.publish(message);
@@ -31,4 +54,297 @@ public class ConfirmedPublisherTest extends MessagePublisherTest {
         PowerMock.verifyAll();
     }
 
+    @Test
+    public void shouldSelectConfirmModeOnceForBlockingPublishes() throws Exception {
+        ConfirmedPublisher publisher = new ConfirmedPublisher(connectionFactory);
+        final Capture<ConfirmListener> confirmListener = new Capture<ConfirmListener>();
+        final AtomicLong sequenceNumber = new AtomicLong();
+
+        mockConnectionOperations();
+        expect(channel.confirmSelect()).andReturn(null).once();
+        channel.addConfirmListener(capture(confirmListener));
+        channel.addShutdownListener(anyObject(ShutdownListener.class));
+        expect(channel.getNextPublishSeqNo()).andAnswer(new IAnswer<Long>() {
+            public Long answer() throws Throwable {
+                return sequenceNumber.incrementAndGet();
+            }
+        }).times(3);
+        channel.basicPublish(eq(TEST_EXCHANGE), eq(TEST_ROUTING_KEY), eq(false), eq(false),
+                anyObject(BasicProperties.class), anyObject(byte[].class));
+        expectLastCall().andAnswer(new IAnswer<Object>() {
+            public Object answer() throws Throwable {
+                confirmListener.getValue().handleAck(sequenceNumber.get(), false);
+                return null;
+            }
+        }).times(3);
+        PowerMock.replayAll();
+
+        // One confirm round trip per message, the select round trip is paid once per channel
+        for (int i = 0; i < 3; i++) {
+            publisher.publish(new Message().exchange(TEST_EXCHANGE).routingKey(TEST_ROUTING_KEY));
+        }
+
+        PowerMock.verifyAll();
+    }
+
+    @Test
+    public void shouldCorrelateReturnedMandatoryMessageToItsFuture() throws Exception {
+        ConfirmedPublisher publisher = new ConfirmedPublisher(connectionFactory);
+        Capture<ConfirmListener> confirmListener = new Capture<ConfirmListener>();
+        Capture<ReturnListener> returnListener = new Capture<ReturnListener>();
+        Capture<BasicProperties> properties = new Capture<BasicProperties>();
+
+        mockConnectionOperations();
+        expect(channel.confirmSelect()).andReturn(null).once();
+        channel.addConfirmListener(capture(confirmListener));
+        channel.addShutdownListener(anyObject(ShutdownListener.class));
+        channel.addReturnListener(capture(returnListener));
+        expectLastCall().once();
+        expect(channel.getNextPublishSeqNo()).andReturn(1L).andReturn(2L);
+        channel.basicPublish(eq(TEST_EXCHANGE), eq(TEST_ROUTING_KEY), eq(true), eq(false),
+                capture(properties), anyObject(byte[].class));
+        expectLastCall().times(2);
+        PowerMock.replayAll();
+
+        ConfirmFuture first = publisher.publishAsync(new Message().exchange(TEST_EXCHANGE).routingKey(TEST_ROUTING_KEY),
+                DeliveryOptions.MANDATORY);
+        ConfirmFuture second = publisher.publishAsync(new Message().exchange(TEST_EXCHANGE).routingKey(TEST_ROUTING_KEY),
+                DeliveryOptions.MANDATORY);
+        // The broker returns an unroutable message before acking it
+        returnListener.getValue().handleReturn(312, "NO_ROUTE", TEST_EXCHANGE, TEST_ROUTING_KEY,
+                properties.getValue(), new byte[0]);
+        confirmListener.getValue().handleAck(2L, true);
+
+        Assert.assertTrue(first.get());
+        Assert.assertFalse(first.isReturned());
+        Assert.assertTrue(second.get());
+        Assert.assertTrue(second.isReturned());
+        Assert.assertEquals(312, second.getReplyCode());
+        Assert.assertEquals("NO_ROUTE", second.getReplyText());
+        PowerMock.verifyAll();
+    }
+
+    @Test(expected = IOException.class)
+    public void shouldFailBlockingPublishOfNackedMessage() throws Exception {
+        ConfirmedPublisher publisher = new ConfirmedPublisher(connectionFactory);
+        publisher.setRetryPolicy(FixedIntervalRetryPolicy.NO_RETRY);
+        final Capture<ConfirmListener> confirmListener = new Capture<ConfirmListener>();
+
+        mockConnectionOperations();
+        expect(channel.confirmSelect()).andReturn(null).once();
+        channel.addConfirmListener(capture(confirmListener));
+        channel.addShutdownListener(anyObject(ShutdownListener.class));
+        expect(channel.getNextPublishSeqNo()).andReturn(1L);
+        channel.basicPublish(eq(TEST_EXCHANGE), eq(TEST_ROUTING_KEY), eq(false), eq(false),
+                anyObject(BasicProperties.class), anyObject(byte[].class));
+        expectLastCall().andAnswer(new IAnswer<Object>() {
+            public Object answer() throws Throwable {
+                confirmListener.getValue().handleNack(1L, false);
+                return null;
+            }
+        });
+        channel.close();
+        expectLastCall().anyTimes();
+        PowerMock.replayAll();
+
+        publisher.publish(new Message().exchange(TEST_EXCHANGE).routingKey(TEST_ROUTING_KEY));
+    }
+
+    @Test
+    public void shouldSelectConfirmModeOnceAndCompleteFuturesOnMultipleAck() throws Exception {
+        ConfirmedPublisher publisher = new ConfirmedPublisher(connectionFactory);
+        Capture<ConfirmListener> confirmListener = new Capture<ConfirmListener>();
+
+        mockConnectionOperations();
+        expect(channel.confirmSelect()).andReturn(null).once();
+        channel.addConfirmListener(capture(confirmListener));
+        expectLastCall().once();
+        channel.addShutdownListener(anyObject(ShutdownListener.class));
+        expectLastCall().once();
+        expect(channel.getNextPublishSeqNo()).andReturn(1L).andReturn(2L);
+        channel.basicPublish(eq(TEST_EXCHANGE), eq(TEST_ROUTING_KEY), eq(false), eq(false),
+                anyObject(BasicProperties.class), anyObject(byte[].class));
+        expectLastCall().times(2);
+        PowerMock.replayAll();
+
+        ConfirmFuture first = publisher.publishAsync(new Message().exchange(TEST_EXCHANGE).routingKey(TEST_ROUTING_KEY));
+        ConfirmFuture second = publisher.publishAsync(new Message().exchange(TEST_EXCHANGE).routingKey(TEST_ROUTING_KEY));
+        Assert.assertFalse(first.isDone());
+        Assert.assertFalse(second.isDone());
+
+        confirmListener.getValue().handleAck(2L, true);
+
+        Assert.assertTrue(first.get());
+        Assert.assertTrue(second.get());
+        PowerMock.verifyAll();
+    }
+
+    @Test
+    public void shouldKeepUnconfirmedMessagesInPublishWindow() throws Exception {
+        ConfirmedPublisher publisher = new ConfirmedPublisher(connectionFactory);
+        PublishWindow window = new PublishWindow(1, 1024);
+        publisher.setPublishWindow(window);
+        Capture<ConfirmListener> confirmListener = new Capture<ConfirmListener>();
+
+        mockConnectionOperations();
+        expect(channel.confirmSelect()).andReturn(null).once();
+        channel.addConfirmListener(capture(confirmListener));
+        channel.addShutdownListener(anyObject(ShutdownListener.class));
+        expect(channel.getNextPublishSeqNo()).andReturn(1L).andReturn(2L);
+        channel.basicPublish(eq(TEST_EXCHANGE), eq(TEST_ROUTING_KEY), eq(false), eq(false),
+                anyObject(BasicProperties.class), anyObject(byte[].class));
+        expectLastCall().times(2);
+        PowerMock.replayAll();
+
+        publisher.publishAsync(new Message().exchange(TEST_EXCHANGE).routingKey(TEST_ROUTING_KEY).body("first"));
+        Assert.assertEquals(1, window.getInFlightMessages());
+        try {
+            publisher.publishAsync(new Message().exchange(TEST_EXCHANGE).routingKey(TEST_ROUTING_KEY));
+            Assert.fail("Expected the publish window to be exceeded");
+        } catch (IOException e) {
+            // expected
+        }
+        confirmListener.getValue().handleAck(1L, false);
+        Assert.assertEquals(0, window.getInFlightBytes());
+        publisher.publishAsync(new Message().exchange(TEST_EXCHANGE).routingKey(TEST_ROUTING_KEY));
+
+        Assert.assertEquals(1, window.getRejectedCount());
+        PowerMock.verifyAll();
+    }
+
+    @Test
+    public void shouldCompleteOnlyNackedFuture() throws Exception {
+        ConfirmedPublisher publisher = new ConfirmedPublisher(connectionFactory);
+        Capture<ConfirmListener> confirmListener = new Capture<ConfirmListener>();
+
+        mockConnectionOperations();
+        expect(channel.confirmSelect()).andReturn(null).once();
+        channel.addConfirmListener(capture(confirmListener));
+        channel.addShutdownListener(anyObject(ShutdownListener.class));
+        expect(channel.getNextPublishSeqNo()).andReturn(1L).andReturn(2L);
+        channel.basicPublish(eq(TEST_EXCHANGE), eq(TEST_ROUTING_KEY), eq(false), eq(false),
+                anyObject(BasicProperties.class), anyObject(byte[].class));
+        expectLastCall().times(2);
+        PowerMock.replayAll();
+
+        ConfirmFuture first = publisher.publishAsync(new Message().exchange(TEST_EXCHANGE).routingKey(TEST_ROUTING_KEY));
+        ConfirmFuture second = publisher.publishAsync(new Message().exchange(TEST_EXCHANGE).routingKey(TEST_ROUTING_KEY));
+        confirmListener.getValue().handleNack(2L, false);
+
+        Assert.assertFalse(first.isDone());
+        Assert.assertFalse(second.get());
+        PowerMock.verifyAll();
+    }
+
+    @Test
+    public void shouldReportNackedMessagesOfBatch() throws Exception {
+        ConfirmedPublisher publisher = new ConfirmedPublisher(connectionFactory);
+        publisher.setMaxBatchSize(2);
+        final Capture<ConfirmListener> confirmListener = new Capture<ConfirmListener>();
+        final AtomicLong sequenceNumber = new AtomicLong();
+        Message first = new Message().exchange(TEST_EXCHANGE).routingKey(TEST_ROUTING_KEY);
+        Message second = new Message().exchange(TEST_EXCHANGE).routingKey(TEST_ROUTING_KEY);
+        Message third = new Message().exchange(TEST_EXCHANGE).routingKey(TEST_ROUTING_KEY);
+
+        mockConnectionOperations();
+        expect(channel.confirmSelect()).andReturn(null).once();
+        channel.addConfirmListener(capture(confirmListener));
+        channel.addShutdownListener(anyObject(ShutdownListener.class));
+        expect(channel.getNextPublishSeqNo()).andAnswer(new IAnswer<Long>() {
+            public Long answer() throws Throwable {
+                return sequenceNumber.incrementAndGet();
+            }
+        }).times(3);
+        channel.basicPublish(eq(TEST_EXCHANGE), eq(TEST_ROUTING_KEY), eq(false), eq(false),
+                anyObject(BasicProperties.class), anyObject(byte[].class));
+        expectLastCall().andAnswer(new IAnswer<Object>() {
+            public Object answer() throws Throwable {
+                long published = sequenceNumber.get();
+                if (published == 2L) {
+                    confirmListener.getValue().handleNack(published, false);
+                } else {
+                    confirmListener.getValue().handleAck(published, false);
+                }
+                return null;
+            }
+        }).times(3);
+        PowerMock.replayAll();
+
+        BatchConfirmResult result = publisher.publishBatch(Arrays.asList(first, second, third), DeliveryOptions.NONE);
+
+        Assert.assertFalse(result.isAllAcked());
+        Assert.assertEquals(2, result.getAckedCount());
+        Assert.assertEquals(Arrays.asList(2L), result.getNackedSequenceNumbers());
+        Assert.assertEquals(Arrays.asList(second), result.getNackedMessages());
+        PowerMock.verifyAll();
+    }
+
+    @Test
+    public void shouldRetryNackedBatchAsToldByRetryPolicy() throws Exception {
+        ConfirmedPublisher publisher = new ConfirmedPublisher(connectionFactory);
+        publisher.setRetryPolicy(FixedIntervalRetryPolicy.NO_RETRY);
+        final Capture<ConfirmListener> confirmListener = new Capture<ConfirmListener>();
+        Message first = new Message().exchange(TEST_EXCHANGE).routingKey(TEST_ROUTING_KEY);
+        Message second = new Message().exchange(TEST_EXCHANGE).routingKey(TEST_ROUTING_KEY);
+
+        mockConnectionOperations();
+        expect(channel.confirmSelect()).andReturn(null).once();
+        channel.addConfirmListener(capture(confirmListener));
+        channel.addShutdownListener(anyObject(ShutdownListener.class));
+        expect(channel.getNextPublishSeqNo()).andReturn(1L).andReturn(2L);
+        channel.basicPublish(eq(TEST_EXCHANGE), eq(TEST_ROUTING_KEY), eq(false), eq(false),
+                anyObject(BasicProperties.class), anyObject(byte[].class));
+        expectLastCall().once();
+        expectLastCall().andAnswer(new IAnswer<Object>() {
+            public Object answer() throws Throwable {
+                confirmListener.getValue().handleNack(2L, true);
+                return null;
+            }
+        }).once();
+        PowerMock.replayAll();
+
+        try {
+            publisher.publish(Arrays.asList(first, second), DeliveryOptions.NONE);
+            Assert.fail("Expected the nacked batch not to be retried");
+        } catch (IOException e) {
+            // expected
+        }
+
+        Assert.assertEquals(0, publisher.getRetryMetrics().getRetryCount());
+        Assert.assertEquals(1, publisher.getRetryMetrics().getExhaustedCount());
+        PowerMock.verifyAll();
+    }
+
+    @Test
+    public void shouldNotRepublishBatchAfterInterrupt() throws Exception {
+        ConfirmedPublisher publisher = new ConfirmedPublisher(connectionFactory);
+        Message first = new Message().exchange(TEST_EXCHANGE).routingKey(TEST_ROUTING_KEY);
+        Message second = new Message().exchange(TEST_EXCHANGE).routingKey(TEST_ROUTING_KEY);
+
+        mockConnectionOperations();
+        expect(channel.confirmSelect()).andReturn(null).once();
+        channel.addConfirmListener(anyObject(ConfirmListener.class));
+        channel.addShutdownListener(anyObject(ShutdownListener.class));
+        expect(channel.getNextPublishSeqNo()).andReturn(1L).andReturn(2L);
+        channel.basicPublish(eq(TEST_EXCHANGE), eq(TEST_ROUTING_KEY), eq(false), eq(false),
+                anyObject(BasicProperties.class), anyObject(byte[].class));
+        expectLastCall().andAnswer(new IAnswer<Object>() {
+            public Object answer() throws Throwable {
+                // Interrupts the publishing thread before it waits for the confirms
+                Thread.currentThread().interrupt();
+                return null;
+            }
+        }).times(2);
+        PowerMock.replayAll();
+
+        try {
+            publisher.publish(Arrays.asList(first, second), DeliveryOptions.NONE);
+            Assert.fail("Expected publishing to be interrupted");
+        } catch (InterruptedIOException e) {
+            Assert.assertTrue(Thread.currentThread().isInterrupted());
+        } finally {
+            Thread.interrupted();
+        }
+        PowerMock.verifyAll();
+    }
 }
@@ -0,0 +1,51 @@
+package com.personal.easy.rabbit.publisher;
+
+import java.io.IOException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class ExponentialBackoffRetryPolicyTest {
+
+    private static final IOException FAILURE = new IOException("broker unavailable");
+
+    @Test
+    public void shouldGrowDelayWithinJitterUpToMaxDelay() {
+        ExponentialBackoffRetryPolicy policy = new ExponentialBackoffRetryPolicy(100, 1000, 10, 60000);
+
+        for (int i = 0; i < 100; i++) {
+            assertBetween(50, 100, policy.getDelayInMs(1, 0, FAILURE));
+            assertBetween(200, 400, policy.getDelayInMs(3, 0, FAILURE));
+            assertBetween(500, 1000, policy.getDelayInMs(9, 0, FAILURE));
+        }
+        policy.setJitterFactor(0);
+        Assert.assertEquals(800, policy.getDelayInMs(4, 0, FAILURE));
+    }
+
+    @Test
+    public void shouldStopAfterMaxAttemptsOrMaxElapsedTime() {
+        ExponentialBackoffRetryPolicy policy = new ExponentialBackoffRetryPolicy(100, 1000, 3, 5000);
+        policy.setJitterFactor(0);
+
+        Assert.assertEquals(200, policy.getDelayInMs(2, 0, FAILURE));
+        Assert.assertEquals(RetryPolicy.STOP, policy.getDelayInMs(3, 0, FAILURE));
+        Assert.assertEquals(RetryPolicy.STOP, policy.getDelayInMs(2, 4900, FAILURE));
+    }
+
+    @Test
+    public void shouldStopOnFailureNotRetryable() {
+        ExponentialBackoffRetryPolicy policy = new ExponentialBackoffRetryPolicy();
+        policy.setClassifier(new RetryableExceptionClassifier() {
+            public boolean isRetryable(Exception exception) {
+                return !(exception instanceof IllegalStateException);
+            }
+        });
+
+        Assert.assertTrue(policy.getDelayInMs(1, 0, FAILURE) >= 0);
+        Assert.assertEquals(RetryPolicy.STOP, policy.getDelayInMs(1, 0, new IllegalStateException()));
+    }
+
+    private static void assertBetween(long min, long max, long actual) {
+        Assert.assertTrue(actual + " not between " + min + " and " + max, actual >= min && actual <= max);
+    }
+}
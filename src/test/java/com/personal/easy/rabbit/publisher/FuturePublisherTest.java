@@ -0,0 +1,122 @@
+package com.personal.easy.rabbit.publisher;
+
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.capture;
+import static org.easymock.EasyMock.eq;
+import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.expectLastCall;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.easymock.Capture;
+import org.junit.Assert;
+import org.junit.Test;
+import org.powermock.api.easymock.PowerMock;
+
+import com.personal.easy.rabbit.message.Message;
+import com.rabbitmq.client.AMQP.BasicProperties;
+import com.rabbitmq.client.ConfirmListener;
+import com.rabbitmq.client.ShutdownListener;
+
+public class FuturePublisherTest extends MessagePublisherTest {
+
+    @Test
+    public void shouldCompleteFuturesByBrokerConfirms() throws Exception {
+        FuturePublisher publisher = new FuturePublisher(connectionFactory, PublisherReliability.CONFIRMED);
+        Capture<ConfirmListener> confirmListener = new Capture<ConfirmListener>();
+
+        mockConnectionOperations();
+        expect(channel.confirmSelect()).andReturn(null).once();
+        channel.addConfirmListener(capture(confirmListener));
+        channel.addShutdownListener(anyObject(ShutdownListener.class));
+        expect(channel.getNextPublishSeqNo()).andReturn(1L).andReturn(2L).andReturn(3L);
+        channel.basicPublish(eq(TEST_EXCHANGE), eq(TEST_ROUTING_KEY), eq(false), eq(false),
+                anyObject(BasicProperties.class), anyObject(byte[].class));
+        expectLastCall().times(3);
+        PowerMock.replayAll();
+
+        Message message = new Message().exchange(TEST_EXCHANGE).routingKey(TEST_ROUTING_KEY);
+        PublishFuture<PublishResult> single = publisher.publishAsync(message);
+        PublishFuture<List<PublishResult>> list = publisher.publishAsync(Arrays.asList(
+                new Message().exchange(TEST_EXCHANGE).routingKey(TEST_ROUTING_KEY),
+                new Message().exchange(TEST_EXCHANGE).routingKey(TEST_ROUTING_KEY)));
+        final AtomicReference<PublishResult> notified = new AtomicReference<PublishResult>();
+        single.addListener(new PublishListener<PublishResult>() {
+            public void onComplete(PublishFuture<PublishResult> future) {
+                try {
+                    notified.set(future.get());
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        });
+        Assert.assertFalse(single.isDone());
+        Assert.assertFalse(list.isDone());
+
+        confirmListener.getValue().handleAck(2L, true);
+        confirmListener.getValue().handleNack(3L, false);
+
+        Assert.assertSame(message, notified.get().getMessage());
+        Assert.assertEquals(PublishStatus.ACKED, notified.get().getStatus());
+        Assert.assertEquals(PublishStatus.ACKED, list.get().get(0).getStatus());
+        Assert.assertEquals(PublishStatus.NACKED, list.get().get(1).getStatus());
+        Assert.assertFalse(list.get().get(1).isSuccess());
+        PowerMock.verifyAll();
+    }
+
+    @Test
+    public void shouldCompleteUnconfirmedPublishRightAway() throws Exception {
+        FuturePublisher publisher = new FuturePublisher(connectionFactory, PublisherReliability.NONE);
+
+        mockConnectionOperations();
+        channel.basicPublish(eq(TEST_EXCHANGE), eq(TEST_ROUTING_KEY), eq(false), eq(false),
+                anyObject(BasicProperties.class), anyObject(byte[].class));
+        expectLastCall().once();
+        PowerMock.replayAll();
+
+        PublishFuture<PublishResult> future = publisher.publishAsync(
+                new Message().exchange(TEST_EXCHANGE).routingKey(TEST_ROUTING_KEY));
+
+        Assert.assertTrue(future.isDone());
+        Assert.assertEquals(PublishStatus.PUBLISHED, future.get().getStatus());
+        PowerMock.verifyAll();
+    }
+
+    @Test
+    public void shouldFailFutureInsteadOfThrowing() throws Exception {
+        SimplePublisher simplePublisher = new SimplePublisher(connectionFactory);
+        simplePublisher.setRetryPolicy(FixedIntervalRetryPolicy.NO_RETRY);
+        FuturePublisher publisher = new FuturePublisher(simplePublisher);
+        IOException failure = new IOException("broker unavailable");
+
+        mockConnectionOperations();
+        channel.basicPublish(eq(TEST_EXCHANGE), eq(TEST_ROUTING_KEY), eq(false), eq(false),
+                anyObject(BasicProperties.class), anyObject(byte[].class));
+        expectLastCall().andThrow(failure);
+        PowerMock.replayAll();
+
+        PublishFuture<PublishResult> future = publisher.publishAsync(
+                new Message().exchange(TEST_EXCHANGE).routingKey(TEST_ROUTING_KEY));
+
+        Assert.assertTrue(future.isDone());
+        Assert.assertFalse(future.isSuccess());
+        Assert.assertSame(failure, future.getFailure());
+        PowerMock.verifyAll();
+    }
+
+    @Test
+    public void shouldCombineFuturesInOrder() throws Exception {
+        PublishFuture<String> first = new PublishFuture<String>();
+        PublishFuture<String> second = new PublishFuture<String>();
+        PublishFuture<List<String>> all = PublishFuture.all(Arrays.asList(first, second));
+
+        second.complete("second");
+        Assert.assertFalse(all.isDone());
+        first.complete("first");
+
+        Assert.assertEquals(Arrays.asList("first", "second"), all.get());
+    }
+}
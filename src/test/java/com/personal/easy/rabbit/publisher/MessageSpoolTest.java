@@ -0,0 +1,100 @@
+package com.personal.easy.rabbit.publisher;
+
+import java.io.File;
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.personal.easy.rabbit.message.Message;
+
+public class MessageSpoolTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void shouldReturnMessagesInOrderAndRecoverAfterReopening() throws Exception {
+        File directory = folder.newFolder("spool");
+        MessageSpool spool = new MessageSpool(directory, 1024);
+        spool.append(createMessage("1"), DeliveryOptions.NONE);
+        spool.append(createMessage("2"), DeliveryOptions.MANDATORY);
+        spool.append(createMessage("3"), DeliveryOptions.NONE);
+
+        MessageSpool.SpooledMessage first = spool.peek();
+        Assert.assertEquals("1", first.getMessage().getBodyAs(String.class));
+        Assert.assertEquals("exchange", first.getMessage().getExchange());
+        Assert.assertEquals("key", first.getMessage().getRoutingKey());
+        spool.remove();
+        spool.close();
+
+        spool = new MessageSpool(directory, 1024);
+        Assert.assertEquals(2, spool.size());
+        MessageSpool.SpooledMessage second = spool.peek();
+        Assert.assertEquals("2", second.getMessage().getBodyAs(String.class));
+        Assert.assertEquals(DeliveryOptions.MANDATORY, second.getDeliveryOptions());
+        spool.remove();
+        Assert.assertEquals("3", spool.peek().getMessage().getBodyAs(String.class));
+        spool.remove();
+        Assert.assertNull(spool.peek());
+        Assert.assertTrue(spool.isEmpty());
+        spool.close();
+    }
+
+    @Test
+    public void shouldRollAndDeleteSegments() throws Exception {
+        File directory = folder.newFolder("spool");
+        MessageSpool spool = new MessageSpool(directory, 256);
+        for (int i = 0; i < 20; i++) {
+            spool.append(createMessage(String.valueOf(i)), DeliveryOptions.NONE);
+        }
+        Assert.assertTrue(spool.getSegmentCount() > 1);
+
+        for (int i = 0; i < 20; i++) {
+            Assert.assertEquals(String.valueOf(i), spool.peek().getMessage().getBodyAs(String.class));
+            spool.remove();
+        }
+        Assert.assertEquals(1, spool.getSegmentCount());
+        Assert.assertEquals(1, directory.listFiles().length);
+
+        // The emptied segment is reused without resurrecting removed messages
+        spool.append(createMessage("reused"), DeliveryOptions.NONE);
+        spool.close();
+        spool = new MessageSpool(directory, 256);
+        Assert.assertEquals(1, spool.size());
+        Assert.assertEquals("reused", spool.peek().getMessage().getBodyAs(String.class));
+        spool.close();
+    }
+
+    @Test
+    public void shouldReturnSpooledListAsUnit() throws Exception {
+        File directory = folder.newFolder("spool");
+        MessageSpool spool = new MessageSpool(directory, 1024);
+        spool.append(createMessage("1"), DeliveryOptions.NONE);
+        spool.append(Arrays.asList(createMessage("2"), new Message().exchange("other").routingKey("key2").body("3")),
+                DeliveryOptions.MANDATORY);
+        Assert.assertEquals(3, spool.size());
+        spool.close();
+
+        spool = new MessageSpool(directory, 1024);
+        Assert.assertEquals(3, spool.size());
+        Assert.assertFalse(spool.peek().isList());
+        spool.remove();
+        MessageSpool.SpooledMessage list = spool.peek();
+        Assert.assertTrue(list.isList());
+        Assert.assertEquals(DeliveryOptions.MANDATORY, list.getDeliveryOptions());
+        Assert.assertEquals(2, list.getMessages().size());
+        Assert.assertEquals("2", list.getMessages().get(0).getBodyAs(String.class));
+        Assert.assertEquals("other", list.getMessages().get(1).getExchange());
+        Assert.assertEquals("key2", list.getMessages().get(1).getRoutingKey());
+        spool.remove();
+        Assert.assertTrue(spool.isEmpty());
+        spool.close();
+    }
+
+    private static Message createMessage(String body) {
+        return new Message().exchange("exchange").routingKey("key").body(body);
+    }
+}
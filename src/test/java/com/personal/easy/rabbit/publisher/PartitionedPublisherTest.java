@@ -0,0 +1,92 @@
+package com.personal.easy.rabbit.publisher;
+
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.personal.easy.rabbit.message.Message;
+import com.personal.easy.rabbit.publisher.AsyncPublisherTest.RecordingPublisher;
+
+public class PartitionedPublisherTest {
+
+    private static final int KEYS = 10000;
+
+    @Test
+    public void shouldSpreadKeysEvenlyOverPartitions() {
+        ConsistentHashRing ring = new ConsistentHashRing(8);
+        int[] counts = new int[8];
+        for (int i = 0; i < KEYS; i++) {
+            counts[ring.partition("entity-" + i)]++;
+        }
+        for (int count : counts) {
+            Assert.assertTrue("Unbalanced partitions " + Arrays.toString(counts),
+                    count > KEYS / 8 * 0.7 && count < KEYS / 8 * 1.3);
+        }
+    }
+
+    @Test
+    public void shouldOnlyMoveKeysOfAddedPartition() {
+        ConsistentHashRing before = new ConsistentHashRing(8);
+        ConsistentHashRing after = new ConsistentHashRing(9);
+        int moved = 0;
+        for (int i = 0; i < KEYS; i++) {
+            String key = "entity-" + i;
+            int partition = after.partition(key);
+            if (partition != before.partition(key)) {
+                Assert.assertEquals(8, partition);
+                moved++;
+            }
+        }
+        Assert.assertTrue("Moved " + moved + " keys", moved > KEYS / 9 * 0.7 && moved < KEYS / 9 * 1.3);
+    }
+
+    @Test
+    public void shouldPublishWithShardRoutingKeyOfPartitionKeyHeader() throws Exception {
+        RecordingPublisher delegate = new RecordingPublisher();
+        PartitionedPublisher publisher = new PartitionedPublisher(delegate, "orders", 4, "entity");
+        Message first = new Message().routingKey("ignored").header("entity", "order-42");
+        Message second = new Message().routingKey("other").header("entity", "order-42");
+        int partition = new ConsistentHashRing(4).partition("order-42");
+
+        publisher.publish(first);
+        publisher.publish(Arrays.asList(second));
+
+        Assert.assertEquals(Arrays.asList(first, second), delegate.published);
+        Assert.assertEquals("orders." + partition, first.getRoutingKey());
+        Assert.assertEquals("orders." + partition, second.getRoutingKey());
+    }
+
+    @Test
+    public void shouldUseRoutingKeyAsPartitionKeyWithoutHeader() throws Exception {
+        RecordingPublisher delegate = new RecordingPublisher();
+        PartitionedPublisher publisher = new PartitionedPublisher(delegate, "orders", 4, "entity");
+        Message message = new Message().routingKey("order-7");
+        int partition = publisher.partition(message);
+
+        publisher.setPartitions(5);
+        publisher.publish(message);
+
+        Assert.assertEquals(5, publisher.getPartitions());
+        Assert.assertEquals(PartitionedPublisher.shardName("orders", new ConsistentHashRing(5).partition("order-7")),
+                message.getRoutingKey());
+        Assert.assertTrue(partition < 4);
+    }
+
+    @Test
+    public void shouldKeepPartitionWhenPublishingMessageAgain() throws Exception {
+        RecordingPublisher delegate = new RecordingPublisher();
+        PartitionedPublisher publisher = new PartitionedPublisher(delegate, "orders", 4);
+        Message message = new Message().routingKey("order-7");
+        String shard = PartitionedPublisher.shardName("orders", new ConsistentHashRing(4).partition("order-7"));
+
+        publisher.publish(message);
+        Assert.assertEquals(shard, message.getRoutingKey());
+        publisher.publish(message);
+
+        Assert.assertEquals(shard, message.getRoutingKey());
+        Assert.assertEquals("order-7", message.getBasicProperties().getHeaders()
+                .get(PartitionedPublisher.PARTITION_KEY_HEADER));
+        Assert.assertEquals(2, delegate.published.size());
+    }
+}
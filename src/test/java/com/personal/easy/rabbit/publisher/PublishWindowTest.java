@@ -0,0 +1,69 @@
+package com.personal.easy.rabbit.publisher;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+public class PublishWindowTest {
+
+    @Test
+    public void shouldRejectRightAwayIfWindowIsExceeded() throws Exception {
+        PublishWindow window = new PublishWindow(2, 100);
+        window.acquire(1, 60);
+        try {
+            window.acquire(1, 60);
+            Assert.fail("Expected the byte limit to be exceeded");
+        } catch (IOException e) {
+            // expected
+        }
+        window.acquire(1, 40);
+        Assert.assertEquals(2, window.getInFlightMessages());
+        Assert.assertEquals(100, window.getInFlightBytes());
+        Assert.assertEquals(1, window.getRejectedCount());
+    }
+
+    @Test
+    public void shouldAdmitOversizedPublishIfNothingIsInFlight() throws Exception {
+        PublishWindow window = new PublishWindow(1, 10);
+        window.acquire(5, 1000);
+        window.release(5, 1000);
+        Assert.assertEquals(0, window.getInFlightMessages());
+    }
+
+    @Test(expected = TimeoutException.class)
+    public void shouldTimeOutAfterMaxWaitTime() throws Exception {
+        PublishWindow window = new PublishWindow(1, 100, 20);
+        window.acquire(1, 1);
+        window.acquire(1, 1);
+    }
+
+    @Test
+    public void shouldWaitForReleaseAndUnblock() throws Exception {
+        final PublishWindow window = new PublishWindow(1, 100, 5000);
+        window.acquire(1, 1);
+        window.onConnectionBlocked("low on memory");
+        final CountDownLatch acquired = new CountDownLatch(1);
+        Thread publisher = new Thread() {
+            @Override
+            public void run() {
+                try {
+                    window.acquire(1, 1);
+                    acquired.countDown();
+                } catch (Exception e) {
+                    // fails the test by not counting down
+                }
+            }
+        };
+        publisher.start();
+
+        window.release(1, 1);
+        Assert.assertFalse(acquired.await(50, TimeUnit.MILLISECONDS));
+        window.onConnectionUnblocked();
+        Assert.assertTrue(acquired.await(1, TimeUnit.SECONDS));
+        Assert.assertFalse(window.isBlocked());
+    }
+}
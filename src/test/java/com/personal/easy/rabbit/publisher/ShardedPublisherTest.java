@@ -0,0 +1,97 @@
+package com.personal.easy.rabbit.publisher;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.personal.easy.rabbit.message.Message;
+import com.personal.easy.rabbit.publisher.AsyncPublisherTest.RecordingPublisher;
+
+public class ShardedPublisherTest {
+
+    private final RecordingPublisher first = new RecordingPublisher();
+
+    private final RecordingPublisher second = new RecordingPublisher();
+
+    private final RecordingPublisher third = new RecordingPublisher();
+
+    private final List<RecordingPublisher> shards = Arrays.asList(first, second, third);
+
+    @Test
+    public void shouldSpreadMessagesRoundRobin() throws Exception {
+        ShardedPublisher publisher = new ShardedPublisher(shards, ShardingStrategy.ROUND_ROBIN);
+
+        for (int i = 0; i < 6; i++) {
+            publisher.publish(new Message().routingKey("key"));
+        }
+
+        Assert.assertEquals(2, first.published.size());
+        Assert.assertEquals(2, second.published.size());
+        Assert.assertEquals(2, third.published.size());
+    }
+
+    @Test
+    public void shouldKeepOrderPerRoutingKeyWhenHashing() throws Exception {
+        ShardedPublisher publisher = new ShardedPublisher(shards, ShardingStrategy.ROUTING_KEY_HASH);
+        Message[] messages = new Message[6];
+        for (int i = 0; i < messages.length; i++) {
+            messages[i] = new Message().routingKey("key-" + (i % 2));
+        }
+
+        publisher.publish(Arrays.asList(messages[0], messages[1], messages[2]));
+        publisher.publish(messages[3]);
+        publisher.publish(Arrays.asList(messages[4], messages[5]));
+
+        for (int key = 0; key < 2; key++) {
+            RecordingPublisher shard = shards.get(publisher.selectShard(messages[key]));
+            Assert.assertTrue(shard.published.indexOf(messages[key]) < shard.published.indexOf(messages[key + 2]));
+            Assert.assertTrue(shard.published.indexOf(messages[key + 2]) < shard.published.indexOf(messages[key + 4]));
+        }
+        Assert.assertEquals(6, first.published.size() + second.published.size() + third.published.size());
+    }
+
+    @Test
+    public void shouldAvoidBusyShardsWithLeastInFlight() throws Exception {
+        final ShardedPublisher publisher = new ShardedPublisher(Arrays.asList(first, second),
+                ShardingStrategy.LEAST_IN_FLIGHT);
+        CountDownLatch blocked = new CountDownLatch(1);
+        first.blocked = blocked;
+        Thread busy = new Thread(new Runnable() {
+            public void run() {
+                try {
+                    publisher.publish(new Message());
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        });
+        busy.start();
+        while (publisher.getInFlight(0) == 0) {
+            Thread.sleep(1);
+        }
+
+        for (int i = 0; i < 4; i++) {
+            publisher.publish(new Message());
+        }
+        Assert.assertEquals(4, second.published.size());
+
+        blocked.countDown();
+        busy.join();
+        Assert.assertEquals(1, first.published.size());
+        Assert.assertEquals(0, publisher.getInFlight(0));
+    }
+
+    @Test
+    public void shouldCloseAllShards() throws Exception {
+        ShardedPublisher publisher = new ShardedPublisher(shards, ShardingStrategy.ROUND_ROBIN);
+
+        publisher.close();
+
+        Assert.assertTrue(first.closed);
+        Assert.assertTrue(second.closed);
+        Assert.assertTrue(third.closed);
+    }
+}
@@ -1,12 +1,25 @@
 package com.personal.easy.rabbit.publisher;
 
 
+import org.junit.Assert;
 import org.junit.Test;
 import org.powermock.api.easymock.PowerMock;
 
 import com.personal.easy.rabbit.message.Message;
 import com.personal.easy.rabbit.publisher.SimplePublisher;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.easymock.Capture;
+
+import com.rabbitmq.client.AMQP.BasicProperties;
+import com.rabbitmq.client.ReturnListener;
+
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.capture;
+import static org.easymock.EasyMock.eq;
 import static org.easymock.EasyMock.expectLastCall;
 
 public class SimplePublisherTest extends MessagePublisherTest {
@@ -26,4 +39,58 @@ public class SimplePublisherTest extends MessagePublisherTest {
         PowerMock.verifyAll();
     }
 
+    @Test
+    public void shouldRetryFailedPublishAsToldByRetryPolicy() throws Exception {
+        Message message = new Message().exchange(TEST_EXCHANGE).routingKey(TEST_ROUTING_KEY);
+        SimplePublisher publisher = new SimplePublisher(connectionFactory);
+        publisher.setRetryPolicy(new FixedIntervalRetryPolicy(2, 0));
+
+        mockConnectionOperations();
+        channel.close();
+        expectLastCall().anyTimes();
+        channel.basicPublish(eq(TEST_EXCHANGE), eq(TEST_ROUTING_KEY), eq(false), eq(false),
+                anyObject(com.rabbitmq.client.AMQP.BasicProperties.class), anyObject(byte[].class));
+        expectLastCall().andThrow(new IOException("connection reset")).once();
+        expectLastCall().once();
+        PowerMock.replayAll();
+
+        publisher.publish(message);
+
+        PowerMock.verifyAll();
+        Assert.assertEquals(1, publisher.getRetryMetrics().getRetryCount());
+        Assert.assertEquals(1, publisher.getRetryMetrics().getRecoveredCount());
+    }
+
+    @Test
+    public void shouldPassReturnedMessageToReturnCallback() throws Exception {
+        SimplePublisher publisher = new SimplePublisher(connectionFactory);
+        final List<Message> returned = new ArrayList<Message>();
+        publisher.setReturnCallback(new ReturnCallback() {
+            public void onReturned(Message message, int replyCode, String replyText) {
+                Assert.assertEquals(312, replyCode);
+                returned.add(message);
+            }
+        });
+        Capture<ReturnListener> returnListener = new Capture<ReturnListener>();
+
+        mockConnectionOperations();
+        channel.addReturnListener(capture(returnListener));
+        expectLastCall().once();
+        channel.basicPublish(eq(TEST_EXCHANGE), eq(TEST_ROUTING_KEY), eq(true), eq(false),
+                anyObject(BasicProperties.class), anyObject(byte[].class));
+        expectLastCall().times(2);
+        PowerMock.replayAll();
+
+        Message message = new Message().id("returned-1").exchange(TEST_EXCHANGE).routingKey(TEST_ROUTING_KEY);
+        publisher.publish(message, DeliveryOptions.MANDATORY);
+        publisher.publish(new Message().exchange(TEST_EXCHANGE).routingKey(TEST_ROUTING_KEY), DeliveryOptions.MANDATORY);
+        returnListener.getValue().handleReturn(312, "NO_ROUTE", TEST_EXCHANGE, TEST_ROUTING_KEY,
+                message.getBasicProperties(), message.getBodyContent());
+
+        Assert.assertEquals(1, returned.size());
+        Assert.assertEquals("returned-1", returned.get(0).getId());
+        Assert.assertEquals(TEST_ROUTING_KEY, returned.get(0).getRoutingKey());
+        PowerMock.verifyAll();
+    }
+
 }
@@ -0,0 +1,76 @@
+package com.personal.easy.rabbit.publisher;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.TimeoutException;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import com.personal.easy.rabbit.connection.SingleConnectionFactory;
+import com.personal.easy.rabbit.message.Message;
+import com.personal.easy.rabbit.publisher.AsyncPublisherTest.RecordingPublisher;
+
+public class SpoolingPublisherTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void shouldSpoolFailedMessagesAndReplayThemInOrder() throws Exception {
+        RecordingPublisher delegate = new RecordingPublisher();
+        delegate.failure = new IOException("broker unavailable");
+        MessageSpool spool = new MessageSpool(folder.newFolder("spool"), 4096);
+        SpoolingPublisher publisher = new SpoolingPublisher(delegate, spool, new SingleConnectionFactory());
+
+        publisher.publish(new Message().body("1"));
+        delegate.failure = null;
+        // Published after the first message has been replayed
+        publisher.publish(new Message().body("2"));
+        Assert.assertEquals(2, publisher.getSpooledCount());
+
+        publisher.onConnectionEstablished(null);
+        for (int i = 0; i < 1000 && publisher.getSpooledCount() > 0; i++) {
+            Thread.sleep(1);
+        }
+
+        Assert.assertEquals(0, publisher.getSpooledCount());
+        Assert.assertEquals(2, delegate.published.size());
+        Assert.assertEquals("1", delegate.published.get(0).getBodyAs(String.class));
+        Assert.assertEquals("2", delegate.published.get(1).getBodyAs(String.class));
+
+        publisher.publish(new Message().body("3"));
+        Assert.assertEquals(3, delegate.published.size());
+        publisher.close();
+        Assert.assertTrue(delegate.closed);
+    }
+
+    @Test
+    public void shouldSpoolListOnTimeoutAndReplayItAsList() throws Exception {
+        RecordingPublisher delegate = new RecordingPublisher();
+        delegate.timeout = new TimeoutException("no channel available");
+        MessageSpool spool = new MessageSpool(folder.newFolder("spool"), 4096);
+        SpoolingPublisher publisher = new SpoolingPublisher(delegate, spool, new SingleConnectionFactory());
+        Message first = new Message().body("1");
+        Message second = new Message().body("2");
+
+        publisher.publish(Arrays.asList(first, second));
+        Assert.assertEquals(2, publisher.getSpooledCount());
+        delegate.timeout = null;
+
+        publisher.onConnectionEstablished(null);
+        for (int i = 0; i < 1000 && publisher.getSpooledCount() > 0; i++) {
+            Thread.sleep(1);
+        }
+
+        Assert.assertEquals(0, publisher.getSpooledCount());
+        // The failed attempt and the replay both publish the whole list
+        Assert.assertEquals(2, delegate.publishedLists.size());
+        Assert.assertEquals(2, delegate.publishedLists.get(1).size());
+        Assert.assertEquals("1", delegate.publishedLists.get(1).get(0).getBodyAs(String.class));
+        Assert.assertEquals("2", delegate.publishedLists.get(1).get(1).getBodyAs(String.class));
+        publisher.close();
+    }
+}
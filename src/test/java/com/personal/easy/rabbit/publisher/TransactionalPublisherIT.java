@@ -2,8 +2,13 @@ package com.personal.easy.rabbit.publisher;
 
 
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 
 import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import com.personal.easy.rabbit.TestBrokerSetup;
 import com.personal.easy.rabbit.connection.SingleConnectionFactory;
@@ -13,6 +18,12 @@ import com.rabbitmq.client.Connection;
 
 public class TransactionalPublisherIT extends MessagePublisherIT {
 
+    private static final Logger LOGGER = LoggerFactory.getLogger(TransactionalPublisherIT.class);
+
+    private static final int BENCHMARK_LIST_SIZE = 1000;
+
+    private static final int BENCHMARK_ROUNDS = 20;
+
     @Test
     public void shouldPublishMessage() throws Exception {
         TransactionalPublisher publisher = new TransactionalPublisher(this.singleConnectionFactory);
@@ -52,4 +63,40 @@ public class TransactionalPublisherIT extends MessagePublisherIT {
         this.brokerAssert.queueSize(TestBrokerSetup.TEST_QUEUE, 2);
     }
 
+    /**
+     * Reports throughput and tail latency of publishing lists in chunked
+     * commit mode for several chunk sizes, 0 meaning a single transaction.
+     */
+    @Test
+    public void shouldReportThroughputOfChunkSizes() throws Exception {
+        List<Message> messages = new ArrayList<Message>(BENCHMARK_LIST_SIZE);
+        for (int i = 0; i < BENCHMARK_LIST_SIZE; i++) {
+            messages.add(new Message()
+                    .exchange(TestBrokerSetup.TEST_EXCHANGE)
+                    .routingKey(TestBrokerSetup.TEST_ROUTING_KEY)
+                    .body(new byte[256]));
+        }
+        for (int chunkSize : new int[] { 0, 10, 100, 500 }) {
+            TransactionalPublisher publisher = new TransactionalPublisher(this.singleConnectionFactory);
+            publisher.setChunkSize(chunkSize, 0);
+            publisher.publish(messages);
+
+            long[] latencies = new long[BENCHMARK_ROUNDS];
+            long start = System.nanoTime();
+            for (int round = 0; round < BENCHMARK_ROUNDS; round++) {
+                long roundStart = System.nanoTime();
+                publisher.publish(messages);
+                latencies[round] = System.nanoTime() - roundStart;
+            }
+            long elapsed = System.nanoTime() - start;
+            Arrays.sort(latencies);
+            LOGGER.info("Chunk size {}: {} msg/s, p50 {} ms, max {} ms", new Object[] { chunkSize,
+                    BENCHMARK_LIST_SIZE * BENCHMARK_ROUNDS * 1000000000L / elapsed,
+                    latencies[BENCHMARK_ROUNDS / 2] / 1000000, latencies[BENCHMARK_ROUNDS - 1] / 1000000 });
+            publisher.close();
+            this.brokerSetup.tearDown();
+            this.brokerSetup.prepareSimpleTest();
+        }
+    }
+
 }
@@ -1,13 +1,24 @@
 package com.personal.easy.rabbit.publisher;
 
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.easymock.IAnswer;
+import org.junit.Assert;
 import org.junit.Test;
 import org.powermock.api.easymock.PowerMock;
 
 import com.personal.easy.rabbit.message.Message;
 import com.personal.easy.rabbit.publisher.TransactionalPublisher;
+import com.rabbitmq.client.AMQP.BasicProperties;
 
+import static org.easymock.EasyMock.anyObject;
+import static org.easymock.EasyMock.eq;
 import static org.easymock.EasyMock.expect;
+import static org.easymock.EasyMock.getCurrentArguments;
 import static org.easymock.EasyMock.expectLastCall;
 
 public class TransactionalPublisherTest extends MessagePublisherTest {
@@ -31,4 +42,102 @@ public class TransactionalPublisherTest extends MessagePublisherTest {
 		PowerMock.verifyAll();
 	}
 
+	@Test
+	public void shouldSelectTransactionModeOnce() throws Exception {
+		TransactionalPublisher publisher = new TransactionalPublisher(connectionFactory);
+
+		mockConnectionOperations();
+		expect(channel.txSelect()).andReturn(null);
+		expectLastCall().once();
+		channel.basicPublish(eq(TEST_EXCHANGE), eq(TEST_ROUTING_KEY), eq(false), eq(false),
+				anyObject(BasicProperties.class), anyObject(byte[].class));
+		expectLastCall().times(3);
+		// One commit round trip per publish, the select round trip is paid once per channel
+		expect(channel.txCommit()).andReturn(null);
+		expectLastCall().times(3);
+		PowerMock.replayAll();
+
+		for (int i = 0; i < 3; i++) {
+			publisher.publish(new Message().exchange(TEST_EXCHANGE).routingKey(TEST_ROUTING_KEY));
+		}
+
+		PowerMock.verifyAll();
+	}
+
+	@Test
+	public void shouldCommitInChunksAndResumeAfterLastCommittedChunk() throws Exception {
+		TransactionalPublisher publisher = new TransactionalPublisher(connectionFactory);
+		publisher.setChunkSize(2, 0);
+		publisher.setRetryPolicy(new FixedIntervalRetryPolicy(2, 0));
+		List<Message> messages = new ArrayList<Message>();
+		for (int i = 1; i <= 5; i++) {
+			messages.add(new Message().exchange(TEST_EXCHANGE).routingKey(TEST_ROUTING_KEY).body(String.valueOf(i)));
+		}
+		final List<String> published = new ArrayList<String>();
+
+		mockConnectionOperations();
+		expect(channel.txSelect()).andReturn(null).atLeastOnce();
+		channel.basicPublish(eq(TEST_EXCHANGE), eq(TEST_ROUTING_KEY), eq(false), eq(false),
+				anyObject(BasicProperties.class), anyObject(byte[].class));
+		expectLastCall().andAnswer(new IAnswer<Object>() {
+			public Object answer() throws Throwable {
+				published.add(new String((byte[]) getCurrentArguments()[5], "UTF-8"));
+				return null;
+			}
+		}).times(7);
+		expect(channel.txCommit()).andReturn(null).andThrow(new IOException("commit failed")).andReturn(null).times(2);
+		expect(channel.txRollback()).andReturn(null).once();
+		PowerMock.replayAll();
+
+		publisher.publish(messages);
+
+		Assert.assertEquals(Arrays.asList("1", "2", "3", "4", "3", "4", "5"), published);
+		PowerMock.verifyAll();
+	}
+
+	@Test
+	public void shouldReportCommittedMessagesWhenRetriesAreExhausted() throws Exception {
+		TransactionalPublisher publisher = new TransactionalPublisher(connectionFactory);
+		publisher.setChunkSize(1, 0);
+		publisher.setRetryPolicy(FixedIntervalRetryPolicy.NO_RETRY);
+
+		mockConnectionOperations();
+		expect(channel.txSelect()).andReturn(null).once();
+		channel.basicPublish(eq(TEST_EXCHANGE), eq(TEST_ROUTING_KEY), eq(false), eq(false),
+				anyObject(BasicProperties.class), anyObject(byte[].class));
+		expectLastCall().times(2);
+		expect(channel.txCommit()).andReturn(null).andThrow(new IOException("commit failed"));
+		expect(channel.txRollback()).andReturn(null).once();
+		PowerMock.replayAll();
+
+		try {
+			publisher.publish(Arrays.asList(
+					new Message().exchange(TEST_EXCHANGE).routingKey(TEST_ROUTING_KEY),
+					new Message().exchange(TEST_EXCHANGE).routingKey(TEST_ROUTING_KEY),
+					new Message().exchange(TEST_EXCHANGE).routingKey(TEST_ROUTING_KEY)));
+			Assert.fail("Expected the publish to fail");
+		} catch (PartiallyCommittedException e) {
+			Assert.assertEquals(1, e.getCommittedCount());
+			Assert.assertEquals(3, e.getTotalCount());
+		}
+		PowerMock.verifyAll();
+	}
+
+	@Test
+	public void shouldLimitChunksByBytes() throws Exception {
+		TransactionalPublisher publisher = new TransactionalPublisher(connectionFactory);
+		publisher.setChunkSize(0, 10);
+		List<Message> messages = Arrays.asList(
+				new Message().body(new byte[4]),
+				new Message().body(new byte[6]),
+				new Message().body(new byte[1]),
+				new Message().body(new byte[20]),
+				new Message().body(new byte[1]));
+
+		Assert.assertEquals(2, publisher.chunkEnd(messages, 0));
+		Assert.assertEquals(3, publisher.chunkEnd(messages, 2));
+		Assert.assertEquals(4, publisher.chunkEnd(messages, 3));
+		Assert.assertEquals(5, publisher.chunkEnd(messages, 4));
+	}
+
 }